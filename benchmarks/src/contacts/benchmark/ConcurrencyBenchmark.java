@@ -0,0 +1,146 @@
+package contacts.benchmark;
+
+import contacts.model.ConcurrentContacts;
+import contacts.model.Contacts;
+import contacts.model.ContactsRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+
+/**
+ * Measures throughput of reads and writes of {@link ConcurrentContacts} and of {@link Contacts} guarded
+ * by single read-write lock, which is how plain phone book would be shared between threads. <br>
+ * Running the class runs benchmarks with 1, 2, 4, 8, 16 and 32 threads,
+ * command line arguments are passed to JMH as regular expression of benchmarks to run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConcurrencyBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+
+    @Param({"100000"})
+    private int size;
+
+    @Param({"striped", "locked"})
+    private String implementation;
+
+    private Contacts contacts;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Contacts generated = new ContactsGenerator(42).generateBook(size);
+        contacts = implementation.equals("striped") ? new ConcurrentContacts(generated) : generated;
+        contacts.search("warm up search index");
+    }
+
+    /**
+     * Records added and deleted by one thread, so size of phone book stays the same.
+     */
+    @State(Scope.Thread)
+    public static class Writer {
+        private ContactsRecord[] records;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            ContactsGenerator generator = new ContactsGenerator(System.identityHashCode(this));
+            records = new ContactsRecord[1024];
+            for (int i = 0; i < records.length; i++) {
+                records[i] = generator.generateRecord();
+            }
+        }
+
+        ContactsRecord next() {
+            ContactsRecord record = records[next];
+            next = (next + 1) % records.length;
+            return record;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Reader {
+        private final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Benchmark
+    public ContactsRecord getRecordByID(Reader reader) {
+        long id = 1 + reader.random.nextInt(size);
+        if (contacts instanceof ConcurrentContacts) {
+            return contacts.getRecordByID(id);
+        }
+        lock.readLock().lock();
+        try {
+            return contacts.getRecordByID(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Benchmark
+    public List<ContactsRecord> search(Reader reader) {
+        String query = reader.random.nextBoolean() ? "johnson" : "pizza";
+        if (contacts instanceof ConcurrentContacts) {
+            return contacts.search(query);
+        }
+        lock.readLock().lock();
+        try {
+            return contacts.search(query);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Benchmark
+    public int addAndDelete(Writer writer) {
+        ContactsRecord record = writer.next();
+        if (contacts instanceof ConcurrentContacts) {
+            contacts.addRecord(record);
+            contacts.deleteRecord(record);
+            return contacts.getNumberOfRecords();
+        }
+        lock.writeLock().lock();
+        try {
+            contacts.addRecord(record);
+            contacts.deleteRecord(record);
+            return contacts.getNumberOfRecords();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String include = args.length > 0 ? args[0] : ConcurrencyBenchmark.class.getSimpleName();
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                    .include(include)
+                    .threads(threads)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
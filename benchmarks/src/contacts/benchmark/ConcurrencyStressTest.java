@@ -0,0 +1,210 @@
+package contacts.benchmark;
+
+import contacts.model.ConcurrentContacts;
+import contacts.model.Contacts;
+import contacts.model.ContactsRecord;
+import contacts.model.Journal;
+import contacts.model.SerializationUtils;
+import contacts.model.WrongFieldNameException;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+
+
+/**
+ * Changes and reads {@link ConcurrentContacts} from many threads at once with journal attached,
+ * then checks that phone book, its search index and phone book restored from drive agree with changes
+ * made by every thread. Each thread owns records it added, gives them unique names and edits or deletes only them,
+ * while reading records of all threads. <br>
+ * Runs twice: with journal folded every 256 KiB and with journal rotated on almost every change,
+ * while another thread requests snapshots, so rotation races with writers of other threads. <br>
+ * Accepts number of threads and number of operations per thread as optional command line arguments,
+ * 16 and 20 000 by default. Exits with status 1 if any check fails.
+ * Bounded run of the same checks is part of tests of the application as ConcurrentContactsStressTest.
+ */
+public class ConcurrencyStressTest {
+
+    private static final long COMPACTION_THRESHOLD = 256 << 10;
+    private static final long ROTATION_THRESHOLD = 2 << 10;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int operations = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        try {
+            stress(threads, operations, COMPACTION_THRESHOLD, false);
+            stress(threads, operations, ROTATION_THRESHOLD, true);
+            System.out.println("OK");
+        } catch (AssertionError e) {
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @param compactionThreshold Size of journal, after which it's rotated and folded.
+     * @param snapshots           True to request snapshots from separate thread while workers change phone book.
+     */
+    private static void stress(int threads, int operations, long compactionThreshold, boolean snapshots)
+            throws Exception {
+        Path directory = Files.createTempDirectory("contacts-stress");
+        String fileName = directory.resolve("contacts.db").toString();
+        try {
+            ConcurrentContacts contacts = new ConcurrentContacts(new ContactsGenerator(42).generateBook(1000));
+            SerializationUtils.serialize(contacts, fileName);
+            Journal journal = Journal.open(contacts, fileName, compactionThreshold);
+
+            Map<Long, String> expected = new ConcurrentHashMap<>();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            CountDownLatch start = new CountDownLatch(1);
+            CountDownLatch finished = new CountDownLatch(threads);
+            List<Thread> workers = new ArrayList<>();
+            long begin = System.nanoTime();
+            for (int t = 0; t < threads; t++) {
+                int thread = t;
+                Thread worker = new Thread(() -> {
+                    try {
+                        start.await();
+                        run(contacts, thread, operations, expected);
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        finished.countDown();
+                    }
+                });
+                workers.add(worker);
+                worker.start();
+            }
+            if (snapshots) {
+                Thread snapshotter = new Thread(() -> {
+                    try {
+                        start.await();
+                        while (finished.getCount() > 0) {
+                            journal.snapshot().get();
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+                workers.add(snapshotter);
+                snapshotter.start();
+            }
+            start.countDown();
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            long elapsed = System.nanoTime() - begin;
+            journal.close();
+            if (failure.get() != null) {
+                throw new AssertionError("Worker failed", failure.get());
+            }
+            System.out.printf("%d threads made %d operations with compaction threshold %d bytes in %d ms%n",
+                    threads, (long) threads * operations, compactionThreshold, elapsed / 1_000_000);
+
+            check(contacts, expected, "phone book");
+            Contacts restored = SerializationUtils.deserialize(fileName);
+            Journal.open(restored, fileName).close();
+            check(restored, expected, "restored phone book");
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.deleteIfExists(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    /**
+     * Makes random operations over own records and reads of any records, checking own records on every read.
+     */
+    private static void run(ConcurrentContacts contacts, int thread, int operations, Map<Long, String> expected)
+            throws WrongFieldNameException {
+        ContactsGenerator generator = new ContactsGenerator(thread);
+        Random random = new Random(thread);
+        Map<Long, String> own = new HashMap<>();
+        List<Long> ownIDs = new ArrayList<>();
+        long lastAddedID = 1;
+        for (int i = 0; i < operations; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 3 || ownIDs.isEmpty()) {
+                ContactsRecord record = generator.generateRecord();
+                String name = uniqueName(thread, i);
+                record.setName(name);
+                contacts.addRecord(record);
+                own.put(record.getID(), name);
+                ownIDs.add(record.getID());
+                lastAddedID = record.getID();
+            } else if (operation < 5) {
+                long id = ownIDs.get(random.nextInt(ownIDs.size()));
+                String name = uniqueName(thread, i);
+                contacts.editFieldByName(contacts.getRecordByID(id), "name", name);
+                own.put(id, name);
+            } else if (operation < 6) {
+                int index = random.nextInt(ownIDs.size());
+                long id = ownIDs.get(index);
+                ownIDs.set(index, ownIDs.get(ownIDs.size() - 1));
+                ownIDs.remove(ownIDs.size() - 1);
+                contacts.deleteRecord(contacts.getRecordByID(id));
+                own.remove(id);
+                if (contacts.getRecordByID(id) != null) {
+                    throw new AssertionError("Deleted record " + id + " is still found");
+                }
+            } else if (operation < 8) {
+                long id = ownIDs.get(random.nextInt(ownIDs.size()));
+                List<ContactsRecord> found = contacts.search(own.get(id));
+                if (found.size() != 1 || found.get(0).getID() != id) {
+                    throw new AssertionError("Search of " + own.get(id) + " found " + found.size() + " records");
+                }
+            } else {
+                long id = 1 + random.nextInt((int) lastAddedID);
+                ContactsRecord record = contacts.getRecordByID(id);
+                if (own.containsKey(id) && (record == null || !own.get(id).equals(record.getName()))) {
+                    throw new AssertionError("Record " + id + " doesn't have expected name " + own.get(id));
+                }
+            }
+        }
+        expected.putAll(own);
+    }
+
+    private static void check(Contacts contacts, Map<Long, String> expected, String description) {
+        int generated = 0;
+        long previousID = 0;
+        for (ContactsRecord record : contacts.search(".*")) {
+            if (record.getID() <= previousID) {
+                throw new AssertionError(description + ": records are not ordered by ID");
+            }
+            previousID = record.getID();
+            String name = expected.get(record.getID());
+            if (name == null) {
+                generated++;
+            } else if (!name.equals(record.getName())) {
+                throw new AssertionError(description + ": record " + record.getID() + " has name "
+                        + record.getName() + " instead of " + name);
+            }
+        }
+        if (generated != 1000 || contacts.getNumberOfRecords() != expected.size() + 1000) {
+            throw new AssertionError(description + ": " + contacts.getNumberOfRecords()
+                    + " records instead of " + (expected.size() + 1000));
+        }
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            List<ContactsRecord> found = contacts.search(entry.getValue());
+            if (found.size() != 1 || found.get(0).getID() != entry.getKey()) {
+                throw new AssertionError(description + ": search of " + entry.getValue()
+                        + " found " + found.size() + " records");
+            }
+        }
+    }
+
+    private static String uniqueName(int thread, int operation) {
+        return "Stress" + thread + "x" + operation + "z";
+    }
+}
@@ -0,0 +1,151 @@
+package contacts.benchmark;
+
+import contacts.model.Contacts;
+import contacts.model.ContactsRecord;
+import contacts.model.OrganizationContactsRecord;
+import contacts.model.PersonContactsRecord;
+
+import java.util.Random;
+
+
+/**
+ * Generates synthetic phone books for benchmarks.
+ * Generation is deterministic for the same seed, all generated values satisfy validation rules of records.
+ */
+public class ContactsGenerator {
+
+    private static final String[] NAMES = {"John", "Jane", "Alice", "Bob", "Carol", "Dave", "Eve", "Frank",
+            "Grace", "Heidi", "Ivan", "Judy", "Mallory", "Oscar", "Peggy", "Trent", "Victor", "Walter"};
+    private static final String[] SURNAMES = {"Smith", "Johnson", "Williams", "Brown", "Jones", "Miller", "Davis",
+            "Wilson", "Anderson", "Taylor", "Thomas", "Moore", "Martin", "Jackson", "White", "Harris", "Clark"};
+    private static final String[] ORGANIZATIONS = {"Pizza", "Bank", "Garage", "Clinic", "Bakery", "Hotel",
+            "Pharmacy", "School", "Library", "Cinema"};
+    private static final String[] SYLLABLES = {"al", "ber", "ca", "dor", "en", "fi", "gan", "hol", "ink", "jo", "kel",
+            "lan", "mar", "nov", "or", "pet", "quin", "ros", "sten", "tur", "ul", "van", "wes", "zel"};
+    private static final String[] STREETS = {"Main St", "Oak Ave", "Pine Rd", "Maple Dr", "Cedar Ln", "Elm St"};
+
+    private final Random random;
+
+    public ContactsGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Generates phone book, where approximately every fifth record is organization.
+     *
+     * @param size Number of records.
+     * @return New phone book.
+     */
+    public Contacts generateBook(int size) {
+        Contacts contacts = new Contacts();
+        for (int i = 0; i < size; i++) {
+            contacts.addRecord(generateRecord());
+        }
+        return contacts;
+    }
+
+    public ContactsRecord generateRecord() {
+        return random.nextInt(5) == 0 ? generateOrganization() : generatePerson();
+    }
+
+    public PersonContactsRecord generatePerson() {
+        PersonContactsRecord record = new PersonContactsRecord();
+        record.setName(pick(NAMES));
+        record.setSurname(pick(SURNAMES) + (random.nextInt(3) == 0 ? "-" + pick(SURNAMES) : ""));
+        record.setBirthDate(String.format("%04d-%02d-%02d",
+                1940 + random.nextInt(70), 1 + random.nextInt(12), 1 + random.nextInt(28)));
+        record.setGender(random.nextBoolean() ? "M" : "F");
+        record.setNumber(generateNumber());
+        return record;
+    }
+
+    /**
+     * Generates surname of two to four syllables, so there are about 350 000 distinct surnames
+     * instead of few surnames of {@link #generatePerson()}.
+     */
+    public String generateSurname() {
+        StringBuilder surname = new StringBuilder();
+        int syllables = 2 + random.nextInt(3);
+        for (int i = 0; i < syllables; i++) {
+            surname.append(pick(SYLLABLES));
+        }
+        surname.setCharAt(0, Character.toUpperCase(surname.charAt(0)));
+        return surname.toString();
+    }
+
+    public OrganizationContactsRecord generateOrganization() {
+        OrganizationContactsRecord record = new OrganizationContactsRecord();
+        record.setName(pick(NAMES) + "'s " + pick(ORGANIZATIONS));
+        record.setAddress((1 + random.nextInt(999)) + " " + pick(STREETS));
+        record.setNumber(generateNumber());
+        return record;
+    }
+
+    /**
+     * Generates near-duplicate of the record, as if it was entered again: copy with one of changes,
+     * which are number written as digits only, typo in name or surname, or missing birth date or address.
+     *
+     * @param original Person or organization.
+     * @return New record, which isn't equal to original.
+     */
+    public ContactsRecord generateDuplicate(ContactsRecord original) {
+        ContactsRecord duplicate;
+        if (original instanceof PersonContactsRecord) {
+            PersonContactsRecord person = (PersonContactsRecord) original;
+            PersonContactsRecord copy = new PersonContactsRecord();
+            copy.setSurname(person.getSurname());
+            copy.setGender(person.getGender());
+            copy.setBirthDate(random.nextInt(3) == 0 ? ContactsRecord.NO_DATA : person.getBirthDate());
+            duplicate = copy;
+        } else {
+            OrganizationContactsRecord organization = (OrganizationContactsRecord) original;
+            OrganizationContactsRecord copy = new OrganizationContactsRecord();
+            copy.setAddress(random.nextInt(3) == 0 ? ContactsRecord.NO_DATA : organization.getAddress());
+            duplicate = copy;
+        }
+        duplicate.setName(original.getName());
+        duplicate.setNumber(random.nextBoolean() ? original.getNormalizedNumber() : original.getNumber());
+        if (random.nextBoolean()) {
+            duplicate.setName(misspell(original.getName()));
+        } else if (duplicate instanceof PersonContactsRecord) {
+            PersonContactsRecord person = (PersonContactsRecord) duplicate;
+            person.setSurname(misspell(person.getSurname()));
+        }
+        return duplicate;
+    }
+
+    /**
+     * @return Phone number in one of formats accepted by {@link ContactsRecord#setNumber(String)}.
+     */
+    public String generateNumber() {
+        switch (random.nextInt(3)) {
+            case 0:
+                return String.format("+1 (%03d) %03d-%04d",
+                        random.nextInt(1000), random.nextInt(1000), random.nextInt(10000));
+            case 1:
+                return String.format("%03d-%03d-%04d",
+                        random.nextInt(1000), random.nextInt(1000), random.nextInt(10000));
+            default:
+                return String.format("%d %03d %02d %02d",
+                        1 + random.nextInt(9), random.nextInt(1000), random.nextInt(100), random.nextInt(100));
+        }
+    }
+
+    /**
+     * Replaces one letter of the word, except the first one, with another letter.
+     */
+    private String misspell(String word) {
+        char[] letters = word.toCharArray();
+        int position = 1 + random.nextInt(letters.length - 1);
+        char letter;
+        do {
+            letter = (char) ('a' + random.nextInt(26));
+        } while (letter == letters[position]);
+        letters[position] = letter;
+        return new String(letters);
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,95 @@
+package contacts.benchmark;
+
+import contacts.model.Contacts;
+import contacts.model.ContactsRecord;
+import contacts.model.DuplicateFinder;
+import contacts.model.MergePlan;
+import contacts.model.PersonContactsRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures time of finding duplicates in phone book, where every tenth record is near-duplicate
+ * of another one generated by {@link ContactsGenerator#generateDuplicate(ContactsRecord)}. <br>
+ * Surnames are generated from syllables, so blocks of surnames are small, while organizations have few
+ * distinct words in names, so their blocks are skipped and they are compared only by numbers.
+ * Number of found duplicates is printed after measurement to compare it with number of generated ones.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@State(Scope.Benchmark)
+public class DedupBenchmark {
+
+    private static final int DUPLICATE_EVERY = 10;
+
+    @Param({"100000", "1000000"})
+    private int size;
+
+    private Contacts contacts;
+    private final DuplicateFinder finder = new DuplicateFinder();
+    private int duplicates;
+    private MergePlan plan;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ContactsGenerator generator = new ContactsGenerator(42);
+        Random random = new Random(7);
+        List<ContactsRecord> records = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (i % DUPLICATE_EVERY == DUPLICATE_EVERY - 1) {
+                records.add(generator.generateDuplicate(records.get(random.nextInt(i))));
+                duplicates++;
+                continue;
+            }
+            ContactsRecord contactsRecord = generator.generateRecord();
+            if (contactsRecord instanceof PersonContactsRecord) {
+                ((PersonContactsRecord) contactsRecord).setSurname(generator.generateSurname());
+            }
+            records.add(contactsRecord);
+        }
+        contacts = new Contacts();
+        contacts.addRecords(records);
+    }
+
+    @Benchmark
+    public MergePlan find() {
+        plan = finder.find(contacts);
+        return plan;
+    }
+
+    @TearDown(Level.Trial)
+    public void printFound() {
+        System.out.println();
+        System.out.println("Generated " + duplicates + " duplicates, found " + plan);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(DedupBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,124 @@
+package contacts.benchmark;
+
+import contacts.model.Contacts;
+import contacts.model.ContactsRecord;
+import contacts.model.PersonContactsRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares search of misspelled surnames in BK-tree of words with comparing query to surname of every record,
+ * which is what search tolerant to typos would take without index. <br>
+ * Phone books are columnar, so phone book of 10 million records fits into heap of forked JVM.
+ * Surnames are generated from syllables, so there are about 350 000 distinct words in the tree.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+@State(Scope.Benchmark)
+public class FuzzySearchBenchmark {
+
+    private static final int MAX_DISTANCE = 2;
+
+    @Param({"100000", "10000000"})
+    private int size;
+
+    private Contacts contacts;
+    private final String[] queries = new String[64];
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ContactsGenerator generator = new ContactsGenerator(42);
+        contacts = Contacts.columnar();
+        for (int i = 0; i < size; i++) {
+            PersonContactsRecord person = generator.generatePerson();
+            person.setSurname(generator.generateSurname());
+            contacts.addRecord(person);
+        }
+        Random random = new Random(7);
+        for (int i = 0; i < queries.length; i++) {
+            queries[i] = misspell(generator.generateSurname(), random);
+        }
+        contacts.searchFuzzy("warm up index", MAX_DISTANCE);
+    }
+
+    @Benchmark
+    public List<ContactsRecord> bkTree() {
+        return contacts.searchFuzzy(nextQuery(), MAX_DISTANCE);
+    }
+
+    @Benchmark
+    public int scan() {
+        String query = nextQuery().toLowerCase();
+        int found = 0;
+        for (ContactsRecord record : contacts) {
+            if (record instanceof PersonContactsRecord
+                    && distance(query, ((PersonContactsRecord) record).getSurname().toLowerCase()) <= MAX_DISTANCE) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private String nextQuery() {
+        String query = queries[next];
+        next = (next + 1) % queries.length;
+        return query;
+    }
+
+    /**
+     * Replaces one letter of the word with another.
+     */
+    private static String misspell(String word, Random random) {
+        char[] letters = word.toCharArray();
+        letters[1 + random.nextInt(letters.length - 1)] = (char) ('a' + random.nextInt(26));
+        return new String(letters);
+    }
+
+    private static int distance(String a, String b) {
+        int[] previous = new int[a.length() + 1];
+        int[] current = new int[a.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            previous[i] = i;
+        }
+        for (int j = 1; j <= b.length(); j++) {
+            current[0] = j;
+            for (int i = 1; i <= a.length(); i++) {
+                int replace = previous[i - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                current[i] = Math.min(replace, Math.min(previous[i], current[i - 1]) + 1);
+            }
+            int[] row = previous;
+            previous = current;
+            current = row;
+        }
+        return previous[a.length()];
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(FuzzySearchBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,62 @@
+package contacts.benchmark;
+
+import contacts.model.Contacts;
+import contacts.model.ContactsRecord;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Compares heap taken by phone book of record objects and by columnar phone book with the same records.
+ * Heap usage is measured after garbage collection before and after filling phone book,
+ * search indexes aren't built. Accepts number of records as optional command line argument, 1 000 000 by default.
+ * Results are more stable when heap is large enough and fixed, e.g. "-Xms2g -Xmx2g".
+ */
+public class MemoryFootprint {
+
+    private static final int BATCH_SIZE = 10_000;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        System.out.printf("Phone book of %d records%n", size);
+        System.out.printf("%-22s %14s %14s%n", "model", "heap, bytes", "bytes/record");
+
+        long before = usedHeap();
+        Contacts objects = new ContactsGenerator(42).generateBook(size);
+        long objectsHeap = usedHeap() - before;
+        print("objects", objectsHeap, objects);
+        objects = null;
+
+        before = usedHeap();
+        Contacts columnar = Contacts.columnar();
+        ContactsGenerator generator = new ContactsGenerator(42);
+        List<ContactsRecord> batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < size; i++) {
+            batch.add(generator.generateRecord());
+            if (batch.size() == BATCH_SIZE || i == size - 1) {
+                columnar.addRecords(batch);
+                batch.clear();
+            }
+        }
+        long columnarHeap = usedHeap() - before;
+        print("columnar", columnarHeap, columnar);
+        System.out.printf("columnar phone book takes %.1f times less memory%n", (double) objectsHeap / columnarHeap);
+    }
+
+    private static void print(String model, long heap, Contacts contacts) {
+        System.out.printf("%-22s %14d %14d%n", model, heap, heap / Math.max(1, contacts.getNumberOfRecords()));
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+}
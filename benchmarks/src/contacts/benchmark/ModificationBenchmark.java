@@ -0,0 +1,98 @@
+package contacts.benchmark;
+
+import contacts.model.Contacts;
+import contacts.model.ContactsRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures {@link Contacts#addRecord} and {@link Contacts#deleteRecord} in phone books of different sizes
+ * with all search indexes built, so time includes updating them. Every operation adds one record and deletes one,
+ * so size of phone book stays the same: either deletes the added record, which is the last one,
+ * or deletes the oldest record and adds it back. <br>
+ * Phone book of 10 million records requires 12 GB of heap,
+ * smaller sizes can be chosen with JMH option "-p size=1000,100000".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+@State(Scope.Benchmark)
+public class ModificationBenchmark {
+
+    private static final int PREPARED_RECORDS = 1024;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private Contacts contacts;
+    private final ContactsRecord[] records = new ContactsRecord[PREPARED_RECORDS];
+    private int next;
+    private long oldestID;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ContactsGenerator generator = new ContactsGenerator(42);
+        contacts = generator.generateBook(size);
+        oldestID = 1;
+        contacts.search("warm up search index");
+        contacts.searchFuzzy("warm up fuzzy index", 1);
+        contacts.findByNumber("warm up number index");
+        for (int i = 0; i < records.length; i++) {
+            records[i] = generator.generateRecord();
+        }
+    }
+
+    /**
+     * Records are added again after deletion, so the same prepared records are reused with new IDs.
+     */
+    @Benchmark
+    public ContactsRecord addDeleteLast() {
+        ContactsRecord record = nextRecord();
+        contacts.addRecord(record);
+        contacts.deleteRecord(record);
+        return record;
+    }
+
+    /**
+     * The oldest record is added back after deletion, so it becomes the newest one.
+     * IDs are assigned sequentially, so the oldest record is found by ID.
+     */
+    @Benchmark
+    public ContactsRecord deleteFirstAdd() {
+        ContactsRecord record = contacts.getRecordByID(oldestID++);
+        contacts.deleteRecord(record);
+        contacts.addRecord(record);
+        return record;
+    }
+
+    private ContactsRecord nextRecord() {
+        ContactsRecord record = records[next];
+        next = (next + 1) % records.length;
+        return record;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ModificationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
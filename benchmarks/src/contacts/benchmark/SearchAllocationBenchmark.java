@@ -0,0 +1,106 @@
+package contacts.benchmark;
+
+import contacts.model.Contacts;
+import contacts.model.ContactsRecord;
+import contacts.model.OrganizationContactsRecord;
+import contacts.model.PersonContactsRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Compares allocation rate of matching every record of phone book with cached searchable strings
+ * and with strings concatenated and lowercased on each match, as it was done before caching. <br>
+ * Running the class runs benchmarks with GC profiler, allocation per search is reported as "gc.alloc.rate.norm".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchAllocationBenchmark {
+
+    @Param({"100000"})
+    private int size;
+
+    private Contacts contacts;
+    private List<ContactsRecord> records;
+    private final Pattern pattern = Pattern.compile("\\d{3}-\\d{4}$");
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        contacts = new ContactsGenerator(42).generateBook(size);
+        contacts.setParallelSearchThreshold(Integer.MAX_VALUE);
+        records = contacts.search("");
+    }
+
+    /**
+     * Search without fragments of plain text in query, so every record is matched.
+     */
+    @Benchmark
+    public List<ContactsRecord> search() {
+        return contacts.search(pattern.pattern());
+    }
+
+    @Benchmark
+    public int matchCached() {
+        int found = 0;
+        Matcher matcher = pattern.matcher("");
+        for (ContactsRecord record : records) {
+            if (matcher.reset(record.toSearchableString()).find()) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int matchConcatenated() {
+        int found = 0;
+        Matcher matcher = pattern.matcher("");
+        for (ContactsRecord record : records) {
+            if (matcher.reset(concatenate(record)).find()) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    private static String concatenate(ContactsRecord record) {
+        if (record instanceof PersonContactsRecord) {
+            PersonContactsRecord person = (PersonContactsRecord) record;
+            return (person.getName() + person.getSurname() + person.getNumber()
+                    + person.getGender() + person.getBirthDate()).toLowerCase();
+        }
+        OrganizationContactsRecord organization = (OrganizationContactsRecord) record;
+        return (organization.getName() + organization.getAddress() + organization.getNumber()).toLowerCase();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(SearchAllocationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,76 @@
+package contacts.benchmark;
+
+import contacts.model.Contacts;
+import contacts.model.ContactsRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures {@link Contacts#search(String)} with plain text query, which is looked up in trigram index,
+ * with regular expression without plain text, which matches every record, and with query nothing matches. <br>
+ * Cache of results is disabled, so every invocation searches. Phone book of 10 million records requires 12 GB of heap,
+ * smaller sizes can be chosen with JMH option "-p size=1000,100000".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int size;
+
+    @Param({"literal", "regex", "noMatch"})
+    private String query;
+
+    private Contacts contacts;
+    private String text;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        contacts = new ContactsGenerator(42).generateBook(size);
+        contacts.setSearchCacheCapacity(0);
+        switch (query) {
+            case "literal":
+                text = "johnson";
+                break;
+            case "regex":
+                text = "\\d{3}-\\d{4}$";
+                break;
+            default:
+                text = "no such contact";
+        }
+        contacts.search("warm up search index");
+    }
+
+    @Benchmark
+    public List<ContactsRecord> search() {
+        return contacts.search(text);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(SearchBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
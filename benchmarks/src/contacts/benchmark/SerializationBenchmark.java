@@ -0,0 +1,80 @@
+package contacts.benchmark;
+
+import contacts.model.Contacts;
+import contacts.model.SerializationUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Measures saving phone book to file and loading it back with {@link SerializationUtils}
+ * in binary format for phone books of different sizes. File sizes and comparison with Java serialization
+ * are reported by {@link StorageBenchmark}. <br>
+ * Phone book of 10 million records requires 12 GB of heap,
+ * smaller sizes can be chosen with JMH option "-p size=1000,100000".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+@State(Scope.Benchmark)
+public class SerializationBenchmark {
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    private int size;
+
+    private Contacts contacts;
+    private Path savedFile;
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        contacts = new ContactsGenerator(42).generateBook(size);
+        savedFile = Files.createTempFile("contacts", ".bin");
+        file = Files.createTempFile("contacts", ".bin");
+        SerializationUtils.serialize(contacts, savedFile.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(savedFile);
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void serialize() throws IOException {
+        SerializationUtils.serialize(contacts, file.toString());
+    }
+
+    @Benchmark
+    public Contacts deserialize() throws IOException, ClassNotFoundException {
+        return SerializationUtils.deserialize(savedFile.toString());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(SerializationBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
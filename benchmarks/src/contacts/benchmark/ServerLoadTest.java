@@ -0,0 +1,230 @@
+package contacts.benchmark;
+
+import contacts.model.ConcurrentContacts;
+import contacts.model.ContactsRecord;
+import contacts.model.RecordJson;
+import contacts.server.ContactsServer;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Measures latency and throughput of {@link ContactsServer} under load of many clients on localhost.
+ * Each client thread sends requests one after another: 70% search by surname, 20% reads of record by ID,
+ * 5% adding records and 5% deleting records the client added, so size of phone book stays about the same.
+ * Load runs for 3 seconds of warm-up, which aren't measured, then for measured time. <br>
+ * Accepts number of threads, measured seconds and number of records as optional command line arguments,
+ * 16, 10 and 100 000 by default. Server with generated phone book is started in the same process,
+ * unless URL of running server is passed as the fourth argument, e.g. "http://localhost:8080".
+ */
+public class ServerLoadTest {
+
+    private static final int WARM_UP_SECONDS = 3;
+    private static final Pattern ID = Pattern.compile("\\{\"id\":(\\d+)");
+    private static final String[] OPERATIONS = {"search", "get", "add", "delete"};
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+        ContactsServer server = null;
+        String url;
+        if (args.length > 3) {
+            url = args[3];
+        } else {
+            server = new ContactsServer(new ConcurrentContacts(new ContactsGenerator(42).generateBook(size)), 0);
+            server.start();
+            url = "http://localhost:" + server.getPort();
+        }
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        long[] ids = knownIDs(client, url);
+        try {
+            System.out.printf("%d threads against %s%n", threads, url);
+            run(client, url, ids, threads, WARM_UP_SECONDS);
+            Latencies[] latencies = run(client, url, ids, threads, seconds);
+            long total = 0;
+            System.out.printf("%-8s %10s %10s %10s %10s%n", "", "requests", "p50 ms", "p99 ms", "max ms");
+            for (int i = 0; i < OPERATIONS.length; i++) {
+                Latencies operation = latencies[i];
+                total += operation.size;
+                System.out.printf("%-8s %10d %10.3f %10.3f %10.3f%n", OPERATIONS[i], operation.size,
+                        operation.percentile(0.5) / 1e6, operation.percentile(0.99) / 1e6,
+                        operation.percentile(1) / 1e6);
+            }
+            System.out.printf("throughput %.0f requests/s%n", (double) total / seconds);
+        } finally {
+            if (server != null) {
+                server.stop(0);
+            }
+        }
+    }
+
+    /**
+     * Runs load for provided time.
+     *
+     * @return Latencies of every operation merged from all threads, in order of {@link #OPERATIONS}.
+     */
+    private static Latencies[] run(HttpClient client, String url, long[] ids, int threads, int seconds)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        Latencies[][] results = new Latencies[threads][];
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    results[thread] = load(client, url, ids, thread, deadline);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError("Client failed", failure.get());
+        }
+        Latencies[] merged = new Latencies[OPERATIONS.length];
+        for (int i = 0; i < merged.length; i++) {
+            merged[i] = new Latencies();
+            for (Latencies[] result : results) {
+                merged[i].addAll(result[i]);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Sends random requests until deadline, deleting records added by this client before finishing.
+     */
+    private static Latencies[] load(HttpClient client, String url, long[] ids, int thread, long deadline)
+            throws IOException, InterruptedException {
+        ContactsGenerator generator = new ContactsGenerator(1000 + thread);
+        Random random = new Random(thread);
+        Latencies[] latencies = new Latencies[OPERATIONS.length];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new Latencies();
+        }
+        List<Long> added = new ArrayList<>();
+        while (System.nanoTime() < deadline) {
+            int operation = random.nextInt(20);
+            long start = System.nanoTime();
+            if (operation < 14) {
+                String query = URLEncoder.encode(generator.generateSurname(), StandardCharsets.UTF_8);
+                send(client, HttpRequest.newBuilder(URI.create(url + "/records?query=" + query)), 200);
+                latencies[0].add(System.nanoTime() - start);
+            } else if (operation < 18) {
+                long id = ids[random.nextInt(ids.length)];
+                send(client, HttpRequest.newBuilder(URI.create(url + "/records/" + id)), 200);
+                latencies[1].add(System.nanoTime() - start);
+            } else if (operation < 19 || added.isEmpty()) {
+                StringBuilder body = new StringBuilder();
+                RecordJson.append(body, generator.generateRecord());
+                String response = send(client, HttpRequest.newBuilder(URI.create(url + "/records"))
+                        .POST(HttpRequest.BodyPublishers.ofString(body.toString())), 201);
+                latencies[2].add(System.nanoTime() - start);
+                added.add(id(response));
+            } else {
+                delete(client, url, added.remove(added.size() - 1));
+                latencies[3].add(System.nanoTime() - start);
+            }
+        }
+        for (long id : added) {
+            delete(client, url, id);
+        }
+        return latencies;
+    }
+
+    private static void delete(HttpClient client, String url, long id) throws IOException, InterruptedException {
+        send(client, HttpRequest.newBuilder(URI.create(url + "/records/" + id)).DELETE(), 204);
+    }
+
+    /**
+     * @return IDs of up to 1000 first records of phone book, which are read by clients.
+     */
+    private static long[] knownIDs(HttpClient client, String url) throws IOException, InterruptedException {
+        String page = send(client, HttpRequest.newBuilder(URI.create(url + "/records?count=1000")), 200);
+        Matcher matcher = ID.matcher(page);
+        List<Long> ids = new ArrayList<>();
+        while (matcher.find()) {
+            ids.add(Long.parseLong(matcher.group(1)));
+        }
+        if (ids.isEmpty()) {
+            throw new IllegalStateException("Phone book at " + url + " is empty");
+        }
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static long id(String record) {
+        Matcher matcher = ID.matcher(record);
+        if (!matcher.lookingAt()) {
+            throw new IllegalStateException("Response without ID: " + record);
+        }
+        return Long.parseLong(matcher.group(1));
+    }
+
+    private static String send(HttpClient client, HttpRequest.Builder request, int expectedStatus)
+            throws IOException, InterruptedException {
+        HttpResponse<String> response = client.send(request.build(), HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != expectedStatus) {
+            throw new IllegalStateException(request.build().method() + " " + request.build().uri()
+                    + " returned " + response.statusCode() + ": " + response.body());
+        }
+        return response.body();
+    }
+
+    /**
+     * Growing array of latencies in nanoseconds.
+     */
+    private static class Latencies {
+        private long[] values = new long[1024];
+        private int size;
+        private boolean sorted;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+            sorted = false;
+        }
+
+        void addAll(Latencies other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        long percentile(double percentile) {
+            if (size == 0) {
+                return 0;
+            }
+            if (!sorted) {
+                Arrays.sort(values, 0, size);
+                sorted = true;
+            }
+            return values[(int) Math.min(size - 1, Math.ceil(percentile * size) - 1)];
+        }
+    }
+}
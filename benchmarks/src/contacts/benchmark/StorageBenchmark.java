@@ -0,0 +1,57 @@
+package contacts.benchmark;
+
+import contacts.model.Contacts;
+import contacts.model.SerializationUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+
+/**
+ * Compares save time, load time and file size of binary storage format with Java serialization.
+ * Accepts number of records as optional command line argument, 1 000 000 by default.
+ */
+public class StorageBenchmark {
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Contacts contacts = new ContactsGenerator(42).generateBook(size);
+        Path binaryFile = Files.createTempFile("contacts", ".bin");
+        Path legacyFile = Files.createTempFile("contacts", ".ser");
+        try {
+            System.out.printf("Phone book of %d records%n", size);
+            System.out.printf("%-22s %12s %12s %14s%n", "format", "save, ms", "load, ms", "size, bytes");
+            long binarySave = 0;
+            long binaryLoad = 0;
+            long legacySave = 0;
+            long legacyLoad = 0;
+            for (int round = 0; round < ROUNDS; round++) {
+                long start = System.nanoTime();
+                SerializationUtils.serialize(contacts, binaryFile.toString());
+                binarySave += System.nanoTime() - start;
+                start = System.nanoTime();
+                SerializationUtils.deserialize(binaryFile.toString());
+                binaryLoad += System.nanoTime() - start;
+
+                start = System.nanoTime();
+                SerializationUtils.serializeLegacy(contacts, legacyFile.toString());
+                legacySave += System.nanoTime() - start;
+                start = System.nanoTime();
+                SerializationUtils.deserializeLegacy(legacyFile.toString());
+                legacyLoad += System.nanoTime() - start;
+            }
+            print("binary", binarySave, binaryLoad, Files.size(binaryFile));
+            print("java serialization", legacySave, legacyLoad, Files.size(legacyFile));
+        } finally {
+            Files.deleteIfExists(binaryFile);
+            Files.deleteIfExists(legacyFile);
+        }
+    }
+
+    private static void print(String format, long saveNanos, long loadNanos, long fileSize) {
+        System.out.printf("%-22s %12d %12d %14d%n",
+                format, saveNanos / ROUNDS / 1_000_000, loadNanos / ROUNDS / 1_000_000, fileSize);
+    }
+}
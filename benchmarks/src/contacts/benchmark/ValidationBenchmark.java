@@ -0,0 +1,133 @@
+package contacts.benchmark;
+
+import contacts.model.FieldValidator;
+import contacts.model.PersonContactsRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+
+/**
+ * Compares validation of phone numbers and birth dates by {@link FieldValidator} with regular expressions
+ * compiled on every call, as setters of records did before, and with precompiled patterns,
+ * and measures validating setter of phone number. <br>
+ * Inputs are generated numbers and dates with every fourth one broken. Running the class runs benchmarks
+ * with GC profiler, so allocation per validation is reported as "gc.alloc.rate.norm".
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ValidationBenchmark {
+
+    private static final int INPUTS = 1024;
+    private static final String NUMBER_FORMAT = "\\+?((\\w+)|" +
+            "(\\(\\w+\\))|" +
+            "(\\(\\w+\\)[\\s-]\\w{2,})|" +
+            "(\\w+[\\s-](\\(\\w{2,}\\)))|" +
+            "\\w+[\\s-]\\w{2,})" +
+            "([\\s-]\\w{2,})*";
+    private static final String BIRTH_DATE_FORMAT = "\\d{4}-\\d{2}-\\d{2}";
+    private static final Pattern NUMBER_PATTERN = Pattern.compile(NUMBER_FORMAT);
+    private static final Pattern BIRTH_DATE_PATTERN = Pattern.compile(BIRTH_DATE_FORMAT);
+
+    private final String[] numbers = new String[INPUTS];
+    private final String[] birthDates = new String[INPUTS];
+    private final PersonContactsRecord record = new PersonContactsRecord();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ContactsGenerator generator = new ContactsGenerator(42);
+        for (int i = 0; i < INPUTS; i++) {
+            numbers[i] = generator.generateNumber() + (i % 4 == 0 ? "-(1)" : "");
+            birthDates[i] = generator.generatePerson().getBirthDate() + (i % 4 == 0 ? "0" : "");
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void numberRegex(Blackhole blackhole) {
+        for (String number : numbers) {
+            blackhole.consume(number.matches(NUMBER_FORMAT));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void numberPrecompiled(Blackhole blackhole) {
+        for (String number : numbers) {
+            blackhole.consume(NUMBER_PATTERN.matcher(number).matches());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void numberScanner(Blackhole blackhole) {
+        for (String number : numbers) {
+            blackhole.consume(FieldValidator.validateNumber(number));
+        }
+    }
+
+    /**
+     * Setter of record validates number and stores it or "[no data]", as it's done for every entered or imported number.
+     */
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void setNumber(Blackhole blackhole) {
+        for (String number : numbers) {
+            record.setNumber(number);
+            blackhole.consume(record.getNumber());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void birthDateRegex(Blackhole blackhole) {
+        for (String birthDate : birthDates) {
+            blackhole.consume(birthDate.matches(BIRTH_DATE_FORMAT));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void birthDatePrecompiled(Blackhole blackhole) {
+        for (String birthDate : birthDates) {
+            blackhole.consume(BIRTH_DATE_PATTERN.matcher(birthDate).matches());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(INPUTS)
+    public void birthDateScanner(Blackhole blackhole) {
+        for (String birthDate : birthDates) {
+            blackhole.consume(FieldValidator.validateBirthDate(birthDate));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ValidationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
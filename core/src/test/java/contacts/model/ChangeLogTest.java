@@ -0,0 +1,102 @@
+package contacts.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static contacts.model.TestContacts.book;
+import static contacts.model.TestContacts.person;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+class ChangeLogTest {
+
+    private static final LocalDateTime PAST = LocalDateTime.of(2020, 1, 1, 12, 0);
+
+    @Test
+    void reportsLastChangeOfEveryRecordAfterSequence() throws Exception {
+        Contacts contacts = book(5);
+        long sequence = contacts.getChangeSequence();
+        contacts.editFieldByName(contacts.getRecordByID(2), "name", "Edited");
+        contacts.deleteRecord(contacts.getRecordByID(3));
+        contacts.addRecord(person("Added", "+1 555 0100"));
+        contacts.editFieldByName(contacts.getRecordByID(6), "name", "Added again");
+        contacts.editFieldByName(contacts.getRecordByID(2), "name", "Edited again");
+
+        List<RecordChange> changes = contacts.changesSince(sequence);
+        assertEquals(3, changes.size());
+        assertChange(changes.get(0), 3, RecordChange.Kind.DELETED);
+        assertNull(changes.get(0).getRecord());
+        assertChange(changes.get(1), 6, RecordChange.Kind.ADDED);
+        assertEquals("Added again", changes.get(1).getRecord().getName());
+        assertChange(changes.get(2), 2, RecordChange.Kind.EDITED);
+        assertEquals("Edited again", changes.get(2).getRecord().getName());
+        assertNotSame(contacts.getRecordByID(2), changes.get(2).getRecord());
+
+        assertEquals(List.of(), contacts.changesSince(contacts.getChangeSequence()));
+        List<RecordChange> later = contacts.changesSince(changes.get(0).getSequence());
+        assertEquals(2, later.size());
+        assertChange(later.get(0), 6, RecordChange.Kind.ADDED);
+        assertChange(later.get(1), 2, RecordChange.Kind.EDITED);
+    }
+
+    @Test
+    void rejectsSequenceOfDroppedChanges() throws Exception {
+        Contacts contacts = book(5);
+        contacts.setChangeLogCapacity(2);
+        for (long id = 1; id <= 5; id++) {
+            contacts.editFieldByName(contacts.getRecordByID(id), "name", "Edited" + id);
+        }
+        assertThrows(IllegalArgumentException.class, () -> contacts.changesSince(0));
+        assertEquals(2, contacts.changesSince(contacts.getChangeSequence() - 2).size());
+    }
+
+    @Test
+    void reportsRecordsChangedAfterTime() throws Exception {
+        Contacts contacts = new Contacts();
+        for (int i = 1; i <= 5; i++) {
+            contacts.addRecord(new PersonContactsRecord(PAST, PAST, "Person" + i, "+1 555 " + (1000 + i),
+                    "Smith", "", ""));
+        }
+        LocalDateTime time = PAST.plusDays(1);
+        contacts.editFieldByName(contacts.getRecordByID(4), "name", "Edited");
+        contacts.deleteRecord(contacts.getRecordByID(1));
+        contacts.addRecord(person("Added", "+1 555 0100"));
+
+        List<RecordChange> changes = contacts.changesSince(time);
+        assertEquals(3, changes.size());
+        assertEquals(List.of(1L, 4L, 6L),
+                changes.stream().map(RecordChange::getID).sorted().collect(Collectors.toList()));
+        for (RecordChange change : changes) {
+            RecordChange.Kind expected = change.getID() == 1 ? RecordChange.Kind.DELETED
+                    : change.getID() == 4 ? RecordChange.Kind.EDITED : RecordChange.Kind.ADDED;
+            assertEquals(expected, change.getKind());
+        }
+        assertEquals(List.of(), contacts.changesSince(LocalDateTime.now().plusDays(1)));
+    }
+
+    @Test
+    void reportsRecordAddedToColumnarPhoneBookOnce() {
+        Contacts contacts = Contacts.columnar();
+        long sequence = contacts.getChangeSequence();
+        assertEquals(List.of(), contacts.changesSince(PAST));
+        contacts.addRecord(person("Added", "+1 555 0100"));
+
+        List<RecordChange> changes = contacts.changesSince(sequence);
+        assertEquals(1, changes.size());
+        assertChange(changes.get(0), 1, RecordChange.Kind.ADDED);
+        List<RecordChange> byTime = contacts.changesSince(PAST);
+        assertEquals(1, byTime.size());
+        assertChange(byTime.get(0), 1, RecordChange.Kind.ADDED);
+    }
+
+    private static void assertChange(RecordChange change, long id, RecordChange.Kind kind) {
+        assertEquals(id, change.getID());
+        assertEquals(kind, change.getKind());
+    }
+}
@@ -0,0 +1,179 @@
+package contacts.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Bounded run of contacts.benchmark.ConcurrencyStressTest: threads change and read {@link ConcurrentContacts}
+ * with journal attached, each thread owns records it added, gives them unique names and edits or deletes
+ * only them, while reading records of all threads. Then phone book, its search index and phone book restored
+ * from drive are checked against changes made by every thread.
+ */
+@Timeout(value = 2, unit = TimeUnit.MINUTES)
+class ConcurrentContactsStressTest {
+
+    private static final int THREADS = 4;
+    private static final int OPERATIONS = 2000;
+    private static final int INITIAL_RECORDS = 200;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void foldsLargeJournal() throws Exception {
+        stress(256 << 10, false);
+    }
+
+    @Test
+    void rotatesJournalWhileSnapshotsAreRequested() throws Exception {
+        stress(2 << 10, true);
+    }
+
+    /**
+     * @param compactionThreshold Size of journal, after which it's rotated and folded.
+     * @param snapshots           True to request snapshots from separate thread while workers change phone book.
+     */
+    private void stress(long compactionThreshold, boolean snapshots) throws Exception {
+        String fileName = directory.resolve("contacts.db").toString();
+        ConcurrentContacts contacts = new ConcurrentContacts(TestContacts.book(INITIAL_RECORDS));
+        SerializationUtils.serialize(contacts, fileName);
+        Journal journal = Journal.open(contacts, fileName, compactionThreshold);
+
+        Map<Long, String> expected = new ConcurrentHashMap<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch finished = new CountDownLatch(THREADS);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    run(contacts, thread, expected);
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                } finally {
+                    finished.countDown();
+                }
+            }));
+        }
+        if (snapshots) {
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    while (finished.getCount() > 0) {
+                        journal.snapshot().get();
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }));
+        }
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        journal.close();
+        if (failure.get() != null) {
+            throw new AssertionError("Worker failed", failure.get());
+        }
+
+        check(contacts, expected, "phone book");
+        Contacts restored = SerializationUtils.deserialize(fileName);
+        Journal.open(restored, fileName).close();
+        check(restored, expected, "restored phone book");
+    }
+
+    /**
+     * Makes random operations over own records and reads of any records, checking own records on every read.
+     */
+    private static void run(ConcurrentContacts contacts, int thread, Map<Long, String> expected)
+            throws WrongFieldNameException {
+        Random random = new Random(thread);
+        Map<Long, String> own = new HashMap<>();
+        List<Long> ownIDs = new ArrayList<>();
+        long lastAddedID = 1;
+        for (int i = 0; i < OPERATIONS; i++) {
+            int operation = random.nextInt(10);
+            if (operation < 3 || ownIDs.isEmpty()) {
+                String name = uniqueName(thread, i);
+                ContactsRecord record = TestContacts.person(name, "+1 " + thread + " " + (100 + i));
+                contacts.addRecord(record);
+                own.put(record.getID(), name);
+                ownIDs.add(record.getID());
+                lastAddedID = record.getID();
+            } else if (operation < 5) {
+                long id = ownIDs.get(random.nextInt(ownIDs.size()));
+                String name = uniqueName(thread, i);
+                contacts.editFieldByName(contacts.getRecordByID(id), "name", name);
+                own.put(id, name);
+            } else if (operation < 6) {
+                int index = random.nextInt(ownIDs.size());
+                long id = ownIDs.get(index);
+                ownIDs.set(index, ownIDs.get(ownIDs.size() - 1));
+                ownIDs.remove(ownIDs.size() - 1);
+                contacts.deleteRecord(contacts.getRecordByID(id));
+                own.remove(id);
+                assertNull(contacts.getRecordByID(id), "Deleted record " + id + " is still found");
+            } else if (operation < 8) {
+                long id = ownIDs.get(random.nextInt(ownIDs.size()));
+                List<ContactsRecord> found = contacts.search(own.get(id));
+                assertEquals(1, found.size(), "Search of " + own.get(id));
+                assertEquals(id, found.get(0).getID());
+            } else {
+                long id = 1 + random.nextInt((int) lastAddedID);
+                ContactsRecord record = contacts.getRecordByID(id);
+                if (own.containsKey(id)) {
+                    assertEquals(own.get(id), record == null ? null : record.getName(), "Name of record " + id);
+                }
+            }
+        }
+        expected.putAll(own);
+    }
+
+    private static void check(Contacts contacts, Map<Long, String> expected, String description) {
+        int initial = 0;
+        long previousID = 0;
+        for (ContactsRecord record : contacts.search(".*")) {
+            assertTrue(record.getID() > previousID, description + ": records are not ordered by ID");
+            previousID = record.getID();
+            String name = expected.get(record.getID());
+            if (name == null) {
+                initial++;
+            } else {
+                assertEquals(name, record.getName(), description + ": name of record " + record.getID());
+            }
+        }
+        assertEquals(INITIAL_RECORDS, initial, description + ": initial records");
+        assertEquals(expected.size() + INITIAL_RECORDS, contacts.getNumberOfRecords(), description + ": size");
+        for (Map.Entry<Long, String> entry : expected.entrySet()) {
+            List<ContactsRecord> found = contacts.search(entry.getValue());
+            assertEquals(1, found.size(), description + ": search of " + entry.getValue());
+            assertEquals((long) entry.getKey(), found.get(0).getID());
+        }
+    }
+
+    private static String uniqueName(int thread, int operation) {
+        return "Stress" + thread + "x" + operation + "z";
+    }
+}
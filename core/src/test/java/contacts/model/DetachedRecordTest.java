@@ -0,0 +1,95 @@
+package contacts.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import static contacts.model.TestContacts.book;
+import static contacts.model.TestContacts.describe;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+
+/**
+ * Editing of records, which phone book returns as detached copies of stored records,
+ * when the copy is older than the stored record.
+ */
+class DetachedRecordTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void mappedPhoneBookKeepsEditsOfStoredRecordWhenStaleCopyIsEdited() throws Exception {
+        String fileName = directory.resolve("contacts.db").toString();
+        SerializationUtils.serialize(book(100), fileName);
+        Contacts contacts = SerializationUtils.map(fileName);
+        ContactsRecord copy = null;
+        for (ContactsRecord contactsRecord : contacts) {
+            if (contactsRecord.getID() == 6) {
+                copy = contactsRecord;
+            }
+        }
+        ContactsRecord stored = contacts.getRecordByID(6);
+        assertNotSame(copy, stored);
+
+        contacts.editFieldByName(stored, "name", "Zelda");
+        contacts.editFieldByName(copy, "number", "+7 777 0006");
+
+        ContactsRecord edited = contacts.getRecordByID(6);
+        assertEquals("Zelda", edited.getName());
+        assertEquals("+7 777 0006", edited.getNumber());
+        assertEquals(List.of(edited), contacts.search("Zelda"));
+        assertEquals(List.of(edited), contacts.findByNumber("+7 777 0006"));
+        assertEquals("+7 777 0006", copy.getNumber());
+    }
+
+    @Test
+    void mappedPhoneBookSnapshotMatchesRecords() throws Exception {
+        String fileName = directory.resolve("contacts.db").toString();
+        SerializationUtils.serialize(book(100), fileName);
+        Contacts contacts = SerializationUtils.map(fileName);
+        contacts.deleteRecord(contacts.getRecordByID(3));
+        contacts.editFieldByName(contacts.getRecordByID(50), "name", "Edited");
+        contacts.addRecord(TestContacts.person("Added", "+1 555 0100"));
+
+        List<ContactsRecord> snapshot = contacts.snapshot(new RecordVersions());
+        List<ContactsRecord> records = contacts.toList();
+        assertEquals(records.size(), snapshot.size());
+        for (int i = 0; i < records.size(); i++) {
+            assertEquals(records.get(i).getID(), snapshot.get(i).getID());
+            assertEquals(records.get(i).toSearchableString(), snapshot.get(i).toSearchableString());
+        }
+    }
+
+    @Test
+    void segmentedPhoneBookKeepsEditsOfReloadedRecordWhenStaleCopyIsEdited() throws Exception {
+        Contacts contacts = SerializationUtils.openSegmented(directory.resolve("segments").toString(), 4, 1);
+        Contacts expected = book(100);
+        for (ContactsRecord contactsRecord : expected) {
+            contacts.addRecord(RecordVersions.copy(contactsRecord));
+        }
+        ContactsRecord copy = contacts.getRecordByID(1);
+        // records added to segments, which aren't loaded, are kept aside until search loads every segment,
+        // and only one segment stays loaded, so record 1 is read from file again
+        for (long id = 2; id <= 100; id++) {
+            contacts.getRecordByID(id);
+        }
+        contacts.search("Person5");
+        ContactsRecord reloaded = contacts.getRecordByID(1);
+        assertNotSame(copy, reloaded);
+
+        contacts.editFieldByName(reloaded, "name", "Zelda");
+        contacts.editFieldByName(copy, "number", "+7 777 0001");
+        expected.editFieldByName(expected.getRecordByID(1), "name", "Zelda");
+        expected.editFieldByName(expected.getRecordByID(1), "number", "+7 777 0001");
+
+        ContactsRecord edited = contacts.getRecordByID(1);
+        assertEquals("Zelda", edited.getName());
+        assertEquals("+7 777 0001", edited.getNumber());
+        assertEquals(1, contacts.search("Zelda").size());
+        assertEquals(describe(expected), describe(contacts));
+    }
+}
@@ -0,0 +1,101 @@
+package contacts.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+
+/**
+ * Compares scanners of {@link FieldValidator} with regular expressions, which setters of records used before.
+ */
+class FieldValidatorTest {
+
+    private static final Pattern OLD_NUMBER_PATTERN = Pattern.compile("\\+?((\\w+)|" +
+            "(\\(\\w+\\))|" +
+            "(\\(\\w+\\)[\\s-]\\w{2,})|" +
+            "(\\w+[\\s-](\\(\\w{2,}\\)))|" +
+            "\\w+[\\s-]\\w{2,})" +
+            "([\\s-]\\w{2,})*");
+    private static final Pattern OLD_BIRTH_DATE_PATTERN = Pattern.compile("\\d{4}-\\d{2}-\\d{2}");
+
+    private static final String NUMBER_CHARACTERS = "+()- \t1234aZ_.#";
+    private static final String DATE_CHARACTERS = "0123456789-x";
+    private static final int RANDOM_INPUTS = 200_000;
+
+    @Test
+    void acceptsSameNumbersAsOldPattern() {
+        String[] numbers = {"", "+", "1", "+1", "+1 555", "+1 (555) 123-45", "(555) 123", "+(1) 555",
+                "1 (55) 12", "1 2", "12 3", "(1) (22)", "1 22 (33)", "123 45 67", "a1 B2_c3", "+0 (123) 456-78-90",
+                "1--22", "1 22 ", " 1", "(12", "12)", "1\t22\n33", "+ 1", "1 (2)", "+1 (555) 123 (45)", "ab-cd-ef"};
+        for (String number : numbers) {
+            assertSameNumberValidation(number);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < RANDOM_INPUTS; i++) {
+            assertSameNumberValidation(randomString(random, NUMBER_CHARACTERS, 14));
+        }
+    }
+
+    @Test
+    void acceptsDatesOfOldPatternWhichExistInCalendar() {
+        String[] dates = {"", "2001-02-28", "2001-02-29", "2000-02-29", "1900-02-29", "1990-13-01", "1990-12-31",
+                "1990-11-31", "1990-00-10", "1990-01-00", "0000-01-01", "1990-1-01", "1990/01/01", "19900101",
+                "1990-01-011", "x990-01-01"};
+        for (String date : dates) {
+            assertSameBirthDateValidation(date);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < RANDOM_INPUTS; i++) {
+            assertSameBirthDateValidation(randomString(random, DATE_CHARACTERS, 11));
+        }
+        for (LocalDate date = LocalDate.of(1999, 1, 1); date.getYear() < 2001; date = date.plusDays(1)) {
+            assertEquals(ValidationResult.VALID, FieldValidator.validateBirthDate(date.toString()), date.toString());
+        }
+    }
+
+    @Test
+    void validatesFieldsByName() {
+        assertEquals(ValidationResult.VALID, FieldValidator.validate("name", "anything"));
+        assertEquals(ValidationResult.BAD_NUMBER, FieldValidator.validate("number", "(1) (22)"));
+        assertEquals(ValidationResult.BAD_BIRTH_DATE, FieldValidator.validate("birth", "2001-02-29"));
+        assertEquals(ValidationResult.BAD_GENDER, FieldValidator.validate("gender", "X"));
+        assertEquals(ValidationResult.VALID, FieldValidator.validate("gender", "F"));
+        assertEquals(ValidationResult.VALID, FieldValidator.validate("unknown", "anything"));
+    }
+
+    private static void assertSameNumberValidation(String number) {
+        ValidationResult expected = OLD_NUMBER_PATTERN.matcher(number).matches()
+                ? ValidationResult.VALID : ValidationResult.BAD_NUMBER;
+        assertEquals(expected, FieldValidator.validateNumber(number), '"' + number + '"');
+    }
+
+    private static void assertSameBirthDateValidation(String date) {
+        boolean valid = OLD_BIRTH_DATE_PATTERN.matcher(date).matches();
+        if (valid) {
+            try {
+                LocalDate.parse(date);
+            } catch (DateTimeParseException e) {
+                valid = false;
+            }
+        }
+        ValidationResult expected = valid ? ValidationResult.VALID : ValidationResult.BAD_BIRTH_DATE;
+        assertEquals(expected, FieldValidator.validateBirthDate(date), '"' + date + '"');
+    }
+
+    /**
+     * Random string of characters, which are most likely to be on the border of valid and invalid values.
+     */
+    private static String randomString(Random random, String characters, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(characters.charAt(random.nextInt(characters.length())));
+        }
+        return builder.toString();
+    }
+}
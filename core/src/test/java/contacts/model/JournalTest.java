@@ -0,0 +1,105 @@
+package contacts.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static contacts.model.TestContacts.book;
+import static contacts.model.TestContacts.describe;
+import static contacts.model.TestContacts.person;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class JournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysChangesOnTopOfSnapshot() throws Exception {
+        String fileName = directory.resolve("contacts.db").toString();
+        Contacts contacts = book(10);
+        SerializationUtils.serialize(contacts, fileName);
+        Journal journal = Journal.open(contacts, fileName);
+        contacts.addRecord(person("Added", "+1 555 0100"));
+        contacts.editFieldByName(contacts.getRecordByID(3), "name", "Edited");
+        contacts.deleteRecord(contacts.getRecordByID(5));
+        journal.close();
+
+        Contacts restored = SerializationUtils.deserialize(fileName);
+        Journal.open(restored, fileName).close();
+        assertEquals(describe(contacts), describe(restored));
+        assertEquals("Edited", restored.getRecordByID(3).getName());
+        assertNull(restored.getRecordByID(5));
+        assertEquals(1, restored.search("Added").size());
+    }
+
+    @Test
+    void replaysOnlyChangesMadeAfterFoldedSnapshot() throws Exception {
+        String fileName = directory.resolve("contacts.db").toString();
+        Contacts contacts = book(10);
+        SerializationUtils.serialize(contacts, fileName);
+        Journal journal = Journal.open(contacts, fileName);
+        contacts.editFieldByName(contacts.getRecordByID(1), "name", "Folded");
+        contacts.deleteRecord(contacts.getRecordByID(2));
+        journal.snapshot().get();
+        contacts.editFieldByName(contacts.getRecordByID(1), "name", "Journaled");
+        contacts.addRecord(person("Added", "+1 555 0100"));
+        journal.close();
+
+        Contacts restored = SerializationUtils.deserialize(fileName);
+        Journal.open(restored, fileName).close();
+        assertEquals(describe(contacts), describe(restored));
+        assertEquals(contacts.getNextID(), restored.getNextID());
+    }
+
+    @Test
+    void replaysIntoMappedPhoneBook() throws Exception {
+        String fileName = directory.resolve("contacts.db").toString();
+        Contacts contacts = book(10);
+        SerializationUtils.serialize(contacts, fileName);
+        Journal journal = Journal.open(contacts, fileName);
+        contacts.editFieldByName(contacts.getRecordByID(4), "number", "+7 777 0004");
+        contacts.deleteRecord(contacts.getRecordByID(6));
+        contacts.addRecord(person("Added", "+1 555 0100"));
+        journal.close();
+
+        Contacts mapped = SerializationUtils.map(fileName);
+        Journal.open(mapped, fileName).close();
+        assertEquals(describe(contacts), describe(mapped));
+        assertEquals(1, mapped.findByNumber("+7 (777) 0004").size());
+    }
+
+    @Test
+    void stopsReplayAtTornEntry() throws Exception {
+        String fileName = directory.resolve("contacts.db").toString();
+        Contacts contacts = book(3);
+        SerializationUtils.serialize(contacts, fileName);
+        Journal journal = Journal.open(contacts, fileName);
+        contacts.editFieldByName(contacts.getRecordByID(1), "name", "Kept");
+        contacts.editFieldByName(contacts.getRecordByID(2), "name", "Torn");
+        journal.close();
+        Path journalPath = Path.of(fileName + ".journal");
+        try (FileChannel channel = FileChannel.open(journalPath, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+
+        Contacts restored = SerializationUtils.deserialize(fileName);
+        Journal reopened = Journal.open(restored, fileName);
+        restored.editFieldByName(restored.getRecordByID(3), "name", "Appended");
+        reopened.close();
+        assertEquals("Kept", restored.getRecordByID(1).getName());
+        assertEquals("Person2", restored.getRecordByID(2).getName());
+
+        Contacts again = SerializationUtils.deserialize(fileName);
+        Journal.open(again, fileName).close();
+        assertEquals(describe(restored), describe(again));
+        assertTrue(Files.exists(journalPath));
+    }
+}
@@ -0,0 +1,44 @@
+package contacts.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Phone books and records shared by tests.
+ */
+final class TestContacts {
+
+    private TestContacts() {
+    }
+
+    /**
+     * @return Phone book in memory with persons named "Person1", "Person2" and so on, which IDs match their numbers.
+     */
+    static Contacts book(int size) {
+        Contacts contacts = new Contacts();
+        for (int i = 1; i <= size; i++) {
+            contacts.addRecord(person("Person" + i, "+1 555 " + (1000 + i)));
+        }
+        return contacts;
+    }
+
+    static PersonContactsRecord person(String name, String number) {
+        PersonContactsRecord person = new PersonContactsRecord();
+        person.setName(name);
+        person.setNumber(number);
+        person.setSurname("Smith");
+        return person;
+    }
+
+    /**
+     * @return IDs and fields of all records, so phone books can be compared regardless of their storage.
+     */
+    static List<String> describe(Contacts contacts) {
+        List<String> records = new ArrayList<>();
+        for (ContactsRecord contactsRecord : contacts) {
+            records.add(contactsRecord.getID() + " " + contactsRecord.toSearchableString());
+        }
+        return records;
+    }
+}
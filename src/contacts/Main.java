@@ -1,12 +1,22 @@
 package contacts;
 
+import contacts.model.BulkExporter;
+import contacts.model.BulkImporter;
+import contacts.model.ConcurrentContacts;
 import contacts.model.Contacts;
+import contacts.model.DataFormat;
+import contacts.model.ImportResult;
+import contacts.model.Journal;
 import contacts.model.SerializationUtils;
+import contacts.server.ContactsServer;
+import contacts.metrics.Metrics;
 import contacts.view.CLI;
 
+import javax.management.JMException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -14,24 +24,109 @@ import java.nio.file.Path;
  */
 public class Main {
 
+    private static final int DEFAULT_SNAPSHOT_INTERVAL = 300;
+    private static final int DEFAULT_RESIDENT_SEGMENTS = 32;
+
     /**
-     * Creates phone book from file, which path passed as command line argument.
+     * Creates phone book from file, which path passed as command line argument,
+     * and applies to it changes from the journal stored next to the file.
      * If no arguments passed creates empty phone book.
-     * After this step starts CLI.
+     * After this step starts CLI or, if import or export is requested, runs it and exits,
+     * or, if server mode is requested, serves phone book over HTTP until the process is stopped.
      *
-     * @param args Command line arguments. Accepts 1 argument - path to serialized phone book.
+     * @param args Command line arguments. Accepts path to serialized phone book and optional parameters: <br>
+     *             "--mapped" to open the file without reading all records at start, <br>
+     *             "--columnar" to keep records in compact columns, which takes less memory, <br>
+     *             "--segments N" to store phone book in directory of N segment files, which are loaded on demand,
+     *             so phone book can be larger than memory; existing directory keeps its number of segments, <br>
+     *             "--resident-segments N" to set number of segments kept in memory, 32 by default, <br>
+     *             "--import FILE" to add records from CSV or JSON Lines file, <br>
+     *             "--export FILE" to write all records to CSV or JSON Lines file, <br>
+     *             "--format csv|jsonl" to set format of imported and exported files,
+     *             which is chosen by file extension otherwise, <br>
+     *             "--no-metrics" to disable collecting metrics, which are shown by "stats" command of CLI
+     *             and published through JMX otherwise, <br>
+     *             "--snapshot-interval SECONDS" to set period of writing changes from journal into the file
+     *             on background thread, 300 seconds by default, 0 to write them only when journal grows large, <br>
+     *             "--server PORT" to serve phone book as JSON API on localhost instead of starting CLI,
+     *             records are kept in memory of {@link ConcurrentContacts} in this mode, so it doesn't
+     *             support segment files.
      */
     public static void main(String[] args) {
         String filename = null;
+        boolean mapped = false;
+        boolean columnar = false;
+        int segments = 0;
+        int residentSegments = DEFAULT_RESIDENT_SEGMENTS;
+        String importFile = null;
+        String exportFile = null;
+        DataFormat format = null;
+        boolean metrics = true;
+        int port = -1;
+        int snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--mapped":
+                    mapped = true;
+                    break;
+                case "--columnar":
+                    columnar = true;
+                    break;
+                case "--segments":
+                    segments = Integer.parseInt(argument(args, ++i));
+                    break;
+                case "--resident-segments":
+                    residentSegments = Integer.parseInt(argument(args, ++i));
+                    break;
+                case "--import":
+                    importFile = argument(args, ++i);
+                    break;
+                case "--export":
+                    exportFile = argument(args, ++i);
+                    break;
+                case "--format":
+                    format = format(argument(args, ++i));
+                    break;
+                case "--snapshot-interval":
+                    snapshotInterval = Integer.parseInt(argument(args, ++i));
+                    break;
+                case "--server":
+                    port = Integer.parseInt(argument(args, ++i));
+                    break;
+                case "--no-metrics":
+                    metrics = false;
+                    break;
+                default:
+                    filename = args[i];
+            }
+        }
+        if (segments > 0 && (filename == null || port >= 0)) {
+            System.out.println("Segment files require path to directory of phone book and can't be served");
+            System.exit(1);
+        }
+        if (metrics) {
+            Metrics.setEnabled(true);
+            try {
+                Metrics.registerMBean();
+            } catch (JMException e) {
+                e.printStackTrace();
+            }
+        }
         Contacts contactsList = null;
-        Path path;
-        if (args.length > 0) {
-            filename = args[0];
-            path = Path.of(filename);
+        if (filename != null) {
+            Path path = Path.of(filename);
             System.out.println("open " + filename);
             try {
-                if (Files.exists(path)) {
-                    contactsList = SerializationUtils.deserialize(filename);
+                if (segments > 0) {
+                    contactsList = SerializationUtils.openSegmented(filename, segments, residentSegments);
+                } else if (Files.exists(path)) {
+                    if (mapped) {
+                        contactsList = SerializationUtils.map(filename);
+                    } else if (columnar) {
+                        contactsList = SerializationUtils.deserializeColumnar(filename);
+                    } else {
+                        contactsList = SerializationUtils.deserialize(filename);
+                    }
                 } else {
                     Files.createFile(path);
                 }
@@ -40,9 +135,111 @@ public class Main {
             }
         }
         if (contactsList == null) {
-            contactsList = new Contacts();
+            contactsList = columnar ? Contacts.columnar() : new Contacts();
+        }
+        if (port >= 0) {
+            contactsList = new ConcurrentContacts(contactsList);
+        }
+        Journal journal = null;
+        if (filename != null) {
+            try {
+                journal = Journal.open(contactsList, filename);
+                if (snapshotInterval > 0) {
+                    journal.scheduleSnapshots(snapshotInterval, TimeUnit.SECONDS);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (importFile != null || exportFile != null) {
+            int status = runBulk(contactsList, importFile, exportFile, format);
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    status = 1;
+                }
+            }
+            System.exit(status);
+        }
+        if (port >= 0) {
+            serve((ConcurrentContacts) contactsList, journal, port);
+            return;
         }
-        CLI cli = new CLI(contactsList, filename);
+        CLI cli = new CLI(contactsList, journal);
         cli.mainMenu();
     }
+
+    /**
+     * Starts HTTP server, which keeps the process running. Server is stopped and journal is closed on shutdown.
+     */
+    private static void serve(ConcurrentContacts contactsList, Journal journal, int port) {
+        ContactsServer server;
+        try {
+            server = new ContactsServer(contactsList, port);
+        } catch (IOException e) {
+            System.out.println("Can't start server: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.stop(1);
+            if (journal != null) {
+                try {
+                    journal.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }));
+        server.start();
+        System.out.printf("serving %d records on http://localhost:%d%n",
+                contactsList.getNumberOfRecords(), server.getPort());
+    }
+
+    /**
+     * Imports records from file, then exports phone book to another file.
+     *
+     * @return Exit status of application.
+     */
+    private static int runBulk(Contacts contactsList, String importFile, String exportFile, DataFormat format) {
+        try {
+            if (importFile != null) {
+                long start = System.nanoTime();
+                ImportResult result = new BulkImporter(contactsList)
+                        .importFile(importFile, format != null ? format : DataFormat.fromFileName(importFile));
+                System.out.printf("%s in %d ms%n", result, (System.nanoTime() - start) / 1_000_000);
+                result.getProblems().forEach(System.out::println);
+            }
+            if (exportFile != null) {
+                long count = BulkExporter.exportFile(contactsList, exportFile,
+                        format != null ? format : DataFormat.fromFileName(exportFile));
+                System.out.printf("exported %d records%n", count);
+            }
+            return 0;
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return 1;
+        }
+    }
+
+    private static DataFormat format(String name) {
+        try {
+            return DataFormat.fromName(name);
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.out.println("Usage: --format csv|jsonl");
+            System.exit(1);
+            return null;
+        }
+    }
+
+    private static String argument(String[] args, int index) {
+        if (index >= args.length) {
+            System.out.println("Missing value of parameter " + args[index - 1]);
+            System.exit(1);
+        }
+        return args[index];
+    }
 }
@@ -0,0 +1,39 @@
+package contacts.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * Lock-free counter of events, which is incremented by many threads without contention.
+ * Nothing is counted while metrics are disabled.
+ */
+public final class Counter {
+
+    private final LongAdder count = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        if (Metrics.isEnabled()) {
+            count.increment();
+        }
+    }
+
+    public void add(long amount) {
+        if (Metrics.isEnabled()) {
+            count.add(amount);
+        }
+    }
+
+    /**
+     * @return Number of events counted since start or last reset.
+     */
+    public long get() {
+        return count.sum();
+    }
+
+    void reset() {
+        count.reset();
+    }
+}
@@ -0,0 +1,63 @@
+package contacts.metrics;
+
+
+/**
+ * Statistics of durations of one kind of operations taken from {@link LatencyHistogram}.
+ * Durations are reported in microseconds, percentiles are precise up to 3.2%.
+ */
+public class LatencySnapshot {
+    private final long count;
+    private final double meanNanos;
+    private final long p50Nanos;
+    private final long p90Nanos;
+    private final long p99Nanos;
+    private final long maxNanos;
+
+    LatencySnapshot(long count, double meanNanos, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos) {
+        this.count = count;
+        this.meanNanos = meanNanos;
+        this.p50Nanos = p50Nanos;
+        this.p90Nanos = p90Nanos;
+        this.p99Nanos = p99Nanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * @return Number of recorded operations.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public double getMeanMicros() {
+        return meanNanos / 1_000;
+    }
+
+    /**
+     * @return Median duration.
+     */
+    public double getP50Micros() {
+        return p50Nanos / 1_000.0;
+    }
+
+    public double getP90Micros() {
+        return p90Nanos / 1_000.0;
+    }
+
+    public double getP99Micros() {
+        return p99Nanos / 1_000.0;
+    }
+
+    public double getMaxMicros() {
+        return maxNanos / 1_000.0;
+    }
+
+    @Override
+    public String toString() {
+        if (count == 0) {
+            return "no operations";
+        }
+        return String.format("%d ops, mean %.1f us, p50 %.1f us, p90 %.1f us, p99 %.1f us, max %.1f us",
+                count, getMeanMicros(), getP50Micros(), getP90Micros(), getP99Micros(), getMaxMicros());
+    }
+}
@@ -0,0 +1,150 @@
+package contacts.metrics;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+
+/**
+ * Metrics of hot paths of phone book: durations of search, adding and deleting records, loading and saving
+ * phone book, numbers of records matched by search and of field values rejected by validation. <br>
+ * Metrics are shared by all phone books of application and disabled by default.
+ * While disabled, instrumented operation only reads one volatile flag: timer isn't started and nothing is recorded.
+ */
+public final class Metrics {
+
+    /**
+     * Name, under which metrics are registered in platform MBean server.
+     */
+    public static final String OBJECT_NAME = "contacts:type=Metrics";
+
+    /**
+     * Durations of search by query and fuzzy search, including queries answered from cache.
+     * Lazy search, which matches records while results are iterated, is measured until the first record is found.
+     */
+    public static final LatencyHistogram SEARCH = new LatencyHistogram();
+    public static final LatencyHistogram ADD_RECORD = new LatencyHistogram();
+    public static final LatencyHistogram DELETE_RECORD = new LatencyHistogram();
+
+    /**
+     * Durations of reading phone book from file.
+     */
+    public static final LatencyHistogram LOAD = new LatencyHistogram();
+
+    /**
+     * Durations of writing phone book to file, including snapshots written by journal.
+     */
+    public static final LatencyHistogram SAVE = new LatencyHistogram();
+
+    /**
+     * Records matched against search patterns: candidates from trigram index or all records.
+     */
+    public static final Counter RECORDS_SCANNED = new Counter();
+
+    /**
+     * Values of fields, which didn't satisfy format of the field and were stored as "[no data]".
+     */
+    public static final Counter VALIDATION_FAILURES = new Counter();
+
+    private static volatile boolean enabled;
+
+    private Metrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        Metrics.enabled = enabled;
+    }
+
+    /**
+     * Starts timing of operation, which duration is recorded by {@link LatencyHistogram#recordSince(long)}.
+     *
+     * @return Current time in nanoseconds or 0 if metrics are disabled.
+     */
+    public static long startTimer() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Clears all histograms and counters.
+     */
+    public static void reset() {
+        SEARCH.reset();
+        ADD_RECORD.reset();
+        DELETE_RECORD.reset();
+        LOAD.reset();
+        SAVE.reset();
+        RECORDS_SCANNED.reset();
+        VALIDATION_FAILURES.reset();
+    }
+
+    /**
+     * Registers metrics in platform MBean server under {@link #OBJECT_NAME}.
+     * Does nothing if they are already registered.
+     *
+     * @throws JMException Thrown when metrics can't be registered.
+     */
+    public static void registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (!server.isRegistered(name)) {
+            server.registerMBean(new Bean(), name);
+        }
+    }
+
+    private static class Bean implements MetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return Metrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            Metrics.setEnabled(enabled);
+        }
+
+        @Override
+        public LatencySnapshot getSearch() {
+            return SEARCH.snapshot();
+        }
+
+        @Override
+        public LatencySnapshot getAddRecord() {
+            return ADD_RECORD.snapshot();
+        }
+
+        @Override
+        public LatencySnapshot getDeleteRecord() {
+            return DELETE_RECORD.snapshot();
+        }
+
+        @Override
+        public LatencySnapshot getLoad() {
+            return LOAD.snapshot();
+        }
+
+        @Override
+        public LatencySnapshot getSave() {
+            return SAVE.snapshot();
+        }
+
+        @Override
+        public long getRecordsScanned() {
+            return RECORDS_SCANNED.get();
+        }
+
+        @Override
+        public long getValidationFailures() {
+            return VALIDATION_FAILURES.get();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }
+}
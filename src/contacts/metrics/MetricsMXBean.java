@@ -0,0 +1,32 @@
+package contacts.metrics;
+
+
+/**
+ * Management interface of {@link Metrics}, registered in platform MBean server as "contacts:type=Metrics",
+ * so metrics can be watched and switched on in JConsole or other JMX client.
+ */
+public interface MetricsMXBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    LatencySnapshot getSearch();
+
+    LatencySnapshot getAddRecord();
+
+    LatencySnapshot getDeleteRecord();
+
+    LatencySnapshot getLoad();
+
+    LatencySnapshot getSave();
+
+    long getRecordsScanned();
+
+    long getValidationFailures();
+
+    /**
+     * Clears all histograms and counters.
+     */
+    void reset();
+}
@@ -0,0 +1,409 @@
+package contacts.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+
+/**
+ * Compact binary storage format of phone book. <br>
+ * File starts with header: magic number, format version, generation of journal already applied to the file,
+ * number of records, size of string table, positions of offset tables and ID to be assigned to the next record.
+ * Header is followed by string table, where every distinct value of record fields is stored once,
+ * and then by records in ascending order of their IDs. Each record is stored as type tag, ID,
+ * time of creating and last editing in epoch milliseconds and references to string table for every field.
+ * File ends with tables of offsets of every string and every record, which allow to read them in any order.
+ */
+class BinaryFormat {
+
+    static final int MAGIC = 0x434E5442;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 48;
+
+    static final byte PERSON = 1;
+    static final byte ORGANIZATION = 2;
+
+    private static final int OFFSET_TABLES_POSITION = 24;
+
+    private BinaryFormat() {
+    }
+
+    /**
+     * Checks that record can be written in the format, which supports only person and organization records,
+     * so records of other registered types are rejected before phone book is changed.
+     *
+     * @throws IllegalArgumentException Thrown when record is of other type.
+     */
+    static void checkStorable(ContactsRecord record) {
+        if (!(record instanceof PersonContactsRecord) && !(record instanceof OrganizationContactsRecord)) {
+            throw new IllegalArgumentException("Records of type " + record.getSchema().getTypeName()
+                    + " can't be stored, only person and organization records can");
+        }
+    }
+
+    /**
+     * Writes records to the channel starting from its current position.
+     * Every field of the record is read once, so records edited concurrently are stored in consistent form.
+     *
+     * @param records           Records to write in ascending order of their IDs.
+     * @param nextID            ID to be assigned to the next record added to phone book.
+     * @param journalGeneration Generation of the last journal, which changes are included to records.
+     * @param channel           Channel opened for writing.
+     * @throws IOException Thrown when failed to write.
+     */
+    static void write(List<ContactsRecord> records, long nextID, long journalGeneration, FileChannel channel)
+            throws IOException {
+        write(records, null, nextID, journalGeneration, channel);
+    }
+
+    /**
+     * Writes snapshot of records, which are changed by another thread, in state they had when snapshot was taken.
+     *
+     * @param versions Original versions of records changed after snapshot was taken or null if records
+     *                 aren't changed while they are written.
+     * @see #write(List, long, long, FileChannel)
+     */
+    static void write(List<ContactsRecord> records, RecordVersions versions, long nextID, long journalGeneration,
+                      FileChannel channel) throws IOException {
+        int size = records.size();
+        byte[] types = new byte[size];
+        long[] ids = new long[size];
+        long[] times = new long[size * 2];
+        String[][] fields = new String[size][];
+        StringTable strings = new StringTable();
+        for (int i = 0; i < size; i++) {
+            ContactsRecord record = records.get(i);
+            if (versions == null) {
+                capture(record, i, types, ids, times, fields);
+            } else {
+                synchronized (record) {
+                    capture(versions.original(record), i, types, ids, times, fields);
+                }
+            }
+            for (String value : fields[i]) {
+                strings.add(value);
+            }
+        }
+
+        long start = channel.position();
+        ChannelOutput output = new ChannelOutput(channel);
+        output.writeInt(MAGIC);
+        output.writeShort(VERSION);
+        output.writeShort(0);
+        output.writeLong(journalGeneration);
+        output.writeInt(size);
+        output.writeInt(strings.values.size());
+        output.writeLong(0);
+        output.writeLong(0);
+        output.writeLong(nextID);
+        long[] stringOffsets = new long[strings.values.size()];
+        for (int i = 0; i < stringOffsets.length; i++) {
+            stringOffsets[i] = output.position();
+            output.writeString(strings.values.get(i));
+        }
+        long[] recordOffsets = new long[size];
+        for (int i = 0; i < size; i++) {
+            recordOffsets[i] = output.position();
+            output.writeByte(types[i]);
+            output.writeLong(ids[i]);
+            output.writeLong(times[2 * i]);
+            output.writeLong(times[2 * i + 1]);
+            for (String value : fields[i]) {
+                output.writeVarInt(strings.reference(value));
+            }
+        }
+        long stringOffsetsPosition = output.position();
+        for (long offset : stringOffsets) {
+            output.writeLong(offset);
+        }
+        long recordOffsetsPosition = output.position();
+        for (long offset : recordOffsets) {
+            output.writeLong(offset);
+        }
+        output.close();
+
+        ByteBuffer offsetTables = ByteBuffer.allocate(Long.BYTES * 2);
+        offsetTables.putLong(stringOffsetsPosition).putLong(recordOffsetsPosition).flip();
+        long position = start + OFFSET_TABLES_POSITION;
+        while (offsetTables.hasRemaining()) {
+            position += channel.write(offsetTables, position);
+        }
+    }
+
+    /**
+     * Reads every field of the record once, so record edited concurrently is stored with values,
+     * each of which it had at some moment.
+     */
+    private static void capture(ContactsRecord record, int i, byte[] types, long[] ids, long[] times,
+                                String[][] fields) {
+        ids[i] = record.getID();
+        times[2 * i] = toEpochMillis(record.getTimeCreated());
+        times[2 * i + 1] = toEpochMillis(record.getTimeEdited());
+        if (record instanceof PersonContactsRecord) {
+            PersonContactsRecord person = (PersonContactsRecord) record;
+            types[i] = PERSON;
+            fields[i] = new String[]{person.getName(), person.getNumber(),
+                    person.getSurname(), person.getBirthDate(), person.getGender()};
+        } else {
+            OrganizationContactsRecord organization = (OrganizationContactsRecord) record;
+            types[i] = ORGANIZATION;
+            fields[i] = new String[]{organization.getName(), organization.getNumber(),
+                    organization.getAddress()};
+        }
+    }
+
+    /**
+     * Reads phone book from the channel starting from its current position.
+     *
+     * @param channel Channel opened for reading.
+     * @return Restored phone book.
+     * @throws IOException Thrown when failed to read or data is not in supported format.
+     */
+    static Contacts read(FileChannel channel) throws IOException {
+        return read(channel, new Contacts());
+    }
+
+    /**
+     * Reads records from the channel starting from its current position into provided phone book.
+     *
+     * @param channel      Channel opened for reading.
+     * @param contactsBook Empty phone book to fill.
+     * @return Provided phone book.
+     * @throws IOException Thrown when failed to read or data is not in supported format.
+     */
+    static Contacts read(FileChannel channel, Contacts contactsBook) throws IOException {
+        Header header = read(channel, contactsBook::restoreRecord);
+        contactsBook.journalGeneration = header.journalGeneration;
+        contactsBook.reserveIDs(header.nextID);
+        return contactsBook;
+    }
+
+    /**
+     * Reads records from the channel starting from its current position and passes them to consumer
+     * in order of the file.
+     *
+     * @param channel Channel opened for reading.
+     * @param records Consumer of restored records.
+     * @return Header of the file.
+     * @throws IOException Thrown when failed to read or data is not in supported format.
+     */
+    static Header read(FileChannel channel, Consumer<ContactsRecord> records) throws IOException {
+        ChannelInput input = new ChannelInput(channel);
+        if (input.readInt() != MAGIC) {
+            throw new IOException("File is not a phone book");
+        }
+        int version = input.readShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported phone book format version: " + version);
+        }
+        input.readShort();
+        long journalGeneration = input.readLong();
+        int recordCount = input.readInt();
+        String[] strings = new String[input.readInt()];
+        input.readLong();
+        input.readLong();
+        long nextID = input.readLong();
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = input.readString();
+        }
+
+        for (int i = 0; i < recordCount; i++) {
+            byte type = input.readByte();
+            long id = input.readLong();
+            LocalDateTime timeCreated = fromEpochMillis(input.readLong());
+            LocalDateTime timeEdited = fromEpochMillis(input.readLong());
+            String name = dereference(strings, input.readVarInt());
+            String number = dereference(strings, input.readVarInt());
+            ContactsRecord record;
+            switch (type) {
+                case PERSON:
+                    record = new PersonContactsRecord(timeCreated, timeEdited, name, number,
+                            dereference(strings, input.readVarInt()),
+                            dereference(strings, input.readVarInt()),
+                            dereference(strings, input.readVarInt()));
+                    break;
+                case ORGANIZATION:
+                    record = new OrganizationContactsRecord(timeCreated, timeEdited, name, number,
+                            dereference(strings, input.readVarInt()));
+                    break;
+                default:
+                    throw new IOException("Unknown record type: " + type);
+            }
+            record.setID(id);
+            records.accept(record);
+        }
+        return new Header(journalGeneration, nextID);
+    }
+
+    /**
+     * Reads only IDs of records from the file through offset table, without decoding records.
+     *
+     * @param path Path to phone book file in binary format, smaller than 2 GiB.
+     * @param ids  Consumer of IDs in ascending order.
+     * @return Header of the file.
+     * @throws IOException Thrown when failed to read the file or file is in other format.
+     */
+    static Header readIDs(Path path, LongConsumer ids) throws IOException {
+        MappedByteBuffer file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Phone book file is too large to be mapped: " + path);
+            }
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (file.limit() < HEADER_SIZE || file.getInt(0) != MAGIC || file.getShort(4) != VERSION) {
+            throw new IOException("File is not a phone book: " + path);
+        }
+        int recordCount = file.getInt(16);
+        int recordOffsetsPosition = (int) file.getLong(OFFSET_TABLES_POSITION + Long.BYTES);
+        for (int i = 0; i < recordCount; i++) {
+            int recordOffset = (int) file.getLong(recordOffsetsPosition + i * Long.BYTES);
+            ids.accept(file.getLong(recordOffset + Byte.BYTES));
+        }
+        return new Header(file.getLong(8), file.getLong(40));
+    }
+
+    /**
+     * Writes single record with its ID and all values inline, without string table.
+     *
+     * @param record Record to write.
+     * @param output Destination.
+     * @throws IOException Thrown when failed to write.
+     */
+    static void writeRecord(ContactsRecord record, DataOutput output) throws IOException {
+        boolean person = record instanceof PersonContactsRecord;
+        output.writeByte(person ? PERSON : ORGANIZATION);
+        output.writeLong(record.getID());
+        output.writeLong(toEpochMillis(record.getTimeCreated()));
+        output.writeLong(toEpochMillis(record.getTimeEdited()));
+        writeNullableString(record.getName(), output);
+        writeNullableString(record.getNumber(), output);
+        if (person) {
+            PersonContactsRecord personRecord = (PersonContactsRecord) record;
+            writeNullableString(personRecord.getSurname(), output);
+            writeNullableString(personRecord.getBirthDate(), output);
+            writeNullableString(personRecord.getGender(), output);
+        } else {
+            writeNullableString(((OrganizationContactsRecord) record).getAddress(), output);
+        }
+    }
+
+    /**
+     * Reads single record written by {@link #writeRecord(ContactsRecord, DataOutput)}.
+     *
+     * @param input Source.
+     * @return Restored record.
+     * @throws IOException Thrown when failed to read or data is broken.
+     */
+    static ContactsRecord readRecord(DataInput input) throws IOException {
+        byte type = input.readByte();
+        long id = input.readLong();
+        LocalDateTime timeCreated = fromEpochMillis(input.readLong());
+        LocalDateTime timeEdited = fromEpochMillis(input.readLong());
+        String name = readNullableString(input);
+        String number = readNullableString(input);
+        ContactsRecord record;
+        switch (type) {
+            case PERSON:
+                record = new PersonContactsRecord(timeCreated, timeEdited, name, number,
+                        readNullableString(input), readNullableString(input), readNullableString(input));
+                break;
+            case ORGANIZATION:
+                record = new OrganizationContactsRecord(timeCreated, timeEdited, name, number,
+                        readNullableString(input));
+                break;
+            default:
+                throw new IOException("Unknown record type: " + type);
+        }
+        record.setID(id);
+        return record;
+    }
+
+    static long toEpochMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    static LocalDateTime fromEpochMillis(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    private static void writeNullableString(String value, DataOutput output) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readNullableString(DataInput input) throws IOException {
+        int length = input.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @param reference Reference to string table, where 0 stands for null and other values are shifted by one.
+     */
+    private static String dereference(String[] strings, int reference) throws IOException {
+        if (reference == 0) {
+            return null;
+        }
+        if (reference > strings.length) {
+            throw new IOException("Broken reference to string table: " + reference);
+        }
+        return strings[reference - 1];
+    }
+
+    /**
+     * Values of file header, which aren't records.
+     */
+    static class Header {
+        final long journalGeneration;
+        final long nextID;
+
+        Header(long journalGeneration, long nextID) {
+            this.journalGeneration = journalGeneration;
+            this.nextID = nextID;
+        }
+    }
+
+    /**
+     * Collects distinct values of fields in order of their first occurrence.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> references = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+
+        void add(String value) {
+            if (value != null && !references.containsKey(value)) {
+                values.add(value);
+                references.put(value, values.size());
+            }
+        }
+
+        int reference(String value) {
+            return value == null ? 0 : references.get(value);
+        }
+    }
+}
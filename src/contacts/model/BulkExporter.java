@@ -0,0 +1,72 @@
+package contacts.model;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+
+/**
+ * Streaming export of records to CSV or JSON Lines in phone book order.
+ * Records are iterated rather than copied, so phone book stored in files, mapped or segmented,
+ * is read window by window and doesn't have to fit in memory.
+ * Exported files are accepted by {@link BulkImporter}.
+ */
+public class BulkExporter {
+
+    private BulkExporter() {
+    }
+
+    /**
+     * Exports records to file in UTF-8, replacing the file if it exists.
+     *
+     * @see #exportTo(Contacts, Writer, DataFormat)
+     */
+    public static long exportFile(Contacts contactsBook, String fileName, DataFormat format) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(Path.of(fileName), StandardCharsets.UTF_8)) {
+            return exportTo(contactsBook, writer, format);
+        }
+    }
+
+    /**
+     * Writes all records of phone book. CSV starts with header line naming all columns,
+     * fields, which record of the type doesn't have, are left empty.
+     * Phone book shouldn't be changed during export, except {@link ConcurrentContacts}, which iterates copy.
+     *
+     * @param contactsBook Phone book to export.
+     * @param writer       Output, which isn't closed by export.
+     * @param format       Format of output.
+     * @return Number of exported records.
+     * @throws IOException Thrown when failed to write output.
+     */
+    public static long exportTo(Contacts contactsBook, Writer writer, DataFormat format) throws IOException {
+        StringBuilder line = new StringBuilder();
+        if (format == DataFormat.CSV) {
+            writer.write(String.join(",", RecordText.COLUMNS));
+            writer.write('\n');
+        }
+        long count = 0;
+        for (ContactsRecord contactsRecord : contactsBook) {
+            Map<String, String> values = RecordText.toValues(contactsRecord);
+            line.setLength(0);
+            if (format == DataFormat.CSV) {
+                for (int i = 0; i < RecordText.COLUMNS.size(); i++) {
+                    if (i > 0) {
+                        line.append(',');
+                    }
+                    RecordText.appendCsv(line, values.get(RecordText.COLUMNS.get(i)));
+                }
+            } else {
+                RecordText.appendJson(line, values);
+            }
+            line.append('\n');
+            writer.append(line);
+            count++;
+        }
+        writer.flush();
+        return count;
+    }
+}
@@ -0,0 +1,246 @@
+package contacts.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * Streaming import of records from CSV or JSON Lines. <br>
+ * Input is read by calling thread in batches of lines. Batches are parsed, validated and turned into records
+ * on pool of worker threads, and added to phone book in order of input with {@link Contacts#addRecords(List)}.
+ * Number of batches read ahead is limited by twice the number of workers, so memory usage doesn't depend
+ * on size of input. Invalid values don't print anything, they are counted in {@link ImportResult}.
+ */
+public class BulkImporter {
+
+    /**
+     * Number of lines parsed by worker at once and added to phone book at once, if other size isn't specified.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final Contacts contactsBook;
+    private final int threads;
+    private final int batchSize;
+
+    /**
+     * Constructs importer with worker thread per processor and default batch size.
+     *
+     * @param contactsBook Phone book to import records to.
+     */
+    public BulkImporter(Contacts contactsBook) {
+        this(contactsBook, Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param contactsBook Phone book to import records to.
+     * @param threads      Number of worker threads parsing input.
+     * @param batchSize    Number of lines parsed and added at once.
+     */
+    public BulkImporter(Contacts contactsBook, int threads, int batchSize) {
+        if (threads <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Number of threads and batch size should be positive");
+        }
+        this.contactsBook = contactsBook;
+        this.threads = threads;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Imports records from file in UTF-8.
+     *
+     * @see #importFrom(BufferedReader, DataFormat)
+     */
+    public ImportResult importFile(String fileName, DataFormat format) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(fileName), StandardCharsets.UTF_8)) {
+            return importFrom(reader, format);
+        }
+    }
+
+    /**
+     * Reads records from input and adds them to phone book. Blank lines are skipped,
+     * lines, which can't be read as record, are rejected and reported in result.
+     *
+     * @param reader Input with records in provided format.
+     * @param format Format of input. CSV input should start with header line.
+     * @return Numbers of imported and rejected records.
+     * @throws IOException Thrown when failed to read input or CSV header is missing column "type".
+     */
+    public ImportResult importFrom(BufferedReader reader, DataFormat format) throws IOException {
+        ImportResult result = new ImportResult();
+        LineReader lines = new LineReader(reader, format);
+        List<String> header = format == DataFormat.CSV ? readHeader(lines) : null;
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "contacts-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Deque<Future<Batch>> pending = new ArrayDeque<>();
+        try {
+            while (true) {
+                Batch batch = lines.readBatch(batchSize);
+                if (batch == null) {
+                    break;
+                }
+                pending.add(workers.submit(() -> parse(batch, format, header)));
+                if (pending.size() >= threads * 2) {
+                    add(pending.poll(), result);
+                }
+            }
+            while (!pending.isEmpty()) {
+                add(pending.poll(), result);
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+        return result;
+    }
+
+    private void add(Future<Batch> future, ImportResult result) throws IOException {
+        Batch batch;
+        try {
+            batch = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import was interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        contactsBook.addRecords(batch.records);
+        result.addImported(batch.records.size());
+        result.merge(batch.result);
+    }
+
+    private static List<String> readHeader(LineReader lines) throws IOException {
+        Batch batch = lines.readBatch(1);
+        if (batch == null) {
+            return List.of();
+        }
+        List<String> header = new ArrayList<>();
+        try {
+            for (String column : RecordText.parseCsv(batch.lines.get(0))) {
+                header.add(column == null ? "" : column.trim().toLowerCase(Locale.ROOT));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Bad CSV header: " + e.getMessage());
+        }
+        if (!header.contains(RecordText.TYPE)) {
+            throw new IOException("CSV header doesn't have column " + RecordText.TYPE);
+        }
+        return header;
+    }
+
+    /**
+     * Turns lines of batch into records. Runs on worker thread.
+     */
+    private static Batch parse(Batch batch, DataFormat format, List<String> header) {
+        for (int i = 0; i < batch.lines.size(); i++) {
+            String location = "line " + batch.lineNumbers[i];
+            try {
+                Map<String, String> values;
+                if (format == DataFormat.CSV) {
+                    List<String> row = RecordText.parseCsv(batch.lines.get(i));
+                    if (row.size() > header.size()) {
+                        throw new IllegalArgumentException("more values than columns in header");
+                    }
+                    values = new HashMap<>();
+                    for (int column = 0; column < row.size(); column++) {
+                        values.put(header.get(column), row.get(column));
+                    }
+                } else {
+                    values = RecordText.parseJson(batch.lines.get(i));
+                }
+                batch.records.add(RecordText.toRecord(values, location, batch.result));
+            } catch (IllegalArgumentException e) {
+                batch.result.addRejected(location + ": " + e.getMessage());
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Lines of input read at once, and records made of them.
+     */
+    private static class Batch {
+        final List<String> lines;
+        final long[] lineNumbers;
+        final List<ContactsRecord> records;
+        final ImportResult result = new ImportResult();
+
+        Batch(List<String> lines, long[] lineNumbers) {
+            this.lines = lines;
+            this.lineNumbers = lineNumbers;
+            this.records = new ArrayList<>(lines.size());
+        }
+    }
+
+    /**
+     * Reads non blank lines, joining lines of CSV, which continue quoted value.
+     */
+    private static class LineReader {
+        private final BufferedReader reader;
+        private final DataFormat format;
+        private long lineNumber;
+
+        LineReader(BufferedReader reader, DataFormat format) {
+            this.reader = reader;
+            this.format = format;
+        }
+
+        /**
+         * @return Batch of up to provided number of records or null if input is over.
+         */
+        Batch readBatch(int size) throws IOException {
+            List<String> lines = new ArrayList<>(size);
+            long[] lineNumbers = new long[size];
+            while (lines.size() < size) {
+                String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                lineNumbers[lines.size()] = lineNumber;
+                if (format == DataFormat.CSV && RecordText.hasOpenQuote(line)) {
+                    line = readContinuation(line);
+                }
+                lines.add(line);
+            }
+            return lines.isEmpty() ? null : new Batch(lines, lineNumbers);
+        }
+
+        private String readContinuation(String firstLine) throws IOException {
+            StringBuilder record = new StringBuilder(firstLine);
+            boolean open = true;
+            while (open) {
+                String line = reader.readLine();
+                if (line == null) {
+                    break;
+                }
+                lineNumber++;
+                record.append('\n').append(line);
+                open = RecordText.hasOpenQuote(line) != open;
+            }
+            return record.toString();
+        }
+    }
+}
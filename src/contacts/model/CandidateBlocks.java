@@ -0,0 +1,159 @@
+package contacts.model;
+
+import java.util.Arrays;
+
+
+/**
+ * Groups records by blocking keys of {@link RecordFeatures}, so only records sharing a key are compared
+ * instead of every pair of records. Blocks are found by hashing keys in linear time
+ * and their members are kept in one array in order of records. <br>
+ * Blocks of single record don't produce pairs, and blocks larger than limit are skipped:
+ * their key is too common to identify duplicates, e.g. frequent word of organization names,
+ * and comparing all their pairs would take quadratic time. <br>
+ * Pair of records sharing several blocks is compared only in the first of them.
+ */
+class CandidateBlocks {
+
+    private final int[] blockStart;
+    private final int[] members;
+    private final long[] pairsBefore;
+    private final int[] recordBlockStart;
+    private final int[] recordBlocks;
+    private final int skippedBlocks;
+    private final long skippedPairs;
+
+    /**
+     * @param features     Records with their blocking keys.
+     * @param maxBlockSize Number of records in the largest compared block.
+     */
+    CandidateBlocks(RecordFeatures features, int maxBlockSize) {
+        int size = features.size();
+        int keyCount = features.keyStart(size);
+        LongIntHashMap blockOfKey = new LongIntHashMap();
+        int[] keyBlocks = new int[keyCount];
+        int[] sizes = new int[16];
+        int blockCount = 0;
+        for (int position = 0; position < keyCount; position++) {
+            long key = features.key(position);
+            int block = blockOfKey.get(key);
+            if (block < 0) {
+                block = blockCount++;
+                blockOfKey.put(key, block);
+                if (block == sizes.length) {
+                    sizes = Arrays.copyOf(sizes, block * 2);
+                }
+            }
+            keyBlocks[position] = block;
+            sizes[block]++;
+        }
+
+        int[] compared = new int[blockCount];
+        int comparedCount = 0;
+        int skipped = 0;
+        long skippedPairCount = 0;
+        for (int block = 0; block < blockCount; block++) {
+            if (sizes[block] < 2) {
+                compared[block] = -1;
+            } else if (sizes[block] > maxBlockSize) {
+                compared[block] = -1;
+                skipped++;
+                skippedPairCount += pairs(sizes[block]);
+            } else {
+                compared[block] = comparedCount++;
+            }
+        }
+        skippedBlocks = skipped;
+        skippedPairs = skippedPairCount;
+
+        blockStart = new int[comparedCount + 1];
+        pairsBefore = new long[comparedCount + 1];
+        for (int block = 0; block < blockCount; block++) {
+            if (compared[block] >= 0) {
+                blockStart[compared[block] + 1] = sizes[block];
+            }
+        }
+        for (int block = 0; block < comparedCount; block++) {
+            int blockSize = blockStart[block + 1];
+            blockStart[block + 1] = blockStart[block] + blockSize;
+            pairsBefore[block + 1] = pairsBefore[block] + pairs(blockSize);
+        }
+
+        members = new int[blockStart[comparedCount]];
+        int[] filled = Arrays.copyOf(blockStart, comparedCount);
+        recordBlockStart = new int[size + 1];
+        int[] blocksOfRecords = new int[keyCount];
+        int recordBlockCount = 0;
+        for (int record = 0; record < size; record++) {
+            for (int position = features.keyStart(record); position < features.keyStart(record + 1); position++) {
+                int block = compared[keyBlocks[position]];
+                if (block >= 0) {
+                    members[filled[block]++] = record;
+                    blocksOfRecords[recordBlockCount++] = block;
+                }
+            }
+            recordBlockStart[record + 1] = recordBlockCount;
+        }
+        recordBlocks = Arrays.copyOf(blocksOfRecords, recordBlockCount);
+    }
+
+    /**
+     * @return Number of compared blocks.
+     */
+    int size() {
+        return blockStart.length - 1;
+    }
+
+    int blockStart(int block) {
+        return blockStart[block];
+    }
+
+    /**
+     * @return Record at position in array of members of all blocks, records of block are in ascending order.
+     */
+    int member(int position) {
+        return members[position];
+    }
+
+    /**
+     * @return Number of pairs in blocks before provided one.
+     */
+    long pairsBefore(int block) {
+        return pairsBefore[block];
+    }
+
+    /**
+     * @return True if pair of records should be compared in the block,
+     * i.e. records don't share any other compared block before it.
+     */
+    boolean isFirstSharedBlock(int block, int first, int second) {
+        for (int i = recordBlockStart[first]; i < recordBlockStart[first + 1]; i++) {
+            int other = recordBlocks[i];
+            if (other < block) {
+                for (int j = recordBlockStart[second]; j < recordBlockStart[second + 1]; j++) {
+                    if (recordBlocks[j] == other) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Number of blocks skipped because they are larger than limit.
+     */
+    int skippedBlocks() {
+        return skippedBlocks;
+    }
+
+    /**
+     * @return Number of pairs in skipped blocks.
+     */
+    long skippedPairs() {
+        return skippedPairs;
+    }
+
+    private static long pairs(long size) {
+        return size * (size - 1) / 2;
+    }
+}
@@ -0,0 +1,89 @@
+package contacts.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
+/**
+ * Delivers changes of phone book to listeners on its own thread, so thread changing phone book only puts change
+ * to queue. Changes queued while listeners handle previous batch are delivered together in the next batch,
+ * so the more often phone book is changed the larger batches are. Listeners share the thread,
+ * so slow listener delays the others. Thread is started when the first listener is added. <br>
+ * Queue keeps only the last change of every record: queued change of the same record is replaced,
+ * and the new change goes to the end of queue, so changes stay in order of sequence numbers.
+ * Record added and deleted before delivery isn't reported at all. So queue never holds more changes
+ * than there are changed records, however slow listeners are.
+ */
+class ChangeDispatcher {
+
+    static final int MAX_BATCH_SIZE = 4096;
+
+    private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<Long, RecordChange> queue = new LinkedHashMap<>();
+    private Thread thread;
+
+    synchronized void addListener(ChangeListener listener) {
+        listeners.add(listener);
+        if (thread == null) {
+            thread = new Thread(this::deliveryLoop, "contacts-change-listeners");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    void removeListener(ChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    synchronized void dispatch(RecordChange change) {
+        RecordChange queued = queue.remove(change.getID());
+        if (queued != null && queued.getKind() == RecordChange.Kind.ADDED) {
+            if (change.getKind() == RecordChange.Kind.DELETED) {
+                return;
+            }
+            change = new RecordChange(change.getSequence(), change.getID(), RecordChange.Kind.ADDED,
+                    change.getTime(), change.getRecord());
+        }
+        queue.put(change.getID(), change);
+        if (queue.size() == 1) {
+            notifyAll();
+        }
+    }
+
+    private void deliveryLoop() {
+        while (true) {
+            List<RecordChange> batch = new ArrayList<>();
+            synchronized (this) {
+                while (queue.isEmpty()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                Iterator<RecordChange> queued = queue.values().iterator();
+                while (queued.hasNext() && batch.size() < MAX_BATCH_SIZE) {
+                    batch.add(queued.next());
+                    queued.remove();
+                }
+            }
+            List<RecordChange> changes = Collections.unmodifiableList(batch);
+            for (ChangeListener listener : listeners) {
+                try {
+                    listener.onChanges(changes);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
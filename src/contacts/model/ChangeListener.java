@@ -0,0 +1,21 @@
+package contacts.model;
+
+import java.util.List;
+
+
+/**
+ * Receiver of changes of phone book subscribed by {@link Contacts#addChangeListener(ChangeListener)}.
+ */
+@FunctionalInterface
+public interface ChangeListener {
+
+    /**
+     * Called on delivery thread of phone book, not on thread changing it, with changes made since previous call.
+     * Changes are in order of their sequence numbers, and next batch isn't delivered until this call returns.
+     * Changes of record made while it waits for delivery are merged into its last change,
+     * which is reported as added, if record was added since previous call.
+     *
+     * @param changes Changes, at least one.
+     */
+    void onChanges(List<RecordChange> changes);
+}
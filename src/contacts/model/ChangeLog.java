@@ -0,0 +1,342 @@
+package contacts.model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.LongFunction;
+
+
+/**
+ * Change feed of phone book: the last change of every record changed since phone book was opened
+ * and index of records by time of their last editing. <br>
+ * Changes are appended to primitive arrays in order of sequence numbers, and position of the last change
+ * of every record is kept in hash map by ID, so logging change takes constant time. Earlier change of the same
+ * record is marked as dropped, and arrays are compacted when they are full and at least half of changes
+ * are dropped. Changes after some sequence number are found by binary search in logarithmic time
+ * plus number of changes made since. Deleted record is kept as tombstone with time of deletion.
+ * When number of kept changes exceeds capacity, the oldest ones are dropped too,
+ * and changes since earlier sequence numbers can't be found any more. <br>
+ * Time index maps times of last editing of stored records and times of deletion of tombstones to IDs.
+ * It's built on the first query by time, which requires access to every record, like other indexes,
+ * and like them it supports record IDs up to {@link Integer#MAX_VALUE}. <br>
+ * Methods are synchronized, so changes made by different threads get sequence numbers in order they are logged
+ * and listeners receive them in that order. Changes carry copies of records taken while change is logged or found,
+ * so they can be read after records are changed again or on other threads.
+ */
+class ChangeLog {
+
+    /**
+     * Number of changes kept, if other number isn't set.
+     */
+    static final int DEFAULT_CAPACITY = 1 << 18;
+
+    private static final int MIN_LENGTH = 16;
+    private static final RecordChange.Kind[] KINDS = RecordChange.Kind.values();
+
+    private final LongIntHashMap positions = new LongIntHashMap();
+    private final ChangeDispatcher dispatcher = new ChangeDispatcher();
+    private long[] sequences = new long[MIN_LENGTH];
+    private long[] ids = new long[MIN_LENGTH];
+    private long[] addedSequences = new long[MIN_LENGTH];
+    private byte[] kinds = new byte[MIN_LENGTH];
+    private LocalDateTime[] deletionTimes = new LocalDateTime[MIN_LENGTH];
+    private int start;
+    private int end;
+    private NavigableMap<LocalDateTime, PostingList> byTime;
+    private int capacity = DEFAULT_CAPACITY;
+    private long sequence;
+    private long droppedSequence;
+    private LocalDateTime droppedDeletionTime;
+
+    /**
+     * @return Sequence number of the last change or 0 if there were no changes.
+     */
+    synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Sets number of kept changes, the oldest changes above it are dropped.
+     */
+    synchronized void setCapacity(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity should be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        while (positions.size() > capacity) {
+            dropOldest();
+        }
+    }
+
+    synchronized void added(ContactsRecord contactsRecord) {
+        int position = log(contactsRecord.getID(), RecordChange.Kind.ADDED, null);
+        if (byTime != null) {
+            index(contactsRecord.getTimeEdited(), contactsRecord.getID());
+        }
+        dispatch(position, contactsRecord.getTimeEdited(), contactsRecord);
+    }
+
+    /**
+     * @param contactsRecord Edited record.
+     * @param oldTime        Time of editing of the record before this change.
+     */
+    synchronized void edited(ContactsRecord contactsRecord, LocalDateTime oldTime) {
+        int position = log(contactsRecord.getID(), RecordChange.Kind.EDITED, null);
+        if (byTime != null) {
+            unindex(oldTime, contactsRecord.getID());
+            index(contactsRecord.getTimeEdited(), contactsRecord.getID());
+        }
+        dispatch(position, contactsRecord.getTimeEdited(), contactsRecord);
+    }
+
+    synchronized void deleted(ContactsRecord contactsRecord) {
+        LocalDateTime now = LocalDateTime.now();
+        int position = log(contactsRecord.getID(), RecordChange.Kind.DELETED, now);
+        if (byTime != null) {
+            unindex(contactsRecord.getTimeEdited(), contactsRecord.getID());
+            index(now, contactsRecord.getID());
+        }
+        dispatch(position, now, null);
+    }
+
+    /**
+     * Updates time index after record was restored from storage. Such change isn't logged,
+     * because it was made before phone book was opened.
+     *
+     * @param oldRecord Replaced or deleted record or null if record is added.
+     * @param newRecord Restored record or null if record is deleted.
+     */
+    synchronized void restored(ContactsRecord oldRecord, ContactsRecord newRecord) {
+        if (byTime == null) {
+            return;
+        }
+        if (oldRecord != null) {
+            unindex(oldRecord.getTimeEdited(), oldRecord.getID());
+        }
+        if (newRecord != null) {
+            index(newRecord.getTimeEdited(), newRecord.getID());
+        }
+    }
+
+    /**
+     * @return True if time index is built and should be updated when records are restored.
+     */
+    synchronized boolean isTimeIndexed() {
+        return byTime != null;
+    }
+
+    /**
+     * Finds the last changes of records changed after provided sequence number.
+     * Record added after it is reported as added even if it was edited since.
+     *
+     * @param sequence Sequence number of the last change seen by client.
+     * @param records  Lookup of stored records by ID.
+     * @return Changes in order of sequence numbers.
+     * @throws IllegalArgumentException Thrown when some changes after the sequence number are dropped.
+     */
+    synchronized List<RecordChange> since(long sequence, LongFunction<ContactsRecord> records) {
+        if (sequence < droppedSequence) {
+            throw new IllegalArgumentException("Changes before sequence number " + droppedSequence
+                    + " aren't kept any more, phone book should be read again");
+        }
+        int position = Arrays.binarySearch(sequences, start, end, sequence);
+        position = position >= 0 ? position + 1 : -position - 1;
+        List<RecordChange> result = new ArrayList<>();
+        for (; position < end; position++) {
+            long id = ids[position];
+            if (id == 0) {
+                continue;
+            }
+            if (deletionTimes[position] != null) {
+                result.add(new RecordChange(sequences[position], id, RecordChange.Kind.DELETED,
+                        deletionTimes[position], null));
+                continue;
+            }
+            ContactsRecord contactsRecord = RecordVersions.copy(records.apply(id));
+            RecordChange.Kind kind = addedSequences[position] > sequence
+                    ? RecordChange.Kind.ADDED : RecordChange.Kind.EDITED;
+            result.add(new RecordChange(sequences[position], id, kind, contactsRecord.getTimeEdited(),
+                    contactsRecord));
+        }
+        return result;
+    }
+
+    /**
+     * Finds records edited after provided time and tombstones of records deleted after it.
+     * Record created after the time is reported as added.
+     *
+     * @param time       Time of the last change seen by client.
+     * @param allRecords All stored records to build time index, if it isn't built yet.
+     * @param records    Lookup of stored records by ID.
+     * @return Changes in order of time, changes at the same time in order of IDs.
+     * @throws IllegalArgumentException Thrown when tombstone of record deleted after the time is dropped.
+     */
+    synchronized List<RecordChange> since(LocalDateTime time, Iterable<ContactsRecord> allRecords,
+                                          LongFunction<ContactsRecord> records) {
+        if (droppedDeletionTime != null && time.isBefore(droppedDeletionTime)) {
+            throw new IllegalArgumentException("Deletions before " + droppedDeletionTime
+                    + " aren't kept any more, phone book should be read again");
+        }
+        if (byTime == null) {
+            byTime = new TreeMap<>();
+            for (ContactsRecord contactsRecord : allRecords) {
+                index(contactsRecord.getTimeEdited(), contactsRecord.getID());
+            }
+            for (int position = start; position < end; position++) {
+                if (ids[position] != 0 && deletionTimes[position] != null) {
+                    index(deletionTimes[position], ids[position]);
+                }
+            }
+        }
+        List<RecordChange> result = new ArrayList<>();
+        for (PostingList postingList : byTime.tailMap(time, false).values()) {
+            for (int i = 0; i < postingList.size(); i++) {
+                long id = postingList.get(i);
+                int position = positions.get(id);
+                if (position >= 0 && deletionTimes[position] != null) {
+                    result.add(new RecordChange(sequences[position], id, RecordChange.Kind.DELETED,
+                            deletionTimes[position], null));
+                    continue;
+                }
+                ContactsRecord contactsRecord = RecordVersions.copy(records.apply(id));
+                RecordChange.Kind kind = contactsRecord.getTimeCreated().isAfter(time)
+                        ? RecordChange.Kind.ADDED : RecordChange.Kind.EDITED;
+                result.add(new RecordChange(position >= 0 ? sequences[position] : 0, id, kind,
+                        contactsRecord.getTimeEdited(), contactsRecord));
+            }
+        }
+        return result;
+    }
+
+    void addListener(ChangeListener listener) {
+        dispatcher.addListener(listener);
+    }
+
+    void removeListener(ChangeListener listener) {
+        dispatcher.removeListener(listener);
+    }
+
+    /**
+     * Appends change with the next sequence number and drops the previous change of the record.
+     *
+     * @return Position of the change.
+     */
+    private int log(long id, RecordChange.Kind kind, LocalDateTime deletionTime) {
+        long addedSequence = kind == RecordChange.Kind.ADDED ? sequence + 1 : 0;
+        int previous = positions.get(id);
+        if (previous >= 0) {
+            if (addedSequence == 0) {
+                addedSequence = addedSequences[previous];
+            }
+            ids[previous] = 0;
+            if (deletionTimes[previous] != null) {
+                deletionTimes[previous] = null;
+            }
+        }
+        if (end == ids.length) {
+            compact();
+        }
+        int position = end++;
+        sequences[position] = ++sequence;
+        ids[position] = id;
+        addedSequences[position] = addedSequence;
+        kinds[position] = (byte) kind.ordinal();
+        if (deletionTime != null) {
+            deletionTimes[position] = deletionTime;
+        }
+        positions.put(id, position);
+        if (positions.size() > capacity) {
+            dropOldest();
+        }
+        return position;
+    }
+
+    /**
+     * Moves kept changes to the beginning of arrays, which are grown if more than half of them is kept.
+     */
+    private void compact() {
+        int length = positions.size() * 2 > ids.length ? ids.length * 2 : ids.length;
+        long[] newSequences = length == ids.length ? sequences : new long[length];
+        long[] newIDs = length == ids.length ? ids : new long[length];
+        long[] newAddedSequences = length == ids.length ? addedSequences : new long[length];
+        byte[] newKinds = length == ids.length ? kinds : new byte[length];
+        LocalDateTime[] newDeletionTimes = length == ids.length ? deletionTimes : new LocalDateTime[length];
+        int kept = 0;
+        for (int position = start; position < end; position++) {
+            long id = ids[position];
+            if (id == 0) {
+                continue;
+            }
+            newSequences[kept] = sequences[position];
+            newIDs[kept] = id;
+            newAddedSequences[kept] = addedSequences[position];
+            newKinds[kept] = kinds[position];
+            if (deletionTimes[position] != null || newDeletionTimes[kept] != null) {
+                newDeletionTimes[kept] = deletionTimes[position];
+            }
+            positions.put(id, kept);
+            kept++;
+        }
+        Arrays.fill(newIDs, kept, end, 0);
+        for (int position = kept; position < end; position++) {
+            if (newDeletionTimes[position] != null) {
+                newDeletionTimes[position] = null;
+            }
+        }
+        sequences = newSequences;
+        ids = newIDs;
+        addedSequences = newAddedSequences;
+        kinds = newKinds;
+        deletionTimes = newDeletionTimes;
+        start = 0;
+        end = kept;
+    }
+
+    private void dropOldest() {
+        while (ids[start] == 0) {
+            start++;
+        }
+        long id = ids[start];
+        positions.remove(id);
+        droppedSequence = sequences[start];
+        LocalDateTime deletionTime = deletionTimes[start];
+        ids[start] = 0;
+        start++;
+        if (deletionTime == null) {
+            return;
+        }
+        deletionTimes[start - 1] = null;
+        if (byTime != null) {
+            unindex(deletionTime, id);
+        }
+        if (droppedDeletionTime == null || droppedDeletionTime.isBefore(deletionTime)) {
+            droppedDeletionTime = deletionTime;
+        }
+    }
+
+    private void dispatch(int position, LocalDateTime time, ContactsRecord contactsRecord) {
+        if (dispatcher.hasListeners()) {
+            dispatcher.dispatch(new RecordChange(sequences[position], ids[position], KINDS[kinds[position]], time,
+                    contactsRecord == null ? null : RecordVersions.copy(contactsRecord)));
+        }
+    }
+
+    private void index(LocalDateTime time, long id) {
+        if (time != null) {
+            byTime.computeIfAbsent(time, key -> new PostingList()).add(Math.toIntExact(id));
+        }
+    }
+
+    private void unindex(LocalDateTime time, long id) {
+        PostingList postingList = time == null ? null : byTime.get(time);
+        if (postingList != null) {
+            postingList.remove(Math.toIntExact(id));
+            if (postingList.isEmpty()) {
+                byTime.remove(time);
+            }
+        }
+    }
+}
@@ -0,0 +1,581 @@
+package contacts.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+
+/**
+ * Record store keeping each field of records in its own array instead of record objects. <br>
+ * Times are stored as epoch milliseconds, birth dates as epoch days, genders as codes
+ * and other strings as references to {@link StringPool}, so equal values are stored once.
+ * Row of record takes 42 bytes plus its share of distinct strings, while record object with two
+ * {@link LocalDateTime} takes hundreds of bytes. <br>
+ * Records are returned as flyweight views, which read and write the arrays. View finds its row by record ID,
+ * so it stays valid while rows are moved, and throws {@link IllegalStateException} after its record is deleted.
+ * Views don't cache searchable strings, so search builds them for every matched record.
+ * Records passed to {@link #add(ContactsRecord)} and {@link #replace(ContactsRecord)} are copied into arrays
+ * and aren't connected to the store. Deleted rows are left as tombstones and compacted
+ * the same way as in {@link MemoryRecordStore}, rows are kept in order of record IDs.
+ */
+class ColumnarRecordStore implements RecordStore {
+
+    private static final int MIN_CAPACITY = 16;
+    private static final int MIN_TOMBSTONES_TO_COMPACT = 64;
+    private static final byte DELETED = 0;
+
+    /**
+     * Birth dates, which aren't valid dates, are stored as references to string pool subtracted from this value.
+     * Epoch days of valid dates with four-digit years are much greater.
+     */
+    private static final int BIRTH_DATE_REFERENCE = -1_000_000_000;
+    private static final int MAX_GENDERS = 256;
+
+    private int rowCount;
+    private int tombstones;
+    private long[] ids = new long[MIN_CAPACITY];
+    private byte[] types = new byte[MIN_CAPACITY];
+    private long[] timesCreated = new long[MIN_CAPACITY];
+    private long[] timesEdited = new long[MIN_CAPACITY];
+    private int[] names = new int[MIN_CAPACITY];
+    private int[] numbers = new int[MIN_CAPACITY];
+    /**
+     * Surname of person or address of organization.
+     */
+    private int[] surnamesOrAddresses = new int[MIN_CAPACITY];
+    private int[] birthDates = new int[MIN_CAPACITY];
+    private byte[] genders = new byte[MIN_CAPACITY];
+    private final StringPool strings = new StringPool();
+    private final List<String> genderValues = new ArrayList<>(Arrays.asList(null, "M", "F", ContactsRecord.NO_DATA));
+
+    @Override
+    public int size() {
+        return rowCount - tombstones;
+    }
+
+    @Override
+    public ContactsRecord getByID(long id) {
+        int row = findRow(id);
+        return row < 0 ? null : view(row);
+    }
+
+    @Override
+    public ContactsRecord getAt(int position) {
+        if (tombstones > 0) {
+            compact();
+        }
+        if (position < 0 || position >= rowCount) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + rowCount);
+        }
+        return view(position);
+    }
+
+    @Override
+    public ContactsRecord add(ContactsRecord record) {
+        long id = record.getID();
+        int row = rowCount;
+        if (row > 0 && ids[row - 1] >= id) {
+            row = lowerBound(id);
+            if (ids[row] == id) {
+                tombstones--;
+                put(row, record);
+                return view(row);
+            }
+        }
+        if (rowCount == ids.length) {
+            grow(rowCount * 2);
+        }
+        if (row < rowCount) {
+            shift(row);
+        }
+        rowCount++;
+        put(row, record);
+        return view(row);
+    }
+
+    @Override
+    public ContactsRecord remove(long id) {
+        int row = findRow(id);
+        if (row < 0) {
+            return null;
+        }
+        ContactsRecord record = detach(row);
+        release(names[row], numbers[row], surnamesOrAddresses[row], birthDates[row]);
+        types[row] = DELETED;
+        tombstones++;
+        if (tombstones >= MIN_TOMBSTONES_TO_COMPACT && tombstones * 2 >= rowCount) {
+            compact();
+        }
+        return record;
+    }
+
+    @Override
+    public ContactsRecord replace(ContactsRecord record) {
+        int row = findRow(record.getID());
+        if (row < 0) {
+            return null;
+        }
+        ContactsRecord oldRecord = detach(row);
+        int name = names[row];
+        int number = numbers[row];
+        int surnameOrAddress = surnamesOrAddresses[row];
+        int birthDate = birthDates[row];
+        put(row, record);
+        release(name, number, surnameOrAddress, birthDate);
+        return oldRecord;
+    }
+
+    /**
+     * Records of the store are its views, so record is stored, if it's view of live row of this store.
+     */
+    @Override
+    public boolean contains(ContactsRecord record) {
+        return record instanceof View && ((View) record).store() == this && findRow(record.getID()) >= 0;
+    }
+
+    @Override
+    public boolean supportsAnyType() {
+        return false;
+    }
+
+    @Override
+    public List<ContactsRecord> toList() {
+        List<ContactsRecord> result = new ArrayList<>(size());
+        forEach(result::add);
+        return result;
+    }
+
+    /**
+     * Views read arrays, which are changed by the thread owning the store, so snapshot consists of copies.
+     */
+    @Override
+    public List<ContactsRecord> snapshot() {
+        List<ContactsRecord> result = new ArrayList<>(size());
+        for (int row = 0; row < rowCount; row++) {
+            if (types[row] != DELETED) {
+                result.add(detach(row));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Iterator<ContactsRecord> iterator() {
+        return new Iterator<>() {
+            private int row = nextLive(0);
+
+            @Override
+            public boolean hasNext() {
+                return row < rowCount;
+            }
+
+            @Override
+            public ContactsRecord next() {
+                if (row >= rowCount) {
+                    throw new NoSuchElementException();
+                }
+                ContactsRecord record = view(row);
+                row = nextLive(row + 1);
+                return record;
+            }
+        };
+    }
+
+    private int nextLive(int row) {
+        while (row < rowCount && types[row] == DELETED) {
+            row++;
+        }
+        return row;
+    }
+
+    /**
+     * @return Row of live record with provided ID or -1 if there's no such record.
+     */
+    private int findRow(long id) {
+        int row = lowerBound(id);
+        return row < rowCount && ids[row] == id && types[row] != DELETED ? row : -1;
+    }
+
+    /**
+     * @return The first row, which ID is not less than provided one, or number of rows if there's no such row.
+     */
+    private int lowerBound(long id) {
+        int low = 0;
+        int high = rowCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ids[middle] < id) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Checks that view still points to the row of its record, or finds the row again.
+     *
+     * @param id   ID of the record.
+     * @param hint Row, where record was found last time.
+     * @return Current row of the record.
+     */
+    private int resolve(long id, int hint) {
+        if (hint < rowCount && ids[hint] == id && types[hint] != DELETED) {
+            return hint;
+        }
+        int row = findRow(id);
+        if (row < 0) {
+            throw new IllegalStateException("Record was deleted from phone book: " + id);
+        }
+        return row;
+    }
+
+    private ContactsRecord view(int row) {
+        return types[row] == BinaryFormat.PERSON ? new PersonView(this, row) : new OrganizationView(this, row);
+    }
+
+    /**
+     * @return Copy of the row as record object, which isn't connected to the store.
+     */
+    private ContactsRecord detach(int row) {
+        LocalDateTime timeCreated = BinaryFormat.fromEpochMillis(timesCreated[row]);
+        LocalDateTime timeEdited = BinaryFormat.fromEpochMillis(timesEdited[row]);
+        ContactsRecord record;
+        if (types[row] == BinaryFormat.PERSON) {
+            record = new PersonContactsRecord(timeCreated, timeEdited, strings.get(names[row]),
+                    strings.get(numbers[row]), strings.get(surnamesOrAddresses[row]),
+                    birthDate(row), gender(row));
+        } else {
+            record = new OrganizationContactsRecord(timeCreated, timeEdited, strings.get(names[row]),
+                    strings.get(numbers[row]), strings.get(surnamesOrAddresses[row]));
+        }
+        record.setID(ids[row]);
+        return record;
+    }
+
+    /**
+     * Fills the row with values of the record acquiring references to its strings.
+     * References to previous values of the row aren't released.
+     */
+    private void put(int row, ContactsRecord record) {
+        ids[row] = record.getID();
+        timesCreated[row] = BinaryFormat.toEpochMillis(record.getTimeCreated());
+        timesEdited[row] = BinaryFormat.toEpochMillis(record.getTimeEdited());
+        names[row] = strings.acquire(record.getName());
+        numbers[row] = strings.acquire(record.getNumber());
+        if (record instanceof PersonContactsRecord) {
+            PersonContactsRecord person = (PersonContactsRecord) record;
+            types[row] = BinaryFormat.PERSON;
+            surnamesOrAddresses[row] = strings.acquire(person.getSurname());
+            birthDates[row] = encodeBirthDate(person.getBirthDate());
+            genders[row] = encodeGender(person.getGender());
+        } else {
+            types[row] = BinaryFormat.ORGANIZATION;
+            surnamesOrAddresses[row] = strings.acquire(((OrganizationContactsRecord) record).getAddress());
+            birthDates[row] = BIRTH_DATE_REFERENCE;
+            genders[row] = 0;
+        }
+    }
+
+    private void release(int name, int number, int surnameOrAddress, int birthDate) {
+        strings.release(name);
+        strings.release(number);
+        strings.release(surnameOrAddress);
+        if (birthDate <= BIRTH_DATE_REFERENCE) {
+            strings.release(BIRTH_DATE_REFERENCE - birthDate);
+        }
+    }
+
+    private void setString(int[] column, int row, String value) {
+        int oldReference = column[row];
+        column[row] = strings.acquire(value);
+        strings.release(oldReference);
+    }
+
+    private String birthDate(int row) {
+        int birthDate = birthDates[row];
+        return birthDate > BIRTH_DATE_REFERENCE
+                ? LocalDate.ofEpochDay(birthDate).toString()
+                : strings.get(BIRTH_DATE_REFERENCE - birthDate);
+    }
+
+    private void setBirthDate(int row, String birthDate) {
+        int oldBirthDate = birthDates[row];
+        birthDates[row] = encodeBirthDate(birthDate);
+        if (oldBirthDate <= BIRTH_DATE_REFERENCE) {
+            strings.release(BIRTH_DATE_REFERENCE - oldBirthDate);
+        }
+    }
+
+    private int encodeBirthDate(String birthDate) {
+        if (FieldValidator.isValidBirthDate(birthDate)) {
+            return (int) LocalDate.parse(birthDate).toEpochDay();
+        }
+        return BIRTH_DATE_REFERENCE - strings.acquire(birthDate);
+    }
+
+    private String gender(int row) {
+        return genderValues.get(genders[row] & 0xFF);
+    }
+
+    /**
+     * Genders are validated, so only values restored from storage without validation get new codes.
+     */
+    private byte encodeGender(String gender) {
+        int code = genderValues.indexOf(gender);
+        if (code < 0) {
+            if (genderValues.size() == MAX_GENDERS) {
+                throw new IllegalArgumentException("Too many distinct genders to store: " + gender);
+            }
+            genderValues.add(gender);
+            code = genderValues.size() - 1;
+        }
+        return (byte) code;
+    }
+
+    /**
+     * Moves rows starting from provided one by one row forward.
+     */
+    private void shift(int row) {
+        int length = rowCount - row;
+        System.arraycopy(ids, row, ids, row + 1, length);
+        System.arraycopy(types, row, types, row + 1, length);
+        System.arraycopy(timesCreated, row, timesCreated, row + 1, length);
+        System.arraycopy(timesEdited, row, timesEdited, row + 1, length);
+        System.arraycopy(names, row, names, row + 1, length);
+        System.arraycopy(numbers, row, numbers, row + 1, length);
+        System.arraycopy(surnamesOrAddresses, row, surnamesOrAddresses, row + 1, length);
+        System.arraycopy(birthDates, row, birthDates, row + 1, length);
+        System.arraycopy(genders, row, genders, row + 1, length);
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        types = Arrays.copyOf(types, capacity);
+        timesCreated = Arrays.copyOf(timesCreated, capacity);
+        timesEdited = Arrays.copyOf(timesEdited, capacity);
+        names = Arrays.copyOf(names, capacity);
+        numbers = Arrays.copyOf(numbers, capacity);
+        surnamesOrAddresses = Arrays.copyOf(surnamesOrAddresses, capacity);
+        birthDates = Arrays.copyOf(birthDates, capacity);
+        genders = Arrays.copyOf(genders, capacity);
+    }
+
+    /**
+     * Moves live rows to the beginning of arrays keeping their order.
+     */
+    private void compact() {
+        int count = 0;
+        for (int row = 0; row < rowCount; row++) {
+            if (types[row] != DELETED) {
+                if (count != row) {
+                    ids[count] = ids[row];
+                    types[count] = types[row];
+                    timesCreated[count] = timesCreated[row];
+                    timesEdited[count] = timesEdited[row];
+                    names[count] = names[row];
+                    numbers[count] = numbers[row];
+                    surnamesOrAddresses[count] = surnamesOrAddresses[row];
+                    birthDates[count] = birthDates[row];
+                    genders[count] = genders[row];
+                }
+                count++;
+            }
+        }
+        Arrays.fill(types, count, rowCount, DELETED);
+        rowCount = count;
+        tombstones = 0;
+    }
+
+    /**
+     * Record backed by row of the store.
+     */
+    private interface View {
+        ColumnarRecordStore store();
+    }
+
+    private static class PersonView extends PersonContactsRecord implements View {
+        private static final long serialVersionUID = 1L;
+
+        private final transient ColumnarRecordStore store;
+        private transient int row;
+
+        PersonView(ColumnarRecordStore store, int row) {
+            super(null, null, null, null, null, null, null);
+            this.store = store;
+            this.row = row;
+            setID(store.ids[row]);
+        }
+
+        @Override
+        public ColumnarRecordStore store() {
+            return store;
+        }
+
+        private int row() {
+            row = store.resolve(getID(), row);
+            return row;
+        }
+
+        @Override
+        public String getName() {
+            return store.strings.get(store.names[row()]);
+        }
+
+        @Override
+        public void setName(String name) {
+            store.setString(store.names, row(), name);
+        }
+
+        @Override
+        public String getNumber() {
+            return store.strings.get(store.numbers[row()]);
+        }
+
+        @Override
+        public void setNumber(String number) {
+            super.setNumber(number);
+            store.setString(store.numbers, row(), super.getNumber());
+        }
+
+        @Override
+        public String getSurname() {
+            return store.strings.get(store.surnamesOrAddresses[row()]);
+        }
+
+        @Override
+        public void setSurname(String surname) {
+            store.setString(store.surnamesOrAddresses, row(), surname);
+        }
+
+        @Override
+        public String getBirthDate() {
+            return store.birthDate(row());
+        }
+
+        @Override
+        public void setBirthDate(String birthDate) {
+            super.setBirthDate(birthDate);
+            store.setBirthDate(row(), super.getBirthDate());
+        }
+
+        @Override
+        public String getGender() {
+            return store.gender(row());
+        }
+
+        @Override
+        public void setGender(String gender) {
+            super.setGender(gender);
+            store.genders[row()] = store.encodeGender(super.getGender());
+        }
+
+        @Override
+        public LocalDateTime getTimeCreated() {
+            return BinaryFormat.fromEpochMillis(store.timesCreated[row()]);
+        }
+
+        @Override
+        public LocalDateTime getTimeEdited() {
+            return BinaryFormat.fromEpochMillis(store.timesEdited[row()]);
+        }
+
+        @Override
+        public void updateTimeEdited() {
+            store.timesEdited[row()] = BinaryFormat.toEpochMillis(LocalDateTime.now());
+        }
+
+        @Override
+        boolean cachesSearchableString() {
+            return false;
+        }
+
+        private Object writeReplace() {
+            return store.detach(row());
+        }
+    }
+
+    private static class OrganizationView extends OrganizationContactsRecord implements View {
+        private static final long serialVersionUID = 1L;
+
+        private final transient ColumnarRecordStore store;
+        private transient int row;
+
+        OrganizationView(ColumnarRecordStore store, int row) {
+            super(null, null, null, null, null);
+            this.store = store;
+            this.row = row;
+            setID(store.ids[row]);
+        }
+
+        @Override
+        public ColumnarRecordStore store() {
+            return store;
+        }
+
+        private int row() {
+            row = store.resolve(getID(), row);
+            return row;
+        }
+
+        @Override
+        public String getName() {
+            return store.strings.get(store.names[row()]);
+        }
+
+        @Override
+        public void setName(String name) {
+            store.setString(store.names, row(), name);
+        }
+
+        @Override
+        public String getNumber() {
+            return store.strings.get(store.numbers[row()]);
+        }
+
+        @Override
+        public void setNumber(String number) {
+            super.setNumber(number);
+            store.setString(store.numbers, row(), super.getNumber());
+        }
+
+        @Override
+        public String getAddress() {
+            return store.strings.get(store.surnamesOrAddresses[row()]);
+        }
+
+        @Override
+        public void setAddress(String address) {
+            store.setString(store.surnamesOrAddresses, row(), address);
+        }
+
+        @Override
+        public LocalDateTime getTimeCreated() {
+            return BinaryFormat.fromEpochMillis(store.timesCreated[row()]);
+        }
+
+        @Override
+        public LocalDateTime getTimeEdited() {
+            return BinaryFormat.fromEpochMillis(store.timesEdited[row()]);
+        }
+
+        @Override
+        public void updateTimeEdited() {
+            store.timesEdited[row()] = BinaryFormat.toEpochMillis(LocalDateTime.now());
+        }
+
+        @Override
+        boolean cachesSearchableString() {
+            return false;
+        }
+
+        private Object writeReplace() {
+            return store.detach(row());
+        }
+    }
+}
@@ -0,0 +1,650 @@
+package contacts.model;
+
+import contacts.metrics.Metrics;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+
+/**
+ * Thread-safe phone book for access by many clients at once. <br>
+ * Records are split into stripes by ID, each stripe is separate phone book guarded by its own {@link StampedLock},
+ * so changes of records from different stripes don't wait for each other.
+ * Records are looked up by ID with optimistic reads, which take no lock unless the stripe was changed meanwhile,
+ * search holds read lock of one stripe at a time, so it never waits for changes of the whole phone book.
+ * Number of records and next ID are kept in atomic counters. <br>
+ * Changes are logged to the journal under the stripe lock, so entries of the same record are ordered,
+ * and waiting until entries are synced to drive happens after the lock is released.
+ * Changes are reported to change log of the whole phone book under the stripe lock too,
+ * stripes don't have their own change logs.
+ * Records returned by phone book may be edited only through {@link #editFieldByName} and {@link #editFieldsByName},
+ * and should be copied with {@link #copyOf} to be read while other threads may edit them.
+ */
+public class ConcurrentContacts extends Contacts {
+    private static final long serialVersionUID = 1L;
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private final AtomicLong nextID = new AtomicLong(1);
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong modificationCount = new AtomicLong();
+    private volatile Journal journal;
+
+    /**
+     * Constructs empty phone book with number of stripes depending on number of processors.
+     */
+    public ConcurrentContacts() {
+        this(defaultStripeCount());
+    }
+
+    /**
+     * Constructs empty phone book.
+     *
+     * @param stripeCount Number of stripes, which is rounded up to power of two.
+     */
+    public ConcurrentContacts(int stripeCount) {
+        if (stripeCount <= 0) {
+            throw new IllegalArgumentException("Number of stripes should be positive: " + stripeCount);
+        }
+        int count = Integer.highestOneBit(stripeCount);
+        if (count < stripeCount) {
+            count <<= 1;
+        }
+        stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe();
+        }
+        mask = count - 1;
+    }
+
+    /**
+     * Constructs phone book containing records of another phone book with the same IDs.
+     * Records are copied into memory, so source phone book shouldn't be used afterwards.
+     *
+     * @param contactsBook Phone book to copy, for example restored from file.
+     */
+    public ConcurrentContacts(Contacts contactsBook) {
+        this();
+        for (ContactsRecord contactsRecord : contactsBook.toList()) {
+            restoreRecord(contactsRecord);
+        }
+        reserveIDs(contactsBook.getNextID());
+        journalGeneration = contactsBook.journalGeneration;
+    }
+
+    /**
+     * Searches stripes one by one holding read lock of each stripe.
+     * Search runs concurrently with other searches and with changes of other stripes.
+     */
+    @Override
+    List<ContactsRecord> search(Pattern pattern) {
+        List<ContactsRecord> result = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                result.addAll(stripe.records.search(pattern));
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        result.sort(Comparator.comparingLong(ContactsRecord::getID));
+        return result;
+    }
+
+    /**
+     * Searches stripes one by one holding read lock of each stripe.
+     *
+     * @see Contacts#search(String, Predicate)
+     */
+    @Override
+    public List<ContactsRecord> search(String field, Predicate<String> predicate) throws WrongFieldNameException {
+        List<ContactsRecord> result = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                result.addAll(stripe.records.search(field, predicate));
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        result.sort(Comparator.comparingLong(ContactsRecord::getID));
+        return result;
+    }
+
+    /**
+     * Ranks records of stripes one by one holding read lock of each stripe. All stripes share one bounded heap,
+     * so stripe isn't scanned, if heap is already full of perfect matches with smaller IDs.
+     *
+     * @see Contacts#searchRanked(String, int)
+     */
+    @Override
+    public List<ContactsRecord> searchRanked(String query, int limit) {
+        RankedSearch ranking = new RankedSearch(query, limit);
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                stripe.records.rank(ranking);
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        return ranking.result();
+    }
+
+    /**
+     * Looks words up in every stripe holding its read lock.
+     *
+     * @see Contacts#searchFuzzy(String, int)
+     */
+    @Override
+    public List<ContactsRecord> searchFuzzy(String query, int maxDistance) {
+        long startTime = Metrics.startTimer();
+        FuzzySearch search = new FuzzySearch(query, maxDistance);
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                stripe.records.searchFuzzy(search);
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        List<ContactsRecord> result = search.result();
+        Metrics.SEARCH.recordSince(startTime);
+        return result;
+    }
+
+    /**
+     * Looks number up in every stripe holding its read lock.
+     *
+     * @see Contacts#findByNumber(String)
+     */
+    @Override
+    public List<ContactsRecord> findByNumber(String number) {
+        List<ContactsRecord> result = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                result.addAll(stripe.records.findByNumber(number));
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        result.sort(Comparator.comparingLong(ContactsRecord::getID));
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Finds the longest matching number in every stripe and keeps records of the longest one among stripes.
+     *
+     * @see Contacts#findByNumberPrefix(String)
+     */
+    @Override
+    public List<ContactsRecord> findByNumberPrefix(String number) {
+        List<ContactsRecord> result = new ArrayList<>();
+        int longest = 0;
+        for (Stripe stripe : stripes) {
+            List<ContactsRecord> found;
+            long stamp = stripe.lock.readLock();
+            try {
+                found = stripe.records.findByNumberPrefix(number);
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+            if (found.isEmpty()) {
+                continue;
+            }
+            int length = found.get(0).getNormalizedNumber().length();
+            if (length > longest) {
+                longest = length;
+                result.clear();
+            }
+            if (length == longest) {
+                result.addAll(found);
+            }
+        }
+        result.sort(Comparator.comparingLong(ContactsRecord::getID));
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Sets threshold of parallel search for every stripe, which is matched in parallel
+     * if number of its records to match reaches the threshold.
+     */
+    @Override
+    public void setParallelSearchThreshold(int parallelSearchThreshold) {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                stripe.records.setParallelSearchThreshold(parallelSearchThreshold);
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    @Override
+    public void addRecord(ContactsRecord contactsRecord) {
+        checkStorable(List.of(contactsRecord));
+        long startTime = Metrics.startTimer();
+        awaitLogged(add(contactsRecord));
+        Metrics.ADD_RECORD.recordSince(startTime);
+    }
+
+    /**
+     * Adds records one by one, so records of the list may be found by concurrent search before the whole list is added.
+     * Waits for journal once after all records are logged.
+     */
+    @Override
+    public void addRecords(List<? extends ContactsRecord> contactsRecords) {
+        checkStorable(contactsRecords);
+        long sequence = 0;
+        for (ContactsRecord contactsRecord : contactsRecords) {
+            sequence = Math.max(sequence, add(contactsRecord));
+        }
+        awaitLogged(sequence);
+    }
+
+    /**
+     * @return Sequence number of journal entry or 0 if journal isn't attached.
+     */
+    private long add(ContactsRecord contactsRecord) {
+        long id = nextID.getAndIncrement();
+        contactsRecord.setID(id);
+        Stripe stripe = stripe(id);
+        long sequence = 0;
+        long stamp = stripe.lock.writeLock();
+        try {
+            stripe.records.restoreRecord(contactsRecord);
+            size.incrementAndGet();
+            modificationCount.incrementAndGet();
+            changeLog().added(contactsRecord);
+            Journal journal = this.journal;
+            if (journal != null) {
+                sequence = journal.logAdd(contactsRecord);
+            }
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+        return sequence;
+    }
+
+    @Override
+    public void deleteRecord(ContactsRecord contactsRecord) {
+        long startTime = Metrics.startTimer();
+        Stripe stripe = stripe(contactsRecord.getID());
+        long sequence = 0;
+        long stamp = stripe.lock.writeLock();
+        try {
+            ContactsRecord stored = stripe.records.getRecordByID(contactsRecord.getID());
+            if (stored == null) {
+                return;
+            }
+            stripe.records.delete(stored);
+            size.decrementAndGet();
+            modificationCount.incrementAndGet();
+            changeLog().deleted(stored);
+            Journal journal = this.journal;
+            if (journal != null) {
+                sequence = journal.logDelete(stored.getID());
+            }
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+        awaitLogged(sequence);
+        Metrics.DELETE_RECORD.recordSince(startTime);
+    }
+
+    /**
+     * Edits all fields under one write lock of the stripe, so readers see either none or all of the changes.
+     */
+    @Override
+    public void editFieldsByName(ContactsRecord contactsRecord, Map<String, String> values)
+            throws WrongFieldNameException {
+        Stripe stripe = stripe(contactsRecord.getID());
+        long sequence = 0;
+        long stamp = stripe.lock.writeLock();
+        try {
+            boolean stored = stripe.records.getRecordByID(contactsRecord.getID()) == contactsRecord;
+            LocalDateTime oldTime = contactsRecord.getTimeEdited();
+            stripe.records.editFieldsByName(contactsRecord, values);
+            if (stored && !values.isEmpty()) {
+                modificationCount.incrementAndGet();
+                changeLog().edited(contactsRecord, oldTime);
+                Journal journal = this.journal;
+                if (journal != null) {
+                    sequence = journal.logUpdate(contactsRecord);
+                }
+            }
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+        awaitLogged(sequence);
+    }
+
+    /**
+     * Copies record under read lock of its stripe, so the copy isn't torn by concurrent editing
+     * and may be read after lock is released.
+     *
+     * @return Detached record with the same fields, times and ID.
+     */
+    public ContactsRecord copyOf(ContactsRecord contactsRecord) {
+        Stripe stripe = stripe(contactsRecord.getID());
+        long stamp = stripe.lock.readLock();
+        try {
+            return RecordVersions.copy(contactsRecord);
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Copies records like {@link #copyOf}, each under read lock of its own stripe.
+     */
+    public List<ContactsRecord> copyOf(List<ContactsRecord> contactsRecords) {
+        List<ContactsRecord> copies = new ArrayList<>(contactsRecords.size());
+        for (ContactsRecord contactsRecord : contactsRecords) {
+            copies.add(copyOf(contactsRecord));
+        }
+        return copies;
+    }
+
+    @Override
+    public int getNumberOfRecords() {
+        return size.get();
+    }
+
+    /**
+     * Looks record up without locking, if the stripe isn't changed during lookup,
+     * otherwise repeats lookup under read lock.
+     */
+    @Override
+    public ContactsRecord getRecordByID(long ID) {
+        Stripe stripe = stripe(ID);
+        long stamp = stripe.lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                ContactsRecord record = stripe.records.getRecordByID(ID);
+                if (stripe.lock.validate(stamp)) {
+                    return record;
+                }
+            } catch (RuntimeException e) {
+                // stripe was changed during lookup, so state read may be inconsistent
+            }
+        }
+        stamp = stripe.lock.readLock();
+        try {
+            return stripe.records.getRecordByID(ID);
+        } finally {
+            stripe.lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Position of the record is found by merging stripes, so access by position takes linear time.
+     * Records should be accessed by ID instead, when possible.
+     */
+    @Override
+    public ContactsRecord getRecordAt(int position) {
+        return toList().get(position);
+    }
+
+    /**
+     * Copies all records once and returns the page of the copy, which takes linear time like {@link #getRecordAt}.
+     */
+    @Override
+    public List<ContactsRecord> getRecords(int from, int count) {
+        if (from < 0 || count < 0) {
+            throw new IndexOutOfBoundsException("Page from " + from + " of size " + count);
+        }
+        List<ContactsRecord> all = toList();
+        int to = (int) Math.min(all.size(), (long) from + count);
+        return from < to ? new ArrayList<>(all.subList(from, to)) : new ArrayList<>();
+    }
+
+    /**
+     * Iterates copy of records, so phone book may be changed by other threads meanwhile.
+     */
+    @Override
+    public Iterator<ContactsRecord> iterator() {
+        return Collections.unmodifiableList(toList()).iterator();
+    }
+
+    @Override
+    public Spliterator<ContactsRecord> spliterator() {
+        return Collections.unmodifiableList(toList()).spliterator();
+    }
+
+    /**
+     * Searches all stripes at once, so results are iterated over copy and phone book may be changed meanwhile.
+     */
+    @Override
+    public Iterator<ContactsRecord> searchIterator(String query) {
+        return Collections.unmodifiableList(search(query)).iterator();
+    }
+
+    /**
+     * Holds read locks of all stripes, so found changes and records are in state of one moment.
+     */
+    @Override
+    public List<RecordChange> changesSince(long sequence) {
+        long[] stamps = readLockAll();
+        try {
+            return changeLog().since(sequence, id -> stripe(id).records.getRecordByID(id));
+        } finally {
+            unlockReadAll(stamps);
+        }
+    }
+
+    /**
+     * Holds read locks of all stripes, so found changes and records are in state of one moment.
+     */
+    @Override
+    public List<RecordChange> changesSince(LocalDateTime time) {
+        long[] stamps = readLockAll();
+        try {
+            return changeLog().since(time,
+                    () -> Arrays.stream(stripes).flatMap(stripe -> stripe.records.stream()).iterator(),
+                    id -> stripe(id).records.getRecordByID(id));
+        } finally {
+            unlockReadAll(stamps);
+        }
+    }
+
+    @Override
+    void restoreRecord(ContactsRecord contactsRecord) {
+        if (contactsRecord.getID() == 0) {
+            contactsRecord.setID(nextID.getAndIncrement());
+        }
+        reserveIDs(contactsRecord.getID() + 1);
+        Stripe stripe = stripe(contactsRecord.getID());
+        long stamp = stripe.lock.writeLock();
+        try {
+            ContactsRecord oldRecord = stripe.records.getRecordByID(contactsRecord.getID());
+            if (oldRecord == null) {
+                size.incrementAndGet();
+            }
+            stripe.records.restoreRecord(contactsRecord);
+            modificationCount.incrementAndGet();
+            changeLog().restored(oldRecord, contactsRecord);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    void replaceRecord(ContactsRecord contactsRecord) {
+        Stripe stripe = stripe(contactsRecord.getID());
+        long stamp = stripe.lock.writeLock();
+        try {
+            ContactsRecord oldRecord = stripe.records.getRecordByID(contactsRecord.getID());
+            stripe.records.replaceRecord(contactsRecord);
+            modificationCount.incrementAndGet();
+            if (oldRecord != null) {
+                changeLog().restored(oldRecord, contactsRecord);
+            }
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    void deleteRestored(ContactsRecord contactsRecord) {
+        Stripe stripe = stripe(contactsRecord.getID());
+        long stamp = stripe.lock.writeLock();
+        try {
+            ContactsRecord stored = stripe.records.getRecordByID(contactsRecord.getID());
+            if (stored == null) {
+                return;
+            }
+            stripe.records.deleteRestored(stored);
+            size.decrementAndGet();
+            modificationCount.incrementAndGet();
+            changeLog().restored(stored, null);
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    void reserveIDs(long nextID) {
+        this.nextID.accumulateAndGet(nextID, Math::max);
+    }
+
+    @Override
+    long getNextID() {
+        return nextID.get();
+    }
+
+    /**
+     * Copies stripes one by one, so copy isn't atomic snapshot of the whole phone book,
+     * but every record in it is in state it had at some moment.
+     */
+    @Override
+    List<ContactsRecord> toList() {
+        List<ContactsRecord> result = new ArrayList<>(size.get());
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.readLock();
+            try {
+                result.addAll(stripe.records.toList());
+            } finally {
+                stripe.lock.unlockRead(stamp);
+            }
+        }
+        result.sort(Comparator.comparingLong(ContactsRecord::getID));
+        return result;
+    }
+
+    /**
+     * Holds read locks of all stripes while their records are copied, so snapshot is taken at one moment
+     * for the whole phone book. Records of stripes follow each other without sorting.
+     */
+    @Override
+    List<ContactsRecord> snapshot(RecordVersions versions) {
+        List<ContactsRecord> result = new ArrayList<>(size.get());
+        long[] stamps = readLockAll();
+        try {
+            for (Stripe stripe : stripes) {
+                result.addAll(stripe.records.snapshot(versions));
+            }
+        } finally {
+            unlockReadAll(stamps);
+        }
+        return result;
+    }
+
+    @Override
+    void endSnapshot(RecordVersions versions) {
+        for (Stripe stripe : stripes) {
+            stripe.records.endSnapshot(versions);
+        }
+    }
+
+    @Override
+    long modificationCount() {
+        return modificationCount.get();
+    }
+
+    @Override
+    void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Stripes keep records in memory, so only records written to journal should be of types it supports.
+     */
+    @Override
+    void checkStorable(List<? extends ContactsRecord> contactsRecords) {
+        if (journal == null) {
+            return;
+        }
+        for (ContactsRecord contactsRecord : contactsRecords) {
+            BinaryFormat.checkStorable(contactsRecord);
+        }
+    }
+
+    private long[] readLockAll() {
+        long[] stamps = new long[stripes.length];
+        for (int i = 0; i < stripes.length; i++) {
+            stamps[i] = stripes[i].lock.readLock();
+        }
+        return stamps;
+    }
+
+    private void unlockReadAll(long[] stamps) {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i].lock.unlockRead(stamps[i]);
+        }
+    }
+
+    private void awaitLogged(long sequence) {
+        Journal journal = this.journal;
+        if (sequence > 0 && journal != null) {
+            journal.awaitLogged(sequence);
+        }
+    }
+
+    /**
+     * IDs are assigned sequentially, so lowest bits of ID spread records evenly among stripes.
+     */
+    private Stripe stripe(long id) {
+        return stripes[(int) id & mask];
+    }
+
+    /**
+     * Java serialization stores phone book in the same form as {@link Contacts}.
+     */
+    private Object writeReplace() {
+        Contacts copy = new Contacts();
+        for (ContactsRecord contactsRecord : toList()) {
+            copy.restoreRecord(contactsRecord);
+        }
+        copy.reserveIDs(getNextID());
+        return copy;
+    }
+
+    private static int defaultStripeCount() {
+        return Runtime.getRuntime().availableProcessors() * 4;
+    }
+
+    private static class Stripe {
+        final StampedLock lock = new StampedLock();
+        final Contacts records = new Contacts();
+
+        Stripe() {
+            records.setChangeLog(null);
+            records.buildSearchIndex();
+        }
+    }
+}
@@ -1,59 +1,949 @@
 package contacts.model;
 
+import contacts.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
-import java.util.regex.Matcher;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 
 /**
- * Provides storage for contact records
+ * Provides storage for contact records. <br>
+ * Each record added to phone book gets ID, which never changes and isn't reused,
+ * records are ordered in phone book by time of adding.
  */
-public class Contacts implements Serializable {
+public class Contacts implements Serializable, Iterable<ContactsRecord> {
     private static final long serialVersionUID = 1L;
 
-    List<ContactsRecord> contactsList = new ArrayList<>();
+    /**
+     * Number of records to match, starting from which search is parallel, if other threshold isn't set.
+     */
+    public static final int DEFAULT_PARALLEL_SEARCH_THRESHOLD = 50_000;
+
+    /**
+     * Number of queries, which compiled patterns and results are kept in search caches, if other capacity isn't set.
+     */
+    public static final int DEFAULT_SEARCH_CACHE_CAPACITY = 64;
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("contactsList", List.class)
+    };
+
+    private transient RecordStore records;
+    private transient long nextID = 1;
+    private transient TrigramIndex searchIndex;
+    private transient FieldIndex fieldIndex;
+    private transient NumberIndex numberIndex;
+    private transient FuzzyIndex fuzzyIndex;
+    private transient int parallelSearchThreshold = DEFAULT_PARALLEL_SEARCH_THRESHOLD;
+    private transient QueryCache queryCache = new QueryCache(DEFAULT_SEARCH_CACHE_CAPACITY);
+    private transient long modificationCount;
+    private transient Journal journal;
+    private transient ChangeLog changeLog = new ChangeLog();
+    private transient volatile RecordVersions versions;
+    transient long journalGeneration;
+
+    /**
+     * Constructs empty phone book stored in memory.
+     */
+    public Contacts() {
+        records = new MemoryRecordStore();
+    }
+
+    /**
+     * Constructs empty phone book keeping fields of records in arrays instead of record objects,
+     * which takes several times less memory for large phone books. <br>
+     * Records returned by such phone book are views of the arrays: they are created on every access,
+     * so the same record may be returned as different objects, and they don't cache searchable strings,
+     * so search without fragments of plain text in query is slower.
+     * Added records are copied into arrays, so records should be edited after they are got from phone book.
+     * Times of records are stored with millisecond precision.
+     *
+     * @return Empty columnar phone book.
+     */
+    public static Contacts columnar() {
+        return new Contacts(new ColumnarRecordStore(), 1);
+    }
+
+    /**
+     * Constructs phone book backed by provided store, for example store of records from memory-mapped file.
+     *
+     * @param records Store with records of phone book.
+     * @param nextID  ID to be assigned to the next added record.
+     */
+    Contacts(RecordStore records, long nextID) {
+        this.records = records;
+        this.nextID = nextID;
+    }
 
     /**
      * Searches query in each field of every record in phone book and returns list of records or empty list
      * if there's no records suitable for query. <br>
      * Search is case insensitive.
      * Query can contain regular expression or text.
+     * Fragments of plain text from query are looked up in trigram index first,
+     * so only records containing all of them are matched against the query.
+     * Index is built on the first search, which requires access to every record of phone book.
+     * If number of records to match reaches parallel search threshold, they are matched on fork-join pool.
+     * Compiled patterns of recent queries are cached, as well as their results,
+     * which are returned without search until phone book is changed.
      *
      * @param query Query to search.
-     * @return List of records corresponding query ordered the same way as in the phone book.
+     * @return Unmodifiable list of records corresponding query ordered the same way as in the phone book.
      */
     public List<ContactsRecord> search(String query) {
-        Pattern pattern = Pattern.compile(query.toLowerCase());
-        return contactsList.stream()
-                .filter(record -> {
-                    Matcher matcher = pattern.matcher(record.toSearchableString());
-                    return matcher.find();
-                })
-                .collect(Collectors.toList());
+        long startTime = Metrics.startTimer();
+        try {
+            long modificationCount = modificationCount();
+            List<ContactsRecord> result = queryCache.result(query, modificationCount);
+            if (result == null) {
+                result = queryCache.putResult(query, modificationCount, search(queryCache.pattern(query)));
+            }
+            return result;
+        } finally {
+            Metrics.SEARCH.recordSince(startTime);
+        }
+    }
+
+    /**
+     * Searches query the same way as {@link #search(String)}, but matches records only when next result is requested,
+     * so showing the first results of large search takes time proportional to their number.
+     * If result of the query is cached, it's returned without search,
+     * otherwise result is cached once it's iterated to the end.
+     * Phone book shouldn't be changed while results are iterated. <br>
+     * Search is measured until the first record is found or it's known that nothing is found,
+     * i.e. until results start to be shown.
+     *
+     * @param query Query to search.
+     * @return Iterator over records corresponding query in phone book order.
+     */
+    public Iterator<ContactsRecord> searchIterator(String query) {
+        long startTime = Metrics.startTimer();
+        long modificationCount = modificationCount();
+        List<ContactsRecord> result = queryCache.result(query, modificationCount);
+        if (result != null) {
+            Metrics.SEARCH.recordSince(startTime);
+            return result.iterator();
+        }
+        Pattern pattern = queryCache.pattern(query);
+        int[] candidates = searchIndex().candidates(RegexLiterals.requiredLiterals(pattern.pattern()));
+        Metrics.RECORDS_SCANNED.add(candidates == null ? records.size() : candidates.length);
+        Iterator<ContactsRecord> found = candidates == null
+                ? SearchTask.matching(pattern, records.iterator())
+                : SearchTask.matching(pattern, byID(candidates));
+        return queryCache.putResultWhenIterated(query, modificationCount, measuredUntilFirst(found, startTime));
+    }
+
+    /**
+     * Records duration of search since start time, when the first record is found or iterator turns out empty.
+     */
+    private static Iterator<ContactsRecord> measuredUntilFirst(Iterator<ContactsRecord> found, long startTime) {
+        if (startTime == 0) {
+            return found;
+        }
+        return new Iterator<>() {
+            private boolean measured;
+
+            @Override
+            public boolean hasNext() {
+                boolean hasNext = found.hasNext();
+                if (!measured) {
+                    measured = true;
+                    Metrics.SEARCH.recordSince(startTime);
+                }
+                return hasNext;
+            }
+
+            @Override
+            public ContactsRecord next() {
+                hasNext();
+                return found.next();
+            }
+        };
+    }
+
+    /**
+     * Iterates records in phone book order without copying them. Phone book shouldn't be changed while iterating.
+     *
+     * @return Iterator over records, which doesn't support removal.
+     */
+    @Override
+    public Iterator<ContactsRecord> iterator() {
+        Iterator<ContactsRecord> iterator = records.iterator();
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public ContactsRecord next() {
+                return iterator.next();
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<ContactsRecord> spliterator() {
+        return Spliterators.spliterator(iterator(), getNumberOfRecords(),
+                Spliterator.ORDERED | Spliterator.NONNULL);
+    }
+
+    /**
+     * @return Sequential stream of records in phone book order, which are read only when stream is consumed.
+     */
+    public Stream<ContactsRecord> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Provides page of records by their positions, so only records of the page are read.
+     *
+     * @param from  Position of the first record. Should be greater than or equals to 0.
+     * @param count Maximum number of records.
+     * @return Records at positions from provided one, fewer than requested at the end of phone book.
+     */
+    public List<ContactsRecord> getRecords(int from, int count) {
+        if (from < 0 || count < 0) {
+            throw new IndexOutOfBoundsException("Page from " + from + " of size " + count);
+        }
+        int to = (int) Math.min(getNumberOfRecords(), (long) from + count);
+        List<ContactsRecord> page = new ArrayList<>(Math.max(0, to - from));
+        for (int position = from; position < to; position++) {
+            page.add(records.getAt(position));
+        }
+        return page;
+    }
+
+    /**
+     * Searches records matching pattern compiled from lowercased query.
+     */
+    List<ContactsRecord> search(Pattern pattern) {
+        TrigramIndex searchIndex = searchIndex();
+        int[] candidates = searchIndex.candidates(RegexLiterals.requiredLiterals(pattern.pattern()));
+        Metrics.RECORDS_SCANNED.add(candidates == null ? records.size() : candidates.length);
+        if (candidates == null) {
+            if (records.size() < parallelSearchThreshold || !records.isResident()) {
+                return SearchTask.match(pattern, records);
+            }
+            return SearchTask.search(pattern, records.toList());
+        }
+        List<ContactsRecord> candidateRecords = records.getByIDs(candidates);
+        if (candidateRecords.size() < parallelSearchThreshold) {
+            return SearchTask.match(pattern, candidateRecords);
+        }
+        return SearchTask.search(pattern, candidateRecords);
+    }
+
+    /**
+     * Searches records by value of single field, for example birth dates within range or names starting with prefix.
+     * Values are looked up in sorted index of the field, which is built on the first field search.
+     * Records, which don't have the field, aren't found.
+     *
+     * @param field     Name of the field, one of names of accessible fields of records.
+     * @param predicate Condition on value of the field. {@link FieldQuery} is looked up in logarithmic time,
+     *                  other predicates are tested on every distinct lowercased value of the field.
+     * @return List of found records ordered the same way as in the phone book.
+     * @throws WrongFieldNameException Thrown when records don't have field with such name.
+     */
+    public List<ContactsRecord> search(String field, Predicate<String> predicate) throws WrongFieldNameException {
+        return toRecords(fieldIndex().find(field, predicate));
+    }
+
+    /**
+     * Searches text in fields of records and returns only the best matching records, for example to suggest
+     * contacts while user types. <br>
+     * Search is case insensitive, query is plain text. Records are ranked by their best matching field:
+     * exact match of whole value ranks higher than match of its beginning, which ranks higher than match inside it,
+     * and for the same kind of match name and surname rank higher than number, which ranks higher than other fields.
+     * Records with the same rank are ordered the same way as in the phone book. <br>
+     * Records with exactly matching name or surname are looked up in field index first,
+     * and if there's enough of them, other records aren't matched at all.
+     * Otherwise records containing query are found in trigram index and the best of them are kept in bounded heap.
+     *
+     * @param query Text to search.
+     * @param limit Maximum number of records to return.
+     * @return The best matching records, the best first, or empty list if no record contains query.
+     */
+    public List<ContactsRecord> searchRanked(String query, int limit) {
+        RankedSearch ranking = new RankedSearch(query, limit);
+        rank(ranking);
+        return ranking.result();
+    }
+
+    /**
+     * Offers records of phone book containing query to ranking in order of IDs.
+     */
+    void rank(RankedSearch ranking) {
+        String query = ranking.getQuery();
+        for (int id : fieldIndex().findEqual(query, RecordField.NAME, RecordField.SURNAME)) {
+            ContactsRecord contactsRecord = records.getByID(id);
+            if (ranking.score(contactsRecord) == RankedSearch.PERFECT) {
+                ranking.offer(contactsRecord, RankedSearch.PERFECT);
+            }
+        }
+        if (ranking.isComplete()) {
+            return;
+        }
+        int[] candidates = searchIndex().candidates(List.of(query));
+        Iterator<ContactsRecord> iterator = candidates == null ? records.iterator() : byID(candidates);
+        while (iterator.hasNext() && !ranking.isComplete()) {
+            ContactsRecord contactsRecord = iterator.next();
+            if (contactsRecord == null) {
+                continue;
+            }
+            int score = ranking.score(contactsRecord);
+            if (score > 0 && score < RankedSearch.PERFECT) {
+                ranking.offer(contactsRecord, score);
+            }
+        }
+    }
+
+    /**
+     * Searches names and surnames, which may be misspelled in query or in phone book, for example "Jonson" finds
+     * "Johnson". Query is split into words, and record is found if every word is within edit distance
+     * (number of inserted, deleted or replaced characters) from some word of name or surname of the record.
+     * Search is case insensitive. <br>
+     * Words are looked up in BK-tree of distinct words of names and surnames, which is built on the first fuzzy search,
+     * so only small part of words is compared with query and records aren't scanned.
+     *
+     * @param query       Words to search.
+     * @param maxDistance Maximum edit distance for every word, usually 1 or 2.
+     * @return Found records, the closest first, records with the same sum of distances in phone book order.
+     */
+    public List<ContactsRecord> searchFuzzy(String query, int maxDistance) {
+        long startTime = Metrics.startTimer();
+        try {
+            FuzzySearch search = new FuzzySearch(query, maxDistance);
+            searchFuzzy(search);
+            return search.result();
+        } finally {
+            Metrics.SEARCH.recordSince(startTime);
+        }
+    }
+
+    /**
+     * Looks fuzzy search up in this phone book and adds found records to the search.
+     */
+    void searchFuzzy(FuzzySearch search) {
+        search.collect(fuzzyIndex(), records);
+    }
+
+    /**
+     * Finds owners of phone number, for example to identify incoming call.
+     * Numbers are compared in canonical form, so formatting doesn't matter.
+     * Numbers are looked up in digit trie, which is built on the first lookup,
+     * so lookup time doesn't depend on size of phone book.
+     *
+     * @param number Phone number in any format.
+     * @return Unmodifiable list of records with the same number ordered the same way as in the phone book.
+     * @see ContactsRecord#getNormalizedNumber()
+     */
+    public List<ContactsRecord> findByNumber(String number) {
+        String digits = NumberIndex.normalize(number);
+        return digits == null ? List.of() : Collections.unmodifiableList(toRecords(numberIndex().exact(digits)));
+    }
+
+    /**
+     * Finds records, which number is the longest prefix of provided number among numbers of all records.
+     * For example, if there's no record with number of caller, record of organization, which number is beginning
+     * of the caller number, is found.
+     *
+     * @param number Phone number in any format.
+     * @return Unmodifiable list of records with the longest matching number ordered the same way as in the phone book.
+     * @see #findByNumber(String)
+     */
+    public List<ContactsRecord> findByNumberPrefix(String number) {
+        String digits = NumberIndex.normalize(number);
+        return digits == null ? List.of()
+                : Collections.unmodifiableList(toRecords(numberIndex().longestPrefix(digits)));
+    }
+
+    /**
+     * @return Sequence number of the last change of phone book or 0 if it wasn't changed since it was opened.
+     */
+    public long getChangeSequence() {
+        return changeLog.getSequence();
+    }
+
+    /**
+     * Finds records added, edited or deleted after change with provided sequence number, so client keeping
+     * copy of phone book gets only changes it hasn't seen. Only the last change of every record is returned,
+     * added and edited records are in their current state, deleted records are tombstones without record.
+     * Changes are looked up by binary search in log ordered by sequence numbers in logarithmic time
+     * plus number of changes made since. Changes made since phone book was opened are kept,
+     * the oldest of them are dropped when their number exceeds capacity of change log.
+     *
+     * @param sequence Sequence number of the last change seen by client or 0 for all changes since phone book
+     *                 was opened.
+     * @return Changes in order of sequence numbers. Record added after the sequence number is reported as added.
+     * @throws IllegalArgumentException Thrown when some changes after the sequence number aren't kept any more,
+     *                                  so client should read the whole phone book again.
+     */
+    public List<RecordChange> changesSince(long sequence) {
+        return changeLog.since(sequence, records::getByID);
+    }
+
+    /**
+     * Finds records, which were added or edited after provided time, and records deleted after it.
+     * Records are looked up in index of times of their last editing, which is built on the first query by time,
+     * in logarithmic time plus number of found records. Only records deleted since phone book was opened
+     * are found, while their tombstones are kept in change log. Changes of records not changed since phone book
+     * was opened have sequence number 0. Record created after the time is reported as added.
+     *
+     * @param time Time of the last change seen by client.
+     * @return Changes in order of time, changes at the same time in order of IDs.
+     * @throws IllegalArgumentException Thrown when record deleted after the time may be dropped from change log,
+     *                                  so client should read the whole phone book again.
+     */
+    public List<RecordChange> changesSince(LocalDateTime time) {
+        return changeLog.since(time, records, records::getByID);
+    }
+
+    /**
+     * Subscribes listener to changes made after this call. Changes are delivered in batches on separate thread,
+     * so listener doesn't slow down changes of phone book. Changes carry copies of records,
+     * and only the last change of record is delivered, if record is changed again before delivery.
+     *
+     * @param listener Listener to add.
+     */
+    public void addChangeListener(ChangeListener listener) {
+        changeLog.addListener(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        changeLog.removeListener(listener);
+    }
+
+    /**
+     * Sets number of changes kept for {@link #changesSince(long)}, the oldest changes are dropped.
+     *
+     * @param capacity Number of changes, 262144 unless set.
+     */
+    public void setChangeLogCapacity(int capacity) {
+        changeLog.setCapacity(capacity);
+    }
+
+    /**
+     * Sets number of recent queries, which compiled patterns and results are cached. Cached queries are dropped.
+     *
+     * @param capacity Number of queries, 0 disables caching.
+     */
+    public void setSearchCacheCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity should be non negative: " + capacity);
+        }
+        queryCache = new QueryCache(capacity);
+    }
+
+    /**
+     * @return Numbers of hits and misses of search caches since phone book was created.
+     */
+    public SearchCacheStatistics getSearchCacheStatistics() {
+        return queryCache.statistics();
+    }
+
+    /**
+     * Sets number of records to match, starting from which search splits them into chunks
+     * matched in parallel on common fork-join pool. Smaller searches run on calling thread.
+     *
+     * @param parallelSearchThreshold Number of records, 0 to always search in parallel
+     *                                or {@link Integer#MAX_VALUE} to never search in parallel.
+     */
+    public void setParallelSearchThreshold(int parallelSearchThreshold) {
+        if (parallelSearchThreshold < 0) {
+            throw new IllegalArgumentException("Threshold should be non negative: " + parallelSearchThreshold);
+        }
+        this.parallelSearchThreshold = parallelSearchThreshold;
     }
 
+    /**
+     * Adds record to the end of phone book and assigns new ID to it.
+     *
+     * @param contactsRecord Record to add.
+     */
     public void addRecord(ContactsRecord contactsRecord) {
-        contactsList.add(contactsRecord);
+        long startTime = Metrics.startTimer();
+        addRecords(List.of(contactsRecord));
+        Metrics.ADD_RECORD.recordSince(startTime);
+    }
+
+    /**
+     * Adds records to the end of phone book in order of the list and assigns new IDs to them.
+     * Records are written to journal together, so adding many records at once waits for drive only once.
+     *
+     * @param contactsRecords Records to add.
+     * @throws IllegalArgumentException Thrown when phone book is stored in file or changes are written to journal,
+     *                                  and some record is of type, which can't be stored. No record is added then.
+     */
+    public void addRecords(List<? extends ContactsRecord> contactsRecords) {
+        checkStorable(contactsRecords);
+        long sequence = 0;
+        for (ContactsRecord contactsRecord : contactsRecords) {
+            contactsRecord.setID(nextID++);
+            ContactsRecord stored = records.add(contactsRecord);
+            modificationCount++;
+            if (searchIndex != null) {
+                searchIndex.add(contactsRecord);
+            }
+            if (fieldIndex != null) {
+                fieldIndex.add(contactsRecord);
+            }
+            if (numberIndex != null) {
+                numberIndex.add(contactsRecord);
+            }
+            if (fuzzyIndex != null) {
+                fuzzyIndex.add(contactsRecord);
+            }
+            if (changeLog != null) {
+                changeLog.added(stored);
+            }
+            if (journal != null) {
+                sequence = journal.logAdd(contactsRecord);
+            }
+        }
+        if (journal != null && sequence > 0) {
+            journal.awaitLogged(sequence);
+        }
     }
 
+    /**
+     * Deletes record from phone book. Takes constant time regardless of position of the record.
+     *
+     * @param contactsRecord Record to delete. Does nothing if record isn't stored in phone book.
+     */
     public void deleteRecord(ContactsRecord contactsRecord) {
-        contactsList.remove(contactsRecord);
+        long startTime = Metrics.startTimer();
+        delete(contactsRecord);
+        Metrics.DELETE_RECORD.recordSince(startTime);
+    }
+
+    /**
+     * Deletes record the same way as {@link #deleteRecord}, but without recording metrics,
+     * so deletion from stripe of {@link ConcurrentContacts} isn't recorded twice.
+     */
+    void delete(ContactsRecord contactsRecord) {
+        ContactsRecord deleted = removeRecord(contactsRecord.getID());
+        if (deleted == null) {
+            return;
+        }
+        if (changeLog != null) {
+            changeLog.deleted(deleted);
+        }
+        if (journal != null) {
+            journal.awaitLogged(journal.logDelete(deleted.getID()));
+        }
+    }
+
+    /**
+     * Deletes record, which deletion is restored from journal, so it isn't reported as change.
+     */
+    void deleteRestored(ContactsRecord contactsRecord) {
+        ContactsRecord deleted = removeRecord(contactsRecord.getID());
+        if (deleted != null && changeLog != null) {
+            changeLog.restored(deleted, null);
+        }
+    }
+
+    /**
+     * Removes record from store and indexes.
+     *
+     * @return Removed record or null if there's no record with such ID.
+     */
+    private ContactsRecord removeRecord(long id) {
+        ContactsRecord deleted = records.remove(id);
+        if (deleted == null) {
+            return null;
+        }
+        modificationCount++;
+        if (searchIndex != null) {
+            searchIndex.remove(deleted);
+        }
+        if (fieldIndex != null) {
+            fieldIndex.remove(deleted);
+        }
+        if (numberIndex != null) {
+            numberIndex.remove(deleted);
+        }
+        if (fuzzyIndex != null) {
+            fuzzyIndex.remove(deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * Edits field of the record stored in phone book and updates time of its last editing.
+     * Records from phone book should be edited only this way to keep search index up to date.
+     * If record is detached copy of stored record, e.g. returned by iteration of phone book, which isn't kept
+     * in memory, the field is edited in both of them, so the stored record keeps changes made since copy was taken.
+     *
+     * @param contactsRecord Record to edit.
+     * @param fieldName      Name of the field to be edited.
+     * @param newValue       Value, with which field be replaced if present.
+     * @throws WrongFieldNameException Thrown when record doesn't have field with such name.
+     */
+    public void editFieldByName(ContactsRecord contactsRecord, String fieldName, String newValue)
+            throws WrongFieldNameException {
+        editFieldsByName(contactsRecord, Collections.singletonMap(fieldName, newValue));
+    }
+
+    /**
+     * Edits several fields of the record at once like {@link #editFieldByName}, so the change is seen,
+     * reported to change log and journaled as one update. <br>
+     * All field names are checked before any field is changed, so values with wrong name change nothing.
+     *
+     * @param contactsRecord Record to edit.
+     * @param values         New values of fields by their names.
+     * @throws WrongFieldNameException Thrown when record doesn't have field with some of the names.
+     */
+    public void editFieldsByName(ContactsRecord contactsRecord, Map<String, String> values)
+            throws WrongFieldNameException {
+        RecordSchema<?> schema = contactsRecord.getSchema();
+        FieldDescriptor<?>[] fields = new FieldDescriptor<?>[values.size()];
+        String[] newValues = new String[fields.length];
+        int count = 0;
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            FieldDescriptor<?> field = schema.getField(entry.getKey());
+            if (field == null) {
+                throw new WrongFieldNameException("There's no such field to edit: " + entry.getKey());
+            }
+            fields[count] = field;
+            newValues[count++] = entry.getValue();
+        }
+        if (count == 0) {
+            return;
+        }
+        ContactsRecord storedRecord = records.storedRecord(contactsRecord);
+        if (storedRecord != null && storedRecord != contactsRecord) {
+            setValues(contactsRecord, fields, newValues);
+            contactsRecord = storedRecord;
+        }
+        String oldText = contactsRecord.toSearchableString();
+        String[] oldValues = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            oldValues[i] = fields[i].getValue(contactsRecord);
+        }
+        String oldNumber = contactsRecord.getNumber();
+        LocalDateTime oldTime = contactsRecord.getTimeEdited();
+        RecordVersions versions = this.versions;
+        if (versions != null) {
+            versions.beforeChange(contactsRecord);
+        }
+        setValues(contactsRecord, fields, newValues);
+        if (storedRecord == null) {
+            return;
+        }
+        records.changed(contactsRecord);
+        modificationCount++;
+        if (searchIndex != null) {
+            searchIndex.update(contactsRecord, oldText);
+        }
+        if (numberIndex != null) {
+            numberIndex.update(contactsRecord, oldNumber);
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (fieldIndex != null) {
+                fieldIndex.update(contactsRecord, fields[i], oldValues[i]);
+            }
+            if (fuzzyIndex != null) {
+                fuzzyIndex.update(contactsRecord, fields[i], oldValues[i]);
+            }
+        }
+        if (changeLog != null) {
+            changeLog.edited(contactsRecord, oldTime);
+        }
+        if (journal != null) {
+            journal.awaitLogged(journal.logUpdate(contactsRecord));
+        }
+    }
+
+    private static void setValues(ContactsRecord contactsRecord, FieldDescriptor<?>[] fields, String[] values) {
+        for (int i = 0; i < fields.length; i++) {
+            fields[i].setValue(contactsRecord, values[i]);
+        }
+        contactsRecord.updateTimeEdited();
     }
 
     public int getNumberOfRecords() {
-        return contactsList.size();
+        return records.size();
+    }
+
+    /**
+     * Provides access to record by it's ID.
+     *
+     * @param ID ID of record assigned when it was added to phone book.
+     * @return Record with provided ID or null if there's no such record in phone book.
+     */
+    public ContactsRecord getRecordByID(long ID) {
+        return records.getByID(ID);
     }
 
     /**
-     * Provides access to record by it's ID, which is index of record in list.
+     * Provides access to record by it's position in phone book.
      *
-     * @param ID ID of record. Should be greater than or equals to 0 and less than number or records in phone book.
-     * @return Record corresponding to provided ID.
+     * @param position Position of record. Should be greater than or equals to 0
+     *                 and less than number or records in phone book.
+     * @return Record at provided position.
+     */
+    public ContactsRecord getRecordAt(int position) {
+        return records.getAt(position);
+    }
+
+    /**
+     * Adds record restored from storage keeping its ID. Record without ID gets new one.
+     * If phone book already contains record with the same ID, it's replaced,
+     * so changes from journal can be applied to snapshot, which already includes some of them.
      */
-    public ContactsRecord getRecordByID(int ID) {
-        return contactsList.get(ID);
+    void restoreRecord(ContactsRecord contactsRecord) {
+        if (contactsRecord.getID() == 0) {
+            contactsRecord.setID(nextID);
+        }
+        reserveIDs(contactsRecord.getID() + 1);
+        if (records.containsID(contactsRecord.getID())) {
+            replaceRecord(contactsRecord);
+            return;
+        }
+        ContactsRecord stored = records.add(contactsRecord);
+        modificationCount++;
+        if (searchIndex != null) {
+            searchIndex.add(contactsRecord);
+        }
+        if (fieldIndex != null) {
+            fieldIndex.add(contactsRecord);
+        }
+        if (numberIndex != null) {
+            numberIndex.add(contactsRecord);
+        }
+        if (fuzzyIndex != null) {
+            fuzzyIndex.add(contactsRecord);
+        }
+        if (changeLog != null) {
+            changeLog.restored(null, stored);
+        }
+    }
+
+    /**
+     * Replaces stored record with record having the same ID. Used to restore edited records from journal.
+     * Replaced record is read only if indexes are built and should forget it.
+     */
+    void replaceRecord(ContactsRecord contactsRecord) {
+        if (searchIndex == null && fieldIndex == null && numberIndex == null && fuzzyIndex == null
+                && (changeLog == null || !changeLog.isTimeIndexed())) {
+            records.overwrite(contactsRecord);
+            modificationCount++;
+            return;
+        }
+        ContactsRecord oldRecord = records.replace(contactsRecord);
+        modificationCount++;
+        if (oldRecord != null && searchIndex != null) {
+            searchIndex.replace(oldRecord, contactsRecord);
+        }
+        if (oldRecord != null && fieldIndex != null) {
+            fieldIndex.replace(oldRecord, contactsRecord);
+        }
+        if (oldRecord != null && numberIndex != null) {
+            numberIndex.replace(oldRecord, contactsRecord);
+        }
+        if (oldRecord != null && fuzzyIndex != null) {
+            fuzzyIndex.replace(oldRecord, contactsRecord);
+        }
+        if (oldRecord != null && changeLog != null) {
+            changeLog.restored(oldRecord, contactsRecord);
+        }
+    }
+
+    /**
+     * Makes sure IDs less than provided one are never assigned to new records.
+     */
+    void reserveIDs(long nextID) {
+        this.nextID = Math.max(this.nextID, nextID);
+    }
+
+    long getNextID() {
+        return nextID;
+    }
+
+    /**
+     * @return Number of changes made to phone book, which is used to find out whether cached search result is stale.
+     */
+    long modificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * @return Copy of records list in phone book order.
+     */
+    List<ContactsRecord> toList() {
+        return records.toList();
+    }
+
+    /**
+     * Takes point-in-time snapshot of records to be written by another thread while phone book is changed.
+     * Only references to records are copied, records edited until {@link #endSnapshot} is called
+     * are copied by the first edit into provided versions. Should be called by thread changing phone book.
+     *
+     * @param versions Versions, which keep original state of records edited after this call.
+     * @return Records, which may be not in order of IDs.
+     */
+    List<ContactsRecord> snapshot(RecordVersions versions) {
+        this.versions = versions;
+        return records.snapshot();
+    }
+
+    /**
+     * Takes snapshot of phone book stored in segment files the same way as {@link #snapshot(RecordVersions)},
+     * but only segments changed since they were written are copied.
+     *
+     * @return Changed segments or null if phone book isn't stored in segment files.
+     */
+    SegmentedRecordStore.ChangedSegments snapshotChangedSegments(RecordVersions versions) {
+        if (!(records instanceof SegmentedRecordStore)) {
+            return null;
+        }
+        this.versions = versions;
+        return ((SegmentedRecordStore) records).snapshotChanged();
+    }
+
+    /**
+     * Stops keeping original versions of edited records, when snapshot is written.
+     */
+    void endSnapshot(RecordVersions versions) {
+        if (this.versions == versions) {
+            this.versions = null;
+        }
+    }
+
+    void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Rejects records of types, which binary format doesn't support, if they would be stored in file
+     * or written to journal, so phone book isn't changed by records, which can't be stored.
+     */
+    void checkStorable(List<? extends ContactsRecord> contactsRecords) {
+        if (journal == null && records.supportsAnyType()) {
+            return;
+        }
+        for (ContactsRecord contactsRecord : contactsRecords) {
+            BinaryFormat.checkStorable(contactsRecord);
+        }
+    }
+
+    /**
+     * @return Change log of phone book or null if changes aren't logged by this phone book,
+     * like by stripe of {@link ConcurrentContacts}, which logs changes of all its stripes.
+     */
+    ChangeLog changeLog() {
+        return changeLog;
+    }
+
+    void setChangeLog(ChangeLog changeLog) {
+        this.changeLog = changeLog;
+    }
+
+    /**
+     * Builds search indexes now instead of the first search,
+     * so following searches don't modify phone book and can be run concurrently.
+     */
+    void buildSearchIndex() {
+        searchIndex();
+        fieldIndex();
+        numberIndex();
+        fuzzyIndex();
+    }
+
+    private TrigramIndex searchIndex() {
+        if (searchIndex == null) {
+            searchIndex = new TrigramIndex();
+            records.forEach(searchIndex::add);
+        }
+        return searchIndex;
+    }
+
+    private NumberIndex numberIndex() {
+        if (numberIndex == null) {
+            numberIndex = new NumberIndex();
+            records.forEach(numberIndex::add);
+        }
+        return numberIndex;
+    }
+
+    private FuzzyIndex fuzzyIndex() {
+        if (fuzzyIndex == null) {
+            fuzzyIndex = new FuzzyIndex();
+            records.forEach(fuzzyIndex::add);
+        }
+        return fuzzyIndex;
+    }
+
+    private List<ContactsRecord> toRecords(int[] ids) {
+        return records.getByIDs(ids);
+    }
+
+    /**
+     * @return Iterator, which gets records by IDs only when they are requested.
+     */
+    private Iterator<ContactsRecord> byID(int[] ids) {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < ids.length;
+            }
+
+            @Override
+            public ContactsRecord next() {
+                if (next == ids.length) {
+                    throw new NoSuchElementException();
+                }
+                return records.getByID(ids[next++]);
+            }
+        };
+    }
+
+    private FieldIndex fieldIndex() {
+        if (fieldIndex == null) {
+            fieldIndex = new FieldIndex();
+            records.forEach(fieldIndex::add);
+        }
+        return fieldIndex;
+    }
+
+    /**
+     * Stores records as list, so phone book is compatible with Java serialization form of older versions.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("contactsList", records.toList());
+        out.writeFields();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        records = new MemoryRecordStore();
+        nextID = 1;
+        parallelSearchThreshold = DEFAULT_PARALLEL_SEARCH_THRESHOLD;
+        queryCache = new QueryCache(DEFAULT_SEARCH_CACHE_CAPACITY);
+        changeLog = new ChangeLog();
+        for (ContactsRecord contactsRecord : (List<ContactsRecord>) fields.get("contactsList", null)) {
+            restoreRecord(contactsRecord);
+        }
     }
-}
\ No newline at end of file
+}
@@ -10,13 +10,20 @@ import java.util.Objects;
  * Abstract class represents record stored in phone book.
  */
 public abstract class ContactsRecord implements Serializable {
+    private static final long serialVersionUID = -26050589694705610L;
 
-    protected final LocalDateTime timeCreated;
+    /**
+     * Value stored instead of invalid input.
+     */
+    public static final String NO_DATA = "[no data]";
+
+    protected LocalDateTime timeCreated;
 
+    private long id;
     protected String name;
     protected String number;
     protected LocalDateTime timeEdited;
-    protected List<String> accessibleFields;
+    private transient String searchableString;
 
     /**
      * Constructs new record with empty fields for further filling.
@@ -27,6 +34,24 @@ public abstract class ContactsRecord implements Serializable {
         timeEdited = timeCreated;
     }
 
+    /**
+     * Constructs record restored from storage with already known time of creating and last editing.
+     *
+     * @param timeCreated Time when record was created.
+     * @param timeEdited  Time when record was edited last time.
+     */
+    ContactsRecord(LocalDateTime timeCreated, LocalDateTime timeEdited) {
+        this.timeCreated = timeCreated;
+        this.timeEdited = timeEdited;
+    }
+
+    /**
+     * Provides description of fields of the record, which is shared by all records of the same type.
+     *
+     * @return Schema of type of the record.
+     */
+    public abstract RecordSchema<?> getSchema();
+
     /**
      * Edits field of record by it's name, replacing it with provided new value.
      * If field doesn't exist throws WrongFieldNameException.
@@ -35,7 +60,9 @@ public abstract class ContactsRecord implements Serializable {
      * @param newValue  Value, with which field be replaced if present.
      * @throws WrongFieldNameException Thrown when record doesn't have field with such name.
      */
-    public abstract void editFieldByName(String fieldName, String newValue) throws WrongFieldNameException;
+    public void editFieldByName(String fieldName, String newValue) throws WrongFieldNameException {
+        field(fieldName, "There's no such field to edit: ").setValue(this, newValue);
+    }
 
     /**
      * Provides access to value of the field by it's name
@@ -44,14 +71,82 @@ public abstract class ContactsRecord implements Serializable {
      * @return value of the field by it's name.
      * @throws WrongFieldNameException Thrown when record doesn't have field with such name.
      */
-    public abstract String getFieldByName(String fieldName) throws WrongFieldNameException;
+    public String getFieldByName(String fieldName) throws WrongFieldNameException {
+        FieldDescriptor<?> field = field(fieldName, "There's no such field to edit: ");
+        return field.getLabel() + ": " + field.getValue(this);
+    }
+
+    /**
+     * Provides raw value of the field by it's name without label.
+     *
+     * @param fieldName Name of the field to be returned.
+     * @return value of the field or null if it isn't set.
+     * @throws WrongFieldNameException Thrown when record doesn't have field with such name.
+     */
+    public String getFieldValue(String fieldName) throws WrongFieldNameException {
+        return field(fieldName, "There's no such field: ").getValue(this);
+    }
+
+    /**
+     * Provides raw value of the field looked up by ordinal.
+     *
+     * @param field Field to be returned.
+     * @return value of the field or null if it isn't set.
+     * @throws WrongFieldNameException Thrown when record doesn't have such field.
+     */
+    public String getFieldValue(RecordField field) throws WrongFieldNameException {
+        FieldDescriptor<?> descriptor = getSchema().getField(field);
+        if (descriptor == null) {
+            throw new WrongFieldNameException("There's no such field: " + field.getName());
+        }
+        return descriptor.getValue(this);
+    }
+
+    /**
+     * @return Values of fields identifying record in lists, for example name and surname of person.
+     */
+    public String getDisplayName() {
+        return getSchema().displayName(this);
+    }
+
+    /**
+     * To support search through all fields provides their values concatenated in one lowercased string.
+     * String is built on first call and cached until any field is changed, so search doesn't allocate it again.
+     *
+     * @return One string representing all fields.
+     */
+    public final String toSearchableString() {
+        String result = searchableString;
+        if (result == null) {
+            result = buildSearchableString();
+            if (cachesSearchableString()) {
+                searchableString = result;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return False if fields of the record may be changed without calling its setters,
+     * for example when record is a view of shared storage, so searchable string shouldn't be cached.
+     */
+    boolean cachesSearchableString() {
+        return true;
+    }
 
     /**
-     * To support search through all fields concatenates their values in one string.
+     * Concatenates values of all fields in one lowercased string.
      *
      * @return One string representing all fields.
      */
-    public abstract String toSearchableString();
+    protected abstract String buildSearchableString();
+
+    /**
+     * Drops cached searchable string. Should be called on each change of any field included into it.
+     */
+    protected void invalidateSearchableString() {
+        searchableString = null;
+    }
 
     /**
      * Supporting access to fields of the record by name provides list of field names.
@@ -59,7 +154,28 @@ public abstract class ContactsRecord implements Serializable {
      * @return List of field names, which can be edited
      */
     public List<String> getAccessibleFields() {
-        return accessibleFields;
+        return getSchema().getFieldNames();
+    }
+
+    /**
+     * Provides ID of the record, which is assigned when record is added to phone book and never changes.
+     *
+     * @return ID of the record or 0 if record wasn't added to phone book.
+     */
+    public long getID() {
+        return id;
+    }
+
+    void setID(long id) {
+        this.id = id;
+    }
+
+    /**
+     * Sets times of record created by factory of its type to copy another record.
+     */
+    void setTimes(LocalDateTime timeCreated, LocalDateTime timeEdited) {
+        this.timeCreated = timeCreated;
+        this.timeEdited = timeEdited;
     }
 
     /**
@@ -70,44 +186,48 @@ public abstract class ContactsRecord implements Serializable {
         timeEdited = LocalDateTime.now();
     }
 
+    private FieldDescriptor<?> field(String fieldName, String message) throws WrongFieldNameException {
+        FieldDescriptor<?> field = getSchema().getField(fieldName);
+        if (field == null) {
+            throw new WrongFieldNameException(message + fieldName);
+        }
+        return field;
+    }
+
     public String getName() {
         return name;
     }
 
     public void setName(String name) {
         this.name = name;
+        invalidateSearchableString();
     }
 
     public String getNumber() {
         return number;
     }
 
+    /**
+     * Provides phone number in canonical form, which doesn't depend on formatting,
+     * for example "+1 (555) 123-4567" and "1-555-123-4567" are both "15551234567".
+     *
+     * @return Digits of phone number, where letters are replaced with digits of phone keypad,
+     * or null if number isn't set.
+     */
+    public String getNormalizedNumber() {
+        return NumberIndex.normalize(getNumber());
+    }
+
     /**
      * Sets phone number of the record.
-     * Phone number should satisfy next rules: <br>
-     * 1. The phone number should be split into groups using a space or dash. One group is also possible. <br>
-     * 2. Before the first group, there may or may not be a plus symbol. <br>
-     * 3. The first group or the second group can be wrapped in parentheses, but there should be no more than one group
-     * which is wrapped in parentheses. There may be no groups wrapped in parentheses. <br>
-     * 4. A group can contain numbers, uppercase, and lowercase English letters. A group should be at least 2 symbols
-     * in length. But the first group may be only one symbol in length. <br>
-     * If phone number is not satisfying provided rules text "[no data]" will be stored instead of provided input.
+     * If phone number doesn't satisfy rules described in {@link FieldValidator#validateNumber(String)}
+     * text "[no data]" will be stored instead of provided input.
      *
      * @param number String representation of the phone number.
      */
     public void setNumber(String number) {
-        String numberFormat = "\\+?((\\w+)|" +
-                "(\\(\\w+\\))|" +
-                "(\\(\\w+\\)[\\s-]\\w{2,})|" +
-                "(\\w+[\\s-](\\(\\w{2,}\\)))|" +
-                "\\w+[\\s-]\\w{2,})" +
-                "([\\s-]\\w{2,})*";
-        if (number.matches(numberFormat)) {
-            this.number = number;
-        } else {
-            System.out.println("Bad number!");
-            this.number = "[no data]";
-        }
+        this.number = FieldValidator.isValidNumber(number) ? number : FieldValidator.rejected(number);
+        invalidateSearchableString();
     }
 
     public LocalDateTime getTimeCreated() {
@@ -123,15 +243,15 @@ public abstract class ContactsRecord implements Serializable {
         if (this == o) return true;
         if (!(o instanceof ContactsRecord)) return false;
         ContactsRecord contactsRecord = (ContactsRecord) o;
-        return Objects.equals(timeCreated, contactsRecord.timeCreated) &&
-                Objects.equals(name, contactsRecord.name) &&
-                Objects.equals(number, contactsRecord.number) &&
-                Objects.equals(timeEdited, contactsRecord.timeEdited) &&
-                Objects.equals(accessibleFields, contactsRecord.accessibleFields);
+        return Objects.equals(getTimeCreated(), contactsRecord.getTimeCreated()) &&
+                Objects.equals(getName(), contactsRecord.getName()) &&
+                Objects.equals(getNumber(), contactsRecord.getNumber()) &&
+                Objects.equals(getTimeEdited(), contactsRecord.getTimeEdited()) &&
+                getSchema() == contactsRecord.getSchema();
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(timeCreated, name, number, timeEdited, accessibleFields);
+        return Objects.hash(getTimeCreated(), getName(), getNumber(), getTimeEdited(), getSchema().getTypeName());
     }
 }
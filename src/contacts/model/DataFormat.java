@@ -0,0 +1,57 @@
+package contacts.model;
+
+import java.util.Locale;
+
+
+/**
+ * Text formats of bulk import and export of records. <br>
+ * Both formats describe record by fields "type" ("person" or "organization"), names of accessible fields of record
+ * and optional "created" and "edited" times in ISO format.
+ */
+public enum DataFormat {
+    /**
+     * Comma separated values with header line naming columns. Values containing commas, quotes or line breaks
+     * are quoted, quotes inside quoted value are doubled.
+     */
+    CSV,
+    /**
+     * JSON Lines: one JSON object with string or null values per line.
+     */
+    JSON_LINES;
+
+    /**
+     * Chooses format by its name in command line: "csv" for CSV or "jsonl" for JSON Lines, case is ignored.
+     *
+     * @param name Name of format.
+     * @return Format with the name.
+     * @throws IllegalArgumentException Thrown when name is not known.
+     */
+    public static DataFormat fromName(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "csv":
+                return CSV;
+            case "jsonl":
+                return JSON_LINES;
+            default:
+                throw new IllegalArgumentException("Unknown format: " + name + ", should be csv or jsonl");
+        }
+    }
+
+    /**
+     * Chooses format by extension of file name: ".csv" for CSV, ".jsonl", ".ndjson" or ".json" for JSON Lines.
+     *
+     * @param fileName Name of file or path to it.
+     * @return Format of the file.
+     * @throws IllegalArgumentException Thrown when extension is not known.
+     */
+    public static DataFormat fromFileName(String fileName) {
+        String lowerCaseName = fileName.toLowerCase(Locale.ROOT);
+        if (lowerCaseName.endsWith(".csv")) {
+            return CSV;
+        }
+        if (lowerCaseName.endsWith(".jsonl") || lowerCaseName.endsWith(".ndjson") || lowerCaseName.endsWith(".json")) {
+            return JSON_LINES;
+        }
+        throw new IllegalArgumentException("Unknown format of file: " + fileName);
+    }
+}
@@ -0,0 +1,128 @@
+package contacts.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Finds records describing the same contact, e.g. imported twice with differently formatted numbers
+ * or with typos in names, and plans their merging. {@link ContactsRecord#equals(Object)} can't find them,
+ * because it compares all fields and times of editing. <br>
+ * Comparing every pair of records takes quadratic time, so records are grouped into blocks
+ * by keys, which duplicates likely share: normalized phone number, Soundex code of surname with the first letter
+ * of name, words of names of organizations. Only records in the same block are compared, pairs of blocks are
+ * scored in parallel, and records, which score is at least threshold, are joined into groups
+ * with their duplicates and with duplicates of their duplicates. <br>
+ * Records are read once at start, so phone book shouldn't be changed while duplicates are searched,
+ * except {@link ConcurrentContacts}, which may be changed by other threads.
+ *
+ * @see MergePlan
+ */
+public class DuplicateFinder {
+
+    /**
+     * Minimal score of duplicates, if other isn't set: e.g. records with the same number and birth date
+     * and one typo in name or surname are duplicates, records differing only by number aren't.
+     */
+    public static final double DEFAULT_THRESHOLD = 0.9;
+
+    /**
+     * Number of records in the largest compared block, if other isn't set.
+     */
+    public static final int DEFAULT_MAX_BLOCK_SIZE = 500;
+
+    private double threshold = DEFAULT_THRESHOLD;
+    private int maxBlockSize = DEFAULT_MAX_BLOCK_SIZE;
+
+    /**
+     * @param threshold Minimal score of duplicates greater than 0 and at most 1, where 1 means that all fields set
+     *                  in both records are equal ignoring case and formatting of numbers.
+     */
+    public void setThreshold(double threshold) {
+        if (!(threshold > 0 && threshold <= 1)) {
+            throw new IllegalArgumentException("Threshold should be greater than 0 and at most 1: " + threshold);
+        }
+        this.threshold = threshold;
+    }
+
+    /**
+     * Sets number of records in the largest compared block. Records of larger blocks are compared only
+     * if they share another block, e.g. records with the same common surname are compared only if they have
+     * the same number, so larger limit finds more duplicates, but takes more time.
+     *
+     * @param maxBlockSize Number of records, at least 2.
+     */
+    public void setMaxBlockSize(int maxBlockSize) {
+        if (maxBlockSize < 2) {
+            throw new IllegalArgumentException("Block should contain at least 2 records: " + maxBlockSize);
+        }
+        this.maxBlockSize = maxBlockSize;
+    }
+
+    /**
+     * Finds groups of duplicates in phone book.
+     *
+     * @param contacts Phone book to check.
+     * @return Plan of merging found duplicates.
+     */
+    public MergePlan find(Contacts contacts) {
+        List<ContactsRecord> records = new ArrayList<>(contacts.getNumberOfRecords());
+        for (ContactsRecord contactsRecord : contacts) {
+            records.add(contactsRecord);
+        }
+        RecordFeatures features = new RecordFeatures(records);
+        CandidateBlocks blocks = new CandidateBlocks(features, maxBlockSize);
+        PairScoringTask.ScoredPairs pairs = PairScoringTask.score(features, blocks, threshold);
+
+        int[] parents = new int[records.size()];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+        }
+        for (int i = 0; i < pairs.size(); i++) {
+            int first = root(parents, pairs.first(i));
+            int second = root(parents, pairs.second(i));
+            if (first != second) {
+                parents[Math.max(first, second)] = Math.min(first, second);
+            }
+        }
+        List<List<ContactsRecord>> groups = new ArrayList<>();
+        int[] groupOfRoot = new int[records.size()];
+        for (int i = 0; i < parents.length; i++) {
+            int root = root(parents, i);
+            if (root == i) {
+                groupOfRoot[i] = -1;
+                continue;
+            }
+            if (groupOfRoot[root] < 0) {
+                groupOfRoot[root] = groups.size();
+                List<ContactsRecord> group = new ArrayList<>();
+                group.add(records.get(root));
+                groups.add(group);
+            }
+            groups.get(groupOfRoot[root]).add(records.get(i));
+        }
+
+        List<MergePlan.Merge> merges = new ArrayList<>(groups.size());
+        for (List<ContactsRecord> group : groups) {
+            merges.add(MergePlan.merge(group));
+        }
+        merges.sort((a, b) -> Long.compare(a.getKeptID(), b.getKeptID()));
+        return new MergePlan(merges, pairs.compared(), blocks.skippedPairs(), blocks.skippedBlocks());
+    }
+
+    /**
+     * Finds root of the tree of the record in disjoint set forest compressing path to it.
+     */
+    private static int root(int[] parents, int record) {
+        int root = record;
+        while (parents[root] != root) {
+            root = parents[root];
+        }
+        while (parents[record] != root) {
+            int parent = parents[record];
+            parents[record] = root;
+            record = parent;
+        }
+        return root;
+    }
+}
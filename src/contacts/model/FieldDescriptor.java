@@ -0,0 +1,77 @@
+package contacts.model;
+
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+
+/**
+ * Describes field of one type of records: how it's labeled for user and how it's read and written.
+ * Descriptors are shared by all records of the type.
+ *
+ * @param <R> Type of records.
+ */
+public final class FieldDescriptor<R extends ContactsRecord> {
+
+    private final Class<R> type;
+    private final RecordField field;
+    private final String label;
+    private final String prompt;
+    private final Function<R, String> getter;
+    private final BiConsumer<R, String> setter;
+
+    FieldDescriptor(Class<R> type, RecordField field, String label, String prompt,
+                    Function<R, String> getter, BiConsumer<R, String> setter) {
+        this.type = type;
+        this.field = field;
+        this.label = label;
+        this.prompt = prompt;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    public RecordField getField() {
+        return field;
+    }
+
+    /**
+     * @return Name of the field, for example "birth".
+     */
+    public String getName() {
+        return field.getName();
+    }
+
+    /**
+     * @return Label shown before value of the field, for example "Birth date".
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * @return Text asking user to enter value of the field, for example "Enter the birth date".
+     */
+    public String getPrompt() {
+        return prompt;
+    }
+
+    /**
+     * @param contactsRecord Record of the type described by this descriptor.
+     * @return Value of the field or null if it isn't set.
+     * @throws ClassCastException Thrown when record is of other type.
+     */
+    public String getValue(ContactsRecord contactsRecord) {
+        return getter.apply(type.cast(contactsRecord));
+    }
+
+    /**
+     * Sets value of the field through setter of record, which validates it.
+     * Records stored in phone book should be edited through {@link Contacts#editFieldByName}.
+     *
+     * @param contactsRecord Record of the type described by this descriptor.
+     * @param value          New value of the field.
+     * @throws ClassCastException Thrown when record is of other type.
+     */
+    public void setValue(ContactsRecord contactsRecord, String value) {
+        setter.accept(type.cast(contactsRecord), value);
+    }
+}
@@ -0,0 +1,164 @@
+package contacts.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+
+/**
+ * Sorted indexes of field values: for every field lowercased values are mapped to IDs of records having them.
+ * Records are looked up by exact value, prefix or range of values in logarithmic time plus size of result.
+ * Records without the field and null values aren't indexed. <br>
+ * Like {@link TrigramIndex} it supports record IDs up to {@link Integer#MAX_VALUE}.
+ */
+class FieldIndex {
+
+    private final Map<RecordField, NavigableMap<String, PostingList>> indexes = new EnumMap<>(RecordField.class);
+
+    FieldIndex() {
+        for (RecordField field : RecordField.values()) {
+            indexes.put(field, new TreeMap<>());
+        }
+    }
+
+    void add(ContactsRecord contactsRecord) {
+        int id = Math.toIntExact(contactsRecord.getID());
+        for (FieldDescriptor<?> field : contactsRecord.getSchema().getFields()) {
+            String value = value(contactsRecord, field);
+            if (value != null) {
+                indexes.get(field.getField()).computeIfAbsent(value, key -> new PostingList()).add(id);
+            }
+        }
+    }
+
+    void remove(ContactsRecord contactsRecord) {
+        for (FieldDescriptor<?> field : contactsRecord.getSchema().getFields()) {
+            removePosting(field.getField(), value(contactsRecord, field), contactsRecord.getID());
+        }
+    }
+
+    /**
+     * Updates index after one field of the record was changed.
+     *
+     * @param contactsRecord Changed record.
+     * @param field          Descriptor of changed field.
+     * @param oldValue       Value of the field before change.
+     */
+    void update(ContactsRecord contactsRecord, FieldDescriptor<?> field, String oldValue) {
+        removePosting(field.getField(), oldValue == null ? null : oldValue.toLowerCase(), contactsRecord.getID());
+        String value = value(contactsRecord, field);
+        if (value != null) {
+            indexes.get(field.getField()).computeIfAbsent(value, key -> new PostingList())
+                    .add(Math.toIntExact(contactsRecord.getID()));
+        }
+    }
+
+    /**
+     * Replaces indexed record with another one having the same ID.
+     */
+    void replace(ContactsRecord oldRecord, ContactsRecord newRecord) {
+        remove(oldRecord);
+        add(newRecord);
+    }
+
+    /**
+     * Finds records with values of the field satisfying the predicate.
+     * Field query is looked up in the index, other predicates are tested on every distinct value.
+     *
+     * @return IDs of found records in phone book order.
+     * @throws WrongFieldNameException Thrown when records don't have field with such name.
+     */
+    int[] find(String field, Predicate<String> predicate) throws WrongFieldNameException {
+        RecordField recordField = RecordField.byName(field);
+        if (recordField == null) {
+            throw new WrongFieldNameException("There's no such field to search: " + field);
+        }
+        NavigableMap<String, PostingList> index = indexes.get(recordField);
+        Collection<PostingList> lists;
+        if (predicate instanceof FieldQuery) {
+            lists = ((FieldQuery) predicate).select(index).values();
+        } else {
+            lists = new ArrayList<>();
+            for (Map.Entry<String, PostingList> entry : index.entrySet()) {
+                if (predicate.test(entry.getKey())) {
+                    lists.add(entry.getValue());
+                }
+            }
+        }
+        int size = 0;
+        for (PostingList postingList : lists) {
+            size += postingList.size();
+        }
+        int[] result = new int[size];
+        int position = 0;
+        for (PostingList postingList : lists) {
+            position = postingList.copyTo(result, position);
+        }
+        if (lists.size() > 1) {
+            Arrays.sort(result);
+        }
+        return result;
+    }
+
+    /**
+     * Finds records, which value of any of provided fields is equal to provided value.
+     *
+     * @return IDs of found records in phone book order, each ID once.
+     */
+    int[] findEqual(String value, RecordField... fields) {
+        String key = value.toLowerCase();
+        List<PostingList> lists = new ArrayList<>(fields.length);
+        int size = 0;
+        for (RecordField field : fields) {
+            PostingList postingList = indexes.get(field).get(key);
+            if (postingList != null) {
+                lists.add(postingList);
+                size += postingList.size();
+            }
+        }
+        int[] result = new int[size];
+        int position = 0;
+        for (PostingList postingList : lists) {
+            position = postingList.copyTo(result, position);
+        }
+        if (lists.size() <= 1) {
+            return result;
+        }
+        Arrays.sort(result);
+        int distinct = 0;
+        for (int i = 0; i < result.length; i++) {
+            if (i == 0 || result[i] != result[i - 1]) {
+                result[distinct++] = result[i];
+            }
+        }
+        return Arrays.copyOf(result, distinct);
+    }
+
+    private void removePosting(RecordField field, String value, long id) {
+        if (value == null) {
+            return;
+        }
+        NavigableMap<String, PostingList> index = indexes.get(field);
+        PostingList postingList = index.get(value);
+        if (postingList != null) {
+            postingList.remove(Math.toIntExact(id));
+            if (postingList.isEmpty()) {
+                index.remove(value);
+            }
+        }
+    }
+
+    /**
+     * @return Lowercased value of the field or null if it isn't set.
+     */
+    private static String value(ContactsRecord contactsRecord, FieldDescriptor<?> field) {
+        String value = field.getValue(contactsRecord);
+        return value == null ? null : value.toLowerCase();
+    }
+}
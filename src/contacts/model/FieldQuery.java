@@ -0,0 +1,91 @@
+package contacts.model;
+
+import java.util.NavigableMap;
+import java.util.function.Predicate;
+
+
+/**
+ * Condition on value of single field of records, which can be looked up in sorted index of the field.
+ * Values are compared case insensitively. <br>
+ * Any other {@link Predicate} can be used in field search as well,
+ * but then it's tested on every distinct lowercased value of the field.
+ *
+ * @see Contacts#search(String, Predicate)
+ */
+public abstract class FieldQuery implements Predicate<String> {
+
+    private FieldQuery() {
+    }
+
+    /**
+     * @param value Value to compare with, for example "M" for gender.
+     * @return Query of values equal to provided one.
+     */
+    public static FieldQuery equalTo(String value) {
+        String key = value.toLowerCase();
+        return new FieldQuery() {
+            @Override
+            public boolean test(String fieldValue) {
+                return fieldValue != null && fieldValue.equalsIgnoreCase(key);
+            }
+
+            @Override
+            NavigableMap<String, PostingList> select(NavigableMap<String, PostingList> index) {
+                return index.subMap(key, true, key, true);
+            }
+        };
+    }
+
+    /**
+     * @param prefix Beginning of value, for example first letters of name.
+     * @return Query of values starting with provided prefix.
+     */
+    public static FieldQuery startsWith(String prefix) {
+        String key = prefix.toLowerCase();
+        return new FieldQuery() {
+            @Override
+            public boolean test(String fieldValue) {
+                return fieldValue != null && fieldValue.toLowerCase().startsWith(key);
+            }
+
+            @Override
+            NavigableMap<String, PostingList> select(NavigableMap<String, PostingList> index) {
+                return index.subMap(key, true, key + Character.MAX_VALUE, false);
+            }
+        };
+    }
+
+    /**
+     * Range of values in lexicographic order. Birth dates in format "YYYY-MM-DD" are ordered this way chronologically.
+     *
+     * @param from Smallest value of the range.
+     * @param to   Largest value of the range.
+     * @return Query of values between provided ones inclusive.
+     */
+    public static FieldQuery between(String from, String to) {
+        String fromKey = from.toLowerCase();
+        String toKey = to.toLowerCase();
+        return new FieldQuery() {
+            @Override
+            public boolean test(String fieldValue) {
+                if (fieldValue == null) {
+                    return false;
+                }
+                String key = fieldValue.toLowerCase();
+                return key.compareTo(fromKey) >= 0 && key.compareTo(toKey) <= 0;
+            }
+
+            @Override
+            NavigableMap<String, PostingList> select(NavigableMap<String, PostingList> index) {
+                return fromKey.compareTo(toKey) > 0
+                        ? index.subMap(fromKey, true, fromKey, false)
+                        : index.subMap(fromKey, true, toKey, true);
+            }
+        };
+    }
+
+    /**
+     * Selects entries of index from lowercased field values to IDs of records with matching values.
+     */
+    abstract NavigableMap<String, PostingList> select(NavigableMap<String, PostingList> index);
+}
@@ -0,0 +1,171 @@
+package contacts.model;
+
+import contacts.metrics.Metrics;
+
+/**
+ * Validation of field values of records. Values are checked by hand-written single-pass scanners,
+ * which neither compile patterns nor allocate, so validation is cheap enough for bulk import.
+ * Invalid values are stored in records as "[no data]".
+ */
+public final class FieldValidator {
+
+    private FieldValidator() {
+    }
+
+    /**
+     * Validates value of any field by name of the field. Fields without format, like name, are always valid.
+     *
+     * @param fieldName Name of the field.
+     * @param value     Value to validate.
+     * @return Result of validation.
+     */
+    public static ValidationResult validate(String fieldName, String value) {
+        RecordField field = RecordField.byName(fieldName);
+        return field == null ? ValidationResult.VALID : field.validate(value);
+    }
+
+    /**
+     * Phone number should satisfy next rules: <br>
+     * 1. The phone number should be split into groups using a space or dash. One group is also possible. <br>
+     * 2. Before the first group, there may or may not be a plus symbol. <br>
+     * 3. The first group or the second group can be wrapped in parentheses, but there should be no more than one group
+     * which is wrapped in parentheses. There may be no groups wrapped in parentheses. <br>
+     * 4. A group can contain numbers, uppercase, and lowercase English letters. A group should be at least 2 symbols
+     * in length. But the first group may be only one symbol in length. <br>
+     * Underscore is accepted as letter and any whitespace character as space, as it always was.
+     *
+     * @param number String representation of the phone number.
+     * @return Result of validation.
+     */
+    public static ValidationResult validateNumber(String number) {
+        return isValidNumber(number) ? ValidationResult.VALID : ValidationResult.BAD_NUMBER;
+    }
+
+    /**
+     * Birth date should be in format "YYYY-MM-DD" and exist in calendar, for example "2001-02-29" is invalid.
+     *
+     * @param birthDate String representation of date.
+     * @return Result of validation.
+     */
+    public static ValidationResult validateBirthDate(String birthDate) {
+        return isValidBirthDate(birthDate) ? ValidationResult.VALID : ValidationResult.BAD_BIRTH_DATE;
+    }
+
+    /**
+     * Gender should be "M" for male or "F" for female.
+     *
+     * @param gender Persons gender.
+     * @return Result of validation.
+     */
+    public static ValidationResult validateGender(String gender) {
+        return "M".equals(gender) || "F".equals(gender) ? ValidationResult.VALID : ValidationResult.BAD_GENDER;
+    }
+
+    /**
+     * Counts value, which failed validation and is stored as "[no data]" instead, in metrics.
+     * Missing values and "[no data]" itself aren't counted.
+     *
+     * @return Value to store: "[no data]".
+     */
+    static String rejected(String value) {
+        if (value != null && !ContactsRecord.NO_DATA.equals(value)) {
+            Metrics.VALIDATION_FAILURES.increment();
+        }
+        return ContactsRecord.NO_DATA;
+    }
+
+    static boolean isValidNumber(String number) {
+        if (number == null) {
+            return false;
+        }
+        int length = number.length();
+        int i = number.startsWith("+") ? 1 : 0;
+        boolean wrappedGroupSeen = false;
+        for (int group = 0; ; group++) {
+            boolean wrapped = i < length && number.charAt(i) == '(';
+            if (wrapped) {
+                if (wrappedGroupSeen || group > 1) {
+                    return false;
+                }
+                wrappedGroupSeen = true;
+                i++;
+            }
+            int start = i;
+            while (i < length && isWordCharacter(number.charAt(i))) {
+                i++;
+            }
+            int groupLength = i - start;
+            if (groupLength == 0 || (group > 0 && groupLength < 2)) {
+                return false;
+            }
+            if (wrapped) {
+                if (i >= length || number.charAt(i) != ')') {
+                    return false;
+                }
+                i++;
+            }
+            if (i == length) {
+                return true;
+            }
+            if (!isSeparator(number.charAt(i))) {
+                return false;
+            }
+            i++;
+        }
+    }
+
+    static boolean isValidBirthDate(String birthDate) {
+        if (birthDate == null || birthDate.length() != 10
+                || birthDate.charAt(4) != '-' || birthDate.charAt(7) != '-') {
+            return false;
+        }
+        int year = digits(birthDate, 0, 4);
+        int month = digits(birthDate, 5, 7);
+        int day = digits(birthDate, 8, 10);
+        return year >= 0 && month >= 1 && month <= 12 && day >= 1 && day <= daysInMonth(year, month);
+    }
+
+    /**
+     * @return Number written by decimal digits between provided positions or -1 if there are other characters.
+     */
+    private static int digits(String text, int from, int to) {
+        int value = 0;
+        for (int i = from; i < to; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                boolean leap = year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+                return leap ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * Same characters as \w of regular expressions.
+     */
+    private static boolean isWordCharacter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /**
+     * Same characters as [\s-] of regular expressions.
+     */
+    private static boolean isSeparator(char c) {
+        return c == '-' || c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,237 @@
+package contacts.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * BK-tree over distinct lowercased words of names and surnames for search tolerant to typos.
+ * Child of a node is kept at Levenshtein distance between their words, so by triangle inequality
+ * only children at distance from d - k to d + k, where d is distance from query to the node,
+ * may contain words within distance k from query, and other subtrees are skipped. <br>
+ * Nodes are kept in parallel arrays with children linked as lists of siblings.
+ * Every node has list of IDs of records containing its word. Nodes of words, which aren't used by records anymore,
+ * stay in the tree with empty lists and are reused if the word appears again. <br>
+ * Like other indexes it supports record IDs up to {@link Integer#MAX_VALUE}.
+ */
+class FuzzyIndex {
+
+    private final Map<String, Integer> nodes = new HashMap<>();
+    private String[] words = new String[16];
+    private PostingList[] ids = new PostingList[16];
+    private int[] firstChild = new int[16];
+    private int[] nextSibling = new int[16];
+    private int[] distances = new int[16];
+    private int nodeCount;
+
+    /**
+     * Splits value of field into lowercased words: sequences of letters, digits and apostrophes.
+     *
+     * @param value Value of field, for example "Smith-Jones".
+     * @return Words of the value, empty if value is null or isn't set.
+     */
+    static String[] words(String value) {
+        if (value == null || ContactsRecord.NO_DATA.equals(value)) {
+            return new String[0];
+        }
+        String[] words = new String[4];
+        int count = 0;
+        int start = -1;
+        for (int i = 0; i <= value.length(); i++) {
+            boolean wordChar = i < value.length() && isWordChar(value.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                if (count == words.length) {
+                    words = Arrays.copyOf(words, count * 2);
+                }
+                words[count++] = value.substring(start, i).toLowerCase();
+                start = -1;
+            }
+        }
+        return Arrays.copyOf(words, count);
+    }
+
+    void add(ContactsRecord contactsRecord) {
+        int id = Math.toIntExact(contactsRecord.getID());
+        for (RecordField field : FuzzySearch.FIELDS) {
+            FieldDescriptor<?> descriptor = contactsRecord.getSchema().getField(field);
+            if (descriptor != null) {
+                for (String word : words(descriptor.getValue(contactsRecord))) {
+                    add(word, id);
+                }
+            }
+        }
+    }
+
+    void remove(ContactsRecord contactsRecord) {
+        for (RecordField field : FuzzySearch.FIELDS) {
+            FieldDescriptor<?> descriptor = contactsRecord.getSchema().getField(field);
+            if (descriptor != null) {
+                remove(descriptor.getValue(contactsRecord), contactsRecord.getID());
+            }
+        }
+    }
+
+    /**
+     * Updates index after one field of the record was changed. Does nothing for fields, which aren't indexed.
+     *
+     * @param contactsRecord Changed record.
+     * @param field          Descriptor of changed field.
+     * @param oldValue       Value of the field before change.
+     */
+    void update(ContactsRecord contactsRecord, FieldDescriptor<?> field, String oldValue) {
+        if (!FuzzySearch.FIELDS.contains(field.getField())) {
+            return;
+        }
+        remove(oldValue, contactsRecord.getID());
+        // Other indexed field may contain the same word, so all words of the record are added back.
+        add(contactsRecord);
+    }
+
+    /**
+     * Replaces indexed record with another one having the same ID.
+     */
+    void replace(ContactsRecord oldRecord, ContactsRecord newRecord) {
+        remove(oldRecord);
+        add(newRecord);
+    }
+
+    /**
+     * Finds words within edit distance from query word and passes IDs of records containing them to consumer.
+     *
+     * @param query       Lowercased word.
+     * @param maxDistance Maximum number of inserted, deleted or replaced characters.
+     * @param consumer    Receives IDs of records containing found word and distance from query to the word.
+     */
+    void find(String query, int maxDistance, MatchConsumer consumer) {
+        if (nodeCount == 0) {
+            return;
+        }
+        Levenshtein levenshtein = new Levenshtein(query);
+        int[] stack = new int[16];
+        int size = 0;
+        stack[size++] = 0;
+        while (size > 0) {
+            int node = stack[--size];
+            int distance = levenshtein.distanceTo(words[node]);
+            if (distance <= maxDistance && !ids[node].isEmpty()) {
+                consumer.accept(ids[node], distance);
+            }
+            for (int child = firstChild[node]; child != 0; child = nextSibling[child]) {
+                if (Math.abs(distances[child] - distance) <= maxDistance) {
+                    if (size == stack.length) {
+                        stack = Arrays.copyOf(stack, size * 2);
+                    }
+                    stack[size++] = child;
+                }
+            }
+        }
+    }
+
+    private void add(String word, int id) {
+        Integer node = nodes.get(word);
+        if (node == null) {
+            node = insert(word);
+            nodes.put(word, node);
+        }
+        ids[node].add(id);
+    }
+
+    private void remove(String value, long id) {
+        for (String word : words(value)) {
+            Integer node = nodes.get(word);
+            if (node != null) {
+                ids[node].remove(Math.toIntExact(id));
+            }
+        }
+    }
+
+    /**
+     * Inserts new word into the tree.
+     *
+     * @return Node of the word.
+     */
+    private int insert(String word) {
+        int created = newNode(word);
+        if (created == 0) {
+            return created;
+        }
+        Levenshtein levenshtein = new Levenshtein(word);
+        int node = 0;
+        while (true) {
+            int distance = levenshtein.distanceTo(words[node]);
+            int child = firstChild[node];
+            while (child != 0 && distances[child] != distance) {
+                child = nextSibling[child];
+            }
+            if (child == 0) {
+                distances[created] = distance;
+                nextSibling[created] = firstChild[node];
+                firstChild[node] = created;
+                return created;
+            }
+            node = child;
+        }
+    }
+
+    private int newNode(String word) {
+        if (nodeCount == words.length) {
+            int capacity = nodeCount * 2;
+            words = Arrays.copyOf(words, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            distances = Arrays.copyOf(distances, capacity);
+        }
+        words[nodeCount] = word;
+        ids[nodeCount] = new PostingList();
+        return nodeCount++;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '\'';
+    }
+
+    /**
+     * Receives records found by {@link #find}.
+     */
+    interface MatchConsumer {
+        void accept(PostingList ids, int distance);
+    }
+
+    /**
+     * Computes edit distances from one word to others reusing two rows of the distance matrix.
+     * Separate instance is created for every lookup, so lookups can run concurrently.
+     */
+    private static class Levenshtein {
+        private final String word;
+        private int[] previous;
+        private int[] current;
+
+        Levenshtein(String word) {
+            this.word = word;
+            previous = new int[word.length() + 1];
+            current = new int[word.length() + 1];
+        }
+
+        int distanceTo(String other) {
+            for (int i = 0; i <= word.length(); i++) {
+                previous[i] = i;
+            }
+            for (int j = 1; j <= other.length(); j++) {
+                current[0] = j;
+                char c = other.charAt(j - 1);
+                for (int i = 1; i <= word.length(); i++) {
+                    int replace = previous[i - 1] + (word.charAt(i - 1) == c ? 0 : 1);
+                    current[i] = Math.min(replace, Math.min(previous[i], current[i - 1]) + 1);
+                }
+                int[] row = previous;
+                previous = current;
+                current = row;
+            }
+            return previous[word.length()];
+        }
+    }
+}
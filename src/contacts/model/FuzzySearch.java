@@ -0,0 +1,99 @@
+package contacts.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Collects records found by search tolerant to typos. Record is found if every word of query is within edit distance
+ * from some word of its name or surname, and it's ranked by sum of distances of all query words.
+ *
+ * @see Contacts#searchFuzzy(String, int)
+ */
+class FuzzySearch {
+
+    /**
+     * Fields, which words are indexed for search tolerant to typos. Name of organization is its name field.
+     */
+    static final Set<RecordField> FIELDS = EnumSet.of(RecordField.NAME, RecordField.SURNAME);
+
+    private static final Comparator<Match> BEST_FIRST = Comparator.<Match>comparingInt(match -> match.distance)
+            .thenComparingLong(match -> match.record.getID());
+
+    private final String[] queryWords;
+    private final int maxDistance;
+    private final List<Match> matches = new ArrayList<>();
+
+    /**
+     * @param query       Words to find.
+     * @param maxDistance Maximum number of inserted, deleted or replaced characters in every word.
+     */
+    FuzzySearch(String query, int maxDistance) {
+        if (maxDistance < 0) {
+            throw new IllegalArgumentException("Distance should be non negative: " + maxDistance);
+        }
+        queryWords = FuzzyIndex.words(query);
+        this.maxDistance = maxDistance;
+    }
+
+    /**
+     * Looks query words up in index of one phone book and keeps found records.
+     *
+     * @param index   Index of records.
+     * @param records Store of the same records.
+     */
+    void collect(FuzzyIndex index, RecordStore records) {
+        Map<Integer, Integer> found = null;
+        for (String queryWord : queryWords) {
+            Map<Integer, Integer> wordMatches = new HashMap<>();
+            Map<Integer, Integer> previous = found;
+            index.find(queryWord, maxDistance, (ids, distance) -> {
+                for (int id : ids.toArray()) {
+                    if (previous == null || previous.containsKey(id)) {
+                        wordMatches.merge(id, distance, Math::min);
+                    }
+                }
+            });
+            if (previous != null) {
+                wordMatches.replaceAll((id, distance) -> distance + previous.get(id));
+            }
+            found = wordMatches;
+            if (found.isEmpty()) {
+                return;
+            }
+        }
+        if (found == null) {
+            return;
+        }
+        for (Map.Entry<Integer, Integer> entry : found.entrySet()) {
+            matches.add(new Match(records.getByID(entry.getKey()), entry.getValue()));
+        }
+    }
+
+    /**
+     * @return Found records, the closest to query first, records with the same distance in phone book order.
+     */
+    List<ContactsRecord> result() {
+        matches.sort(BEST_FIRST);
+        List<ContactsRecord> result = new ArrayList<>(matches.size());
+        for (Match match : matches) {
+            result.add(match.record);
+        }
+        return result;
+    }
+
+    private static class Match {
+        final ContactsRecord record;
+        final int distance;
+
+        Match(ContactsRecord record, int distance) {
+            this.record = record;
+            this.distance = distance;
+        }
+    }
+}
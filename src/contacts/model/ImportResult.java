@@ -0,0 +1,88 @@
+package contacts.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Summary of bulk import: numbers of imported and rejected records and descriptions of first problems.
+ */
+public class ImportResult {
+
+    /**
+     * Number of problem descriptions kept in result, further problems are only counted.
+     */
+    public static final int MAX_PROBLEMS = 100;
+
+    private long imported;
+    private long rejected;
+    private long invalidFields;
+    private final List<String> problems = new ArrayList<>();
+
+    /**
+     * @return Number of records added to phone book.
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * @return Number of lines, which couldn't be read as record, for example because of unknown type of record.
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return Number of values, which didn't satisfy format of the field and were stored as "[no data]".
+     */
+    public long getInvalidFields() {
+        return invalidFields;
+    }
+
+    /**
+     * @return Descriptions of up to {@link #MAX_PROBLEMS} first rejected lines and invalid values.
+     */
+    public List<String> getProblems() {
+        return Collections.unmodifiableList(problems);
+    }
+
+    void addImported(int count) {
+        imported += count;
+    }
+
+    void addRejected(String problem) {
+        rejected++;
+        addProblem(problem);
+    }
+
+    void addInvalidField(String problem) {
+        invalidFields++;
+        addProblem(problem);
+    }
+
+    /**
+     * Adds numbers and problems of another part of the same import.
+     */
+    void merge(ImportResult other) {
+        imported += other.imported;
+        rejected += other.rejected;
+        invalidFields += other.invalidFields;
+        for (String problem : other.problems) {
+            addProblem(problem);
+        }
+    }
+
+    private void addProblem(String problem) {
+        if (problems.size() < MAX_PROBLEMS) {
+            problems.add(problem);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "imported " + imported + " records, rejected " + rejected
+                + " lines, replaced " + invalidFields + " invalid values with [no data]";
+    }
+}
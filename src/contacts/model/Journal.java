@@ -0,0 +1,568 @@
+package contacts.model;
+
+import contacts.metrics.Metrics;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+
+/**
+ * Append-only journal of changes made to phone book since its last snapshot. <br>
+ * Journal is stored next to the snapshot file with suffix ".journal". Every added, deleted or edited record
+ * is appended to the journal as small entry protected by checksum, records are referred by their IDs.
+ * Entries of concurrent writers are written and synced to drive in batches, so one sync is shared by all of them. <br>
+ * When journal grows past the threshold, periodically or on demand it is rotated to file with suffix ".journal.old"
+ * and folded together with the snapshot into the new snapshot on background thread.
+ * Thread changing phone book only copies references to records, which takes time of memory copy,
+ * and records edited while the snapshot is written are copied by their first edit, so the snapshot stores
+ * phone book as it was at one moment. Snapshot is written to temporary file, which atomically replaces the old one.
+ * Phone book stored in directory of segment files is journaled the same way, its journal is stored next to
+ * the directory and only changed segments are written by snapshot.
+ * Each journal has generation number, snapshot stores generation of the last journal included into it,
+ * so journals are never applied twice regardless of the moment application was stopped.
+ */
+public class Journal implements Closeable {
+
+    /**
+     * Size of journal in bytes, after which it's folded into the snapshot, if other size isn't specified.
+     */
+    public static final long DEFAULT_COMPACTION_THRESHOLD = 16L << 20;
+
+    private static final int MAGIC = 0x434E544A;
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES;
+    private static final int ENTRY_HEADER_SIZE = Integer.BYTES * 2;
+
+    private static final byte ADD = 1;
+    private static final byte DELETE = 2;
+    private static final byte UPDATE = 3;
+
+    private final Contacts contactsBook;
+    private final Path snapshotPath;
+    private final Path journalPath;
+    private final Path oldJournalPath;
+    private final long compactionThreshold;
+    private final ScheduledExecutorService compactionExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "contacts-journal-compaction");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Thread flusher = new Thread(this::flushLoop, "contacts-journal-flusher");
+
+    private final Object lock = new Object();
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+    private FileChannel channel;
+    private long generation;
+    private long size;
+    private long appended;
+    private long durable;
+    private IOException failure;
+    private boolean closed;
+    private boolean snapshotRequested;
+    private Future<?> compaction;
+
+    private Journal(Contacts contactsBook, Path snapshotPath, long compactionThreshold) {
+        this.contactsBook = contactsBook;
+        this.snapshotPath = snapshotPath;
+        this.journalPath = Path.of(snapshotPath + ".journal");
+        this.oldJournalPath = Path.of(snapshotPath + ".journal.old");
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Opens journal of the snapshot with default compaction threshold.
+     *
+     * @see #open(Contacts, String, long)
+     */
+    public static Journal open(Contacts contactsBook, String snapshotFileName) throws IOException {
+        return open(contactsBook, snapshotFileName, DEFAULT_COMPACTION_THRESHOLD);
+    }
+
+    /**
+     * Opens journal of the snapshot, applies changes stored in it to the phone book restored from the snapshot
+     * and starts recording further changes of the phone book.
+     *
+     * @param contactsBook        Phone book restored from the snapshot.
+     * @param snapshotFileName    String representation of path to the snapshot file.
+     * @param compactionThreshold Size of journal in bytes, after which it's folded into the snapshot.
+     * @return Journal attached to the phone book.
+     * @throws IOException Thrown when failed to read or create journal.
+     */
+    public static Journal open(Contacts contactsBook, String snapshotFileName, long compactionThreshold)
+            throws IOException {
+        Journal journal = new Journal(contactsBook, Path.of(snapshotFileName), compactionThreshold);
+        journal.recover();
+        contactsBook.setJournal(journal);
+        journal.flusher.setDaemon(true);
+        journal.flusher.start();
+        return journal;
+    }
+
+    /**
+     * Entries are written in order of logging, so changes of the same record should be logged
+     * under the same lock as they are made. Waiting for durability by {@link #awaitLogged(long)}
+     * may happen after the lock is released.
+     *
+     * @return Sequence number of the entry.
+     */
+    long logAdd(ContactsRecord record) {
+        return append(ADD, 0, record);
+    }
+
+    long logDelete(long id) {
+        return append(DELETE, id, null);
+    }
+
+    long logUpdate(ContactsRecord record) {
+        return append(UPDATE, 0, record);
+    }
+
+    /**
+     * Waits until the entry and all entries logged before it are synced to drive.
+     * Starts compaction if journal became too large, so it should be called without holding locks of phone book.
+     *
+     * @param sequence Sequence number of the entry returned when it was logged.
+     */
+    void awaitLogged(long sequence) {
+        long foldedGeneration;
+        synchronized (lock) {
+            awaitDurable(sequence);
+            if (!shouldRotate()) {
+                return;
+            }
+            awaitAllDurable();
+            if (!shouldRotate()) {
+                return;
+            }
+            foldedGeneration = rotate();
+        }
+        fold(foldedGeneration);
+    }
+
+    /**
+     * Starts writing the new snapshot on background thread, if any changes were made since the last one.
+     * Should be called by thread changing phone book, for example by user interface, and only waits
+     * until changes are synced to drive. For {@link ConcurrentContacts} may be called by any thread.
+     *
+     * @return Future of writing the snapshot, which is the running one, if snapshot is being written already.
+     */
+    public Future<?> snapshot() {
+        long foldedGeneration;
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            if (compaction != null && !compaction.isDone()) {
+                return compaction;
+            }
+            awaitAllDurable();
+            if (closed || size == HEADER_SIZE || !canFold()) {
+                return CompletableFuture.completedFuture(null);
+            }
+            foldedGeneration = rotate();
+        }
+        return fold(foldedGeneration);
+    }
+
+    /**
+     * Requests snapshot with the period, so journal replayed on start contains changes of the last period.
+     * Snapshot is taken by the first change after the period passes on thread making the change,
+     * so phone book isn't accessed by timer thread and unchanged phone book isn't written again.
+     *
+     * @param period Period between snapshots.
+     * @param unit   Unit of the period.
+     */
+    public void scheduleSnapshots(long period, TimeUnit unit) {
+        compactionExecutor.scheduleAtFixedRate(() -> {
+            synchronized (lock) {
+                snapshotRequested = true;
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Waits until all changes are synced to drive and running compaction is finished, then closes journal.
+     * Phone book is detached from the journal.
+     *
+     * @throws IOException Thrown when failed to write the journal.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            lock.notifyAll();
+        }
+        contactsBook.setJournal(null);
+        try {
+            flusher.join();
+            if (compaction != null) {
+                compaction.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        } finally {
+            compactionExecutor.shutdown();
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Replays journals on top of the snapshot and opens journal for appending.
+     * If rotated journal wasn't folded into snapshot before application was stopped, folds it now.
+     */
+    private void recover() throws IOException {
+        long snapshotGeneration = contactsBook.journalGeneration;
+        boolean unfolded = false;
+        if (Files.exists(oldJournalPath)) {
+            unfolded = replay(oldJournalPath, snapshotGeneration) >= 0;
+        }
+        long validEnd = Files.exists(journalPath) ? replay(journalPath, snapshotGeneration) : -1;
+        if (unfolded) {
+            long lastGeneration = Math.max(generation, snapshotGeneration);
+            SegmentedRecordStore.ChangedSegments segments = contactsBook.snapshotChangedSegments(null);
+            if (segments != null) {
+                writeSegments(segments, null, contactsBook.getNextID(), lastGeneration);
+            } else {
+                writeSnapshot(contactsBook.toList(), null, contactsBook.getNextID(), lastGeneration);
+            }
+            Files.deleteIfExists(journalPath);
+            generation = lastGeneration;
+            validEnd = -1;
+        }
+        Files.deleteIfExists(oldJournalPath);
+        if (validEnd < 0) {
+            channel = createJournal(Math.max(generation, snapshotGeneration) + 1);
+        } else {
+            channel = FileChannel.open(journalPath, StandardOpenOption.WRITE);
+            channel.truncate(validEnd);
+            channel.position(validEnd);
+            size = validEnd;
+        }
+    }
+
+    /**
+     * Applies entries of the journal to the phone book, if journal is newer than snapshot.
+     * Reading stops at first incomplete or broken entry, which is left by interrupted write.
+     *
+     * @return Position after the last valid entry or -1 if journal is already included into snapshot.
+     */
+    private long replay(Path path, long snapshotGeneration) throws IOException {
+        try (FileChannel input = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (input.size() < HEADER_SIZE) {
+                return -1;
+            }
+            MappedByteBuffer buffer = input.map(FileChannel.MapMode.READ_ONLY, 0, input.size());
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("File is not a phone book journal: " + path);
+            }
+            long journalGeneration = buffer.getLong();
+            if (journalGeneration <= snapshotGeneration) {
+                return -1;
+            }
+            generation = journalGeneration;
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= ENTRY_HEADER_SIZE) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    buffer.position(start);
+                    break;
+                }
+                byte[] payload = new byte[length];
+                buffer.get(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    buffer.position(start);
+                    break;
+                }
+                apply(new DataInputStream(new ByteArrayInputStream(payload)));
+            }
+            return buffer.position();
+        }
+    }
+
+    private void apply(DataInputStream entry) throws IOException {
+        byte operation = entry.readByte();
+        ContactsRecord record;
+        switch (operation) {
+            case ADD:
+                contactsBook.restoreRecord(BinaryFormat.readRecord(entry));
+                break;
+            case DELETE:
+                record = contactsBook.getRecordByID(entry.readLong());
+                if (record != null) {
+                    contactsBook.deleteRestored(record);
+                }
+                break;
+            case UPDATE:
+                contactsBook.replaceRecord(BinaryFormat.readRecord(entry));
+                break;
+            default:
+                throw new IOException("Unknown journal operation: " + operation);
+        }
+    }
+
+    private FileChannel createJournal(long newGeneration) throws IOException {
+        FileChannel newChannel = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putLong(newGeneration).flip();
+        while (header.hasRemaining()) {
+            newChannel.write(header);
+        }
+        newChannel.force(true);
+        generation = newGeneration;
+        size = HEADER_SIZE;
+        return newChannel;
+    }
+
+    /**
+     * Adds entry to the batch of pending entries, which is written by flusher thread.
+     *
+     * @return Sequence number of the entry.
+     */
+    private long append(byte operation, long id, ContactsRecord record) {
+        byte[] payload;
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeByte(operation);
+            if (id > 0) {
+                output.writeLong(id);
+            }
+            if (record != null) {
+                BinaryFormat.writeRecord(record, output);
+            }
+            payload = bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Journal is closed");
+            }
+            ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER_SIZE);
+            header.putInt(payload.length).putInt((int) crc.getValue());
+            pending.write(header.array(), 0, ENTRY_HEADER_SIZE);
+            pending.write(payload, 0, payload.length);
+            lock.notifyAll();
+            return ++appended;
+        }
+    }
+
+    private void awaitDurable(long sequence) {
+        boolean interrupted = false;
+        while (durable < sequence && failure == null) {
+            try {
+                lock.wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+    }
+
+    /**
+     * Waits until flusher has synced every appended entry, including entries appended by other threads
+     * while waiting, so it doesn't write to the channel. Should be called holding the lock.
+     */
+    private void awaitAllDurable() {
+        while (durable < appended) {
+            awaitDurable(appended);
+        }
+    }
+
+    /**
+     * Writes pending entries in batches, each batch is synced to drive once.
+     */
+    private void flushLoop() {
+        while (true) {
+            byte[] batch;
+            long batchEnd;
+            FileChannel target;
+            synchronized (lock) {
+                while (pending.size() == 0 && !closed) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (pending.size() == 0) {
+                    return;
+                }
+                batch = pending.toByteArray();
+                pending.reset();
+                batchEnd = appended;
+                target = channel;
+            }
+            IOException error = null;
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(batch);
+                while (buffer.hasRemaining()) {
+                    target.write(buffer);
+                }
+                target.force(false);
+            } catch (IOException e) {
+                error = e;
+            }
+            synchronized (lock) {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    size += batch.length;
+                }
+                durable = batchEnd;
+                lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Should be called holding the lock. Is checked again after waiting,
+     * because other thread may rotate journal meanwhile.
+     *
+     * @return True if journal grew past the threshold or snapshot is requested, and it can be rotated.
+     */
+    private boolean shouldRotate() {
+        return !closed && (size >= compactionThreshold || snapshotRequested) && canFold();
+    }
+
+    /**
+     * Should be called holding the lock.
+     *
+     * @return True if no snapshot is being written and rotated journal was folded, so journal can be rotated.
+     */
+    private boolean canFold() {
+        return (compaction == null || compaction.isDone()) && !Files.exists(oldJournalPath);
+    }
+
+    /**
+     * Renames journal to rotated one and starts new journal. Should be called holding the lock
+     * after all appended entries are synced by {@link #awaitAllDurable()}, otherwise flusher may be writing
+     * batch to the channel being closed.
+     *
+     * @return Generation of the rotated journal.
+     */
+    private long rotate() {
+        snapshotRequested = false;
+        try {
+            channel.close();
+            Files.move(journalPath, oldJournalPath, StandardCopyOption.ATOMIC_MOVE);
+            long foldedGeneration = generation;
+            channel = createJournal(generation + 1);
+            return foldedGeneration;
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Folds rotated journal into the new snapshot on background thread.
+     * Snapshot is taken on calling thread after rotation, so it includes all changes of rotated journal
+     * and may include some changes of the new one. Replaying them again on top of the snapshot gives the same result,
+     * because entries carry whole images of records and IDs, which are never reused.
+     * Phone book stored in segment files writes only segments changed since they were written.
+     *
+     * @return Future of writing the snapshot.
+     */
+    private Future<?> fold(long foldedGeneration) {
+        RecordVersions versions = new RecordVersions();
+        SegmentedRecordStore.ChangedSegments segments = contactsBook.snapshotChangedSegments(versions);
+        List<ContactsRecord> records = segments == null ? contactsBook.snapshot(versions) : null;
+        long nextID = contactsBook.getNextID();
+        synchronized (lock) {
+            if (closed) {
+                // rotated journal is folded when phone book is opened next time
+                contactsBook.endSnapshot(versions);
+                return CompletableFuture.completedFuture(null);
+            }
+            compaction = compactionExecutor.submit(() -> {
+                try {
+                    if (segments != null) {
+                        writeSegments(segments, versions, nextID, foldedGeneration);
+                    } else {
+                        records.sort(Comparator.comparingLong(ContactsRecord::getID));
+                        writeSnapshot(records, versions, nextID, foldedGeneration);
+                    }
+                    Files.deleteIfExists(oldJournalPath);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                } finally {
+                    contactsBook.endSnapshot(versions);
+                }
+            });
+            return compaction;
+        }
+    }
+
+    /**
+     * Writes snapshot to temporary file and atomically replaces old snapshot with it.
+     *
+     * @param versions Original versions of records edited while snapshot is written or null if phone book
+     *                 isn't changed meanwhile.
+     */
+    private void writeSnapshot(List<ContactsRecord> records, RecordVersions versions, long nextID,
+                               long includedGeneration) throws IOException {
+        long startTime = Metrics.startTimer();
+        Path temporaryPath = Path.of(snapshotPath + ".tmp");
+        try (FileChannel output = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            BinaryFormat.write(records, versions, nextID, includedGeneration, output);
+            output.force(true);
+        }
+        Files.move(temporaryPath, snapshotPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Metrics.SAVE.recordSince(startTime);
+    }
+
+    /**
+     * Writes changed segments of phone book stored in segment files, then manifest referring to the journal.
+     *
+     * @see #writeSnapshot(List, RecordVersions, long, long)
+     */
+    private void writeSegments(SegmentedRecordStore.ChangedSegments segments, RecordVersions versions, long nextID,
+                               long includedGeneration) throws IOException {
+        long startTime = Metrics.startTimer();
+        segments.write(versions, nextID, includedGeneration);
+        Metrics.SAVE.recordSince(startTime);
+    }
+}
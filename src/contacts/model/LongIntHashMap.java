@@ -0,0 +1,106 @@
+package contacts.model;
+
+
+/**
+ * Hash map from positive long keys to non negative int values stored in primitive arrays
+ * with open addressing and linear probing. Key 0 marks empty cell.
+ */
+class LongIntHashMap {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys = new long[MIN_CAPACITY];
+    private int[] values = new int[MIN_CAPACITY];
+    private int size;
+
+    /**
+     * @return Value associated with the key or -1 if there's no such key.
+     */
+    int get(long key) {
+        int mask = keys.length - 1;
+        for (int cell = hash(key) & mask; keys[cell] != 0; cell = (cell + 1) & mask) {
+            if (keys[cell] == key) {
+                return values[cell];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Associates value with the key replacing previous value if present.
+     *
+     * @param key   Positive key.
+     * @param value Non negative value.
+     */
+    void put(long key, int value) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Key should be positive: " + key);
+        }
+        if ((size + 1) * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        int cell = hash(key) & mask;
+        while (keys[cell] != 0) {
+            if (keys[cell] == key) {
+                values[cell] = value;
+                return;
+            }
+            cell = (cell + 1) & mask;
+        }
+        keys[cell] = key;
+        values[cell] = value;
+        size++;
+    }
+
+    /**
+     * Removes the key. Following cells of the same cluster are shifted back, so no deleted markers are left.
+     *
+     * @return Value associated with the key or -1 if there's no such key.
+     */
+    int remove(long key) {
+        int mask = keys.length - 1;
+        int cell = hash(key) & mask;
+        while (keys[cell] != key) {
+            if (keys[cell] == 0) {
+                return -1;
+            }
+            cell = (cell + 1) & mask;
+        }
+        int value = values[cell];
+        int hole = cell;
+        for (int next = (hole + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = 0;
+        size--;
+        return value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        values = new int[capacity];
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,376 @@
+package contacts.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+
+/**
+ * Record store backed by memory-mapped phone book file in binary format. <br>
+ * Opening takes constant time: only header is read, records are decoded from the file on first access
+ * through offset table. Records accessed by ID or position, e.g. for display or editing, are kept in memory
+ * afterwards, so memory usage is proportional to number of such records. Iteration, which is used by search
+ * and building indexes, decodes records, which aren't kept, without keeping them. When such copy is edited,
+ * the change is made to the kept record, see {@link #storedRecord(ContactsRecord)}.
+ * Records in the file are ordered by ID, so record is found by ID using binary search over the file.
+ * Changes are kept in memory: deleted records of the file are remembered by their index in the file,
+ * added records are stored in {@link MemoryRecordStore} after records of the file. <br>
+ * File is mapped as a whole, so it should be smaller than 2 GiB.
+ */
+class MappedRecordStore implements RecordStore {
+
+    private static final int ID_OFFSET = Byte.BYTES;
+
+    private final MappedByteBuffer file;
+    private final long journalGeneration;
+    private final long nextID;
+    private final int storedCount;
+    private final int stringOffsetsPosition;
+    private final int recordOffsetsPosition;
+
+    private final PostingList deleted = new PostingList();
+    private final Map<Integer, ContactsRecord> decoded = new HashMap<>();
+    private final MemoryRecordStore added = new MemoryRecordStore();
+
+    /**
+     * Maps the file and reads its header.
+     *
+     * @param path Path to phone book file in binary format.
+     * @throws IOException Thrown when failed to map the file or file is in other format.
+     */
+    MappedRecordStore(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Phone book file is too large to be mapped: " + path);
+            }
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (file.limit() < BinaryFormat.HEADER_SIZE || file.getInt(0) != BinaryFormat.MAGIC
+                || file.getShort(4) != BinaryFormat.VERSION) {
+            throw new IOException("File is not a phone book: " + path);
+        }
+        journalGeneration = file.getLong(8);
+        storedCount = file.getInt(16);
+        stringOffsetsPosition = (int) file.getLong(24);
+        recordOffsetsPosition = (int) file.getLong(32);
+        nextID = file.getLong(40);
+    }
+
+    long getJournalGeneration() {
+        return journalGeneration;
+    }
+
+    long getNextID() {
+        return nextID;
+    }
+
+    @Override
+    public int size() {
+        return storedCount - deleted.size() + added.size();
+    }
+
+    @Override
+    public ContactsRecord getByID(long id) {
+        ContactsRecord record = added.getByID(id);
+        if (record != null) {
+            return record;
+        }
+        int index = findStored(id);
+        return index < 0 || deleted.contains(index) ? null : stored(index);
+    }
+
+    @Override
+    public ContactsRecord getAt(int position) {
+        int liveStored = storedCount - deleted.size();
+        if (position >= liveStored) {
+            return added.getAt(position - liveStored);
+        }
+        if (position < 0) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size());
+        }
+        return stored(storedIndex(position));
+    }
+
+    @Override
+    public ContactsRecord add(ContactsRecord record) {
+        return added.add(record);
+    }
+
+    @Override
+    public ContactsRecord remove(long id) {
+        ContactsRecord record = added.remove(id);
+        if (record != null) {
+            return record;
+        }
+        int index = findStored(id);
+        if (index < 0 || deleted.contains(index)) {
+            return null;
+        }
+        record = stored(index);
+        decoded.remove(index);
+        deleted.add(index);
+        return record;
+    }
+
+    @Override
+    public ContactsRecord replace(ContactsRecord record) {
+        ContactsRecord oldRecord = added.replace(record);
+        if (oldRecord != null) {
+            return oldRecord;
+        }
+        int index = findStored(record.getID());
+        if (index < 0 || deleted.contains(index)) {
+            return null;
+        }
+        oldRecord = stored(index);
+        decoded.put(index, record);
+        return oldRecord;
+    }
+
+    /**
+     * Record of the file, which isn't deleted, is decoded and kept, unless it's kept already,
+     * so decoded copy of the record is never stored instead of the kept one.
+     */
+    @Override
+    public ContactsRecord storedRecord(ContactsRecord record) {
+        if (added.contains(record)) {
+            return record;
+        }
+        int index = findStored(record.getID());
+        return index < 0 || deleted.contains(index) ? null : stored(index);
+    }
+
+    @Override
+    public boolean supportsAnyType() {
+        return false;
+    }
+
+    /**
+     * Returns accessed records as is and records, which weren't accessed yet, as detached copies,
+     * so copying doesn't make all records resident.
+     */
+    @Override
+    public List<ContactsRecord> toList() {
+        List<ContactsRecord> result = new ArrayList<>(size());
+        for (int index = 0; index < storedCount; index++) {
+            if (!deleted.contains(index)) {
+                ContactsRecord record = decoded.get(index);
+                result.add(record != null ? record : decode(index));
+            }
+        }
+        added.forEach(result::add);
+        return result;
+    }
+
+    /**
+     * Copies only changes of the file: indexes of deleted records, kept records and added records.
+     * Other records are decoded by thread reading the snapshot, because mapped file never changes,
+     * so the snapshot takes time proportional to number of changes rather than to size of phone book.
+     */
+    @Override
+    public List<ContactsRecord> snapshot() {
+        return new FrozenFile(deleted.toArray(), new HashMap<>(decoded), added.snapshot());
+    }
+
+    @Override
+    public Iterator<ContactsRecord> iterator() {
+        return new Iterator<>() {
+            private int index = nextLive(0);
+            private final Iterator<ContactsRecord> addedIterator = added.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return index < storedCount || addedIterator.hasNext();
+            }
+
+            @Override
+            public ContactsRecord next() {
+                if (index < storedCount) {
+                    ContactsRecord record = decoded.get(index);
+                    if (record == null) {
+                        record = decode(index);
+                    }
+                    index = nextLive(index + 1);
+                    return record;
+                }
+                if (!addedIterator.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return addedIterator.next();
+            }
+        };
+    }
+
+    private int nextLive(int index) {
+        while (index < storedCount && deleted.contains(index)) {
+            index++;
+        }
+        return index;
+    }
+
+    private ContactsRecord stored(int index) {
+        ContactsRecord record = decoded.get(index);
+        if (record == null) {
+            record = decode(index);
+            decoded.put(index, record);
+        }
+        return record;
+    }
+
+    /**
+     * Finds index in the file of the record at provided position,
+     * which is the smallest index with exactly position not deleted records before it.
+     */
+    private int storedIndex(int position) {
+        int index = position;
+        while (true) {
+            int next = position + deleted.rank(index);
+            if (next == index) {
+                return index;
+            }
+            index = next;
+        }
+    }
+
+    /**
+     * Finds index in the file the same way as {@link #storedIndex(int)} using copy of deleted indexes.
+     *
+     * @param deletedIndexes Indexes of deleted records in ascending order.
+     */
+    private static int storedIndex(int position, int[] deletedIndexes) {
+        int index = position;
+        while (true) {
+            int rank = Arrays.binarySearch(deletedIndexes, index);
+            int next = position + (rank >= 0 ? rank + 1 : -rank - 1);
+            if (next == index) {
+                return index;
+            }
+            index = next;
+        }
+    }
+
+    /**
+     * @return Index of record with provided ID in the file or -1 if file doesn't contain such record.
+     */
+    private int findStored(long id) {
+        int low = 0;
+        int high = storedCount - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long middleID = file.getLong(recordOffset(middle) + ID_OFFSET);
+            if (middleID < id) {
+                low = middle + 1;
+            } else if (middleID > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    private int recordOffset(int index) {
+        return (int) file.getLong(recordOffsetsPosition + index * Long.BYTES);
+    }
+
+    private ContactsRecord decode(int index) {
+        ByteBuffer buffer = file.duplicate();
+        buffer.position(recordOffset(index));
+        byte type = buffer.get();
+        long id = buffer.getLong();
+        LocalDateTime timeCreated = BinaryFormat.fromEpochMillis(buffer.getLong());
+        LocalDateTime timeEdited = BinaryFormat.fromEpochMillis(buffer.getLong());
+        String name = string(readVarInt(buffer));
+        String number = string(readVarInt(buffer));
+        ContactsRecord record;
+        switch (type) {
+            case BinaryFormat.PERSON:
+                record = new PersonContactsRecord(timeCreated, timeEdited, name, number,
+                        string(readVarInt(buffer)), string(readVarInt(buffer)), string(readVarInt(buffer)));
+                break;
+            case BinaryFormat.ORGANIZATION:
+                record = new OrganizationContactsRecord(timeCreated, timeEdited, name, number,
+                        string(readVarInt(buffer)));
+                break;
+            default:
+                throw new UncheckedIOException(new IOException("Unknown record type: " + type));
+        }
+        record.setID(id);
+        return record;
+    }
+
+    /**
+     * @param reference Reference to string table, where 0 stands for null and other values are shifted by one.
+     */
+    private String string(int reference) {
+        if (reference == 0) {
+            return null;
+        }
+        ByteBuffer buffer = file.duplicate();
+        buffer.position((int) file.getLong(stringOffsetsPosition + (reference - 1) * Long.BYTES));
+        byte[] bytes = new byte[readVarInt(buffer)];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Records of the file at the moment of snapshot: kept records and records of the file decoded on access.
+     */
+    private class FrozenFile extends AbstractList<ContactsRecord> implements RandomAccess {
+        private final int[] deletedIndexes;
+        private final Map<Integer, ContactsRecord> kept;
+        private final List<ContactsRecord> addedRecords;
+        private final int liveStored;
+
+        FrozenFile(int[] deletedIndexes, Map<Integer, ContactsRecord> kept, List<ContactsRecord> addedRecords) {
+            this.deletedIndexes = deletedIndexes;
+            this.kept = kept;
+            this.addedRecords = addedRecords;
+            liveStored = storedCount - deletedIndexes.length;
+        }
+
+        @Override
+        public ContactsRecord get(int position) {
+            if (position >= liveStored) {
+                return addedRecords.get(position - liveStored);
+            }
+            if (position < 0) {
+                throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size());
+            }
+            int index = storedIndex(position, deletedIndexes);
+            ContactsRecord record = kept.get(index);
+            return record != null ? record : decode(index);
+        }
+
+        @Override
+        public int size() {
+            return liveStored + addedRecords.size();
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package contacts.model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+
+/**
+ * Record store keeping records in array of slots in order of adding and index from record ID to slot.
+ * Deleted record leaves empty slot (tombstone), so deletion takes constant time.
+ * Tombstones are removed by compaction, which happens when they take half of slots
+ * or when record is accessed by position while they take more than quarter of slots.
+ * Otherwise position is mapped to slot by binary search in sorted slots of tombstones.
+ */
+class MemoryRecordStore implements RecordStore {
+
+    private static final int MIN_TOMBSTONES_TO_COMPACT = 64;
+
+    private ContactsRecord[] slots = new ContactsRecord[16];
+    private int slotCount;
+    private int tombstones;
+    private int[] tombstoneSlots = new int[16];
+    private final LongIntHashMap slotByID = new LongIntHashMap();
+
+    @Override
+    public int size() {
+        return slotCount - tombstones;
+    }
+
+    @Override
+    public ContactsRecord getByID(long id) {
+        int slot = slotByID.get(id);
+        return slot < 0 ? null : slots[slot];
+    }
+
+    @Override
+    public ContactsRecord getAt(int position) {
+        if (position < 0 || position >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + size());
+        }
+        if (tombstones > slotCount / 4) {
+            compact();
+        }
+        return slots[position + tombstonesBefore(position)];
+    }
+
+    /**
+     * Slot of record at the position is the position plus number of tombstones before it.
+     * Slot of i-th tombstone minus i doesn't decrease with i, so the number is the first i,
+     * for which it exceeds the position.
+     */
+    private int tombstonesBefore(int position) {
+        int low = 0;
+        int high = tombstones;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (tombstoneSlots[middle] - middle > position) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public ContactsRecord add(ContactsRecord record) {
+        if (slotCount == slots.length) {
+            slots = Arrays.copyOf(slots, slotCount * 2);
+        }
+        int slot = slotCount;
+        while (slot > 0 && (slots[slot - 1] == null || slots[slot - 1].getID() > record.getID())) {
+            ContactsRecord moved = slots[slot - 1];
+            slots[slot] = moved;
+            if (moved != null) {
+                slotByID.put(moved.getID(), slot);
+            }
+            slot--;
+        }
+        if (slot < slotCount) {
+            for (int i = tombstones - 1; i >= 0 && tombstoneSlots[i] >= slot; i--) {
+                tombstoneSlots[i]++;
+            }
+        }
+        slots[slot] = record;
+        slotByID.put(record.getID(), slot);
+        slotCount++;
+        return record;
+    }
+
+    @Override
+    public ContactsRecord remove(long id) {
+        int slot = slotByID.remove(id);
+        if (slot < 0) {
+            return null;
+        }
+        ContactsRecord record = slots[slot];
+        slots[slot] = null;
+        if (tombstones == tombstoneSlots.length) {
+            tombstoneSlots = Arrays.copyOf(tombstoneSlots, tombstones * 2);
+        }
+        int position = -Arrays.binarySearch(tombstoneSlots, 0, tombstones, slot) - 1;
+        System.arraycopy(tombstoneSlots, position, tombstoneSlots, position + 1, tombstones - position);
+        tombstoneSlots[position] = slot;
+        tombstones++;
+        if (tombstones >= MIN_TOMBSTONES_TO_COMPACT && tombstones * 2 >= slotCount) {
+            compact();
+        }
+        return record;
+    }
+
+    @Override
+    public ContactsRecord replace(ContactsRecord record) {
+        int slot = slotByID.get(record.getID());
+        if (slot < 0) {
+            return null;
+        }
+        ContactsRecord oldRecord = slots[slot];
+        slots[slot] = record;
+        return oldRecord;
+    }
+
+    @Override
+    public List<ContactsRecord> toList() {
+        List<ContactsRecord> result = new ArrayList<>(size());
+        forEach(result::add);
+        return result;
+    }
+
+    /**
+     * Copies array of slots, which takes time of memory copy, so phone book isn't blocked by the snapshot.
+     * Tombstones are removed from the copy by thread reading it.
+     */
+    @Override
+    public List<ContactsRecord> snapshot() {
+        return new FrozenSlots(Arrays.copyOf(slots, slotCount), size());
+    }
+
+    @Override
+    public Iterator<ContactsRecord> iterator() {
+        return new Iterator<>() {
+            private int slot = nextOccupied(0);
+
+            @Override
+            public boolean hasNext() {
+                return slot < slotCount;
+            }
+
+            @Override
+            public ContactsRecord next() {
+                if (slot >= slotCount) {
+                    throw new NoSuchElementException();
+                }
+                ContactsRecord record = slots[slot];
+                slot = nextOccupied(slot + 1);
+                return record;
+            }
+        };
+    }
+
+    private int nextOccupied(int slot) {
+        while (slot < slotCount && slots[slot] == null) {
+            slot++;
+        }
+        return slot;
+    }
+
+    /**
+     * Moves records to the beginning of slots array keeping their order and updates index.
+     */
+    private void compact() {
+        int count = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            ContactsRecord record = slots[slot];
+            if (record != null) {
+                if (count != slot) {
+                    slots[count] = record;
+                    slotByID.put(record.getID(), count);
+                }
+                count++;
+            }
+        }
+        Arrays.fill(slots, count, slotCount, null);
+        slotCount = count;
+        tombstones = 0;
+    }
+
+    /**
+     * Copy of slots array, which tombstones are removed on first access.
+     */
+    private static class FrozenSlots extends AbstractList<ContactsRecord> implements RandomAccess {
+        private final ContactsRecord[] slots;
+        private final int size;
+        private boolean compacted;
+
+        FrozenSlots(ContactsRecord[] slots, int size) {
+            this.slots = slots;
+            this.size = size;
+        }
+
+        @Override
+        public ContactsRecord get(int index) {
+            return slots()[checkIndex(index)];
+        }
+
+        @Override
+        public ContactsRecord set(int index, ContactsRecord record) {
+            ContactsRecord[] records = slots();
+            ContactsRecord oldRecord = records[checkIndex(index)];
+            records[index] = record;
+            return oldRecord;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        private int checkIndex(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return index;
+        }
+
+        private ContactsRecord[] slots() {
+            if (!compacted) {
+                int count = 0;
+                for (ContactsRecord record : slots) {
+                    if (record != null) {
+                        slots[count++] = record;
+                    }
+                }
+                compacted = true;
+            }
+            return slots;
+        }
+    }
+}
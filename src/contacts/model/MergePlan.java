@@ -0,0 +1,219 @@
+package contacts.model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+
+/**
+ * Duplicates found by {@link DuplicateFinder} and how to merge them: every group of duplicates is merged
+ * into one of its records, which is kept, fields it doesn't have are filled from other records of the group,
+ * and other records are deleted. <br>
+ * Plan refers to records by IDs, so it can be reviewed and applied later. Records deleted since
+ * plan was made are skipped, and groups, which records were edited since, aren't merged,
+ * so neither new values of kept record are overwritten nor edited duplicates are deleted.
+ */
+public class MergePlan {
+
+    /**
+     * Kept record is the one with the most fields set, among them the most recently edited one,
+     * and among them the oldest one.
+     */
+    private static final Comparator<ContactsRecord> BEST_FIRST = Comparator
+            .comparingInt(MergePlan::filledFields).reversed()
+            .thenComparing(ContactsRecord::getTimeEdited, Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparingLong(ContactsRecord::getID);
+
+    private final List<Merge> merges;
+    private final long comparedPairs;
+    private final long skippedPairs;
+    private final int skippedBlocks;
+
+    MergePlan(List<Merge> merges, long comparedPairs, long skippedPairs, int skippedBlocks) {
+        this.merges = Collections.unmodifiableList(merges);
+        this.comparedPairs = comparedPairs;
+        this.skippedPairs = skippedPairs;
+        this.skippedBlocks = skippedBlocks;
+    }
+
+    /**
+     * @return Groups of duplicates in order of IDs of kept records.
+     */
+    public List<Merge> getMerges() {
+        return merges;
+    }
+
+    /**
+     * @return Number of records, which are deleted by the plan.
+     */
+    public int getDuplicateCount() {
+        int count = 0;
+        for (Merge merge : merges) {
+            count += merge.duplicateIDs.length;
+        }
+        return count;
+    }
+
+    /**
+     * @return Number of pairs of records compared to find duplicates.
+     */
+    public long getComparedPairs() {
+        return comparedPairs;
+    }
+
+    /**
+     * @return Number of blocks of records, which weren't compared because they were larger than limit.
+     * @see DuplicateFinder#setMaxBlockSize(int)
+     */
+    public int getSkippedBlocks() {
+        return skippedBlocks;
+    }
+
+    /**
+     * @return Number of pairs in skipped blocks.
+     */
+    public long getSkippedPairs() {
+        return skippedPairs;
+    }
+
+    /**
+     * Merges duplicates in phone book through its usual methods, so changes are written to journal,
+     * indexes and change feed. Time of editing of every record of the group is compared with time it had
+     * when plan was made just before the group is merged, and group with edited record is skipped.
+     *
+     * @param contacts Phone book, in which duplicates were found.
+     * @return Number of deleted records.
+     */
+    public int apply(Contacts contacts) {
+        int deleted = 0;
+        for (Merge merge : merges) {
+            ContactsRecord kept = contacts.getRecordByID(merge.keptID);
+            if (kept == null || !Objects.equals(kept.getTimeEdited(), merge.keptTimeEdited)) {
+                continue;
+            }
+            ContactsRecord[] duplicates = new ContactsRecord[merge.duplicateIDs.length];
+            boolean edited = false;
+            for (int i = 0; i < duplicates.length && !edited; i++) {
+                duplicates[i] = contacts.getRecordByID(merge.duplicateIDs[i]);
+                edited = duplicates[i] != null
+                        && !Objects.equals(duplicates[i].getTimeEdited(), merge.duplicateTimesEdited[i]);
+            }
+            if (edited) {
+                continue;
+            }
+            try {
+                contacts.editFieldsByName(kept, merge.filledFields);
+            } catch (WrongFieldNameException e) {
+                throw new IllegalStateException("Filled field isn't found in schema of kept record "
+                        + merge.keptID, e);
+            }
+            for (ContactsRecord duplicate : duplicates) {
+                if (duplicate != null) {
+                    contacts.deleteRecord(duplicate);
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Plans merging of group of duplicates.
+     *
+     * @param group Records of the group, at least two.
+     */
+    static Merge merge(List<ContactsRecord> group) {
+        List<ContactsRecord> records = new ArrayList<>(group);
+        records.sort(BEST_FIRST);
+        ContactsRecord kept = records.get(0);
+        List<ContactsRecord> duplicates = records.subList(1, records.size());
+        Map<String, String> filledFields = new LinkedHashMap<>();
+        for (FieldDescriptor<?> field : kept.getSchema().getFields()) {
+            if (isSet(field.getValue(kept))) {
+                continue;
+            }
+            duplicates.stream()
+                    .filter(duplicate -> isSet(field.getValue(duplicate)))
+                    .max(Comparator.comparing(ContactsRecord::getTimeEdited,
+                            Comparator.nullsFirst(Comparator.naturalOrder())))
+                    .ifPresent(duplicate -> filledFields.put(field.getName(), field.getValue(duplicate)));
+        }
+        duplicates.sort(Comparator.comparingLong(ContactsRecord::getID));
+        long[] duplicateIDs = duplicates.stream().mapToLong(ContactsRecord::getID).toArray();
+        LocalDateTime[] duplicateTimesEdited = duplicates.stream()
+                .map(ContactsRecord::getTimeEdited).toArray(LocalDateTime[]::new);
+        return new Merge(kept.getID(), kept.getTimeEdited(), duplicateIDs, duplicateTimesEdited, filledFields);
+    }
+
+    private static int filledFields(ContactsRecord contactsRecord) {
+        int filled = 0;
+        for (FieldDescriptor<?> field : contactsRecord.getSchema().getFields()) {
+            if (isSet(field.getValue(contactsRecord))) {
+                filled++;
+            }
+        }
+        return filled;
+    }
+
+    private static boolean isSet(String value) {
+        return value != null && !value.isEmpty() && !ContactsRecord.NO_DATA.equals(value);
+    }
+
+    @Override
+    public String toString() {
+        return merges.size() + " groups of duplicates, " + getDuplicateCount() + " records to delete, "
+                + comparedPairs + " pairs compared, " + skippedBlocks + " blocks of " + skippedPairs
+                + " pairs skipped";
+    }
+
+    /**
+     * Group of duplicates: record, which is kept, and records merged into it.
+     */
+    public static class Merge {
+        private final long keptID;
+        private final LocalDateTime keptTimeEdited;
+        private final long[] duplicateIDs;
+        private final LocalDateTime[] duplicateTimesEdited;
+        private final Map<String, String> filledFields;
+
+        Merge(long keptID, LocalDateTime keptTimeEdited, long[] duplicateIDs, LocalDateTime[] duplicateTimesEdited,
+              Map<String, String> filledFields) {
+            this.keptID = keptID;
+            this.keptTimeEdited = keptTimeEdited;
+            this.duplicateIDs = duplicateIDs;
+            this.duplicateTimesEdited = duplicateTimesEdited;
+            this.filledFields = Collections.unmodifiableMap(filledFields);
+        }
+
+        public long getKeptID() {
+            return keptID;
+        }
+
+        /**
+         * @return IDs of records to delete in ascending order.
+         */
+        public long[] getDuplicateIDs() {
+            return duplicateIDs.clone();
+        }
+
+        /**
+         * @return Values of fields, which aren't set in kept record, by names of fields.
+         * Value is taken from the most recently edited duplicate, which has it.
+         */
+        public Map<String, String> getFilledFields() {
+            return filledFields;
+        }
+
+        @Override
+        public String toString() {
+            return keptID + " <- " + Arrays.toString(duplicateIDs) + (filledFields.isEmpty()
+                    ? "" : " filling " + filledFields);
+        }
+    }
+}
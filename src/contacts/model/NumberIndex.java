@@ -0,0 +1,161 @@
+package contacts.model;
+
+import java.util.Arrays;
+
+
+/**
+ * Digit trie over normalized phone numbers of records for caller ID lookup.
+ * Every node has ten children stored in one primitive array and list of IDs of records,
+ * which normalized number ends at the node. Lookup takes time proportional to number of digits
+ * regardless of number of records. Nodes of deleted numbers aren't reclaimed. <br>
+ * Like other indexes it supports record IDs up to {@link Integer#MAX_VALUE}.
+ */
+class NumberIndex {
+
+    private static final int RADIX = 10;
+    private static final String KEYPAD = "22233344455566677778889999";
+
+    private int[] children = new int[RADIX * 16];
+    private PostingList[] ids = new PostingList[16];
+    private int nodeCount = 1;
+
+    /**
+     * Turns phone number into canonical form: digits only, letters are replaced with digits of phone keypad,
+     * so "+1 (555) 123-4567", "1-555-123-4567" and "1 555 12E 4567" have the same form.
+     *
+     * @param number Phone number in any format.
+     * @return Digits of the number or null if number doesn't contain digits or letters.
+     */
+    static String normalize(String number) {
+        if (number == null || ContactsRecord.NO_DATA.equals(number)) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(number.length());
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if (c >= 'a' && c <= 'z') {
+                digits.append(KEYPAD.charAt(c - 'a'));
+            } else if (c >= 'A' && c <= 'Z') {
+                digits.append(KEYPAD.charAt(c - 'A'));
+            }
+        }
+        return digits.length() == 0 ? null : digits.toString();
+    }
+
+    void add(ContactsRecord contactsRecord) {
+        add(contactsRecord.getNormalizedNumber(), contactsRecord.getID());
+    }
+
+    void remove(ContactsRecord contactsRecord) {
+        remove(contactsRecord.getNormalizedNumber(), contactsRecord.getID());
+    }
+
+    /**
+     * Updates index after number of the record was changed.
+     *
+     * @param contactsRecord Changed record.
+     * @param oldNumber      Number before change, not normalized.
+     */
+    void update(ContactsRecord contactsRecord, String oldNumber) {
+        remove(normalize(oldNumber), contactsRecord.getID());
+        add(contactsRecord);
+    }
+
+    /**
+     * Replaces indexed record with another one having the same ID.
+     */
+    void replace(ContactsRecord oldRecord, ContactsRecord newRecord) {
+        remove(oldRecord);
+        add(newRecord);
+    }
+
+    /**
+     * @param digits Normalized number.
+     * @return IDs of records with the same normalized number in phone book order.
+     */
+    int[] exact(String digits) {
+        int node = find(digits);
+        return node < 0 || ids[node] == null ? new int[0] : ids[node].toArray();
+    }
+
+    /**
+     * Finds records, which number is the longest prefix of provided one among numbers of all records.
+     * For example record with number of switchboard "555-1000" is found for call from "555-1000-23".
+     *
+     * @param digits Normalized number.
+     * @return IDs of records with the longest matching number in phone book order.
+     */
+    int[] longestPrefix(String digits) {
+        int node = 0;
+        int found = -1;
+        for (int i = 0; i < digits.length(); i++) {
+            node = children[node * RADIX + digits.charAt(i) - '0'];
+            if (node == 0) {
+                break;
+            }
+            if (ids[node] != null && !ids[node].isEmpty()) {
+                found = node;
+            }
+        }
+        return found < 0 ? new int[0] : ids[found].toArray();
+    }
+
+    private void add(String digits, long id) {
+        if (digits == null) {
+            return;
+        }
+        int node = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            int cell = node * RADIX + digits.charAt(i) - '0';
+            if (children[cell] == 0) {
+                int child = newNode();
+                children[cell] = child;
+            }
+            node = children[cell];
+        }
+        if (ids[node] == null) {
+            ids[node] = new PostingList();
+        }
+        ids[node].add(Math.toIntExact(id));
+    }
+
+    private void remove(String digits, long id) {
+        if (digits == null) {
+            return;
+        }
+        int node = find(digits);
+        if (node >= 0 && ids[node] != null) {
+            ids[node].remove(Math.toIntExact(id));
+            if (ids[node].isEmpty()) {
+                ids[node] = null;
+            }
+        }
+    }
+
+    /**
+     * @return Node of the number or -1 if there's no such node.
+     */
+    private int find(String digits) {
+        int node = 0;
+        for (int i = 0; i < digits.length(); i++) {
+            node = children[node * RADIX + digits.charAt(i) - '0'];
+            if (node == 0) {
+                return -1;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * @return Index of new node, which has no children and records.
+     */
+    private int newNode() {
+        if (nodeCount == ids.length) {
+            ids = Arrays.copyOf(ids, nodeCount * 2);
+            children = Arrays.copyOf(children, nodeCount * 2 * RADIX);
+        }
+        return nodeCount++;
+    }
+}
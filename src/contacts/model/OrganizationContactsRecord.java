@@ -1,51 +1,50 @@
 package contacts.model;
 
-import java.util.List;
+import java.time.LocalDateTime;
 import java.util.Objects;
 
 
 public class OrganizationContactsRecord extends ContactsRecord {
+    private static final long serialVersionUID = -8054692010523951075L;
+
+    /**
+     * Fields of organization: name, address and number.
+     */
+    public static final RecordSchema<OrganizationContactsRecord> SCHEMA = RecordSchema
+            .builder("organization", OrganizationContactsRecord.class, OrganizationContactsRecord::new)
+            .field(RecordField.NAME, "Organization name", "Enter the organization name",
+                    OrganizationContactsRecord::getName, OrganizationContactsRecord::setName)
+            .field(RecordField.ADDRESS, "Address", "Enter the address",
+                    OrganizationContactsRecord::getAddress, OrganizationContactsRecord::setAddress)
+            .field(RecordField.NUMBER, "Number", "Enter the number",
+                    OrganizationContactsRecord::getNumber, OrganizationContactsRecord::setNumber)
+            .build();
 
     private String address;
 
     public OrganizationContactsRecord() {
         super();
-        super.accessibleFields = List.of("name", "address", "number");
     }
 
-    @Override
-    public void editFieldByName(String fieldName, String newValue) throws WrongFieldNameException {
-        switch (fieldName) {
-            case "name":
-                setName(newValue);
-                break;
-            case "address":
-                setAddress(newValue);
-                break;
-            case "number":
-                setNumber(newValue);
-                break;
-            default:
-                throw new WrongFieldNameException("There's no such field to edit: " + fieldName);
-        }
+    /**
+     * Constructs record restored from storage. Values are stored as is without validation.
+     */
+    OrganizationContactsRecord(LocalDateTime timeCreated, LocalDateTime timeEdited, String name, String number,
+                               String address) {
+        super(timeCreated, timeEdited);
+        this.name = name;
+        this.number = number;
+        this.address = address;
+        invalidateSearchableString();
     }
 
     @Override
-    public String getFieldByName(String fieldName) throws WrongFieldNameException {
-        switch (fieldName) {
-            case "name":
-                return "Organization name: " + getName();
-            case "address":
-                return "Address: " + getAddress();
-            case "number":
-                return "Number: " + getNumber();
-            default:
-                throw new WrongFieldNameException("There's no such field to edit: " + fieldName);
-        }
+    public RecordSchema<OrganizationContactsRecord> getSchema() {
+        return SCHEMA;
     }
 
     @Override
-    public String toSearchableString() {
+    protected String buildSearchableString() {
         return (getName() + getAddress() + getNumber()).toLowerCase();
     }
 
@@ -55,6 +54,7 @@ public class OrganizationContactsRecord extends ContactsRecord {
 
     public void setAddress(String address) {
         this.address = address;
+        invalidateSearchableString();
     }
 
     @Override
@@ -63,11 +63,11 @@ public class OrganizationContactsRecord extends ContactsRecord {
         if (!(o instanceof OrganizationContactsRecord)) return false;
         if (!super.equals(o)) return false;
         OrganizationContactsRecord that = (OrganizationContactsRecord) o;
-        return Objects.equals(address, that.address);
+        return Objects.equals(getAddress(), that.getAddress());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), address);
+        return Objects.hash(super.hashCode(), getAddress());
     }
 }
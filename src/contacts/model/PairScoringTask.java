@@ -0,0 +1,236 @@
+package contacts.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * Compares pairs of records within candidate blocks on fork-join pool and collects pairs,
+ * which score is at least threshold. Range of blocks is split in halves by number of pairs
+ * until it's small enough, so one large block doesn't leave other threads idle. <br>
+ * Records of different types are never duplicates, and neither are records with different genders.
+ * Otherwise score is weighted mean of similarities of fields set in both records: equality of normalized
+ * numbers and birth dates, and one minus Levenshtein distance relative to length of longer value
+ * for names, surnames and addresses. Pair is scored 0, if fields set in both records
+ * don't weigh enough to tell anything, e.g. only name of organization is set.
+ */
+class PairScoringTask extends RecursiveTask<PairScoringTask.ScoredPairs> {
+    private static final long serialVersionUID = 1L;
+
+    private static final long MIN_CHUNK_PAIRS = 1 << 14;
+    private static final double[] WEIGHTS = new double[RecordField.values().length];
+    private static final double MIN_WEIGHT = 0.4;
+
+    /**
+     * Fields compared by equality go first, so most pairs are rejected before computing distances.
+     */
+    private static final RecordField[] SCORED_FIELDS = {RecordField.NUMBER, RecordField.BIRTH,
+            RecordField.NAME, RecordField.SURNAME, RecordField.ADDRESS};
+
+    static {
+        WEIGHTS[RecordField.NAME.ordinal()] = 0.25;
+        WEIGHTS[RecordField.SURNAME.ordinal()] = 0.3;
+        WEIGHTS[RecordField.NUMBER.ordinal()] = 0.3;
+        WEIGHTS[RecordField.BIRTH.ordinal()] = 0.15;
+        WEIGHTS[RecordField.ADDRESS.ordinal()] = 0.15;
+    }
+
+    private final RecordFeatures features;
+    private final CandidateBlocks blocks;
+    private final double threshold;
+    private final int from;
+    private final int to;
+    private final long chunkPairs;
+    private int[] previousRow;
+    private int[] currentRow;
+
+    private PairScoringTask(RecordFeatures features, CandidateBlocks blocks, double threshold, int from, int to,
+                            long chunkPairs) {
+        this.features = features;
+        this.blocks = blocks;
+        this.threshold = threshold;
+        this.from = from;
+        this.to = to;
+        this.chunkPairs = chunkPairs;
+    }
+
+    /**
+     * Compares pairs of all blocks in parallel using common fork-join pool.
+     *
+     * @param threshold Minimal score of duplicates from 0 to 1.
+     * @return Pairs of duplicates.
+     */
+    static ScoredPairs score(RecordFeatures features, CandidateBlocks blocks, double threshold) {
+        int parts = ForkJoinPool.getCommonPoolParallelism() * 4;
+        long chunkPairs = Math.max(MIN_CHUNK_PAIRS, blocks.pairsBefore(blocks.size()) / parts);
+        return ForkJoinPool.commonPool().invoke(
+                new PairScoringTask(features, blocks, threshold, 0, blocks.size(), chunkPairs));
+    }
+
+    @Override
+    protected ScoredPairs compute() {
+        if (to - from == 1 || blocks.pairsBefore(to) - blocks.pairsBefore(from) <= chunkPairs) {
+            return compareBlocks();
+        }
+        int middle = middleBlock();
+        PairScoringTask left = new PairScoringTask(features, blocks, threshold, from, middle, chunkPairs);
+        left.fork();
+        ScoredPairs right = new PairScoringTask(features, blocks, threshold, middle, to, chunkPairs).compute();
+        ScoredPairs result = left.join();
+        result.addAll(right);
+        return result;
+    }
+
+    /**
+     * @return Block, which splits range into parts with about equal numbers of pairs, but not the first block.
+     */
+    private int middleBlock() {
+        long half = (blocks.pairsBefore(from) + blocks.pairsBefore(to)) >>> 1;
+        int low = from + 1;
+        int high = to - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (blocks.pairsBefore(middle) < half) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private ScoredPairs compareBlocks() {
+        ScoredPairs result = new ScoredPairs();
+        previousRow = new int[32];
+        currentRow = new int[32];
+        for (int block = from; block < to; block++) {
+            int end = blocks.blockStart(block + 1);
+            for (int i = blocks.blockStart(block); i < end; i++) {
+                int first = blocks.member(i);
+                for (int j = i + 1; j < end; j++) {
+                    int second = blocks.member(j);
+                    if (!blocks.isFirstSharedBlock(block, first, second)) {
+                        continue;
+                    }
+                    result.compared++;
+                    if (score(first, second) >= threshold) {
+                        result.add(first, second);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Computes score by subtracting weights of mismatches from weight of compared fields
+     * and stops as soon as score falls below threshold.
+     *
+     * @return Score of similarity of records from 0 to 1 or 0 if it's below threshold.
+     */
+    private double score(int first, int second) {
+        if (features.schema(first) != features.schema(second)) {
+            return 0;
+        }
+        String firstGender = features.value(RecordField.GENDER, first);
+        String secondGender = features.value(RecordField.GENDER, second);
+        if (firstGender != null && secondGender != null && !firstGender.equals(secondGender)) {
+            return 0;
+        }
+        double weight = 0;
+        for (RecordField field : SCORED_FIELDS) {
+            if (features.value(field, first) != null && features.value(field, second) != null) {
+                weight += WEIGHTS[field.ordinal()];
+            }
+        }
+        if (weight < MIN_WEIGHT) {
+            return 0;
+        }
+        double minScore = threshold * weight;
+        double missed = 0;
+        for (RecordField field : SCORED_FIELDS) {
+            String a = features.value(field, first);
+            String b = features.value(field, second);
+            if (a == null || b == null || a.equals(b)) {
+                continue;
+            }
+            double fieldWeight = WEIGHTS[field.ordinal()];
+            missed += field == RecordField.NUMBER || field == RecordField.BIRTH
+                    ? fieldWeight : fieldWeight * (1 - similarity(a, b));
+            if (weight - missed < minScore) {
+                return 0;
+            }
+        }
+        return (weight - missed) / weight;
+    }
+
+    /**
+     * @return One minus Levenshtein distance between values divided by length of the longer one.
+     */
+    private double similarity(String a, String b) {
+        int length = Math.max(a.length(), b.length());
+        if (currentRow.length <= a.length()) {
+            previousRow = new int[a.length() + 1];
+            currentRow = new int[a.length() + 1];
+        }
+        int[] previous = previousRow;
+        int[] current = currentRow;
+        for (int i = 0; i <= a.length(); i++) {
+            previous[i] = i;
+        }
+        for (int j = 1; j <= b.length(); j++) {
+            current[0] = j;
+            char c = b.charAt(j - 1);
+            for (int i = 1; i <= a.length(); i++) {
+                int replace = previous[i - 1] + (a.charAt(i - 1) == c ? 0 : 1);
+                current[i] = Math.min(replace, Math.min(previous[i], current[i - 1]) + 1);
+            }
+            int[] row = previous;
+            previous = current;
+            current = row;
+        }
+        return 1 - (double) previous[a.length()] / length;
+    }
+
+    /**
+     * Pairs of records found to be duplicates, each packed into long, and number of compared pairs.
+     */
+    static class ScoredPairs {
+        private long[] pairs = new long[16];
+        private int size;
+        private long compared;
+
+        int size() {
+            return size;
+        }
+
+        int first(int index) {
+            return (int) (pairs[index] >>> 32);
+        }
+
+        int second(int index) {
+            return (int) pairs[index];
+        }
+
+        long compared() {
+            return compared;
+        }
+
+        private void add(int first, int second) {
+            if (size == pairs.length) {
+                pairs = Arrays.copyOf(pairs, size * 2);
+            }
+            pairs[size++] = (long) first << 32 | second;
+        }
+
+        private void addAll(ScoredPairs other) {
+            if (size + other.size > pairs.length) {
+                pairs = Arrays.copyOf(pairs, Math.max(size + other.size, size * 2));
+            }
+            System.arraycopy(other.pairs, 0, pairs, size, other.size);
+            size += other.size;
+            compared += other.compared;
+        }
+    }
+}
@@ -1,10 +1,29 @@
 package contacts.model;
 
-import java.util.List;
+import java.time.LocalDateTime;
 import java.util.Objects;
 
 
 public class PersonContactsRecord extends ContactsRecord {
+    private static final long serialVersionUID = -5137778077326302013L;
+
+    /**
+     * Fields of person: name, surname, birth date, gender and number.
+     */
+    public static final RecordSchema<PersonContactsRecord> SCHEMA = RecordSchema
+            .builder("person", PersonContactsRecord.class, PersonContactsRecord::new)
+            .field(RecordField.NAME, "Name", "Enter the name",
+                    PersonContactsRecord::getName, PersonContactsRecord::setName)
+            .field(RecordField.SURNAME, "Surname", "Enter the surname",
+                    PersonContactsRecord::getSurname, PersonContactsRecord::setSurname)
+            .field(RecordField.BIRTH, "Birth date", "Enter the birth date",
+                    PersonContactsRecord::getBirthDate, PersonContactsRecord::setBirthDate)
+            .field(RecordField.GENDER, "Gender", "Enter the gender (M, F)",
+                    PersonContactsRecord::getGender, PersonContactsRecord::setGender)
+            .field(RecordField.NUMBER, "Number", "Enter the number",
+                    PersonContactsRecord::getNumber, PersonContactsRecord::setNumber)
+            .displayName(RecordField.NAME, RecordField.SURNAME)
+            .build();
 
     private String surname;
     private String birthDate;
@@ -12,52 +31,28 @@ public class PersonContactsRecord extends ContactsRecord {
 
     public PersonContactsRecord() {
         super();
-        super.accessibleFields = List.of("name", "surname", "birth", "gender", "number");
     }
 
-    @Override
-    public void editFieldByName(String fieldName, String newValue) throws WrongFieldNameException {
-        switch (fieldName) {
-            case "name":
-                setName(newValue);
-                break;
-            case "surname":
-                setSurname(newValue);
-                break;
-            case "birth":
-                setBirthDate(newValue);
-                break;
-            case "gender":
-                setGender(newValue);
-                break;
-            case "number":
-                setNumber(newValue);
-                break;
-            default:
-                throw new WrongFieldNameException("There's no such field to edit: " + fieldName);
-        }
+    /**
+     * Constructs record restored from storage. Values are stored as is without validation.
+     */
+    PersonContactsRecord(LocalDateTime timeCreated, LocalDateTime timeEdited, String name, String number,
+                         String surname, String birthDate, String gender) {
+        super(timeCreated, timeEdited);
+        this.name = name;
+        this.number = number;
+        this.surname = surname;
+        this.birthDate = birthDate;
+        this.gender = gender;
     }
 
     @Override
-    public String getFieldByName(String fieldName) throws WrongFieldNameException {
-        switch (fieldName) {
-            case "name":
-                return "Name: " + getName();
-            case "surname":
-                return "Surname: " + getSurname();
-            case "birth":
-                return "Birth date: " + getBirthDate();
-            case "gender":
-                return "Gender: " + getGender();
-            case "number":
-                return "Number: " + getNumber();
-            default:
-                throw new WrongFieldNameException("There's no such field to edit: " + fieldName);
-        }
+    public RecordSchema<PersonContactsRecord> getSchema() {
+        return SCHEMA;
     }
 
     @Override
-    public String toSearchableString() {
+    protected String buildSearchableString() {
         return (getName() + getSurname() + getNumber() + getGender() + getBirthDate()).toLowerCase();
     }
 
@@ -67,6 +62,7 @@ public class PersonContactsRecord extends ContactsRecord {
 
     public void setSurname(String surname) {
         this.surname = surname;
+        invalidateSearchableString();
     }
 
     public String getBirthDate() {
@@ -74,17 +70,14 @@ public class PersonContactsRecord extends ContactsRecord {
     }
 
     /**
-     * Stores date of birth of person if provided parameter satisfy format "YYYY-MM-DD" otherwise stores "[no data]".
+     * Stores date of birth of person if provided parameter is existing date in format "YYYY-MM-DD"
+     * otherwise stores "[no data]".
      *
      * @param birthDate String representation of date in format "YYYY-MM-DD".
      */
     public void setBirthDate(String birthDate) {
-        if (birthDate.matches("\\d{4}-\\d{2}-\\d{2}")) {
-            this.birthDate = birthDate;
-        } else {
-            System.out.println("Bad birth date!");
-            this.birthDate = "[no data]";
-        }
+        this.birthDate = FieldValidator.isValidBirthDate(birthDate) ? birthDate : FieldValidator.rejected(birthDate);
+        invalidateSearchableString();
     }
 
     public String getGender() {
@@ -98,12 +91,8 @@ public class PersonContactsRecord extends ContactsRecord {
      * @param gender Persons gender in format "M" or "F"
      */
     public void setGender(String gender) {
-        if ("M".equals(gender) || "F".equals(gender)) {
-            this.gender = gender;
-        } else {
-            System.out.println("Bad gender!");
-            this.gender = "[no data]";
-        }
+        this.gender = FieldValidator.validateGender(gender).isValid() ? gender : FieldValidator.rejected(gender);
+        invalidateSearchableString();
     }
 
     @Override
@@ -112,13 +101,13 @@ public class PersonContactsRecord extends ContactsRecord {
         if (!(o instanceof PersonContactsRecord)) return false;
         if (!super.equals(o)) return false;
         PersonContactsRecord that = (PersonContactsRecord) o;
-        return Objects.equals(surname, that.surname) &&
-                Objects.equals(birthDate, that.birthDate) &&
-                Objects.equals(gender, that.gender);
+        return Objects.equals(getSurname(), that.getSurname()) &&
+                Objects.equals(getBirthDate(), that.getBirthDate()) &&
+                Objects.equals(getGender(), that.getGender());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(super.hashCode(), surname, birthDate, gender);
+        return Objects.hash(super.hashCode(), getSurname(), getBirthDate(), getGender());
     }
 }
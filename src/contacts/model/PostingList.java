@@ -0,0 +1,100 @@
+package contacts.model;
+
+import java.util.Arrays;
+
+
+/**
+ * Sorted set of record IDs stored in primitive array.
+ * Used by search indexes to keep list of records containing some key.
+ */
+class PostingList {
+
+    private int[] ids = new int[4];
+    private int size;
+
+    /**
+     * Adds ID to the list keeping it sorted. Appending of the largest ID takes constant time.
+     *
+     * @param id ID of the record.
+     */
+    void add(int id) {
+        if (size > 0 && ids[size - 1] >= id) {
+            int position = Arrays.binarySearch(ids, 0, size, id);
+            if (position >= 0) {
+                return;
+            }
+            insertAt(-position - 1, id);
+            return;
+        }
+        insertAt(size, id);
+    }
+
+    /**
+     * Removes ID from the list if present.
+     *
+     * @param id ID of the record.
+     */
+    void remove(int id) {
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        if (position >= 0) {
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+        }
+    }
+
+    boolean contains(int id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    /**
+     * @return Number of stored IDs less than or equal to provided one.
+     */
+    int rank(int id) {
+        int position = Arrays.binarySearch(ids, 0, size, id);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    /**
+     * @return ID at provided position in ascending order.
+     */
+    int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return ids[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Copy of stored IDs in ascending order.
+     */
+    int[] toArray() {
+        return Arrays.copyOf(ids, size);
+    }
+
+    /**
+     * Copies stored IDs in ascending order into array.
+     *
+     * @return Position in target array after the last copied ID.
+     */
+    int copyTo(int[] target, int offset) {
+        System.arraycopy(ids, 0, target, offset, size);
+        return offset + size;
+    }
+
+    private void insertAt(int position, int id) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        System.arraycopy(ids, position, ids, position + 1, size - position);
+        ids[position] = id;
+        size++;
+    }
+}
@@ -0,0 +1,178 @@
+package contacts.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+
+/**
+ * Bounded caches of search queries: compiled patterns and results of search.
+ * Both caches evict least recently used entries when they are full. Results are also bounded
+ * by total number of records in them, and results larger than a fraction of this bound aren't cached,
+ * so a few broad queries of large phone book don't keep long lists. Cached results are shared
+ * by callers as unmodifiable lists.
+ * Result is valid only while phone book has the same modification count as when result was stored,
+ * so any change of phone book makes all stored results stale. <br>
+ * Cache is thread-safe.
+ */
+class QueryCache {
+
+    /**
+     * Number of records in all cached results.
+     */
+    static final int MAX_CACHED_RECORDS = 1 << 20;
+
+    /**
+     * Number of records in the largest cached result.
+     */
+    static final int MAX_RESULT_SIZE = MAX_CACHED_RECORDS / 8;
+
+    private final int capacity;
+    private final Map<String, Pattern> patterns;
+    private final Map<String, Result> results = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedRecords;
+    private long patternHits;
+    private long patternMisses;
+    private long resultHits;
+    private long resultMisses;
+
+    /**
+     * @param capacity Maximal number of entries in each cache, 0 disables caching.
+     */
+    QueryCache(int capacity) {
+        this.capacity = capacity;
+        patterns = lruMap(capacity);
+    }
+
+    /**
+     * @return Pattern compiled from lowercased query.
+     */
+    Pattern pattern(String query) {
+        synchronized (this) {
+            Pattern pattern = patterns.get(query);
+            if (pattern != null) {
+                patternHits++;
+                return pattern;
+            }
+            patternMisses++;
+        }
+        Pattern pattern = Pattern.compile(query.toLowerCase());
+        synchronized (this) {
+            patterns.put(query, pattern);
+        }
+        return pattern;
+    }
+
+    /**
+     * @param modificationCount Current modification count of phone book.
+     * @return Unmodifiable stored result of the query or null if there's no result for current state of phone book.
+     */
+    List<ContactsRecord> result(String query, long modificationCount) {
+        Result result;
+        synchronized (this) {
+            result = results.get(query);
+            if (result == null || result.modificationCount != modificationCount) {
+                resultMisses++;
+                return null;
+            }
+            resultHits++;
+        }
+        return result.records;
+    }
+
+    /**
+     * Stores result unless it's too large. Caller shouldn't change the list afterwards.
+     *
+     * @param modificationCount Modification count of phone book read before search was started.
+     * @return Unmodifiable view of the result.
+     */
+    List<ContactsRecord> putResult(String query, long modificationCount, List<ContactsRecord> records) {
+        List<ContactsRecord> view = Collections.unmodifiableList(records);
+        if (capacity == 0 || records.size() > MAX_RESULT_SIZE) {
+            return view;
+        }
+        Result result = new Result(modificationCount, view);
+        synchronized (this) {
+            Result replaced = results.put(query, result);
+            if (replaced != null) {
+                cachedRecords -= replaced.records.size();
+            }
+            cachedRecords += records.size();
+            Iterator<Result> eldest = results.values().iterator();
+            while (results.size() > capacity || cachedRecords > MAX_CACHED_RECORDS) {
+                cachedRecords -= eldest.next().records.size();
+                eldest.remove();
+            }
+        }
+        return view;
+    }
+
+    /**
+     * Wraps lazily produced result, so it's stored once it's iterated to the end. Records are collected
+     * only until result becomes too large to be stored. Result isn't returned while phone book has another
+     * modification count, so result of iteration, during which phone book was changed, is never returned.
+     *
+     * @param modificationCount Modification count of phone book read before search was started.
+     * @return Iterator over the same records.
+     */
+    Iterator<ContactsRecord> putResultWhenIterated(String query, long modificationCount,
+                                                    Iterator<ContactsRecord> records) {
+        if (capacity == 0) {
+            return records;
+        }
+        return new Iterator<>() {
+            private List<ContactsRecord> collected = new ArrayList<>();
+
+            @Override
+            public boolean hasNext() {
+                if (records.hasNext()) {
+                    return true;
+                }
+                if (collected != null) {
+                    putResult(query, modificationCount, collected);
+                    collected = null;
+                }
+                return false;
+            }
+
+            @Override
+            public ContactsRecord next() {
+                ContactsRecord contactsRecord = records.next();
+                if (collected != null) {
+                    collected.add(contactsRecord);
+                    if (collected.size() > MAX_RESULT_SIZE) {
+                        collected = null;
+                    }
+                }
+                return contactsRecord;
+            }
+        };
+    }
+
+    synchronized SearchCacheStatistics statistics() {
+        return new SearchCacheStatistics(patternHits, patternMisses, resultHits, resultMisses);
+    }
+
+    private static <V> Map<String, V> lruMap(int capacity) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    private static class Result {
+        final long modificationCount;
+        final List<ContactsRecord> records;
+
+        Result(long modificationCount, List<ContactsRecord> records) {
+            this.modificationCount = modificationCount;
+            this.records = records;
+        }
+    }
+}
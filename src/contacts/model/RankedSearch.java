@@ -0,0 +1,150 @@
+package contacts.model;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+
+/**
+ * Collects the best scored records of ranked search in bounded heap, which root is the worst kept record. <br>
+ * Record is scored by its best matching field: exact match of whole value is better than match of its beginning,
+ * which is better than match anywhere inside it, and among matches of the same kind
+ * name and surname weigh more than number, which weighs more than other fields.
+ * Records with equal scores are ranked in phone book order, so records should be offered in order of IDs,
+ * and once heap is full of perfect matches, records offered later can't get into it.
+ *
+ * @see Contacts#searchRanked(String, int)
+ */
+class RankedSearch {
+
+    private static final int SUBSTRING = 1;
+    private static final int PREFIX = 2;
+    private static final int EXACT = 3;
+    private static final int MAX_WEIGHT = 3;
+
+    /**
+     * Score of exact match of name or surname, which can't be outranked.
+     */
+    static final int PERFECT = score(EXACT, MAX_WEIGHT);
+
+    private static final Comparator<Ranked> WORST_FIRST = Comparator.<Ranked>comparingInt(ranked -> ranked.score)
+            .thenComparing(ranked -> ranked.record.getID(), Comparator.reverseOrder());
+
+    private final String query;
+    private final int limit;
+    private final PriorityQueue<Ranked> heap;
+
+    /**
+     * @param query Text to find, compared case insensitively.
+     * @param limit Maximum number of records to keep.
+     */
+    RankedSearch(String query, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit should be positive: " + limit);
+        }
+        this.query = query.toLowerCase();
+        this.limit = limit;
+        heap = new PriorityQueue<>(Math.min(limit, 1024), WORST_FIRST);
+    }
+
+    /**
+     * @return Lowercased query.
+     */
+    String getQuery() {
+        return query;
+    }
+
+    /**
+     * Scores record and keeps it, if it's among the best records offered so far.
+     *
+     * @param contactsRecord Record to rank.
+     */
+    void offer(ContactsRecord contactsRecord) {
+        int score = score(contactsRecord);
+        if (score > 0) {
+            offer(contactsRecord, score);
+        }
+    }
+
+    /**
+     * Keeps record with already known score, if it's among the best records offered so far.
+     */
+    void offer(ContactsRecord contactsRecord, int score) {
+        Ranked ranked = new Ranked(contactsRecord, score);
+        if (heap.size() < limit) {
+            heap.add(ranked);
+        } else if (WORST_FIRST.compare(ranked, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(ranked);
+        }
+    }
+
+    /**
+     * @return True if all kept records are perfect matches, so offering records with greater IDs is useless.
+     */
+    boolean isComplete() {
+        return heap.size() == limit && heap.peek().score == PERFECT;
+    }
+
+    /**
+     * @return Kept records, the best first.
+     */
+    List<ContactsRecord> result() {
+        List<Ranked> ranked = new ArrayList<>(heap);
+        ranked.sort(WORST_FIRST.reversed());
+        List<ContactsRecord> result = new ArrayList<>(ranked.size());
+        for (Ranked entry : ranked) {
+            result.add(entry.record);
+        }
+        return result;
+    }
+
+    /**
+     * @return Score of the best matching field of the record or 0 if no field contains query.
+     */
+    int score(ContactsRecord contactsRecord) {
+        int best = 0;
+        for (FieldDescriptor<?> field : contactsRecord.getSchema().getFields()) {
+            String value = field.getValue(contactsRecord);
+            if (value == null || ContactsRecord.NO_DATA.equals(value)) {
+                continue;
+            }
+            value = value.toLowerCase();
+            int kind = value.equals(query) ? EXACT
+                    : value.startsWith(query) ? PREFIX
+                    : value.contains(query) ? SUBSTRING
+                    : 0;
+            if (kind > 0) {
+                best = Math.max(best, score(kind, weight(field.getField())));
+            }
+        }
+        return best;
+    }
+
+    private static int score(int kind, int weight) {
+        return kind * (MAX_WEIGHT + 1) + weight;
+    }
+
+    private static int weight(RecordField field) {
+        switch (field) {
+            case NAME:
+            case SURNAME:
+                return MAX_WEIGHT;
+            case NUMBER:
+                return 2;
+            default:
+                return 1;
+        }
+    }
+
+    private static class Ranked {
+        final ContactsRecord record;
+        final int score;
+
+        Ranked(ContactsRecord record, int score) {
+            this.record = record;
+            this.score = score;
+        }
+    }
+}
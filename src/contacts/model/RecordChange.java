@@ -0,0 +1,64 @@
+package contacts.model;
+
+import java.time.LocalDateTime;
+
+
+/**
+ * Change of phone book record reported by change feed: record was added, edited or deleted.
+ * Every change made since phone book was opened has sequence number, which grows with every change,
+ * so client keeping the last seen number gets only changes it hasn't seen.
+ */
+public class RecordChange {
+
+    public enum Kind {
+        ADDED, EDITED, DELETED
+    }
+
+    private final long sequence;
+    private final long id;
+    private final Kind kind;
+    private final LocalDateTime time;
+    private final ContactsRecord record;
+
+    RecordChange(long sequence, long id, Kind kind, LocalDateTime time, ContactsRecord record) {
+        this.sequence = sequence;
+        this.id = id;
+        this.kind = kind;
+        this.time = time;
+        this.record = record;
+    }
+
+    /**
+     * @return Sequence number of the change or 0 if record wasn't changed since phone book was opened.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getID() {
+        return id;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return Time of the last editing of the record or time of deletion of deleted record.
+     */
+    public LocalDateTime getTime() {
+        return time;
+    }
+
+    /**
+     * @return Copy of record in state it had when change was logged or found, or null if record is deleted.
+     */
+    public ContactsRecord getRecord() {
+        return record;
+    }
+
+    @Override
+    public String toString() {
+        return sequence + " " + kind + " " + id + " at " + time;
+    }
+}
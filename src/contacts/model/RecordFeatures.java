@@ -0,0 +1,179 @@
+package contacts.model;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Values of records prepared for comparison by {@link DuplicateFinder} and blocking keys of records. <br>
+ * Values are kept in array per field: lowercased, phone numbers as digits of {@link NumberIndex#normalize},
+ * null if field isn't set or record doesn't have it. <br>
+ * Blocking keys are 64-bit hashes of values shared by records, which may be duplicates:
+ * normalized phone number, Soundex code of surname with the first letter of name for records with surname
+ * and every word of name for other records, e.g. organizations. Keys of record are kept in one array
+ * after keys of previous records.
+ */
+class RecordFeatures {
+
+    private static final RecordField[] FIELDS = RecordField.values();
+    private static final String SOUNDEX_DIGITS = "01230120022455012623010202";
+    private static final char NUMBER_KEY = 'n';
+    private static final char SURNAME_KEY = 's';
+    private static final char WORD_KEY = 'w';
+
+    private final RecordSchema<?>[] schemas;
+    private final String[][] values = new String[FIELDS.length][];
+    private final int[] keyStart;
+    private long[] keys = new long[16];
+
+    /**
+     * Prepares values and keys of records.
+     *
+     * @param records Records to compare, which are referred to by their positions in the list.
+     */
+    RecordFeatures(List<ContactsRecord> records) {
+        int size = records.size();
+        schemas = new RecordSchema<?>[size];
+        for (RecordField field : FIELDS) {
+            values[field.ordinal()] = new String[size];
+        }
+        keyStart = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            ContactsRecord contactsRecord = records.get(i);
+            schemas[i] = contactsRecord.getSchema();
+            for (RecordField field : FIELDS) {
+                FieldDescriptor<?> descriptor = schemas[i].getField(field);
+                if (descriptor != null) {
+                    values[field.ordinal()][i] = prepare(field, descriptor.getValue(contactsRecord));
+                }
+            }
+            keyStart[i + 1] = addKeys(i, keyStart[i]);
+        }
+    }
+
+    int size() {
+        return schemas.length;
+    }
+
+    RecordSchema<?> schema(int record) {
+        return schemas[record];
+    }
+
+    /**
+     * @return Prepared value of the field or null if it isn't set.
+     */
+    String value(RecordField field, int record) {
+        return values[field.ordinal()][record];
+    }
+
+    /**
+     * @return Position of the first blocking key of the record, keys of record end at start of the next one.
+     */
+    int keyStart(int record) {
+        return keyStart[record];
+    }
+
+    long key(int position) {
+        return keys[position];
+    }
+
+    /**
+     * Encodes sound of the word by American Soundex: the first letter and three digits of the following consonants,
+     * where similarly sounding consonants have the same digit, e.g. "Robert" and "Rupert" are both "R163".
+     * Characters other than latin letters are skipped.
+     *
+     * @param word Word to encode.
+     * @return Code of the word or null if it doesn't contain latin letters.
+     */
+    static String soundex(String word) {
+        char[] code = {0, '0', '0', '0'};
+        int length = 0;
+        char previous = 0;
+        for (int i = 0; i < word.length() && length < code.length; i++) {
+            char c = Character.toLowerCase(word.charAt(i));
+            if (c < 'a' || c > 'z') {
+                continue;
+            }
+            char digit = SOUNDEX_DIGITS.charAt(c - 'a');
+            if (length == 0) {
+                code[length++] = Character.toUpperCase(c);
+            } else if (digit != '0' && digit != previous) {
+                code[length++] = digit;
+            }
+            if (c != 'h' && c != 'w') {
+                previous = digit;
+            }
+        }
+        return length == 0 ? null : new String(code);
+    }
+
+    private static String prepare(RecordField field, String value) {
+        if (value == null || ContactsRecord.NO_DATA.equals(value)) {
+            return null;
+        }
+        if (field == RecordField.NUMBER) {
+            return NumberIndex.normalize(value);
+        }
+        String prepared = value.trim().toLowerCase();
+        return prepared.isEmpty() ? null : prepared;
+    }
+
+    /**
+     * Appends blocking keys of the record.
+     *
+     * @return Position after the last key of the record.
+     */
+    private int addKeys(int record, int end) {
+        String number = value(RecordField.NUMBER, record);
+        if (number != null) {
+            end = addKey(hash(NUMBER_KEY, number), end, keyStart[record]);
+        }
+        String name = value(RecordField.NAME, record);
+        if (schemas[record].getField(RecordField.SURNAME) != null) {
+            String surname = value(RecordField.SURNAME, record);
+            String code = surname == null ? null : soundex(surname);
+            if (code != null) {
+                end = addKey(hash(SURNAME_KEY, name == null ? code : code + name.charAt(0)), end, keyStart[record]);
+            }
+        } else {
+            for (String word : FuzzyIndex.words(name)) {
+                if (word.length() > 1) {
+                    end = addKey(hash(WORD_KEY, word), end, keyStart[record]);
+                }
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Appends key unless record already has it.
+     */
+    private int addKey(long key, int end, int start) {
+        for (int i = start; i < end; i++) {
+            if (keys[i] == key) {
+                return end;
+            }
+        }
+        if (end == keys.length) {
+            keys = Arrays.copyOf(keys, end * 2);
+        }
+        keys[end] = key;
+        return end + 1;
+    }
+
+    /**
+     * Hashes value with kind of key, so equal values of different fields have different keys.
+     *
+     * @return Positive hash, as required by {@link LongIntHashMap}.
+     */
+    private static long hash(char kind, String value) {
+        long hash = kind;
+        for (int i = 0; i < value.length(); i++) {
+            hash = hash * 0x100000001B3L + value.charAt(i);
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        return (hash & Long.MAX_VALUE) | 1;
+    }
+}
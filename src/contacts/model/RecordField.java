@@ -0,0 +1,61 @@
+package contacts.model;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+
+/**
+ * Fields of all types of records. Which fields record has, and how they are labeled, is described
+ * by {@link RecordSchema} of its type, where fields are looked up by ordinal.
+ */
+public enum RecordField {
+    NAME(value -> ValidationResult.VALID),
+    SURNAME(value -> ValidationResult.VALID),
+    BIRTH(FieldValidator::validateBirthDate),
+    GENDER(FieldValidator::validateGender),
+    NUMBER(FieldValidator::validateNumber),
+    ADDRESS(value -> ValidationResult.VALID);
+
+    private static final Map<String, RecordField> BY_NAME = new HashMap<>();
+
+    static {
+        for (RecordField field : values()) {
+            BY_NAME.put(field.fieldName, field);
+        }
+    }
+
+    private final String fieldName = name().toLowerCase(Locale.ROOT);
+    private final Function<String, ValidationResult> validator;
+
+    RecordField(Function<String, ValidationResult> validator) {
+        this.validator = validator;
+    }
+
+    /**
+     * @return Name of the field used in user interface, queries and column names, for example "birth".
+     */
+    public String getName() {
+        return fieldName;
+    }
+
+    /**
+     * Validates value of the field. Fields without format, like name, are always valid.
+     *
+     * @param value Value to validate.
+     * @return Result of validation.
+     * @see FieldValidator
+     */
+    public ValidationResult validate(String value) {
+        return validator.apply(value);
+    }
+
+    /**
+     * @param fieldName Name of the field, for example "birth".
+     * @return Field with provided name or null if there's no such field.
+     */
+    public static RecordField byName(String fieldName) {
+        return BY_NAME.get(fieldName);
+    }
+}
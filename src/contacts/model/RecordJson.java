@@ -0,0 +1,69 @@
+package contacts.model;
+
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Conversion of single records to JSON objects and back for clients of phone book outside of this package,
+ * for example HTTP server. Objects have the same keys as lines of JSON Lines format of {@link BulkImporter}.
+ */
+public final class RecordJson {
+
+    private RecordJson() {
+    }
+
+    /**
+     * Writes record as JSON object, which starts with numeric "id" followed by keys of JSON Lines format.
+     *
+     * @param out            Output to append object to.
+     * @param contactsRecord Record to write.
+     */
+    public static void append(StringBuilder out, ContactsRecord contactsRecord) {
+        StringBuilder values = new StringBuilder();
+        RecordText.appendJson(values, RecordText.toValues(contactsRecord));
+        out.append("{\"id\":").append(contactsRecord.getID()).append(',').append(values, 1, values.length());
+    }
+
+    /**
+     * Writes records as JSON array of objects written by {@link #append(StringBuilder, ContactsRecord)}.
+     */
+    public static void append(StringBuilder out, List<ContactsRecord> contactsRecords) {
+        out.append('[');
+        for (int i = 0; i < contactsRecords.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            append(out, contactsRecords.get(i));
+        }
+        out.append(']');
+    }
+
+    /**
+     * Writes string as JSON string literal with quotes and escapes.
+     */
+    public static void appendString(StringBuilder out, String value) {
+        RecordText.appendJsonString(out, value);
+    }
+
+    /**
+     * Parses JSON object, which values are strings, numbers or nulls. Numbers are kept as their text.
+     *
+     * @throws IllegalArgumentException Thrown when text isn't such object.
+     */
+    public static Map<String, String> parse(String text) {
+        return RecordText.parseJson(text.strip());
+    }
+
+    /**
+     * Builds record from values of JSON object. Values, which don't satisfy format of the field,
+     * are stored as "[no data]" the same way setters of records do.
+     *
+     * @param values Values of record by keys of JSON Lines format, "type" is required.
+     * @return New record, which isn't added to phone book yet.
+     * @throws IllegalArgumentException Thrown when record can't be built, for example type of record is unknown.
+     */
+    public static ContactsRecord toRecord(Map<String, String> values) {
+        return RecordText.toRecord(values, "record", new ImportResult());
+    }
+}
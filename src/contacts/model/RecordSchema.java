@@ -0,0 +1,212 @@
+package contacts.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+
+/**
+ * Describes type of records: its name, fields in order they are shown and entered, and how new record is created.
+ * Schema is shared by all records of the type, so records don't keep lists of their fields.
+ * Descriptors of fields are looked up by ordinal of {@link RecordField} in constant time. <br>
+ * Schemas of person and organization are registered from the start, other types of records become available
+ * to user interface after {@link #register(RecordSchema)}. Storage formats support only built-in types,
+ * so records of other types are rejected by phone book stored in file or writing changes to journal
+ * before phone book is changed, and phone book containing them can't be saved.
+ *
+ * @param <R> Type of records.
+ */
+public final class RecordSchema<R extends ContactsRecord> {
+
+    private final String typeName;
+    private final Supplier<R> factory;
+    private final List<FieldDescriptor<R>> fields;
+    private final List<String> fieldNames;
+    private final FieldDescriptor<?>[] descriptors = new FieldDescriptor<?>[RecordField.values().length];
+    private final List<RecordField> displayFields;
+
+    private RecordSchema(Builder<R> builder) {
+        typeName = builder.typeName;
+        factory = builder.factory;
+        fields = List.copyOf(builder.fields);
+        List<String> names = new ArrayList<>(fields.size());
+        for (FieldDescriptor<R> descriptor : fields) {
+            descriptors[descriptor.getField().ordinal()] = descriptor;
+            names.add(descriptor.getName());
+        }
+        fieldNames = List.copyOf(names);
+        displayFields = List.copyOf(builder.displayFields);
+    }
+
+    /**
+     * Starts description of type of records.
+     *
+     * @param typeName Name of the type shown to user, for example "person".
+     * @param type     Class of records.
+     * @param factory  Constructor of new empty record.
+     * @param <R>      Type of records.
+     * @return Builder of schema.
+     */
+    public static <R extends ContactsRecord> Builder<R> builder(String typeName, Class<R> type, Supplier<R> factory) {
+        return new Builder<>(typeName, type, factory);
+    }
+
+    /**
+     * Makes type of records available to user interface. Schema replaces registered schema with the same type name.
+     *
+     * @param schema Schema of the type.
+     */
+    public static void register(RecordSchema<?> schema) {
+        synchronized (Registry.SCHEMAS) {
+            Registry.SCHEMAS.put(schema.getTypeName(), schema);
+        }
+    }
+
+    /**
+     * @return Schemas of all registered types of records in order of registration.
+     */
+    public static List<RecordSchema<?>> getRegisteredSchemas() {
+        synchronized (Registry.SCHEMAS) {
+            return List.copyOf(Registry.SCHEMAS.values());
+        }
+    }
+
+    /**
+     * @param typeName Name of the type, for example "person".
+     * @return Schema of registered type or null if there's no such type.
+     */
+    public static RecordSchema<?> forTypeName(String typeName) {
+        synchronized (Registry.SCHEMAS) {
+            return Registry.SCHEMAS.get(typeName);
+        }
+    }
+
+    public String getTypeName() {
+        return typeName;
+    }
+
+    /**
+     * @return New empty record of the type.
+     */
+    public R newRecord() {
+        return factory.get();
+    }
+
+    /**
+     * @return Descriptors of fields in order they are shown to user.
+     */
+    public List<FieldDescriptor<R>> getFields() {
+        return fields;
+    }
+
+    /**
+     * @return Names of fields in order they are shown to user.
+     */
+    public List<String> getFieldNames() {
+        return fieldNames;
+    }
+
+    /**
+     * @return Descriptor of the field or null if records of the type don't have it.
+     */
+    public FieldDescriptor<?> getField(RecordField field) {
+        return descriptors[field.ordinal()];
+    }
+
+    /**
+     * @param fieldName Name of the field, for example "birth".
+     * @return Descriptor of the field or null if records of the type don't have it.
+     */
+    public FieldDescriptor<?> getField(String fieldName) {
+        RecordField field = RecordField.byName(fieldName);
+        return field == null ? null : descriptors[field.ordinal()];
+    }
+
+    /**
+     * @return Values of fields identifying record in lists, for example name and surname, separated by spaces.
+     */
+    String displayName(ContactsRecord contactsRecord) {
+        StringJoiner displayName = new StringJoiner(" ");
+        for (RecordField field : displayFields) {
+            displayName.add(descriptors[field.ordinal()].getValue(contactsRecord));
+        }
+        return displayName.toString();
+    }
+
+    /**
+     * Collects descriptors of fields of the type.
+     *
+     * @param <R> Type of records.
+     */
+    public static final class Builder<R extends ContactsRecord> {
+        private final String typeName;
+        private final Class<R> type;
+        private final Supplier<R> factory;
+        private final List<FieldDescriptor<R>> fields = new ArrayList<>();
+        private final List<RecordField> displayFields = new ArrayList<>();
+
+        private Builder(String typeName, Class<R> type, Supplier<R> factory) {
+            this.typeName = typeName;
+            this.type = type;
+            this.factory = factory;
+        }
+
+        /**
+         * Adds field to the type. Fields are shown and entered in order they are added.
+         *
+         * @param field  Field.
+         * @param label  Label shown before value of the field, for example "Birth date".
+         * @param prompt Text asking user to enter value of the field, for example "Enter the birth date".
+         * @param getter Reads value of the field from record.
+         * @param setter Validates and stores value of the field to record.
+         * @return This builder.
+         */
+        public Builder<R> field(RecordField field, String label, String prompt,
+                                Function<R, String> getter, BiConsumer<R, String> setter) {
+            fields.add(new FieldDescriptor<>(type, field, label, prompt, getter, setter));
+            return this;
+        }
+
+        /**
+         * Sets fields, which values identify record in lists. Name is used if no fields are set.
+         *
+         * @param displayFields Fields added to the type before.
+         * @return This builder.
+         */
+        public Builder<R> displayName(RecordField... displayFields) {
+            this.displayFields.clear();
+            this.displayFields.addAll(List.of(displayFields));
+            return this;
+        }
+
+        public RecordSchema<R> build() {
+            if (displayFields.isEmpty()) {
+                displayFields.add(RecordField.NAME);
+            }
+            RecordSchema<R> schema = new RecordSchema<>(this);
+            for (RecordField field : schema.displayFields) {
+                if (schema.getField(field) == null) {
+                    throw new IllegalArgumentException("Type " + typeName + " doesn't have field " + field.getName());
+                }
+            }
+            return schema;
+        }
+    }
+
+    /**
+     * Registered schemas, which are initialized on first use, after schemas of built-in types are built.
+     */
+    private static class Registry {
+        private static final Map<String, RecordSchema<?>> SCHEMAS = new LinkedHashMap<>();
+
+        static {
+            SCHEMAS.put(PersonContactsRecord.SCHEMA.getTypeName(), PersonContactsRecord.SCHEMA);
+            SCHEMAS.put(OrganizationContactsRecord.SCHEMA.getTypeName(), OrganizationContactsRecord.SCHEMA);
+        }
+    }
+}
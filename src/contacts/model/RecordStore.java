@@ -0,0 +1,133 @@
+package contacts.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * Storage of phone book records, which provides access both by record ID and by position in phone book.
+ * Records are ordered by time of adding, which is also ascending order of their IDs.
+ */
+interface RecordStore extends Iterable<ContactsRecord> {
+
+    int size();
+
+    /**
+     * @return Record with provided ID or null if there's no such record.
+     */
+    ContactsRecord getByID(long id);
+
+    /**
+     * @param position Position of record in phone book, from 0 to size - 1.
+     * @return Record at the position.
+     */
+    ContactsRecord getAt(int position);
+
+    /**
+     * @return True if record with provided ID is stored. Store may answer without reading the record.
+     */
+    default boolean containsID(long id) {
+        return getByID(id) != null;
+    }
+
+    /**
+     * Gets records by IDs, which store may read in other order, for example grouped by file.
+     *
+     * @param ids IDs of records.
+     * @return Records in order of IDs in the array, null for IDs of missing records.
+     */
+    default List<ContactsRecord> getByIDs(int[] ids) {
+        List<ContactsRecord> result = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            result.add(getByID(id));
+        }
+        return result;
+    }
+
+    /**
+     * Adds record with already assigned ID. ID is usually greater than IDs of all stored records,
+     * otherwise record is put to its place in order of IDs.
+     *
+     * @return Record as it's stored, which may be view of stored fields rather than provided record,
+     * e.g. with times of lower precision.
+     */
+    ContactsRecord add(ContactsRecord record);
+
+    /**
+     * @return Removed record or null if there's no record with provided ID.
+     */
+    ContactsRecord remove(long id);
+
+    /**
+     * Replaces stored record having the same ID as provided one.
+     *
+     * @return Replaced record or null if there's no record with such ID.
+     */
+    ContactsRecord replace(ContactsRecord record);
+
+    /**
+     * Replaces stored record having the same ID as provided one without returning replaced record,
+     * so store may replace it without reading it.
+     *
+     * @return False if there's no record with such ID.
+     */
+    default boolean overwrite(ContactsRecord record) {
+        return replace(record) != null;
+    }
+
+    /**
+     * @return True if provided record is the stored one, so changing its fields changes the store.
+     */
+    default boolean contains(ContactsRecord record) {
+        return getByID(record.getID()) == record;
+    }
+
+    /**
+     * Finds record, which is changed when provided record is edited. Store, which returns detached copies
+     * of records, e.g. from iteration, returns stored record with the same ID as the copy,
+     * so change made through the copy doesn't overwrite changes made since the copy was taken.
+     *
+     * @return Provided record if it's the stored one, stored record it's copy of or null if it isn't stored.
+     */
+    default ContactsRecord storedRecord(ContactsRecord record) {
+        return contains(record) ? record : null;
+    }
+
+    /**
+     * Called after fields of stored record are changed in place, so store can find out which of its data changed.
+     */
+    default void changed(ContactsRecord record) {
+    }
+
+    /**
+     * @return False if store keeps only types of records supported by binary format, e.g. because it's backed by file.
+     * @see BinaryFormat#checkStorable(ContactsRecord)
+     */
+    default boolean supportsAnyType() {
+        return true;
+    }
+
+    /**
+     * @return False if only part of records is kept in memory, so records should be iterated rather than copied.
+     */
+    default boolean isResident() {
+        return true;
+    }
+
+    /**
+     * Copies records in phone book order. Records, which aren't kept in memory, may be returned as detached copies.
+     *
+     * @return List of all records.
+     */
+    List<ContactsRecord> toList();
+
+    /**
+     * Copies records in phone book order to be read by another thread, while the store is changed
+     * by the thread owning it. Fields of records may be changed concurrently, but each of them stays readable.
+     *
+     * @return List of all records.
+     */
+    default List<ContactsRecord> snapshot() {
+        return toList();
+    }
+}
@@ -0,0 +1,392 @@
+package contacts.model;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Conversion of records to text formats of bulk import and export and back.
+ * Record is represented as map from column names to values, where absent or null value means field isn't set.
+ */
+class RecordText {
+
+    static final String TYPE = "type";
+    static final String CREATED = "created";
+    static final String EDITED = "edited";
+    static final String PERSON = PersonContactsRecord.SCHEMA.getTypeName();
+    static final String ORGANIZATION = OrganizationContactsRecord.SCHEMA.getTypeName();
+    static final List<String> COLUMNS = columns();
+
+    private RecordText() {
+    }
+
+    /**
+     * @return Type, names of all fields in order of {@link RecordField} and times of record.
+     */
+    private static List<String> columns() {
+        List<String> columns = new ArrayList<>();
+        columns.add(TYPE);
+        for (RecordField field : RecordField.values()) {
+            columns.add(field.getName());
+        }
+        columns.add(CREATED);
+        columns.add(EDITED);
+        return List.copyOf(columns);
+    }
+
+    /**
+     * Builds record from values without printing anything. Values, which don't satisfy format of the field,
+     * are replaced with "[no data]" the same way setters of records do and reported to the result.
+     * Value "[no data]" itself is accepted, so exported records are imported back unchanged.
+     *
+     * @param values   Values of record by column names.
+     * @param location Description of position of the record in input for problem reports.
+     * @param result   Result of import, which collects problems.
+     * @return New record, which isn't added to phone book yet.
+     * @throws IllegalArgumentException Thrown when record can't be built, for example type of record is unknown.
+     */
+    static ContactsRecord toRecord(Map<String, String> values, String location, ImportResult result) {
+        String type = values.get(TYPE);
+        LocalDateTime timeCreated = time(values.get(CREATED), LocalDateTime.now());
+        LocalDateTime timeEdited = time(values.get(EDITED), timeCreated);
+        String name = values.get(RecordField.NAME.getName());
+        String number = values.get(RecordField.NUMBER.getName());
+        number = validated(number, FieldValidator.validateNumber(number), location, result);
+        if (PERSON.equalsIgnoreCase(type)) {
+            String birthDate = values.get(RecordField.BIRTH.getName());
+            birthDate = validated(birthDate, FieldValidator.validateBirthDate(birthDate), location, result);
+            String gender = values.get(RecordField.GENDER.getName());
+            gender = validated(gender, FieldValidator.validateGender(gender), location, result);
+            return new PersonContactsRecord(timeCreated, timeEdited, name, number,
+                    values.get(RecordField.SURNAME.getName()), birthDate, gender);
+        }
+        if (ORGANIZATION.equalsIgnoreCase(type)) {
+            return new OrganizationContactsRecord(timeCreated, timeEdited, name, number,
+                    values.get(RecordField.ADDRESS.getName()));
+        }
+        throw new IllegalArgumentException("unknown type of record " + type);
+    }
+
+    /**
+     * @return Values of record by column names in order of {@link #COLUMNS}, fields of other types are absent.
+     */
+    static Map<String, String> toValues(ContactsRecord contactsRecord) {
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put(TYPE, contactsRecord.getSchema().getTypeName());
+        for (FieldDescriptor<?> field : contactsRecord.getSchema().getFields()) {
+            values.put(field.getName(), field.getValue(contactsRecord));
+        }
+        values.put(CREATED, contactsRecord.getTimeCreated().toString());
+        values.put(EDITED, contactsRecord.getTimeEdited().toString());
+        return values;
+    }
+
+    /**
+     * Splits line of CSV into values. Empty value is null, quoted empty value is empty string.
+     *
+     * @param line Line with closed quotes, which can contain line breaks inside quoted values.
+     * @throws IllegalArgumentException Thrown when quotes are misplaced.
+     */
+    static List<String> parseCsv(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        int i = 0;
+        while (true) {
+            boolean quoted = i < line.length() && line.charAt(i) == '"';
+            if (quoted) {
+                i++;
+                while (true) {
+                    if (i >= line.length()) {
+                        throw new IllegalArgumentException("unclosed quote");
+                    }
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        if (i < line.length() && line.charAt(i) == '"') {
+                            value.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        value.append(c);
+                    }
+                }
+            } else {
+                while (i < line.length() && line.charAt(i) != ',') {
+                    char c = line.charAt(i++);
+                    if (c == '"') {
+                        throw new IllegalArgumentException("quote inside unquoted value");
+                    }
+                    value.append(c);
+                }
+            }
+            values.add(quoted || value.length() > 0 ? value.toString() : null);
+            value.setLength(0);
+            if (i >= line.length()) {
+                return values;
+            }
+            if (line.charAt(i) != ',') {
+                throw new IllegalArgumentException("unexpected character after quoted value");
+            }
+            i++;
+        }
+    }
+
+    /**
+     * @return True if line ends inside quoted value, so the value continues on the next line.
+     */
+    static boolean hasOpenQuote(CharSequence line) {
+        boolean open = false;
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                open = !open;
+            }
+        }
+        return open;
+    }
+
+    static void appendCsv(StringBuilder out, String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = value.isEmpty();
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            out.append(value);
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                out.append('"');
+            }
+            out.append(c);
+        }
+        out.append('"');
+    }
+
+    /**
+     * Parses JSON object, which values are strings, numbers or nulls. Numbers are kept as their text.
+     *
+     * @throws IllegalArgumentException Thrown when line isn't such object.
+     */
+    static Map<String, String> parseJson(String line) {
+        JsonParser parser = new JsonParser(line);
+        Map<String, String> values = parser.parseObject();
+        parser.skipSpaces();
+        if (!parser.isAtEnd()) {
+            throw new IllegalArgumentException("unexpected text after JSON object");
+        }
+        return values;
+    }
+
+    static void appendJson(StringBuilder out, Map<String, String> values) {
+        out.append('{');
+        boolean first = true;
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            if (!first) {
+                out.append(',');
+            }
+            first = false;
+            appendJsonString(out, entry.getKey());
+            out.append(':');
+            if (entry.getValue() == null) {
+                out.append("null");
+            } else {
+                appendJsonString(out, entry.getValue());
+            }
+        }
+        out.append('}');
+    }
+
+    static void appendJsonString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * @return Value if it's valid, absent or "[no data]", otherwise "[no data]".
+     */
+    private static String validated(String value, ValidationResult validation, String location,
+                                    ImportResult result) {
+        if (value == null || validation.isValid() || ContactsRecord.NO_DATA.equals(value)) {
+            return value;
+        }
+        result.addInvalidField(location + ": " + validation.getMessage() + " " + value);
+        return FieldValidator.rejected(value);
+    }
+
+    private static LocalDateTime time(String value, LocalDateTime defaultTime) {
+        if (value == null) {
+            return defaultTime;
+        }
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("bad time " + value);
+        }
+    }
+
+    /**
+     * Parser of flat JSON objects with string, number or null values.
+     */
+    private static class JsonParser {
+        private final String text;
+        private int position;
+
+        JsonParser(String text) {
+            this.text = text;
+        }
+
+        Map<String, String> parseObject() {
+            Map<String, String> values = new LinkedHashMap<>();
+            expect('{');
+            skipSpaces();
+            if (peek() == '}') {
+                position++;
+                return values;
+            }
+            while (true) {
+                skipSpaces();
+                String key = parseString();
+                skipSpaces();
+                expect(':');
+                skipSpaces();
+                if (text.startsWith("null", position)) {
+                    position += 4;
+                    values.put(key, null);
+                } else if (peek() == '-' || Character.isDigit(peek())) {
+                    values.put(key, parseNumber());
+                } else {
+                    values.put(key, parseString());
+                }
+                skipSpaces();
+                char c = next();
+                if (c == '}') {
+                    return values;
+                }
+                if (c != ',') {
+                    throw new IllegalArgumentException("expected , or } at " + (position - 1));
+                }
+            }
+        }
+
+        String parseString() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                    continue;
+                }
+                c = next();
+                switch (c) {
+                    case 'n':
+                        value.append('\n');
+                        break;
+                    case 'r':
+                        value.append('\r');
+                        break;
+                    case 't':
+                        value.append('\t');
+                        break;
+                    case 'b':
+                        value.append('\b');
+                        break;
+                    case 'f':
+                        value.append('\f');
+                        break;
+                    case 'u':
+                        if (position + 4 > text.length()) {
+                            throw new IllegalArgumentException("incomplete escape at " + position);
+                        }
+                        try {
+                            value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("bad escape at " + position);
+                        }
+                        position += 4;
+                        break;
+                    default:
+                        value.append(c);
+                }
+            }
+        }
+
+        String parseNumber() {
+            int start = position;
+            position++;
+            while (position < text.length() && "0123456789.eE+-".indexOf(text.charAt(position)) >= 0) {
+                position++;
+            }
+            return text.substring(start, position);
+        }
+
+        void skipSpaces() {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        boolean isAtEnd() {
+            return position >= text.length();
+        }
+
+        private char peek() {
+            if (isAtEnd()) {
+                throw new IllegalArgumentException("unexpected end of JSON");
+            }
+            return text.charAt(position);
+        }
+
+        private char next() {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        private void expect(char expected) {
+            if (next() != expected) {
+                throw new IllegalArgumentException("expected " + expected + " at " + (position - 1));
+            }
+        }
+    }
+}
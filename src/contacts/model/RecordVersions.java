@@ -0,0 +1,74 @@
+package contacts.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * Original versions of records changed while snapshot of phone book is written on another thread. <br>
+ * Snapshot holds references to records, which are edited in place, so before the first change of record
+ * phone book keeps its copy, and writer of snapshot stores the copy instead of the changed record.
+ * Monitor of the record is held while the copy is taken and while writer reads the record,
+ * so writer either reads record before it's changed or finds the copy. Changes themselves don't take the monitor.
+ */
+class RecordVersions {
+
+    private final Map<Long, ContactsRecord> originals = new ConcurrentHashMap<>();
+
+    /**
+     * Keeps copy of the record, if it wasn't changed since snapshot was taken. Should be called before each change.
+     */
+    void beforeChange(ContactsRecord record) {
+        synchronized (record) {
+            originals.computeIfAbsent(record.getID(), id -> copy(record));
+        }
+    }
+
+    /**
+     * Should be called holding monitor of the record.
+     *
+     * @return Record in state it had when snapshot was taken.
+     */
+    ContactsRecord original(ContactsRecord record) {
+        ContactsRecord original = originals.get(record.getID());
+        return original != null ? original : record;
+    }
+
+    /**
+     * @return Detached record with the same fields, times and ID, which isn't changed with original record.
+     */
+    static ContactsRecord copy(ContactsRecord record) {
+        ContactsRecord copy;
+        if (record instanceof PersonContactsRecord) {
+            PersonContactsRecord person = (PersonContactsRecord) record;
+            copy = new PersonContactsRecord(person.getTimeCreated(), person.getTimeEdited(), person.getName(),
+                    person.getNumber(), person.getSurname(), person.getBirthDate(), person.getGender());
+        } else if (record instanceof OrganizationContactsRecord) {
+            OrganizationContactsRecord organization = (OrganizationContactsRecord) record;
+            copy = new OrganizationContactsRecord(organization.getTimeCreated(), organization.getTimeEdited(),
+                    organization.getName(), organization.getNumber(), organization.getAddress());
+        } else {
+            copy = copyBySchema(record);
+        }
+        copy.setID(record.getID());
+        return copy;
+    }
+
+    /**
+     * Copies record of registered type through its schema: name and number are copied as is,
+     * other fields are set by setters of the type.
+     */
+    private static ContactsRecord copyBySchema(ContactsRecord record) {
+        RecordSchema<?> schema = record.getSchema();
+        ContactsRecord copy = schema.newRecord();
+        copy.name = record.getName();
+        copy.number = record.getNumber();
+        for (FieldDescriptor<?> field : schema.getFields()) {
+            if (field.getField() != RecordField.NAME && field.getField() != RecordField.NUMBER) {
+                field.setValue(copy, field.getValue(record));
+            }
+        }
+        copy.setTimes(record.getTimeCreated(), record.getTimeEdited());
+        return copy;
+    }
+}
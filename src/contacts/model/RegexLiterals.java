@@ -0,0 +1,200 @@
+package contacts.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Util class extracts from regular expression fragments of plain text, which should be present in every match.
+ * Extraction is conservative: when expression uses constructs, which are hard to analyze,
+ * no fragments are returned and caller should check every record.
+ */
+class RegexLiterals {
+
+    private static final String SIMPLE_ESCAPES = "dDsSwWbBAGZzhHvVRXntrfae";
+
+    private RegexLiterals() {
+    }
+
+    /**
+     * Extracts required literal fragments from regular expression.
+     *
+     * @param regex Valid regular expression.
+     * @return List of fragments, every match of expression contains each of them. Empty list if nothing extracted.
+     */
+    static List<String> requiredLiterals(String regex) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        int length = regex.length();
+        int i = 0;
+        while (i < length) {
+            char c = regex.charAt(i);
+            switch (c) {
+                case '\\':
+                    if (i + 1 >= length) {
+                        return Collections.emptyList();
+                    }
+                    char escaped = regex.charAt(i + 1);
+                    i += 2;
+                    if (Character.isLetterOrDigit(escaped)) {
+                        if (SIMPLE_ESCAPES.indexOf(escaped) < 0) {
+                            return Collections.emptyList();
+                        }
+                        flush(run, literals);
+                        i = skipQuantifier(regex, i);
+                    } else {
+                        i = appendAtom(regex, i, escaped, run, literals);
+                    }
+                    break;
+                case '[':
+                    flush(run, literals);
+                    i = skipQuantifier(regex, skipClass(regex, i));
+                    break;
+                case '(':
+                    if (i + 2 < length && regex.charAt(i + 1) == '?' && isFlag(regex.charAt(i + 2))) {
+                        return Collections.emptyList();
+                    }
+                    flush(run, literals);
+                    int end = skipGroup(regex, i);
+                    if (end < 0) {
+                        return Collections.emptyList();
+                    }
+                    i = skipQuantifier(regex, end);
+                    break;
+                case '|':
+                    return Collections.emptyList();
+                case '.':
+                case '^':
+                case '$':
+                    flush(run, literals);
+                    i = skipQuantifier(regex, i + 1);
+                    break;
+                default:
+                    if (Character.isSurrogate(c)) {
+                        flush(run, literals);
+                        i = skipQuantifier(regex, i + 1);
+                    } else {
+                        i = appendAtom(regex, i + 1, c, run, literals);
+                    }
+            }
+        }
+        flush(run, literals);
+        return literals;
+    }
+
+    /**
+     * Appends literal character to the current run, taking into account quantifier following it.
+     *
+     * @return Position after the atom and its quantifier.
+     */
+    private static int appendAtom(String regex, int position, char atom, StringBuilder run, List<String> literals) {
+        if (position >= regex.length()) {
+            run.append(atom);
+            return position;
+        }
+        char next = regex.charAt(position);
+        if (next == '*' || next == '?' || next == '{') {
+            flush(run, literals);
+            return skipQuantifier(regex, position);
+        }
+        if (next == '+') {
+            run.append(atom);
+            flush(run, literals);
+            run.append(atom);
+            return skipQuantifier(regex, position);
+        }
+        run.append(atom);
+        return position;
+    }
+
+    private static void flush(StringBuilder run, List<String> literals) {
+        if (run.length() > 0) {
+            literals.add(run.toString());
+            run.setLength(0);
+        }
+    }
+
+    private static boolean isFlag(char c) {
+        return Character.isLetter(c) || c == '-';
+    }
+
+    private static int skipQuantifier(String regex, int position) {
+        if (position >= regex.length()) {
+            return position;
+        }
+        char c = regex.charAt(position);
+        if (c == '*' || c == '?' || c == '+') {
+            position++;
+        } else if (c == '{') {
+            int end = regex.indexOf('}', position);
+            position = end < 0 ? regex.length() : end + 1;
+        } else {
+            return position;
+        }
+        if (position < regex.length() && (regex.charAt(position) == '?' || regex.charAt(position) == '+')) {
+            position++;
+        }
+        return position;
+    }
+
+    /**
+     * @return Position after closing bracket of character class started at provided position.
+     */
+    private static int skipClass(String regex, int position) {
+        int depth = 0;
+        int i = position;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '^') {
+                    i++;
+                }
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == ']') {
+                    i++;
+                }
+            } else if (c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+        return regex.length();
+    }
+
+    /**
+     * @return Position after closing parenthesis of group started at provided position or -1 if group is not closed.
+     */
+    private static int skipGroup(String regex, int position) {
+        int depth = 0;
+        int i = position;
+        while (i < regex.length()) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                i = skipClass(regex, i);
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,54 @@
+package contacts.model;
+
+
+/**
+ * Numbers of hits and misses of search caches of phone book since it was created.
+ * Used to choose capacity of caches: many misses of repeated queries mean caches are too small.
+ */
+public class SearchCacheStatistics {
+    private final long patternHits;
+    private final long patternMisses;
+    private final long resultHits;
+    private final long resultMisses;
+
+    SearchCacheStatistics(long patternHits, long patternMisses, long resultHits, long resultMisses) {
+        this.patternHits = patternHits;
+        this.patternMisses = patternMisses;
+        this.resultHits = resultHits;
+        this.resultMisses = resultMisses;
+    }
+
+    /**
+     * @return Number of queries, which pattern was found in cache of compiled patterns.
+     */
+    public long getPatternHits() {
+        return patternHits;
+    }
+
+    /**
+     * @return Number of queries, which were compiled to pattern.
+     */
+    public long getPatternMisses() {
+        return patternMisses;
+    }
+
+    /**
+     * @return Number of queries, which result was found in cache and phone book wasn't changed since.
+     */
+    public long getResultHits() {
+        return resultHits;
+    }
+
+    /**
+     * @return Number of queries, which were searched in phone book.
+     */
+    public long getResultMisses() {
+        return resultMisses;
+    }
+
+    @Override
+    public String toString() {
+        return "patterns: " + patternHits + " hits, " + patternMisses + " misses; "
+                + "results: " + resultHits + " hits, " + resultMisses + " misses";
+    }
+}
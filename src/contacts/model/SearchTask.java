@@ -0,0 +1,112 @@
+package contacts.model;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * Matches range of records against the pattern on fork-join pool.
+ * Range is split in halves until it's small enough, each part is matched with single {@link Matcher}
+ * reset for every record, and results of parts are concatenated in order of records.
+ */
+class SearchTask extends RecursiveTask<List<ContactsRecord>> {
+    private static final long serialVersionUID = 1L;
+
+    private static final int MIN_CHUNK_SIZE = 1024;
+
+    private final Pattern pattern;
+    private final List<ContactsRecord> records;
+    private final int from;
+    private final int to;
+    private final int chunkSize;
+
+    private SearchTask(Pattern pattern, List<ContactsRecord> records, int from, int to, int chunkSize) {
+        this.pattern = pattern;
+        this.records = records;
+        this.from = from;
+        this.to = to;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Matches records in parallel using common fork-join pool.
+     *
+     * @param pattern Pattern to find in searchable strings of records.
+     * @param records Records with random access, which aren't changed during search.
+     * @return Matching records in the same order as in provided list.
+     */
+    static List<ContactsRecord> search(Pattern pattern, List<ContactsRecord> records) {
+        int parts = ForkJoinPool.getCommonPoolParallelism() * 4;
+        int chunkSize = Math.max(MIN_CHUNK_SIZE, records.size() / parts);
+        return ForkJoinPool.commonPool().invoke(new SearchTask(pattern, records, 0, records.size(), chunkSize));
+    }
+
+    /**
+     * Matches records sequentially reusing single matcher.
+     *
+     * @return Matching records in order of iteration.
+     */
+    static List<ContactsRecord> match(Pattern pattern, Iterable<ContactsRecord> records) {
+        List<ContactsRecord> result = new ArrayList<>();
+        Matcher matcher = pattern.matcher("");
+        for (ContactsRecord record : records) {
+            if (matcher.reset(record.toSearchableString()).find()) {
+                result.add(record);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Matches records lazily reusing single matcher. Missing records, which are null, are skipped.
+     *
+     * @return Iterator over matching records in order of iteration.
+     */
+    static Iterator<ContactsRecord> matching(Pattern pattern, Iterator<ContactsRecord> records) {
+        Matcher matcher = pattern.matcher("");
+        return new Iterator<>() {
+            private ContactsRecord next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && records.hasNext()) {
+                    ContactsRecord record = records.next();
+                    if (record != null && matcher.reset(record.toSearchableString()).find()) {
+                        next = record;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public ContactsRecord next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                ContactsRecord record = next;
+                next = null;
+                return record;
+            }
+        };
+    }
+
+    @Override
+    protected List<ContactsRecord> compute() {
+        if (to - from <= chunkSize) {
+            return match(pattern, records.subList(from, to));
+        }
+        int middle = (from + to) >>> 1;
+        SearchTask left = new SearchTask(pattern, records, from, middle, chunkSize);
+        left.fork();
+        List<ContactsRecord> right = new SearchTask(pattern, records, middle, to, chunkSize).compute();
+        List<ContactsRecord> result = left.join();
+        result.addAll(right);
+        return result;
+    }
+}
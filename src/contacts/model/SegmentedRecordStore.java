@@ -0,0 +1,647 @@
+package contacts.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.function.LongConsumer;
+
+
+/**
+ * Record store partitioning records by hash of their IDs into fixed number of segment files in a directory,
+ * so phone book larger than memory is served keeping only some segments in memory. <br>
+ * Each segment file is phone book file in binary format containing records of the segment.
+ * Segment is read into {@link MemoryRecordStore} on first access, loaded segments are kept in order of access
+ * and when their number exceeds the limit, the least recently used one is unloaded.
+ * Changed segment is written to its file when it's unloaded or when snapshot of phone book is written,
+ * unchanged segments are never written. Files of unloaded segments are synced to drive only by snapshot,
+ * until then their changes are kept by journal. Records added to segment, which isn't loaded, or overwritten
+ * in it are kept aside until the segment is loaded or they are appended to segment files together,
+ * so adding records and replaying journal don't load segments. Directory also contains manifest with number of segments,
+ * ID to be assigned to the next record and generation of the last journal included into segment files. <br>
+ * IDs of all records are kept in memory in sorted array, so size and position of records are known
+ * without loading segments. Records are iterated in order of IDs by windows: records of the window are got
+ * segment by segment, so each segment is loaded at most once per window. <br>
+ * Records of unloaded segment stay valid as copies: when such copy is edited, the change is made to the record
+ * loaded since then, see {@link #storedRecord(ContactsRecord)}, so changes made to it aren't lost.
+ */
+class SegmentedRecordStore implements RecordStore {
+
+    /**
+     * Number of segment files of new phone book, if other number isn't set.
+     */
+    static final int DEFAULT_SEGMENT_COUNT = 256;
+
+    /**
+     * Number of segments kept in memory, if other number isn't set.
+     */
+    static final int DEFAULT_RESIDENT_SEGMENTS = 32;
+
+    private static final String MANIFEST_NAME = "segments";
+    private static final int MANIFEST_MAGIC = 0x434E5453;
+    private static final short MANIFEST_VERSION = 1;
+    private static final int MANIFEST_SIZE = 32;
+    private static final int MIN_WINDOW_SIZE = 1024;
+    private static final int MIN_KEPT_TO_APPEND = 1 << 16;
+
+    private final Path directory;
+    private final Segment[] segments;
+    private final int maxResident;
+    private final LinkedHashMap<Integer, Segment> resident = new LinkedHashMap<>(16, 0.75f, true);
+    private final PostingList ids = new PostingList();
+    private final long journalGeneration;
+    private long nextID;
+    private int keptCount;
+
+    private SegmentedRecordStore(Path directory, int segmentCount, int maxResident, long nextID,
+                                 long journalGeneration) {
+        this.directory = directory;
+        this.maxResident = maxResident;
+        this.nextID = nextID;
+        this.journalGeneration = journalGeneration;
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment(directory.resolve("segment-" + i));
+        }
+    }
+
+    /**
+     * Opens phone book stored in the directory or creates empty one, if directory doesn't contain manifest.
+     * Only IDs of records are read, segments are loaded on first access.
+     *
+     * @param directory    Directory with segment files, which is created if it doesn't exist.
+     * @param segmentCount Number of segments of new phone book, existing phone book keeps its number.
+     * @param maxResident  Number of segments kept in memory.
+     * @return Store of records of the directory.
+     * @throws IOException Thrown when failed to read the directory or it contains other files.
+     */
+    static SegmentedRecordStore open(Path directory, int segmentCount, int maxResident) throws IOException {
+        if (segmentCount <= 0 || maxResident <= 0) {
+            throw new IllegalArgumentException("Number of segments should be positive");
+        }
+        Path manifest = directory.resolve(MANIFEST_NAME);
+        if (!Files.exists(manifest)) {
+            Files.createDirectories(directory);
+            SegmentedRecordStore store = new SegmentedRecordStore(directory, segmentCount, maxResident, 1, 0);
+            store.writeManifest(1, 0);
+            return store;
+        }
+        ByteBuffer header = ByteBuffer.wrap(Files.readAllBytes(manifest));
+        if (header.limit() < MANIFEST_SIZE || header.getInt() != MANIFEST_MAGIC) {
+            throw new IOException("Directory doesn't contain segmented phone book: " + directory);
+        }
+        if (header.getShort() != MANIFEST_VERSION) {
+            throw new IOException("Unsupported version of segmented phone book: " + directory);
+        }
+        header.getShort();
+        int storedSegmentCount = header.getInt();
+        header.getInt();
+        SegmentedRecordStore store = new SegmentedRecordStore(directory, storedSegmentCount, maxResident,
+                header.getLong(), header.getLong());
+        store.discardPending();
+        store.readIDs();
+        return store;
+    }
+
+    long getNextID() {
+        return nextID;
+    }
+
+    long getJournalGeneration() {
+        return journalGeneration;
+    }
+
+    @Override
+    public int size() {
+        return ids.size();
+    }
+
+    /**
+     * Loads segment only if record with such ID is stored.
+     */
+    @Override
+    public ContactsRecord getByID(long id) {
+        if (!isStored(id)) {
+            return null;
+        }
+        int index = segmentIndex(id);
+        ContactsRecord record = segments[index].kept.get(id);
+        return record != null ? record : load(index).getByID(id);
+    }
+
+    @Override
+    public boolean containsID(long id) {
+        return isStored(id);
+    }
+
+    @Override
+    public ContactsRecord getAt(int position) {
+        if (position < 0 || position >= ids.size()) {
+            throw new IndexOutOfBoundsException("Index: " + position + ", Size: " + ids.size());
+        }
+        return getByID(ids.get(position));
+    }
+
+    @Override
+    public List<ContactsRecord> getByIDs(int[] ids) {
+        ContactsRecord[] records = new ContactsRecord[ids.length];
+        fetch(ids, ids.length, records, false);
+        return new ArrayList<>(Arrays.asList(records));
+    }
+
+    /**
+     * Record of segment, which isn't loaded, is kept aside.
+     */
+    @Override
+    public ContactsRecord add(ContactsRecord record) {
+        Segment segment = segments[segmentIndex(record.getID())];
+        ids.add(Math.toIntExact(record.getID()));
+        nextID = Math.max(nextID, record.getID() + 1);
+        if (segment.records == null) {
+            keep(segment, record);
+        } else {
+            segment.records.add(record);
+            segment.version++;
+        }
+        return record;
+    }
+
+    @Override
+    public ContactsRecord remove(long id) {
+        if (!isStored(id)) {
+            return null;
+        }
+        int index = segmentIndex(id);
+        ContactsRecord record = load(index).remove(id);
+        if (record != null) {
+            segments[index].version++;
+            ids.remove((int) id);
+        }
+        return record;
+    }
+
+    @Override
+    public ContactsRecord replace(ContactsRecord record) {
+        if (!isStored(record.getID())) {
+            return null;
+        }
+        int index = segmentIndex(record.getID());
+        ContactsRecord oldRecord = load(index).replace(record);
+        if (oldRecord != null) {
+            segments[index].version++;
+        }
+        return oldRecord;
+    }
+
+    /**
+     * Record of segment, which isn't loaded, is kept aside, so replaced record isn't read.
+     */
+    @Override
+    public boolean overwrite(ContactsRecord record) {
+        if (!isStored(record.getID())) {
+            return false;
+        }
+        Segment segment = segments[segmentIndex(record.getID())];
+        if (segment.records == null) {
+            keep(segment, record);
+        } else {
+            segment.records.replace(record);
+            segment.version++;
+        }
+        return true;
+    }
+
+    /**
+     * Record of unloaded segment, which is still stored, is a copy of the record loaded since then,
+     * which may be changed after the copy was taken, so the loaded record is returned instead of the copy.
+     */
+    @Override
+    public ContactsRecord storedRecord(ContactsRecord record) {
+        return isStored(record.getID()) ? load(segmentIndex(record.getID())).getByID(record.getID()) : null;
+    }
+
+    @Override
+    public void changed(ContactsRecord record) {
+        segments[segmentIndex(record.getID())].version++;
+    }
+
+    @Override
+    public boolean supportsAnyType() {
+        return false;
+    }
+
+    @Override
+    public boolean isResident() {
+        return false;
+    }
+
+    /**
+     * Copies all records, which loads every segment.
+     */
+    @Override
+    public List<ContactsRecord> toList() {
+        List<ContactsRecord> result = new ArrayList<>(size());
+        forEach(result::add);
+        return result;
+    }
+
+    @Override
+    public Iterator<ContactsRecord> iterator() {
+        return new Iterator<>() {
+            private final int[] windowIDs = new int[windowSize()];
+            private final ContactsRecord[] window = new ContactsRecord[windowIDs.length];
+            private int position;
+            private int windowLength;
+            private int next;
+            private boolean reversed;
+
+            @Override
+            public boolean hasNext() {
+                return next < windowLength || position < ids.size();
+            }
+
+            @Override
+            public ContactsRecord next() {
+                if (next == windowLength) {
+                    if (position >= ids.size()) {
+                        throw new NoSuchElementException();
+                    }
+                    windowLength = Math.min(windowIDs.length, ids.size() - position);
+                    for (int i = 0; i < windowLength; i++) {
+                        windowIDs[i] = ids.get(position + i);
+                    }
+                    fetch(windowIDs, windowLength, window, reversed);
+                    position += windowLength;
+                    reversed = !reversed;
+                    next = 0;
+                }
+                ContactsRecord record = window[next];
+                window[next++] = null;
+                return record;
+            }
+        };
+    }
+
+    /**
+     * Takes changed segments to be written by another thread, while the store is changed by the thread owning it.
+     * Only references to records are copied. Should be called when segments written by previous snapshot are
+     * written already.
+     *
+     * @return Changed segments.
+     */
+    ChangedSegments snapshotChanged() {
+        ChangedSegments changed = new ChangedSegments();
+        for (Segment segment : segments) {
+            if (segment.writtenVersion() < segment.version) {
+                boolean loaded = segment.records != null;
+                changed.add(segment, loaded ? segment.records.snapshot() : segment.keptRecords(),
+                        !loaded, segment.version);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Records are put into window position by position, grouped by segment.
+     * Segments are visited in reverse order by every other window, so segments loaded last by previous window
+     * are still loaded.
+     */
+    private void fetch(int[] ids, int count, ContactsRecord[] target, boolean reversed) {
+        int[] starts = new int[segments.length + 1];
+        for (int i = 0; i < count; i++) {
+            starts[segmentIndex(ids[i]) + 1]++;
+        }
+        for (int i = 0; i < segments.length; i++) {
+            starts[i + 1] += starts[i];
+        }
+        int[] positions = new int[count];
+        int[] filled = Arrays.copyOf(starts, segments.length);
+        for (int i = 0; i < count; i++) {
+            positions[filled[segmentIndex(ids[i])]++] = i;
+        }
+        for (int i = 0; i < segments.length; i++) {
+            int index = reversed ? segments.length - 1 - i : i;
+            if (starts[index] == starts[index + 1]) {
+                continue;
+            }
+            MemoryRecordStore records = load(index);
+            for (int j = starts[index]; j < starts[index + 1]; j++) {
+                target[positions[j]] = records.getByID(ids[positions[j]]);
+            }
+        }
+    }
+
+    /**
+     * @return Number of records in window of iteration, which takes about half of loaded segments.
+     */
+    private int windowSize() {
+        long size = (long) ids.size() * Math.min(maxResident, segments.length) / segments.length / 2;
+        return (int) Math.max(MIN_WINDOW_SIZE, Math.min(size, ids.size()));
+    }
+
+    private boolean isStored(long id) {
+        return id > 0 && id <= Integer.MAX_VALUE && ids.contains((int) id);
+    }
+
+    /**
+     * Keeps record aside until its segment is loaded.
+     * When too many records are kept aside, they are appended to their segment files.
+     */
+    private void keep(Segment segment, ContactsRecord record) {
+        if (segment.kept.put(record.getID(), record) == null) {
+            keptCount++;
+        }
+        segment.version++;
+        if (keptCount >= Math.max(MIN_KEPT_TO_APPEND, (long) ids.size() * maxResident / segments.length)) {
+            appendKept();
+        }
+    }
+
+    private int segmentIndex(long id) {
+        return Math.floorMod(Long.hashCode(id * 0x9E3779B97F4A7C15L), segments.length);
+    }
+
+    /**
+     * Loads segment, if it isn't loaded yet, and marks it as the most recently used.
+     * The least recently used segments are unloaded, if too many of them are loaded.
+     */
+    private MemoryRecordStore load(int index) {
+        Segment segment = resident.get(index);
+        if (segment != null) {
+            return segment.records;
+        }
+        segment = segments[index];
+        MemoryRecordStore records;
+        try {
+            records = read(segment, segment.keptRecords());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        keptCount -= segment.kept.size();
+        segment.kept.clear();
+        segment.records = records;
+        resident.put(index, segment);
+        Iterator<Segment> leastRecentlyUsed = resident.values().iterator();
+        while (resident.size() > maxResident) {
+            unload(leastRecentlyUsed.next());
+            leastRecentlyUsed.remove();
+        }
+        return records;
+    }
+
+    /**
+     * Writes segment, if its file doesn't contain the last changes, and releases its records.
+     * Segment stays loaded, if it can't be written.
+     */
+    private void unload(Segment segment) {
+        if (segment.writtenVersion() < segment.version) {
+            try {
+                write(segment, segment.records.toList(), false, null, segment.version, nextID, false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        segment.records = null;
+    }
+
+    /**
+     * Appends records kept aside to files of their segments, reading and writing each of them once.
+     */
+    private void appendKept() {
+        for (Segment segment : segments) {
+            if (segment.kept.isEmpty()) {
+                continue;
+            }
+            try {
+                write(segment, segment.keptRecords(), true, null, segment.version, nextID, false);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            keptCount -= segment.kept.size();
+            segment.kept.clear();
+        }
+    }
+
+    /**
+     * Reads records of the last written segment file and adds provided records sorted by ID to them,
+     * replacing records with the same IDs.
+     */
+    private static MemoryRecordStore read(Segment segment, List<ContactsRecord> kept) throws IOException {
+        MemoryRecordStore records = new MemoryRecordStore();
+        synchronized (segment) {
+            Path path = Files.exists(segment.pendingPath) ? segment.pendingPath : segment.path;
+            if (Files.exists(path)) {
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    BinaryFormat.read(channel, records::add);
+                }
+            }
+        }
+        for (ContactsRecord record : kept) {
+            if (records.replace(record) == null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Writes records of the segment to temporary file, which atomically replaces segment file,
+     * unless segment file already contains the same or newer version of the segment.
+     * Segment unloaded by thread changing the store isn't synced to drive, because its changes are in journal;
+     * it's written to pending file, which is synced and replaces segment file when snapshot is written.
+     * Old pending file is deleted rather than replaced, because some file systems sync file replacing another one.
+     *
+     * @param append  True if records should be added to records of segment file, false if they are all records
+     *                of the segment.
+     * @param durable True to sync segment file to drive, false to write pending file.
+     */
+    private static void write(Segment segment, List<ContactsRecord> records, boolean append, RecordVersions versions,
+                              long version, long nextID, boolean durable) throws IOException {
+        synchronized (segment) {
+            if (segment.writtenVersion >= version) {
+                return;
+            }
+            if (append) {
+                records = read(segment, records).toList();
+            }
+            Path temporaryPath = Path.of(segment.path + ".tmp");
+            try (FileChannel output = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                BinaryFormat.write(records, versions, nextID, 0, output);
+                if (durable) {
+                    output.force(true);
+                }
+            }
+            if (durable) {
+                Files.move(temporaryPath, segment.path, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+                Files.deleteIfExists(segment.pendingPath);
+            } else {
+                Files.deleteIfExists(segment.pendingPath);
+                Files.move(temporaryPath, segment.pendingPath, StandardCopyOption.ATOMIC_MOVE);
+            }
+            segment.writtenVersion = version;
+        }
+    }
+
+    /**
+     * Syncs pending file of the segment to drive and replaces segment file with it.
+     */
+    private static void sync(Segment segment) throws IOException {
+        synchronized (segment) {
+            if (!Files.exists(segment.pendingPath)) {
+                return;
+            }
+            try (FileChannel pending = FileChannel.open(segment.pendingPath, StandardOpenOption.WRITE)) {
+                pending.force(true);
+            }
+            Files.move(segment.pendingPath, segment.path, StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private void writeManifest(long nextID, long journalGeneration) throws IOException {
+        ByteBuffer manifest = ByteBuffer.allocate(MANIFEST_SIZE);
+        manifest.putInt(MANIFEST_MAGIC).putShort(MANIFEST_VERSION).putShort((short) 0).putInt(segments.length)
+                .putInt(0).putLong(nextID).putLong(journalGeneration).flip();
+        Path path = directory.resolve(MANIFEST_NAME);
+        Path temporaryPath = Path.of(path + ".tmp");
+        try (FileChannel output = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (manifest.hasRemaining()) {
+                output.write(manifest);
+            }
+            output.force(true);
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Deletes pending files left when application was stopped, changes stored in them are replayed from journal.
+     */
+    private void discardPending() throws IOException {
+        for (Segment segment : segments) {
+            Files.deleteIfExists(segment.pendingPath);
+        }
+    }
+
+    /**
+     * Collects IDs of all segments into sorted array. ID of the next record is raised above IDs of segment files,
+     * which may be written after manifest.
+     */
+    private void readIDs() throws IOException {
+        IDCollector collected = new IDCollector();
+        for (Segment segment : segments) {
+            if (Files.exists(segment.path)) {
+                nextID = Math.max(nextID, BinaryFormat.readIDs(segment.path, collected).nextID);
+            }
+        }
+        Arrays.sort(collected.ids, 0, collected.size);
+        for (int i = 0; i < collected.size; i++) {
+            ids.add(collected.ids[i]);
+        }
+        if (collected.size > 0) {
+            nextID = Math.max(nextID, ids.get(collected.size - 1) + 1L);
+        }
+    }
+
+    /**
+     * Segment file, records of the segment, if it's loaded, and records added or overwritten while it isn't loaded.
+     * Pending file contains the last written version of the segment, which isn't synced to drive yet.
+     * Version counts changes of the segment and is known for the segment file,
+     * so segment is written only if it was changed since the last write.
+     */
+    private static class Segment {
+        final Path path;
+        final Path pendingPath;
+        final Map<Long, ContactsRecord> kept = new HashMap<>();
+        MemoryRecordStore records;
+        long version;
+        private long writtenVersion;
+
+        Segment(Path path) {
+            this.path = path;
+            pendingPath = Path.of(path + ".pending");
+        }
+
+        synchronized long writtenVersion() {
+            return writtenVersion;
+        }
+
+        /**
+         * @return Records kept aside sorted by ID.
+         */
+        List<ContactsRecord> keptRecords() {
+            List<ContactsRecord> records = new ArrayList<>(kept.values());
+            records.sort(Comparator.comparingLong(ContactsRecord::getID));
+            return records;
+        }
+    }
+
+    /**
+     * Growing array of IDs read from segment files.
+     */
+    private static class IDCollector implements LongConsumer {
+        int[] ids = new int[1024];
+        int size;
+
+        @Override
+        public void accept(long id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = Math.toIntExact(id);
+        }
+    }
+
+    /**
+     * Point-in-time copy of changed segments, which is written by thread other than the one changing the store.
+     */
+    class ChangedSegments {
+        private final List<Segment> changed = new ArrayList<>();
+        private final List<List<ContactsRecord>> records = new ArrayList<>();
+        private final List<Boolean> appended = new ArrayList<>();
+        private final List<Long> segmentVersions = new ArrayList<>();
+
+        private void add(Segment segment, List<ContactsRecord> segmentRecords, boolean append, long version) {
+            changed.add(segment);
+            records.add(segmentRecords);
+            appended.add(append);
+            segmentVersions.add(version);
+        }
+
+        /**
+         * Writes changed segments and syncs pending files of other segments, then writes manifest,
+         * so manifest refers to journal only when all its changes are stored on drive.
+         *
+         * @param versions          Original versions of records changed after snapshot was taken or null if records
+         *                          aren't changed while they are written.
+         * @param nextID            ID to be assigned to the next record added to phone book.
+         * @param journalGeneration Generation of the last journal, which changes are included to segments.
+         * @throws IOException Thrown when failed to write.
+         */
+        void write(RecordVersions versions, long nextID, long journalGeneration) throws IOException {
+            for (int i = 0; i < changed.size(); i++) {
+                SegmentedRecordStore.write(changed.get(i), records.get(i), appended.get(i), versions,
+                        segmentVersions.get(i), nextID, true);
+            }
+            for (Segment segment : segments) {
+                sync(segment);
+            }
+            writeManifest(nextID, journalGeneration);
+        }
+    }
+}
@@ -1,37 +1,233 @@
 package contacts.model;
 
+import contacts.metrics.Metrics;
+
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
 
 
 /**
  * Util class provides possibility to store phone book to users drive.
+ * Phone book is stored in compact binary format, files written by Java serialization in older versions
+ * of application are still readable.
  */
 public class SerializationUtils {
 
+    private static final short JAVA_SERIALIZATION_MAGIC = (short) 0xACED;
+
     /**
      * Stores phone book to drive.
+     * File is written as plain snapshot, which doesn't include changes from any journal.
      *
      * @param contactsBook Contacts object to store.
      * @param fileName     String representation of path to file for storing phone book.
-     * @throws IOException Thrown when failed to store phone book.
+     * @throws IOException              Thrown when failed to store phone book.
+     * @throws IllegalArgumentException Thrown when phone book contains records of types, which can't be stored.
+     *                                  File isn't changed then.
      */
     public static void serialize(Contacts contactsBook, String fileName) throws IOException {
+        long startTime = Metrics.startTimer();
+        List<ContactsRecord> records = contactsBook.toList();
+        for (ContactsRecord contactsRecord : records) {
+            BinaryFormat.checkStorable(contactsRecord);
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            BinaryFormat.write(records, contactsBook.getNextID(), 0, channel);
+        } finally {
+            Metrics.SAVE.recordSince(startTime);
+        }
+    }
+
+    /**
+     * Restores phone book from serialized form.
+     * Format of the file is detected by its header, so both binary and Java serialization forms are supported.
+     * Empty file is restored as empty phone book.
+     *
+     * @param fileName String representation of path to file, from which phone book should be restored.
+     * @return Phone book restored from file.
+     * @throws IOException            Thrown when failed to read the file.
+     * @throws ClassNotFoundException Thrown when failed to deserialize phone book from file.
+     */
+    public static Contacts deserialize(String fileName) throws IOException, ClassNotFoundException {
+        long startTime = Metrics.startTimer();
+        try {
+            return read(fileName);
+        } finally {
+            Metrics.LOAD.recordSince(startTime);
+        }
+    }
+
+    /**
+     * Restores phone book as {@link #deserialize(String)} does, but without recording metrics.
+     */
+    private static Contacts read(String fileName) throws IOException, ClassNotFoundException {
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+            if (channel.size() == 0) {
+                return new Contacts();
+            }
+            ByteBuffer header = ByteBuffer.allocate(Short.BYTES);
+            channel.read(header);
+            if (header.position() == Short.BYTES && header.getShort(0) == JAVA_SERIALIZATION_MAGIC) {
+                return readLegacy(fileName);
+            }
+            channel.position(0);
+            return BinaryFormat.read(channel);
+        }
+    }
+
+    /**
+     * Restores phone book from serialized form into columnar phone book, which takes less memory.
+     * Records in binary format are put into columns one by one, without keeping all record objects in memory.
+     *
+     * @param fileName String representation of path to file, from which phone book should be restored.
+     * @return Columnar phone book restored from file.
+     * @throws IOException            Thrown when failed to read the file.
+     * @throws ClassNotFoundException Thrown when failed to deserialize phone book from file.
+     * @see Contacts#columnar()
+     */
+    public static Contacts deserializeColumnar(String fileName) throws IOException, ClassNotFoundException {
+        long startTime = Metrics.startTimer();
+        try {
+            return readColumnar(fileName);
+        } finally {
+            Metrics.LOAD.recordSince(startTime);
+        }
+    }
+
+    private static Contacts readColumnar(String fileName) throws IOException, ClassNotFoundException {
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+            channel.read(header);
+            if (header.position() == header.capacity() && header.getInt(0) == BinaryFormat.MAGIC) {
+                channel.position(0);
+                return BinaryFormat.read(channel, Contacts.columnar());
+            }
+        }
+        Contacts contactsBook = read(fileName);
+        Contacts columnarBook = Contacts.columnar();
+        for (ContactsRecord contactsRecord : contactsBook.toList()) {
+            columnarBook.restoreRecord(contactsRecord);
+        }
+        columnarBook.reserveIDs(contactsBook.getNextID());
+        columnarBook.journalGeneration = contactsBook.journalGeneration;
+        return columnarBook;
+    }
+
+    /**
+     * Opens phone book stored in binary format without reading its records.
+     * File is memory-mapped and records are decoded on first access,
+     * so opening takes the same time for phone book of any size.
+     * Phone books written by Java serialization, which doesn't support access to records in any order,
+     * are restored fully.
+     *
+     * @param fileName String representation of path to file, from which phone book should be opened.
+     * @return Phone book backed by the file.
+     * @throws IOException            Thrown when failed to read the file.
+     * @throws ClassNotFoundException Thrown when failed to deserialize phone book from file.
+     */
+    public static Contacts map(String fileName) throws IOException, ClassNotFoundException {
+        long startTime = Metrics.startTimer();
+        try {
+            return mapOrRead(fileName);
+        } finally {
+            Metrics.LOAD.recordSince(startTime);
+        }
+    }
+
+    private static Contacts mapOrRead(String fileName) throws IOException, ClassNotFoundException {
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(Integer.BYTES + Short.BYTES);
+            channel.read(header);
+            if (header.position() < header.capacity() || header.getInt(0) != BinaryFormat.MAGIC
+                    || header.getShort(Integer.BYTES) != BinaryFormat.VERSION) {
+                return read(fileName);
+            }
+        }
+        MappedRecordStore records = new MappedRecordStore(Path.of(fileName));
+        Contacts contactsBook = new Contacts(records, records.getNextID());
+        contactsBook.journalGeneration = records.getJournalGeneration();
+        return contactsBook;
+    }
+
+    /**
+     * Opens phone book stored in directory of segment files with default number of segments kept in memory.
+     *
+     * @see #openSegmented(String, int, int)
+     */
+    public static Contacts openSegmented(String directoryName) throws IOException {
+        return openSegmented(directoryName, SegmentedRecordStore.DEFAULT_SEGMENT_COUNT,
+                SegmentedRecordStore.DEFAULT_RESIDENT_SEGMENTS);
+    }
+
+    /**
+     * Opens phone book stored in directory of segment files, which can be larger than memory.
+     * Records are partitioned into segments by hash of their IDs, only IDs of records are read at start
+     * and segments are loaded on first access. Only limited number of the least recently used segments is kept
+     * in memory, so search indexes, which are built on the first search, take most of memory of large phone book.
+     * Changes are kept in memory until segment is unloaded or snapshot is written by {@link Journal},
+     * which should be opened for the directory; only changed segments are written.
+     * Empty phone book is created, if directory doesn't contain phone book.
+     *
+     * @param directoryName String representation of path to directory of phone book.
+     * @param segmentCount  Number of segment files of new phone book, existing phone book keeps its number.
+     * @param maxResident   Maximum number of segments kept in memory.
+     * @return Phone book backed by the directory.
+     * @throws IOException Thrown when failed to read the directory or it contains other files.
+     */
+    public static Contacts openSegmented(String directoryName, int segmentCount, int maxResident)
+            throws IOException {
+        long startTime = Metrics.startTimer();
+        try {
+            SegmentedRecordStore records = SegmentedRecordStore.open(Path.of(directoryName), segmentCount,
+                    maxResident);
+            Contacts contactsBook = new Contacts(records, records.getNextID());
+            contactsBook.journalGeneration = records.getJournalGeneration();
+            return contactsBook;
+        } finally {
+            Metrics.LOAD.recordSince(startTime);
+        }
+    }
+
+    /**
+     * Stores phone book to drive using Java serialization, as it was done by older versions of application.
+     *
+     * @param contactsBook Contacts object to store.
+     * @param fileName     String representation of path to file for storing phone book.
+     * @throws IOException Thrown when failed to store phone book.
+     */
+    public static void serializeLegacy(Contacts contactsBook, String fileName) throws IOException {
+        long startTime = Metrics.startTimer();
         FileOutputStream fos = new FileOutputStream(fileName);
         BufferedOutputStream bos = new BufferedOutputStream(fos);
         ObjectOutputStream oos = new ObjectOutputStream(bos);
         oos.writeObject(contactsBook);
         oos.close();
+        Metrics.SAVE.recordSince(startTime);
     }
 
     /**
-     * Restores phone book from serialized form.
+     * Restores phone book stored using Java serialization.
      *
      * @param fileName String representation of path to file, from which phone book should be restored.
      * @return Phone book restored from file.
      * @throws IOException            Thrown when failed to read the file.
      * @throws ClassNotFoundException Thrown when failed to deserialize phone book from file.
      */
-    public static Contacts deserialize(String fileName) throws IOException, ClassNotFoundException {
+    public static Contacts deserializeLegacy(String fileName) throws IOException, ClassNotFoundException {
+        long startTime = Metrics.startTimer();
+        try {
+            return readLegacy(fileName);
+        } finally {
+            Metrics.LOAD.recordSince(startTime);
+        }
+    }
+
+    private static Contacts readLegacy(String fileName) throws IOException, ClassNotFoundException {
         FileInputStream fis = new FileInputStream(fileName);
         BufferedInputStream bis = new BufferedInputStream(fis);
         ObjectInputStream ois = new ObjectInputStream(bis);
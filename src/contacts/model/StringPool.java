@@ -0,0 +1,121 @@
+package contacts.model;
+
+import java.util.Arrays;
+
+
+/**
+ * Pool of distinct strings referenced by int numbers, so equal values of many records are stored once. <br>
+ * Every reference is counted, string is dropped from the pool when the last reference is released
+ * and its number is reused. Reference 0 stands for null. Strings are found by value through hash table
+ * of references with open addressing and linear probing stored in int array.
+ */
+class StringPool {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] strings = new String[MIN_CAPACITY];
+    private int[] counts = new int[MIN_CAPACITY];
+    private int[] table = new int[MIN_CAPACITY];
+    private int[] freeReferences = new int[MIN_CAPACITY];
+    private int freeCount;
+    private int nextReference = 1;
+    private int size;
+
+    /**
+     * Adds reference to the value putting it into the pool if it isn't there yet.
+     *
+     * @return Reference to the value or 0 for null.
+     */
+    int acquire(String value) {
+        if (value == null) {
+            return 0;
+        }
+        int mask = table.length - 1;
+        int cell = hash(value) & mask;
+        while (table[cell] != 0) {
+            int reference = table[cell];
+            if (strings[reference].equals(value)) {
+                counts[reference]++;
+                return reference;
+            }
+            cell = (cell + 1) & mask;
+        }
+        int reference = freeCount > 0 ? freeReferences[--freeCount] : nextReference++;
+        if (reference == strings.length) {
+            strings = Arrays.copyOf(strings, reference * 2);
+            counts = Arrays.copyOf(counts, reference * 2);
+        }
+        strings[reference] = value;
+        counts[reference] = 1;
+        table[cell] = reference;
+        size++;
+        if (size * 4 > table.length * 3) {
+            resize(table.length * 2);
+        }
+        return reference;
+    }
+
+    /**
+     * Removes reference to the value. Value is dropped from the pool if it isn't referenced anymore.
+     *
+     * @param reference Reference returned by {@link #acquire(String)}.
+     */
+    void release(int reference) {
+        if (reference == 0 || --counts[reference] > 0) {
+            return;
+        }
+        int mask = table.length - 1;
+        int cell = hash(strings[reference]) & mask;
+        while (table[cell] != reference) {
+            cell = (cell + 1) & mask;
+        }
+        int hole = cell;
+        for (int next = (hole + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+            int home = hash(strings[table[next]]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                table[hole] = table[next];
+                hole = next;
+            }
+        }
+        table[hole] = 0;
+        strings[reference] = null;
+        if (freeCount == freeReferences.length) {
+            freeReferences = Arrays.copyOf(freeReferences, freeCount * 2);
+        }
+        freeReferences[freeCount++] = reference;
+        size--;
+    }
+
+    /**
+     * @return Value by its reference or null for reference 0.
+     */
+    String get(int reference) {
+        return strings[reference];
+    }
+
+    /**
+     * @return Number of distinct strings in the pool.
+     */
+    int size() {
+        return size;
+    }
+
+    private void resize(int capacity) {
+        table = new int[capacity];
+        int mask = capacity - 1;
+        for (int reference = 1; reference < nextReference; reference++) {
+            if (strings[reference] != null) {
+                int cell = hash(strings[reference]) & mask;
+                while (table[cell] != 0) {
+                    cell = (cell + 1) & mask;
+                }
+                table[cell] = reference;
+            }
+        }
+    }
+
+    private static int hash(String value) {
+        int h = value.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
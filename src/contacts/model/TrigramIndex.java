@@ -0,0 +1,193 @@
+package contacts.model;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * Inverted index from every three consecutive characters (trigram) of searchable string to IDs of records
+ * containing it. Ascending order of IDs is the order of phone book. <br>
+ * Index assumes searchable string of the record doesn't change between its indexing and next call of the index
+ * with this record, and supports record IDs up to {@link Integer#MAX_VALUE}. <br>
+ * Trigrams are packed into longs and kept in primitive structures: hash map from trigram to slot of its posting list
+ * and sorted arrays of distinct trigrams of text, so indexing and querying don't box trigrams.
+ */
+class TrigramIndex {
+
+    /**
+     * Bit set in every packed trigram, so trigram of zero characters is a valid positive key.
+     */
+    private static final long TRIGRAM_MARK = 1L << 48;
+
+    private final LongIntHashMap slots = new LongIntHashMap();
+    private PostingList[] postings = new PostingList[16];
+    private int slotCount;
+    private int[] freeSlots = new int[16];
+    private int freeSlotCount;
+
+    /**
+     * Indexes newly added record.
+     *
+     * @param contactsRecord Record to index.
+     */
+    void add(ContactsRecord contactsRecord) {
+        int id = Math.toIntExact(contactsRecord.getID());
+        for (long trigram : trigrams(contactsRecord.toSearchableString())) {
+            addPosting(trigram, id);
+        }
+    }
+
+    /**
+     * Removes record from index.
+     *
+     * @param contactsRecord Record to remove.
+     */
+    void remove(ContactsRecord contactsRecord) {
+        int id = Math.toIntExact(contactsRecord.getID());
+        for (long trigram : trigrams(contactsRecord.toSearchableString())) {
+            removePosting(trigram, id);
+        }
+    }
+
+    /**
+     * Brings index of edited record up to date. Only trigrams which differ between old and new text are touched.
+     *
+     * @param contactsRecord Record after editing.
+     * @param oldText        Searchable string of the record before editing.
+     */
+    void update(ContactsRecord contactsRecord, String oldText) {
+        int id = Math.toIntExact(contactsRecord.getID());
+        long[] oldTrigrams = trigrams(oldText);
+        long[] newTrigrams = trigrams(contactsRecord.toSearchableString());
+        int oldIndex = 0;
+        int newIndex = 0;
+        while (oldIndex < oldTrigrams.length || newIndex < newTrigrams.length) {
+            if (newIndex == newTrigrams.length
+                    || oldIndex < oldTrigrams.length && oldTrigrams[oldIndex] < newTrigrams[newIndex]) {
+                removePosting(oldTrigrams[oldIndex++], id);
+            } else if (oldIndex == oldTrigrams.length || newTrigrams[newIndex] < oldTrigrams[oldIndex]) {
+                addPosting(newTrigrams[newIndex++], id);
+            } else {
+                oldIndex++;
+                newIndex++;
+            }
+        }
+    }
+
+    /**
+     * Replaces indexed record with another one having the same ID.
+     *
+     * @param oldRecord Record to replace.
+     * @param newRecord Record to index instead.
+     */
+    void replace(ContactsRecord oldRecord, ContactsRecord newRecord) {
+        update(newRecord, oldRecord.toSearchableString());
+    }
+
+    /**
+     * Finds records, which contain all provided literals. Literals shorter than three characters are ignored.
+     *
+     * @param literals Fragments of text every match should contain.
+     * @return IDs of candidate records in phone book order
+     * or null if literals are too short to narrow the search and every record is a candidate.
+     */
+    int[] candidates(List<String> literals) {
+        long[] queryTrigrams = new long[0];
+        for (String literal : literals) {
+            long[] literalTrigrams = trigrams(literal);
+            int size = queryTrigrams.length;
+            queryTrigrams = Arrays.copyOf(queryTrigrams, size + literalTrigrams.length);
+            System.arraycopy(literalTrigrams, 0, queryTrigrams, size, literalTrigrams.length);
+        }
+        queryTrigrams = distinct(queryTrigrams);
+        if (queryTrigrams.length == 0) {
+            return null;
+        }
+        PostingList[] lists = new PostingList[queryTrigrams.length];
+        for (int i = 0; i < queryTrigrams.length; i++) {
+            int slot = slots.get(queryTrigrams[i]);
+            if (slot < 0) {
+                return new int[0];
+            }
+            lists[i] = postings[slot];
+        }
+        Arrays.sort(lists, Comparator.comparingInt(PostingList::size));
+        int[] result = lists[0].toArray();
+        int size = result.length;
+        for (int i = 1; i < lists.length && size > 0; i++) {
+            PostingList postingList = lists[i];
+            int kept = 0;
+            for (int j = 0; j < size; j++) {
+                if (postingList.contains(result[j])) {
+                    result[kept++] = result[j];
+                }
+            }
+            size = kept;
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private void addPosting(long trigram, int id) {
+        int slot = slots.get(trigram);
+        if (slot < 0) {
+            if (freeSlotCount > 0) {
+                slot = freeSlots[--freeSlotCount];
+            } else {
+                if (slotCount == postings.length) {
+                    postings = Arrays.copyOf(postings, slotCount * 2);
+                }
+                slot = slotCount++;
+            }
+            postings[slot] = new PostingList();
+            slots.put(trigram, slot);
+        }
+        postings[slot].add(id);
+    }
+
+    private void removePosting(long trigram, int id) {
+        int slot = slots.get(trigram);
+        if (slot < 0) {
+            return;
+        }
+        PostingList postingList = postings[slot];
+        postingList.remove(id);
+        if (postingList.isEmpty()) {
+            slots.remove(trigram);
+            postings[slot] = null;
+            if (freeSlotCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+            }
+            freeSlots[freeSlotCount++] = slot;
+        }
+    }
+
+    /**
+     * @return Distinct trigrams of text in ascending order.
+     */
+    private static long[] trigrams(String text) {
+        if (text.length() < 3) {
+            return new long[0];
+        }
+        long[] result = new long[text.length() - 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = TRIGRAM_MARK | ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16)
+                    | text.charAt(i + 2);
+        }
+        return distinct(result);
+    }
+
+    /**
+     * Sorts trigrams and removes repeated ones.
+     */
+    private static long[] distinct(long[] trigrams) {
+        Arrays.sort(trigrams);
+        int size = 0;
+        for (int i = 0; i < trigrams.length; i++) {
+            if (size == 0 || trigrams[size - 1] != trigrams[i]) {
+                trigrams[size++] = trigrams[i];
+            }
+        }
+        return size == trigrams.length ? trigrams : Arrays.copyOf(trigrams, size);
+    }
+}
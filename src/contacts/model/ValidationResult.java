@@ -0,0 +1,48 @@
+package contacts.model;
+
+
+/**
+ * Result of validation of field value. Results are shared constants, so validation doesn't allocate.
+ */
+public final class ValidationResult {
+
+    /**
+     * Result of valid value of any field.
+     */
+    public static final ValidationResult VALID = new ValidationResult(null, null);
+
+    static final ValidationResult BAD_NUMBER = new ValidationResult("number", "Bad number!");
+    static final ValidationResult BAD_BIRTH_DATE = new ValidationResult("birth", "Bad birth date!");
+    static final ValidationResult BAD_GENDER = new ValidationResult("gender", "Bad gender!");
+
+    private final String fieldName;
+    private final String message;
+
+    private ValidationResult(String fieldName, String message) {
+        this.fieldName = fieldName;
+        this.message = message;
+    }
+
+    public boolean isValid() {
+        return message == null;
+    }
+
+    /**
+     * @return Name of the field, which value is invalid, or null if value is valid.
+     */
+    public String getFieldName() {
+        return fieldName;
+    }
+
+    /**
+     * @return Message to show user, when value is invalid, or null if value is valid.
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return isValid() ? "valid" : message;
+    }
+}
@@ -0,0 +1,381 @@
+package contacts.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import contacts.model.ConcurrentContacts;
+import contacts.model.ContactsRecord;
+import contacts.model.RecordChange;
+import contacts.model.RecordJson;
+import contacts.model.WrongFieldNameException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * HTTP server exposing phone book as JSON API on loopback interface, so one phone book serves many clients
+ * without starting JVM per request. Records are JSON objects written by {@link RecordJson}. <br>
+ * Requests: <br>
+ * GET /records?query=Q&amp;from=N&amp;count=N - page of search result or of all records if query is absent, <br>
+ * GET /records/ID - record, <br>
+ * POST /records - adds record from JSON object with "type" and fields, <br>
+ * PATCH /records/ID - changes fields named by keys of JSON object, <br>
+ * DELETE /records/ID - deletes record, <br>
+ * GET /count - number of records, <br>
+ * GET /changes?since=N or GET /changes?after=TIME - changes after sequence number or ISO local date-time. <br>
+ * Each request is handled on its own virtual thread if Java runtime supports them,
+ * otherwise on fixed pool of platform threads. Phone book is {@link ConcurrentContacts},
+ * so requests are served concurrently and changes are logged by journal attached to it.
+ */
+public class ContactsServer {
+
+    /**
+     * Number of records in page of search result, if it isn't requested.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private static final int MAX_BODY_SIZE = 64 << 10;
+    private static final String RECORDS = "/records";
+    private static final String NO_DELAY_PROPERTY = "sun.net.httpserver.nodelay";
+
+    private final ConcurrentContacts contactsBook;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Creates server listening on loopback interface. Requests aren't handled until server is started. <br>
+     * Unless set explicitly, JDK server is configured to send responses without Nagle's delay, otherwise
+     * headers and body of response are sent in separate packets and the body waits for acknowledgement of headers,
+     * which adds about 40 ms to every request. The option is read once, before the first server of the process
+     * is created.
+     *
+     * @param contactsBook Phone book shared by all requests.
+     * @param port         Port to listen or 0 to choose any free port.
+     * @throws IOException Thrown when port can't be bound.
+     */
+    public ContactsServer(ConcurrentContacts contactsBook, int port) throws IOException {
+        this.contactsBook = contactsBook;
+        if (System.getProperty(NO_DELAY_PROPERTY) == null) {
+            System.setProperty(NO_DELAY_PROPERTY, "true");
+        }
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext(RECORDS, exchange -> handle(exchange, this::records));
+        server.createContext("/count", exchange -> handle(exchange, this::count));
+        server.createContext("/changes", exchange -> handle(exchange, this::changes));
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting requests and waits until handled requests are finished.
+     *
+     * @param delaySeconds Maximum time to wait for handled requests.
+     */
+    public void stop(int delaySeconds) {
+        server.stop(delaySeconds);
+        executor.shutdown();
+    }
+
+    /**
+     * @return Port server listens, which is chosen by system if server was created with port 0.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Creates executor starting virtual thread per task, which is looked up by reflection,
+     * because application is compiled for Java versions without virtual threads.
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            return Executors.newFixedThreadPool(Math.max(16, Runtime.getRuntime().availableProcessors() * 4),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "contacts-server-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
+    private Response records(HttpExchange exchange) throws IOException, WrongFieldNameException {
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+        if (path.equals(RECORDS) || path.equals(RECORDS + "/")) {
+            switch (method) {
+                case "GET":
+                    return find(query(exchange));
+                case "POST":
+                    return add(RecordJson.parse(body(exchange)));
+                default:
+                    return Response.methodNotAllowed("GET, POST");
+            }
+        }
+        long id;
+        try {
+            id = Long.parseLong(path.substring(RECORDS.length() + 1));
+        } catch (NumberFormatException e) {
+            return Response.error(404, "No such resource: " + path);
+        }
+        ContactsRecord contactsRecord = contactsBook.getRecordByID(id);
+        if (contactsRecord == null) {
+            return Response.error(404, "No record with ID " + id);
+        }
+        switch (method) {
+            case "GET":
+                return Response.record(200, contactsBook.copyOf(contactsRecord));
+            case "PATCH":
+                return edit(contactsRecord, RecordJson.parse(body(exchange)));
+            case "DELETE":
+                contactsBook.deleteRecord(contactsRecord);
+                return Response.NO_CONTENT;
+            default:
+                return Response.methodNotAllowed("GET, PATCH, DELETE");
+        }
+    }
+
+    private Response count(HttpExchange exchange) {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            return Response.methodNotAllowed("GET");
+        }
+        return new Response(200, "{\"count\":" + contactsBook.getNumberOfRecords() + "}");
+    }
+
+    /**
+     * Responds with changes and sequence number, after which client should request changes next time.
+     * Deleted records have no "record" key.
+     */
+    private Response changes(HttpExchange exchange) {
+        if (!"GET".equals(exchange.getRequestMethod())) {
+            return Response.methodNotAllowed("GET");
+        }
+        Map<String, String> parameters = query(exchange);
+        long sequence = contactsBook.getChangeSequence();
+        List<RecordChange> changes;
+        if (parameters.containsKey("after")) {
+            try {
+                changes = contactsBook.changesSince(LocalDateTime.parse(parameters.get("after")));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Parameter after should be ISO local date-time: "
+                        + parameters.get("after"));
+            }
+        } else {
+            changes = contactsBook.changesSince(longParameter(parameters, "since", 0));
+        }
+        StringBuilder body = new StringBuilder("{\"changes\":[");
+        for (int i = 0; i < changes.size(); i++) {
+            RecordChange change = changes.get(i);
+            sequence = Math.max(sequence, change.getSequence());
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"sequence\":").append(change.getSequence()).append(",\"id\":").append(change.getID())
+                    .append(",\"kind\":\"").append(change.getKind().name().toLowerCase(Locale.ROOT))
+                    .append("\",\"time\":\"").append(change.getTime()).append('"');
+            if (change.getRecord() != null) {
+                body.append(",\"record\":");
+                RecordJson.append(body, change.getRecord());
+            }
+            body.append('}');
+        }
+        body.append("],\"sequence\":").append(sequence).append('}');
+        return new Response(200, body.toString());
+    }
+
+    /**
+     * @return Page of search result or of all records with total number of them.
+     */
+    private Response find(Map<String, String> parameters) {
+        int from = parameter(parameters, "from", 0);
+        int count = Math.min(parameter(parameters, "count", DEFAULT_PAGE_SIZE), MAX_PAGE_SIZE);
+        if (from < 0 || count < 0) {
+            throw new IllegalArgumentException("Page should start at positive position and have positive size");
+        }
+        String query = parameters.get("query");
+        List<ContactsRecord> page;
+        int total;
+        if (query == null) {
+            total = contactsBook.getNumberOfRecords();
+            page = contactsBook.getRecords(Math.min(from, total), count);
+        } else {
+            List<ContactsRecord> found = contactsBook.search(query);
+            total = found.size();
+            page = found.subList(Math.min(from, total), (int) Math.min(total, (long) from + count));
+        }
+        StringBuilder body = new StringBuilder();
+        body.append("{\"total\":").append(total).append(",\"from\":").append(from).append(",\"records\":");
+        RecordJson.append(body, contactsBook.copyOf(page));
+        body.append('}');
+        return new Response(200, body.toString());
+    }
+
+    private Response add(Map<String, String> values) {
+        ContactsRecord contactsRecord = RecordJson.toRecord(values);
+        contactsBook.addRecord(contactsRecord);
+        return Response.record(201, contactsBook.copyOf(contactsRecord));
+    }
+
+    /**
+     * Changes all fields at once, so request with wrong field changes nothing and other requests
+     * see either none or all of the changes.
+     */
+    private Response edit(ContactsRecord contactsRecord, Map<String, String> values) throws WrongFieldNameException {
+        contactsBook.editFieldsByName(contactsRecord, values);
+        return Response.record(200, contactsBook.copyOf(contactsRecord));
+    }
+
+    /**
+     * Handles request and sends response. Invalid requests are answered with status 400 and error message.
+     * Request body is consumed before response is sent, otherwise connection isn't kept alive after response
+     * without body.
+     */
+    private static void handle(HttpExchange exchange, Handler handler) throws IOException {
+        Response response;
+        try {
+            response = handler.handle(exchange);
+        } catch (IllegalArgumentException | WrongFieldNameException e) {
+            response = Response.error(400, e.getMessage());
+        } catch (BodyTooLargeException e) {
+            response = Response.error(413, "Request body exceeds " + MAX_BODY_SIZE + " bytes");
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            response = Response.error(500, "Internal error");
+        }
+        try {
+            exchange.getRequestBody().close();
+            response.send(exchange);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) {
+            return parameters;
+        }
+        for (String parameter : query.split("&")) {
+            int separator = parameter.indexOf('=');
+            String name = separator < 0 ? parameter : parameter.substring(0, separator);
+            String value = separator < 0 ? "" : parameter.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    private static int parameter(Map<String, String> parameters, String name, int defaultValue) {
+        String value = parameters.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " should be number: " + value);
+        }
+    }
+
+    private static long longParameter(Map<String, String> parameters, String name, long defaultValue) {
+        String value = parameters.get(name);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Parameter " + name + " should be number: " + value);
+        }
+    }
+
+    private static String body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readNBytes(MAX_BODY_SIZE + 1);
+            if (body.length > MAX_BODY_SIZE) {
+                throw new BodyTooLargeException();
+            }
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    private interface Handler {
+        Response handle(HttpExchange exchange) throws IOException, WrongFieldNameException;
+    }
+
+    private static class BodyTooLargeException extends IOException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    /**
+     * Status and JSON body of response.
+     */
+    private static class Response {
+        static final Response NO_CONTENT = new Response(204, null);
+
+        private final int status;
+        private final String body;
+        private String allow;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+
+        static Response record(int status, ContactsRecord contactsRecord) {
+            StringBuilder body = new StringBuilder();
+            RecordJson.append(body, contactsRecord);
+            return new Response(status, body.toString());
+        }
+
+        static Response error(int status, String message) {
+            StringBuilder body = new StringBuilder("{\"error\":");
+            RecordJson.appendString(body, message == null ? "" : message);
+            return new Response(status, body.append('}').toString());
+        }
+
+        static Response methodNotAllowed(String allowedMethods) {
+            Response response = error(405, "Method isn't allowed, use " + allowedMethods);
+            response.allow = allowedMethods;
+            return response;
+        }
+
+        void send(HttpExchange exchange) throws IOException {
+            if (allow != null) {
+                exchange.getResponseHeaders().set("Allow", allow);
+            }
+            if (body == null) {
+                exchange.sendResponseHeaders(status, -1);
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
@@ -1,32 +1,45 @@
 package contacts.view;
 
+import contacts.metrics.LatencySnapshot;
+import contacts.metrics.Metrics;
 import contacts.model.*;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Scanner;
+import java.util.StringJoiner;
 
 
 /**
  * Provides user interface to interact with phone book.
  * It is pack of menus to manage data and display it.
+ * Lists of records are shown page by page, output is buffered and flushed before waiting for user input.
  */
 public class CLI {
 
+    private static final int PAGE_SIZE = 20;
+    private static final List<String> LIST_EXIT_ACTIONS = List.of("back");
+    private static final List<String> SEARCH_EXIT_ACTIONS = List.of("back", "again");
+
     private final String WRONG_INPUT = "Wrong input";
     private final Scanner scanner = new Scanner(System.in);
+    private final PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), 1 << 16));
     private final Contacts contactsBook;
-    private final String filename;
+    private final Journal journal;
 
     /**
      * Constructs command line interface.
      *
      * @param contactsBook Phone book with stored contacts.
-     * @param filename     Path to serialized form of phone book.
+     * @param journal      Journal recording changes of phone book or null if phone book is stored only in memory.
      */
-    public CLI(Contacts contactsBook, String filename) {
+    public CLI(Contacts contactsBook, Journal journal) {
         this.contactsBook = contactsBook;
-        this.filename = filename;
+        this.journal = journal;
     }
 
     /**
@@ -35,8 +48,7 @@ public class CLI {
      */
     public void mainMenu() {
         while (true) {
-            System.out.print("\n[menu] Enter action (add, list, search, count, exit): ");
-            String input = scanner.nextLine();
+            String input = readLine("\n[menu] Enter action (add, list, search, count, dedup, stats, save, exit): ");
             switch (input) {
                 case "add":
                     addMenu();
@@ -48,105 +60,169 @@ public class CLI {
                     searchMenu();
                     break;
                 case "count":
-                    System.out.printf("The Phone Book has %d records.\n", contactsBook.getNumberOfRecords());
+                    out.printf("The Phone Book has %d records.\n", contactsBook.getNumberOfRecords());
+                    break;
+                case "dedup":
+                    dedupMenu();
+                    break;
+                case "stats":
+                    printStats();
+                    break;
+                case "save":
+                    if (journal == null) {
+                        out.println("The Phone Book is stored only in memory.");
+                    } else {
+                        journal.snapshot();
+                        out.println("The Phone Book is being saved in background.");
+                    }
                     break;
                 case "exit":
-                    if (filename != null && !filename.isBlank()) {
+                    out.flush();
+                    if (journal != null) {
                         try {
-                            SerializationUtils.serialize(contactsBook, filename);
+                            journal.close();
                         } catch (IOException e) {
                             e.printStackTrace();
                         }
                     }
                     System.exit(0);
                 default:
-                    System.out.println(WRONG_INPUT);
+                    out.println(WRONG_INPUT);
             }
         }
     }
 
     /**
-     * Menu accepts search query from command line and displays search result for user.
+     * Menu accepts search query from command line and displays search result for user page by page.
      * Query is case insensitive, also can be regular expression.
+     * Records are matched only when their page is shown.
+     * Query starting with "~" searches names and surnames allowing typos, the closest records are shown first.
      * Provides access to record menu.
      */
     private void searchMenu() {
         while (true) {
-            System.out.print("Enter search query: ");
-            String query = scanner.nextLine();
-            List<ContactsRecord> foundRecordsList = contactsBook.search(query);
-            int size = foundRecordsList.size();
-            System.out.printf("Found %d results:\n", size);
-            for (int i = 0; i < size; i++) {
-
-                ContactsRecord contactsRecord = foundRecordsList.get(i);
-                String fullName = contactsRecord.getName();
-                if (contactsRecord.getAccessibleFields().contains("surname")) {
-                    fullName += " " + ((PersonContactsRecord) contactsRecord).getSurname();
-                }
-                System.out.println(i + 1 + ". " + fullName);
-            }
-
-            System.out.print("\n[search] Enter action ([number], back, again): ");
-            String action = scanner.nextLine();
-            if ("back".equals(action)) {
+            String query = readLine("Enter search query (start with ~ to allow typos in names): ");
+            Iterator<ContactsRecord> found = query.startsWith("~")
+                    ? contactsBook.searchFuzzy(query.substring(1), fuzzyDistance(query.length() - 1)).iterator()
+                    : contactsBook.searchIterator(query);
+            PageCursor results = PageCursor.over(found, PAGE_SIZE);
+            if (!"again".equals(browse(results, "search", SEARCH_EXIT_ACTIONS))) {
                 return;
             }
-            if ("again".equals(action)) {
-                continue;
-            }
-            if (actionIDToRecordMenu(action)) {
-                return;
+        }
+    }
+
+    /**
+     * @return Number of typos allowed in every word of fuzzy query: one for short queries and two for longer ones.
+     */
+    private static int fuzzyDistance(int queryLength) {
+        return queryLength <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Finds duplicate records, shows the first groups of them and merges them, if user confirms it.
+     */
+    private void dedupMenu() {
+        MergePlan plan = new DuplicateFinder().find(contactsBook);
+        if (plan.getMerges().isEmpty()) {
+            out.println("No duplicates found.");
+            return;
+        }
+        out.printf("Found %d groups of duplicates, %d records to merge.\n",
+                plan.getMerges().size(), plan.getDuplicateCount());
+        for (MergePlan.Merge merge : plan.getMerges().subList(0, Math.min(PAGE_SIZE, plan.getMerges().size()))) {
+            ContactsRecord kept = contactsBook.getRecordByID(merge.getKeptID());
+            if (kept != null) {
+                out.printf("%s and %d more\n", kept.getDisplayName(), merge.getDuplicateIDs().length);
             }
         }
+        if ("yes".equals(readLine("Merge duplicates? (yes, no): "))) {
+            out.printf("Merged, %d records deleted.\n", plan.apply(contactsBook));
+        }
     }
 
     /**
-     * Shows all records stored in phone book and provides access to record menu.
+     * Shows latency of operations and counters collected since start of application.
+     */
+    private void printStats() {
+        if (!Metrics.isEnabled()) {
+            out.println("Metrics are disabled.");
+            return;
+        }
+        out.println("search: " + Metrics.SEARCH.snapshot());
+        out.println("add:    " + Metrics.ADD_RECORD.snapshot());
+        out.println("delete: " + Metrics.DELETE_RECORD.snapshot());
+        out.println("load:   " + Metrics.LOAD.snapshot());
+        out.println("save:   " + Metrics.SAVE.snapshot());
+        LatencySnapshot search = Metrics.SEARCH.snapshot();
+        long scanned = Metrics.RECORDS_SCANNED.get();
+        out.printf("records scanned by search: %d (%d per search)\n",
+                scanned, search.getCount() == 0 ? 0 : scanned / search.getCount());
+        out.printf("invalid field values: %d\n", Metrics.VALIDATION_FAILURES.get());
+    }
+
+    /**
+     * Shows records stored in phone book page by page and provides access to record menu.
      */
     private void listMenu() {
-        int bound = contactsBook.getNumberOfRecords();
+        browse(PageCursor.over(contactsBook, PAGE_SIZE), "list", LIST_EXIT_ACTIONS);
+    }
+
+    /**
+     * Shows the current page of records and accepts actions to move between pages: "next", "prev" and "page N".
+     * Number of record opens record menu.
+     *
+     * @param cursor      Cursor over records.
+     * @param menuName    Name of the menu shown in prompt.
+     * @param exitActions Actions, which close the menu.
+     * @return Action, which closed the menu, or null if record menu was opened.
+     */
+    private String browse(PageCursor cursor, String menuName, List<String> exitActions) {
         while (true) {
-            for (int i = 0; i < bound; i++) {
-                ContactsRecord contactsRecord = contactsBook.getRecordByID(i);
-                String fullName = contactsRecord.getName();
-                if (contactsRecord.getAccessibleFields().contains("surname")) {
-                    fullName += " " + ((PersonContactsRecord) contactsRecord).getSurname();
-                }
-                System.out.println(i + 1 + ". " + fullName);
-            }
-            System.out.print("\n[list] Enter action ([number], back): ");
-            String action = scanner.nextLine();
-            if ("back".equals(action)) {
-                return;
+            printPage(cursor);
+            String action = readLine(String.format("\n[%s] Enter action ([number], next, prev, page N, %s): ",
+                    menuName, String.join(", ", exitActions)));
+            if (exitActions.contains(action)) {
+                return action;
             }
-            if (actionIDToRecordMenu(action)) {
-                return;
+            if ("next".equals(action)) {
+                if (!cursor.moveTo(cursor.getPage() + 1)) {
+                    out.println("This is the last page");
+                }
+            } else if ("prev".equals(action)) {
+                if (!cursor.moveTo(cursor.getPage() - 1)) {
+                    out.println("This is the first page");
+                }
+            } else if (action.matches("page [1-9]\\d{0,8}")) {
+                if (!cursor.moveTo(Integer.parseInt(action.substring("page ".length())) - 1)) {
+                    out.println("There's no such page");
+                }
+            } else {
+                ContactsRecord contactsRecord = action.matches("[1-9]\\d{0,8}")
+                        ? cursor.record(Integer.parseInt(action) - 1)
+                        : null;
+                if (contactsRecord != null) {
+                    recordMenu(contactsRecord);
+                    return null;
+                }
+                out.println(WRONG_INPUT);
             }
         }
     }
 
-    /**
-     * Validates the "action" input from user, parses ID if it's correct and redirect to the record menu.
-     *
-     * @param action User input should be number greater than 0.
-     * @return True if record found by provided action, false otherwise.
-     */
-    private boolean actionIDToRecordMenu(String action) {
-        int ID = -1;
-        if (action.matches("([1-9]\\d*)")) {
-            ID = Integer.parseInt(action) - 1;
+    private void printPage(PageCursor cursor) {
+        List<ContactsRecord> page = cursor.currentPage();
+        int number = cursor.getFirstIndex();
+        for (ContactsRecord contactsRecord : page) {
+            out.println(++number + ". " + contactsRecord.getDisplayName());
         }
-        if (ID >= 0 && ID < contactsBook.getNumberOfRecords()) {
-            recordMenu(contactsBook.getRecordByID(ID));
-            return true;
+        if (cursor.isSizeKnown()) {
+            out.printf("Page %d of %d (%d records)%n", cursor.getPage() + 1, cursor.pageCount(), cursor.knownSize());
         } else {
-            System.out.println(WRONG_INPUT);
+            out.printf("Page %d of at least %d%n", cursor.getPage() + 1, cursor.pageCount());
         }
-        return false;
     }
 
-
     /**
      * Displays information from record.
      * Accepts user input to redirect to edit menu or delete record from phone book.
@@ -156,30 +232,25 @@ public class CLI {
     private void recordMenu(ContactsRecord contactsRecord) {
         List<String> accessibleFields = contactsRecord.getAccessibleFields();
         while (true) {
-            accessibleFields.forEach(fieldName -> {
-                try {
-                    System.out.println(contactsRecord.getFieldByName(fieldName));
-                } catch (WrongFieldNameException e) {
-                    e.printStackTrace();
-                }
-            });
-            System.out.println("Time created: " + contactsRecord.getTimeCreated());
-            System.out.println("Time last edit: " + contactsRecord.getTimeEdited());
+            for (FieldDescriptor<?> field : contactsRecord.getSchema().getFields()) {
+                out.println(field.getLabel() + ": " + field.getValue(contactsRecord));
+            }
+            out.println("Time created: " + contactsRecord.getTimeCreated());
+            out.println("Time last edit: " + contactsRecord.getTimeEdited());
 
-            System.out.print("\n[record] Enter action (edit, delete, menu): ");
-            String action = scanner.nextLine();
+            String action = readLine("\n[record] Enter action (edit, delete, menu): ");
             switch (action) {
                 case "edit":
                     editMenu(contactsRecord, accessibleFields);
                     continue;
                 case "delete":
                     contactsBook.deleteRecord(contactsRecord);
-                    System.out.println("Record deleted");
+                    out.println("Record deleted");
                     return;
                 case "menu":
                     return;
                 default:
-                    System.out.println(WRONG_INPUT);
+                    out.println(WRONG_INPUT);
             }
         }
     }
@@ -193,79 +264,68 @@ public class CLI {
      */
     private void editMenu(ContactsRecord contactsRecord, List<String> accessibleFields) {
         String fieldsString = String.join(", ", accessibleFields);
-        System.out.printf("Select a field (%s): ", fieldsString);
-        String fieldName = scanner.nextLine();
-        System.out.printf("Enter %s: ", fieldName);
-        String newValue = scanner.nextLine();
+        String fieldName = readLine(String.format("Select a field (%s): ", fieldsString));
+        String newValue = readLine(String.format("Enter %s: ", fieldName));
         try {
-            contactsRecord.editFieldByName(fieldName, newValue);
-            contactsRecord.updateTimeEdited();
-            System.out.println("Saved");
+            printIfInvalid(fieldName, newValue);
+            contactsBook.editFieldByName(contactsRecord, fieldName, newValue);
+            out.println("Saved");
         } catch (WrongFieldNameException e) {
-            System.out.println(e.getMessage());
+            out.println(e.getMessage());
         }
     }
 
     /**
-     * Menu for choosing type of record user wants to create.
-     * Redirects to corresponding menu.
+     * Menu for choosing type of record user wants to create among registered types.
+     * Redirects to creating record of chosen type.
      */
     private void addMenu() {
+        StringJoiner typeNames = new StringJoiner(", ");
+        for (RecordSchema<?> schema : RecordSchema.getRegisteredSchemas()) {
+            typeNames.add(schema.getTypeName());
+        }
         while (true) {
-            System.out.print("Enter the type (person, organization): ");
-            String type = scanner.nextLine();
-            switch (type) {
-                case "person":
-                    createPerson();
-                    return;
-                case "organization":
-                    createOrganization();
-                    return;
-                default:
-                    System.out.println(WRONG_INPUT);
+            RecordSchema<?> schema = RecordSchema.forTypeName(readLine(String.format("Enter the type (%s): ", typeNames)));
+            if (schema != null) {
+                createRecord(schema);
+                return;
             }
+            out.println(WRONG_INPUT);
         }
     }
 
     /**
-     * Creates organization record from user input and stores it to phone book.
+     * Creates record from user input, asking for fields in order of the schema, and stores it to phone book.
+     *
+     * @param schema Schema of type of the record.
      */
-    private void createOrganization() {
-        OrganizationContactsRecord record = new OrganizationContactsRecord();
-        System.out.print("Enter the organization name: ");
-        String name = scanner.nextLine();
-        record.setName(name);
-        System.out.print("Enter the address: ");
-        String address = scanner.nextLine();
-        record.setAddress(address);
-        System.out.print("Enter the number: ");
-        String number = scanner.nextLine();
-        record.setNumber(number);
+    private void createRecord(RecordSchema<?> schema) {
+        ContactsRecord record = schema.newRecord();
+        for (FieldDescriptor<?> field : schema.getFields()) {
+            String value = readLine(field.getPrompt() + ": ");
+            printIfInvalid(field.getName(), value);
+            field.setValue(record, value);
+        }
         contactsBook.addRecord(record);
-        System.out.println("The record added.\n");
+        out.println("The record added.\n");
     }
 
     /**
-     * Creates person record from user input and stores it to phone book.
+     * Warns user that value doesn't satisfy format of the field, so "[no data]" will be stored instead.
      */
-    private void createPerson() {
-        PersonContactsRecord record = new PersonContactsRecord();
-        System.out.print("Enter the name: ");
-        String name = scanner.nextLine();
-        record.setName(name);
-        System.out.print("Enter the surname: ");
-        String surname = scanner.nextLine();
-        record.setSurname(surname);
-        System.out.print("Enter the birth date: ");
-        String birth = scanner.nextLine();
-        record.setBirthDate(birth);
-        System.out.print("Enter the gender (M, F): ");
-        String gender = scanner.nextLine();
-        record.setGender(gender);
-        System.out.print("Enter the number: ");
-        String number = scanner.nextLine();
-        record.setNumber(number);
-        contactsBook.addRecord(record);
-        System.out.println("The record added.\n");
+    private void printIfInvalid(String fieldName, String value) {
+        ValidationResult validation = FieldValidator.validate(fieldName, value);
+        if (!validation.isValid()) {
+            out.println(validation.getMessage());
+        }
+    }
+
+    /**
+     * Flushes buffered output and waits for line of user input.
+     */
+    private String readLine(String prompt) {
+        out.print(prompt);
+        out.flush();
+        return scanner.nextLine();
     }
 }
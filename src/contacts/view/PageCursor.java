@@ -0,0 +1,153 @@
+package contacts.view;
+
+import contacts.model.Contacts;
+import contacts.model.ContactsRecord;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+
+/**
+ * Cursor over pages of records, which fetches records only when their page is shown.
+ * Records are numbered from 0 across all pages.
+ */
+abstract class PageCursor {
+
+    private final int pageSize;
+    private int page;
+
+    private PageCursor(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Creates cursor over all records of phone book, which reads records of page by their positions.
+     */
+    static PageCursor over(Contacts contactsBook, int pageSize) {
+        return new PageCursor(pageSize) {
+            @Override
+            List<ContactsRecord> fetch(int from, int count) {
+                return contactsBook.getRecords(from, count);
+            }
+
+            @Override
+            boolean hasRecord(int index) {
+                return index < contactsBook.getNumberOfRecords();
+            }
+
+            @Override
+            int knownSize() {
+                return contactsBook.getNumberOfRecords();
+            }
+
+            @Override
+            boolean isSizeKnown() {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Creates cursor over lazily produced records, for example search results.
+     * Records are pulled from iterator when their page or following pages are shown and kept for going back.
+     */
+    static PageCursor over(Iterator<ContactsRecord> records, int pageSize) {
+        return new PageCursor(pageSize) {
+            private final List<ContactsRecord> fetched = new ArrayList<>();
+
+            @Override
+            List<ContactsRecord> fetch(int from, int count) {
+                pull(from + count);
+                return new ArrayList<>(fetched.subList(Math.min(from, fetched.size()),
+                        Math.min(from + count, fetched.size())));
+            }
+
+            @Override
+            boolean hasRecord(int index) {
+                pull(index + 1);
+                return index < fetched.size();
+            }
+
+            @Override
+            int knownSize() {
+                return fetched.size();
+            }
+
+            @Override
+            boolean isSizeKnown() {
+                return !records.hasNext();
+            }
+
+            private void pull(int size) {
+                while (fetched.size() < size && records.hasNext()) {
+                    fetched.add(records.next());
+                }
+            }
+        };
+    }
+
+    /**
+     * @return Records of the current page.
+     */
+    List<ContactsRecord> currentPage() {
+        return fetch(page * pageSize, pageSize);
+    }
+
+    /**
+     * @return Number of the current page starting from 0.
+     */
+    int getPage() {
+        return page;
+    }
+
+    /**
+     * @return Number of the first record of the current page starting from 0.
+     */
+    int getFirstIndex() {
+        return page * pageSize;
+    }
+
+    /**
+     * Moves to the page, if it has records. The first page can always be shown, even if it's empty.
+     *
+     * @param page Number of the page starting from 0.
+     * @return True if cursor was moved.
+     */
+    boolean moveTo(int page) {
+        if (page < 0 || page > 0 && !hasRecord(page * pageSize)) {
+            return false;
+        }
+        this.page = page;
+        return true;
+    }
+
+    /**
+     * @return Number of pages or number of pages fetched so far, if size isn't known yet.
+     */
+    int pageCount() {
+        return Math.max(1, (knownSize() + pageSize - 1) / pageSize);
+    }
+
+    /**
+     * @param index Number of record starting from 0.
+     * @return Record or null if there's no record with such number.
+     */
+    ContactsRecord record(int index) {
+        if (index < 0 || !hasRecord(index)) {
+            return null;
+        }
+        return fetch(index, 1).get(0);
+    }
+
+    abstract List<ContactsRecord> fetch(int from, int count);
+
+    abstract boolean hasRecord(int index);
+
+    /**
+     * @return Number of records, or number of records fetched so far, if size isn't known yet.
+     */
+    abstract int knownSize();
+
+    abstract boolean isSizeKnown();
+}